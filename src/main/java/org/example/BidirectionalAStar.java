@@ -0,0 +1,509 @@
+package org.example;
+
+import java.util.Arrays;
+
+/**
+ * Point-to-point shortest travel time on a {@link RoadGraph}, searching from both ends at once.
+ *
+ * Both searches use the averaged potential (h_target - h_source) / 2, built from the flat
+ * distance divided by the profile's top speed, so they run on the same reduced graph and can
+ * stop as soon as the two queue heads together reach the best meeting cost. Per-node state
+ * lives in arrays sized to the graph and reused across queries; a query stamp marks which
+ * entries are current, so nothing is cleared between searches. Queries are serialised.
+ *
+ * On a graph with collapsed shape nodes only junctions are settled. A query that starts or
+ * ends at a shape node enters the search at both ends of the edge it lies on, with the cost of
+ * the stretch in between, and paths list every shape node they pass.
+ */
+public class BidirectionalAStar {
+
+    /**
+     * A route through the graph, as node indices from source to target, shape nodes included.
+     */
+    public static class Path {
+        private final int[] nodes;
+        private final double meters;
+        private final double seconds;
+
+        Path(int[] nodes, double meters, double seconds) {
+            this.nodes = nodes;
+            this.meters = meters;
+            this.seconds = seconds;
+        }
+
+        public int[] getNodes() { return nodes; }
+        public int getNodeCount() { return nodes.length; }
+        public double getMeters() { return meters; }
+        public double getSeconds() { return seconds; }
+    }
+
+    // Keeps the flat-distance heuristic safely below the haversine edge lengths
+    private static final double HEURISTIC_SCALE = 0.99;
+    // Along and against the chain of a shape node, for RoadGraph.shapeEdge
+    private static final boolean[] BOTH_WAYS = {true, false};
+
+    private final RoadGraph graph;
+
+    private int stamp;
+    private final int[] forwardStamp;
+    private final int[] backwardStamp;
+    private final int[] forwardSettled;
+    private final int[] backwardSettled;
+    private final double[] forwardCost;
+    private final double[] backwardCost;
+    private final int[] forwardParent;
+    private final int[] backwardParent;
+    private final int[] forwardParentEdge;
+    private final int[] backwardParentEdge;
+    private final NodeHeap forwardQueue = new NodeHeap();
+    private final NodeHeap backwardQueue = new NodeHeap();
+
+    private final double[] classSpeed = new double[RoadGraph.RoadClass.values().length];
+
+    private long queries;
+    private long nodesSettled;
+
+    public BidirectionalAStar(RoadGraph graph) {
+        this.graph = graph;
+        int n = graph.getNodeCount();
+        forwardStamp = new int[n];
+        backwardStamp = new int[n];
+        forwardSettled = new int[n];
+        backwardSettled = new int[n];
+        forwardCost = new double[n];
+        backwardCost = new double[n];
+        forwardParent = new int[n];
+        backwardParent = new int[n];
+        forwardParentEdge = new int[n];
+        backwardParentEdge = new int[n];
+    }
+
+    public RoadGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * @param deadline optional; the search gives up once it has passed
+     * @return the fastest path, or null if the target cannot be reached
+     */
+    public synchronized Path route(int source, int target, RoutingAPI.RoutingProfile profile, RoutingDeadline deadline) {
+        queries++;
+        if (source == target) return new Path(new int[]{source}, 0, 0);
+
+        int accessMask = RoadGraph.accessMaskFor(profile);
+        for (RoadGraph.RoadClass roadClass : RoadGraph.RoadClass.values()) {
+            classSpeed[roadClass.ordinal()] = roadClass.speedKmh(profile) / 3.6;
+        }
+        double secondsPerMeter = HEURISTIC_SCALE / (RoadGraph.RoadClass.maxSpeedKmh(profile) / 3.6);
+
+        if (++stamp == Integer.MAX_VALUE) resetStamps();
+        forwardQueue.clear();
+        backwardQueue.clear();
+
+        double best = Double.POSITIVE_INFINITY;
+        int meeting = -1;
+        // Both ends inside the same collapsed edge: the stretch between them, if it may be travelled
+        int directEdge = sameEdgeBetween(source, target, accessMask);
+        if (directEdge >= 0) {
+            best = (graph.metersToShapeNode(directEdge, target) - graph.metersToShapeNode(directEdge, source))
+                    / classSpeed[graph.edgeClass(directEdge).ordinal()];
+        }
+
+        reach(forwardStamp, forwardCost, forwardParent, forwardParentEdge, source, 0, -1, -1);
+        reach(backwardStamp, backwardCost, backwardParent, backwardParentEdge, target, 0, -1, -1);
+        if (graph.isShapeNode(source)) {
+            for (boolean towardsLast : BOTH_WAYS) {
+                int e = graph.shapeEdge(source, towardsLast);
+                if (e < 0 || !graph.edgeAllows(e, accessMask)) continue;
+                int end = graph.edgeTarget(e);
+                double cost = (graph.edgeMeters(e) - graph.metersToShapeNode(e, source)) / classSpeed[graph.edgeClass(e).ordinal()];
+                if (forwardStamp[end] != stamp || cost < forwardCost[end]) {
+                    reach(forwardStamp, forwardCost, forwardParent, forwardParentEdge, end, cost, source, e);
+                    forwardQueue.push(end, cost + potential(end, source, target, secondsPerMeter));
+                }
+            }
+        } else {
+            forwardQueue.push(source, potential(source, source, target, secondsPerMeter));
+        }
+        if (graph.isShapeNode(target)) {
+            for (boolean towardsLast : BOTH_WAYS) {
+                int e = graph.shapeEdge(target, towardsLast);
+                if (e < 0 || !graph.edgeAllows(e, accessMask)) continue;
+                int start = graph.shapeEdgeSource(e);
+                double cost = graph.metersToShapeNode(e, target) / classSpeed[graph.edgeClass(e).ordinal()];
+                if (backwardStamp[start] != stamp || cost < backwardCost[start]) {
+                    reach(backwardStamp, backwardCost, backwardParent, backwardParentEdge, start, cost, target, e);
+                    backwardQueue.push(start, cost - potential(start, source, target, secondsPerMeter));
+                }
+                // The source may already sit where the target's edge begins
+                if (forwardStamp[start] == stamp && forwardCost[start] + backwardCost[start] < best) {
+                    best = forwardCost[start] + backwardCost[start];
+                    meeting = start;
+                }
+            }
+        } else {
+            backwardQueue.push(target, -potential(target, source, target, secondsPerMeter));
+            if (forwardStamp[target] == stamp && forwardCost[target] < best) {
+                best = forwardCost[target];
+                meeting = target;
+            }
+        }
+
+        int iterations = 0;
+
+        while (!forwardQueue.isEmpty() && !backwardQueue.isEmpty()) {
+            if (forwardQueue.peekKey() + backwardQueue.peekKey() >= best) break;
+            if ((++iterations & 1023) == 0 && deadline != null && deadline.isExpired()) return null;
+
+            boolean forward = forwardQueue.size() <= backwardQueue.size();
+            int node = forward ? forwardQueue.pop() : backwardQueue.pop();
+
+            if (forward) {
+                if (forwardSettled[node] == stamp) continue;
+                forwardSettled[node] = stamp;
+                nodesSettled++;
+                double cost = forwardCost[node];
+                for (int e = graph.edgeStart(node); e < graph.edgeEnd(node); e++) {
+                    if (!graph.edgeAllows(e, accessMask)) continue;
+                    int next = graph.edgeTarget(e);
+                    double nextCost = cost + edgeSeconds(e);
+                    if (forwardStamp[next] != stamp || nextCost < forwardCost[next]) {
+                        reach(forwardStamp, forwardCost, forwardParent, forwardParentEdge, next, nextCost, node, e);
+                        forwardQueue.push(next, nextCost + potential(next, source, target, secondsPerMeter));
+                    }
+                    if (backwardStamp[next] == stamp && nextCost + backwardCost[next] < best) {
+                        best = nextCost + backwardCost[next];
+                        meeting = next;
+                    }
+                }
+            } else {
+                if (backwardSettled[node] == stamp) continue;
+                backwardSettled[node] = stamp;
+                nodesSettled++;
+                double cost = backwardCost[node];
+                for (int i = graph.inEdgeStart(node); i < graph.inEdgeEnd(node); i++) {
+                    int e = graph.inEdge(i);
+                    if (!graph.edgeAllows(e, accessMask)) continue;
+                    int previous = graph.inEdgeSource(i);
+                    double previousCost = cost + edgeSeconds(e);
+                    if (backwardStamp[previous] != stamp || previousCost < backwardCost[previous]) {
+                        reach(backwardStamp, backwardCost, backwardParent, backwardParentEdge, previous, previousCost, node, e);
+                        backwardQueue.push(previous, previousCost - potential(previous, source, target, secondsPerMeter));
+                    }
+                    if (forwardStamp[previous] == stamp && previousCost + forwardCost[previous] < best) {
+                        best = previousCost + forwardCost[previous];
+                        meeting = previous;
+                    }
+                }
+            }
+        }
+
+        if (meeting >= 0) return buildPath(meeting, best);
+        return directEdge >= 0 ? directPath(directEdge, source, target, best) : null;
+    }
+
+    /**
+     * The collapsed edge {@code source} can follow to reach {@code target} without passing a
+     * junction, or -1 if they are not both inside the same one.
+     */
+    private int sameEdgeBetween(int source, int target, int accessMask) {
+        if (!graph.isShapeNode(source) || !graph.isShapeNode(target)) return -1;
+        for (boolean towardsLast : BOTH_WAYS) {
+            int e = graph.shapeEdge(source, towardsLast);
+            if (e < 0 || !graph.edgeAllows(e, accessMask)) continue;
+            int targetPosition = graph.shapePosition(e, target);
+            if (targetPosition > graph.shapePosition(e, source)) return e;
+        }
+        return -1;
+    }
+
+    /**
+     * Fastest travel time and its distance from {@code source} to each of {@code targets}, with
+     * one plain Dijkstra search over the forward arrays that stops once every target is settled.
+     * Far cheaper than one {@link #route} per target when building a travel-time matrix.
+     *
+     * @param seconds filled with the time to each target, infinite when unreachable
+     * @param meters  filled with the distance to each target, infinite when unreachable
+     * @return false if the deadline passed before every target was settled
+     */
+    public synchronized boolean oneToMany(int source, int[] targets, RoutingAPI.RoutingProfile profile,
+                                          RoutingDeadline deadline, double[] seconds, double[] meters) {
+        queries++;
+        int accessMask = RoadGraph.accessMaskFor(profile);
+        for (RoadGraph.RoadClass roadClass : RoadGraph.RoadClass.values()) {
+            classSpeed[roadClass.ordinal()] = roadClass.speedKmh(profile) / 3.6;
+        }
+
+        if (++stamp == Integer.MAX_VALUE) resetStamps();
+        forwardQueue.clear();
+        // Nodes still to settle are flagged in the backward stamps, which this search does not use;
+        // for a shape node that is where its edges begin
+        int remaining = 0;
+        for (int target : targets) {
+            if (!graph.isShapeNode(target)) {
+                if (backwardStamp[target] != stamp) {
+                    backwardStamp[target] = stamp;
+                    remaining++;
+                }
+                continue;
+            }
+            for (boolean towardsLast : BOTH_WAYS) {
+                int e = graph.shapeEdge(target, towardsLast);
+                if (e < 0 || !graph.edgeAllows(e, accessMask)) continue;
+                int start = graph.shapeEdgeSource(e);
+                if (backwardStamp[start] != stamp) {
+                    backwardStamp[start] = stamp;
+                    remaining++;
+                }
+            }
+        }
+
+        reach(forwardStamp, forwardCost, forwardParent, forwardParentEdge, source, 0, -1, -1);
+        if (graph.isShapeNode(source)) {
+            for (boolean towardsLast : BOTH_WAYS) {
+                int e = graph.shapeEdge(source, towardsLast);
+                if (e < 0 || !graph.edgeAllows(e, accessMask)) continue;
+                int end = graph.edgeTarget(e);
+                double cost = (graph.edgeMeters(e) - graph.metersToShapeNode(e, source)) / classSpeed[graph.edgeClass(e).ordinal()];
+                if (forwardStamp[end] != stamp || cost < forwardCost[end]) {
+                    reach(forwardStamp, forwardCost, forwardParent, forwardParentEdge, end, cost, source, e);
+                    forwardQueue.push(end, cost);
+                }
+            }
+        } else {
+            forwardQueue.push(source, 0);
+        }
+        int iterations = 0;
+        while (remaining > 0 && !forwardQueue.isEmpty()) {
+            if ((++iterations & 1023) == 0 && deadline != null && deadline.isExpired()) return false;
+            int node = forwardQueue.pop();
+            if (forwardSettled[node] == stamp) continue;
+            forwardSettled[node] = stamp;
+            nodesSettled++;
+            if (backwardStamp[node] == stamp) remaining--;
+            double cost = forwardCost[node];
+            for (int e = graph.edgeStart(node); e < graph.edgeEnd(node); e++) {
+                if (!graph.edgeAllows(e, accessMask)) continue;
+                int next = graph.edgeTarget(e);
+                double nextCost = cost + edgeSeconds(e);
+                if (forwardStamp[next] != stamp || nextCost < forwardCost[next]) {
+                    reach(forwardStamp, forwardCost, forwardParent, forwardParentEdge, next, nextCost, node, e);
+                    forwardQueue.push(next, nextCost);
+                }
+            }
+        }
+
+        for (int i = 0; i < targets.length; i++) {
+            int target = targets[i];
+            seconds[i] = Double.POSITIVE_INFINITY;
+            meters[i] = Double.POSITIVE_INFINITY;
+            if (target == source) {
+                seconds[i] = 0;
+                meters[i] = 0;
+            } else if (!graph.isShapeNode(target)) {
+                if (forwardSettled[target] == stamp) {
+                    seconds[i] = forwardCost[target];
+                    meters[i] = metersTo(target);
+                }
+            } else {
+                int directEdge = sameEdgeBetween(source, target, accessMask);
+                if (directEdge >= 0) {
+                    meters[i] = graph.metersToShapeNode(directEdge, target) - graph.metersToShapeNode(directEdge, source);
+                    seconds[i] = meters[i] / classSpeed[graph.edgeClass(directEdge).ordinal()];
+                }
+                for (boolean towardsLast : BOTH_WAYS) {
+                    int e = graph.shapeEdge(target, towardsLast);
+                    if (e < 0 || !graph.edgeAllows(e, accessMask)) continue;
+                    int start = graph.shapeEdgeSource(e);
+                    if (forwardSettled[start] != stamp) continue;
+                    double stretch = graph.metersToShapeNode(e, target);
+                    double time = forwardCost[start] + stretch / classSpeed[graph.edgeClass(e).ordinal()];
+                    if (time < seconds[i]) {
+                        seconds[i] = time;
+                        meters[i] = metersTo(start) + stretch;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Distance along the forward search tree from the source to {@code node}.
+     */
+    private double metersTo(int node) {
+        double distance = 0;
+        for (int n = node; forwardParentEdge[n] >= 0; n = forwardParent[n]) {
+            distance += stepMeters(forwardParentEdge[n], forwardParent[n], n);
+        }
+        return distance;
+    }
+
+    /**
+     * Length of the part of {@code edge} between {@code from} and {@code to}, either of which
+     * may be one of its shape nodes instead of an end.
+     */
+    private double stepMeters(int edge, int from, int to) {
+        double start = graph.shapePosition(edge, from) >= 0 ? graph.metersToShapeNode(edge, from) : 0;
+        double end = graph.shapePosition(edge, to) >= 0 ? graph.metersToShapeNode(edge, to) : graph.edgeMeters(edge);
+        return end - start;
+    }
+
+    /**
+     * Appends the shape nodes of {@code edge} strictly between {@code from} and {@code to}.
+     */
+    private int addShapeNodes(int[] nodes, int i, int edge, int from, int to) {
+        int first = graph.shapePosition(edge, from) + 1;
+        int toPosition = graph.shapePosition(edge, to);
+        int last = toPosition >= 0 ? toPosition : graph.shapeCount(edge);
+        for (int p = first; p < last; p++) nodes[i++] = graph.shapeNode(edge, p);
+        return i;
+    }
+
+    private int countShapeNodes(int edge, int from, int to) {
+        int first = graph.shapePosition(edge, from) + 1;
+        int toPosition = graph.shapePosition(edge, to);
+        return (toPosition >= 0 ? toPosition : graph.shapeCount(edge)) - first;
+    }
+
+    private double edgeSeconds(int edge) {
+        return graph.edgeMeters(edge) / classSpeed[graph.edgeClass(edge).ordinal()];
+    }
+
+    private double potential(int node, int source, int target, double secondsPerMeter) {
+        return (graph.flatMeters(node, target) - graph.flatMeters(source, node)) * secondsPerMeter / 2;
+    }
+
+    private void reach(int[] stamps, double[] costs, int[] parents, int[] parentEdges, int node, double cost,
+                       int parent, int parentEdge) {
+        stamps[node] = stamp;
+        costs[node] = cost;
+        parents[node] = parent;
+        parentEdges[node] = parentEdge;
+    }
+
+    private Path buildPath(int meeting, double seconds) {
+        int forwardLength = 0;
+        for (int n = meeting; n != -1; n = forwardParent[n]) {
+            forwardLength++;
+            if (forwardParentEdge[n] >= 0) forwardLength += countShapeNodes(forwardParentEdge[n], forwardParent[n], n);
+        }
+        int backwardLength = 0;
+        for (int n = meeting; backwardParent[n] != -1; n = backwardParent[n]) {
+            backwardLength += 1 + countShapeNodes(backwardParentEdge[n], n, backwardParent[n]);
+        }
+
+        int[] nodes = new int[forwardLength + backwardLength];
+        double meters = 0;
+        int i = forwardLength - 1;
+        for (int n = meeting; n != -1; n = forwardParent[n]) {
+            nodes[i--] = n;
+            int e = forwardParentEdge[n];
+            if (e < 0) continue;
+            meters += stepMeters(e, forwardParent[n], n);
+            int shapeCount = countShapeNodes(e, forwardParent[n], n);
+            addShapeNodes(nodes, i - shapeCount + 1, e, forwardParent[n], n);
+            i -= shapeCount;
+        }
+        i = forwardLength;
+        for (int n = meeting; backwardParent[n] != -1; n = backwardParent[n]) {
+            int e = backwardParentEdge[n];
+            meters += stepMeters(e, n, backwardParent[n]);
+            i = addShapeNodes(nodes, i, e, n, backwardParent[n]);
+            nodes[i++] = backwardParent[n];
+        }
+        return new Path(nodes, meters, seconds);
+    }
+
+    private Path directPath(int edge, int source, int target, double seconds) {
+        int[] nodes = new int[countShapeNodes(edge, source, target) + 2];
+        nodes[0] = source;
+        addShapeNodes(nodes, 1, edge, source, target);
+        nodes[nodes.length - 1] = target;
+        return new Path(nodes, stepMeters(edge, source, target), seconds);
+    }
+
+    private void resetStamps() {
+        Arrays.fill(forwardStamp, 0);
+        Arrays.fill(backwardStamp, 0);
+        Arrays.fill(forwardSettled, 0);
+        Arrays.fill(backwardSettled, 0);
+        stamp = 1;
+    }
+
+    public synchronized long getQueries() {
+        return queries;
+    }
+
+    public synchronized long getNodesSettled() {
+        return nodesSettled;
+    }
+
+    public synchronized String describeStats() {
+        return String.format("queries=%d, settled nodes=%d (%.0f avg)", queries, nodesSettled,
+                queries == 0 ? 0.0 : (double) nodesSettled / queries);
+    }
+
+
+    /**
+     * Binary min-heap of node indices keyed by double, with stale entries left in place and
+     * skipped on pop instead of a decrease-key.
+     */
+    private static class NodeHeap {
+        private int[] nodes = new int[256];
+        private double[] keys = new double[256];
+        private int size;
+
+        void clear() {
+            size = 0;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        int size() {
+            return size;
+        }
+
+        double peekKey() {
+            return keys[0];
+        }
+
+        void push(int node, double key) {
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+                keys = Arrays.copyOf(keys, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (keys[parent] <= key) break;
+                nodes[i] = nodes[parent];
+                keys[i] = keys[parent];
+                i = parent;
+            }
+            nodes[i] = node;
+            keys[i] = key;
+        }
+
+        int pop() {
+            int top = nodes[0];
+            int lastNode = nodes[--size];
+            double lastKey = keys[size];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) break;
+                if (child + 1 < size && keys[child + 1] < keys[child]) child++;
+                if (keys[child] >= lastKey) break;
+                nodes[i] = nodes[child];
+                keys[i] = keys[child];
+                i = child;
+            }
+            nodes[i] = lastNode;
+            keys[i] = lastKey;
+            return top;
+        }
+    }
+}
@@ -58,6 +58,8 @@ public class Dashboard extends JPanel {
         void onRedo();
         void onSaveRoute();
         void onLoadRoute();
+        void onImportTrace();
+        void onOptimizeOrder();
         void onZoomIn();
         void onZoomOut();
         void onGenerateRoute();
@@ -70,6 +72,8 @@ public class Dashboard extends JPanel {
     private JButton redoBtn;
     private JButton saveBtn;
     private JButton loadBtn;
+    private JButton importBtn;
+    private JButton optimizeBtn;
     private JButton zoomInBtn;
     private JButton zoomOutBtn;
     private JButton generateBtn;
@@ -132,6 +136,8 @@ public class Dashboard extends JPanel {
         redoBtn = new JButton("Redo");
         saveBtn = new JButton("Save");
         loadBtn = new JButton("Load");
+        importBtn = new JButton("Import GPX");
+        optimizeBtn = new JButton("Optimize Order");
         zoomInBtn = new JButton("+");
         zoomOutBtn = new JButton("-");
         generateBtn = new JButton("Generate Run");
@@ -155,7 +161,7 @@ public class Dashboard extends JPanel {
         userLabel.setForeground(Color.GRAY);
 
         add(drawBtn); add(clearBtn); add(undoBtn); add(redoBtn);
-        add(saveBtn); add(loadBtn);
+        add(saveBtn); add(loadBtn); add(importBtn); add(optimizeBtn);
         add(new JSeparator(SwingConstants.VERTICAL));
         add(generateBtn);
         add(new JSeparator(SwingConstants.VERTICAL));
@@ -173,6 +179,8 @@ public class Dashboard extends JPanel {
         redoBtn.addActionListener(e -> { if (listener != null) listener.onRedo(); });
         saveBtn.addActionListener(e -> { if (listener != null) listener.onSaveRoute(); });
         loadBtn.addActionListener(e -> { if (listener != null) listener.onLoadRoute(); });
+        importBtn.addActionListener(e -> { if (listener != null) listener.onImportTrace(); });
+        optimizeBtn.addActionListener(e -> { if (listener != null) listener.onOptimizeOrder(); });
         zoomInBtn.addActionListener(e -> { if (listener != null) listener.onZoomIn(); });
         zoomOutBtn.addActionListener(e -> { if (listener != null) listener.onZoomOut(); });
         generateBtn.addActionListener(e -> { if (listener != null) listener.onGenerateRoute(); });
@@ -10,30 +10,148 @@ import java.util.ArrayList;
 import java.util.Base64;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
 
 /**
  * Singleton Database class handling both route storage and user authentication.
+ *
+ * The file is opened in WAL mode, so queries never wait on a write: one writer connection
+ * takes every insert and update, one transaction at a time, while a small pool of read-only
+ * connections serves lookups side by side. The synchronous methods are safe to call from any
+ * thread; the UI uses their *Async twins, which run on the database's own threads so a slow
+ * disk or a large route never stalls the EDT.
  */
 
 public class Database {
 
+    static final String DEFAULT_URL = "jdbc:sqlite:routes.db";
+    static final int DEFAULT_READERS = 3;
+    private static final int BUSY_TIMEOUT_MILLIS = 5_000;
+    // Negative means KiB: 8 MB of page cache per connection
+    private static final int CACHE_SIZE_KIB = 8_000;
+
+    private static final ExecutorService WRITE_EXECUTOR =
+            Executors.newSingleThreadExecutor(new DaemonThreadFactory("db-writer"));
+    private static final ExecutorService READ_EXECUTOR =
+            Executors.newFixedThreadPool(DEFAULT_READERS, new DaemonThreadFactory("db-reader"));
+
     private static Database instance;
+    // The writer; guarded by writeLock
     private Connection connection;
+    // Idle read-only connections, or null to read through the writer (in-memory databases
+    // are private to the connection that opened them)
+    private BlockingQueue<Connection> readers;
+    private final List<Connection> allReaders = new ArrayList<>();
+    private final Object writeLock = new Object();
+
+    private interface SqlWork<T> {
+        T run(Connection connection) throws SQLException;
+    }
 
     private Database() {
+        this(DEFAULT_URL, DEFAULT_READERS);
+    }
+
+    Database(String url, int readerCount) {
         try {
-            connection = DriverManager.getConnection("jdbc:sqlite:routes.db");
+            connection = DriverManager.getConnection(url);
+            applyWriterPragmas();
             createTablesIfNeeded();
         } catch (SQLException e) {
             e.printStackTrace();
+            return;
+        }
+        if (readerCount > 0 && !url.contains(":memory:")) {
+            openReaders(url, readerCount);
         }
     }
 
-    public static Database getInstance() {
+    public static synchronized Database getInstance() {
         if (instance == null) instance = new Database();
         return instance;
     }
 
+    private void applyWriterPragmas() throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("PRAGMA journal_mode=WAL");
+            // Safe in WAL mode: a crash can lose the last commits but never corrupts the file
+            stmt.execute("PRAGMA synchronous=NORMAL");
+            stmt.execute("PRAGMA busy_timeout=" + BUSY_TIMEOUT_MILLIS);
+            stmt.execute("PRAGMA temp_store=MEMORY");
+            stmt.execute("PRAGMA cache_size=-" + CACHE_SIZE_KIB);
+        }
+    }
+
+    private void openReaders(String url, int readerCount) {
+        BlockingQueue<Connection> pool = new ArrayBlockingQueue<>(readerCount);
+        try {
+            for (int i = 0; i < readerCount; i++) {
+                Connection reader = DriverManager.getConnection(url);
+                allReaders.add(reader);
+                try (Statement stmt = reader.createStatement()) {
+                    stmt.execute("PRAGMA busy_timeout=" + BUSY_TIMEOUT_MILLIS);
+                    stmt.execute("PRAGMA cache_size=-" + CACHE_SIZE_KIB);
+                    stmt.execute("PRAGMA query_only=ON");
+                }
+                pool.add(reader);
+            }
+        } catch (SQLException e) {
+            System.err.println("Could not open database readers, reading through the writer: " + e.getMessage());
+            closeReaders();
+            return;
+        }
+        readers = pool;
+    }
+
+    private <T> T write(SqlWork<T> work) throws SQLException {
+        synchronized (writeLock) {
+            return work.run(connection);
+        }
+    }
+
+    /**
+     * Runs {@code work} on the writer as one transaction, so a multi-statement save is both
+     * atomic and a single fsync rather than one per row.
+     */
+    private <T> T writeInTransaction(SqlWork<T> work) throws SQLException {
+        synchronized (writeLock) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                T result = work.run(connection);
+                connection.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    private <T> T read(SqlWork<T> work) throws SQLException {
+        BlockingQueue<Connection> pool = readers;
+        if (pool == null) return write(work);
+        Connection reader;
+        try {
+            reader = pool.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database reader", e);
+        }
+        try {
+            return work.run(reader);
+        } finally {
+            pool.add(reader);
+        }
+    }
+
     private void createTablesIfNeeded() throws SQLException {
         try (Statement stmt = connection.createStatement()) {
             // Routes table
@@ -51,8 +169,13 @@ public class Database {
                             "  route_id INTEGER," +
                             "  lat REAL," +
                             "  lon REAL," +
+                            "  is_stop INTEGER," +
                             "  FOREIGN KEY(route_id) REFERENCES routes(id))"
             );
+            // Older databases predate is_stop; their points load with stops unknown
+            if (!getColumns(connection, "route_points").containsKey("is_stop")) {
+                stmt.executeUpdate("ALTER TABLE route_points ADD COLUMN is_stop INTEGER");
+            }
             // Users table with authentication info
             stmt.executeUpdate(
                     "CREATE TABLE IF NOT EXISTS users (" +
@@ -89,7 +212,7 @@ public class Database {
         LatLonColumns(String latCol, String lonCol) { this.latCol = latCol; this.lonCol = lonCol; }
     }
 
-    private java.util.Map<String, Boolean> getColumns(String table) {
+    private java.util.Map<String, Boolean> getColumns(Connection connection, String table) {
         java.util.Map<String, Boolean> cols = new java.util.HashMap<>();
         try (Statement st = connection.createStatement();
              ResultSet rs = st.executeQuery("PRAGMA table_info(" + table + ")")) {
@@ -101,8 +224,8 @@ public class Database {
         return cols;
     }
 
-    private LatLonColumns detectLatLonColumns() {
-        java.util.Map<String, Boolean> cols = getColumns("route_points");
+    private LatLonColumns detectLatLonColumns(Connection connection) {
+        java.util.Map<String, Boolean> cols = getColumns(connection, "route_points");
         if (cols.containsKey("lat") && cols.containsKey("lon")) return new LatLonColumns("lat", "lon");
         if (cols.containsKey("latitude") && cols.containsKey("longitude")) return new LatLonColumns("latitude", "longitude");
         if (cols.containsKey("y") && cols.containsKey("x")) return new LatLonColumns("y", "x");
@@ -110,85 +233,156 @@ public class Database {
     }
 
     public int saveRoute(String name, double distance, int elevation, List<GeoPosition> points) {
-        int routeId = -1;
+        return saveRoute(name, distance, elevation, points, null);
+    }
+
+    /**
+     * Saves a route and records which of its points are stops the user placed, so the
+     * loaded route can tell them from road geometry. A null {@code stopIndices} leaves
+     * the stops unrecorded.
+     */
+    public int saveRoute(String name, double distance, int elevation, List<GeoPosition> points,
+                         int[] stopIndices) {
         try {
-            String insertRoute = "INSERT INTO routes (name, distance, elevation) VALUES (?, ?, ?)";
-            try (PreparedStatement ps = connection.prepareStatement(insertRoute)) {
-                ps.setString(1, name);
-                ps.setDouble(2, distance);
-                ps.setInt(3, elevation);
-                ps.executeUpdate();
+            return writeInTransaction(connection ->
+                    insertRoute(connection, name, distance, elevation, points, stopIndices));
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return -1;
+    }
+
+    private int insertRoute(Connection connection, String name, double distance, int elevation,
+                            List<GeoPosition> points, int[] stopIndices) throws SQLException {
+        int routeId = -1;
+        String insertRoute = "INSERT INTO routes (name, distance, elevation) VALUES (?, ?, ?)";
+        try (PreparedStatement ps = connection.prepareStatement(insertRoute)) {
+            ps.setString(1, name);
+            ps.setDouble(2, distance);
+            ps.setInt(3, elevation);
+            ps.executeUpdate();
+        }
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT last_insert_rowid()")) {
+            if (rs.next()) routeId = rs.getInt(1);
+        }
+
+        if (routeId > 0 && points != null && !points.isEmpty()) {
+            LatLonColumns cols = detectLatLonColumns(connection);
+            boolean[] isStop = null;
+            if (stopIndices != null) {
+                isStop = new boolean[points.size()];
+                for (int index : stopIndices) {
+                    if (index >= 0 && index < isStop.length) isStop[index] = true;
+                }
             }
-            try (Statement stmt = connection.createStatement();
-                 ResultSet rs = stmt.executeQuery("SELECT last_insert_rowid()")) {
-                if (rs.next()) routeId = rs.getInt(1);
+            String insertPoint = "INSERT INTO route_points (route_id, " + cols.latCol + ", " + cols.lonCol + ", is_stop) VALUES (?, ?, ?, ?)";
+            try (PreparedStatement ps = connection.prepareStatement(insertPoint)) {
+                for (int i = 0; i < points.size(); i++) {
+                    GeoPosition p = points.get(i);
+                    ps.setInt(1, routeId);
+                    ps.setDouble(2, p.getLatitude());
+                    ps.setDouble(3, p.getLongitude());
+                    if (isStop == null) ps.setNull(4, Types.INTEGER);
+                    else ps.setInt(4, isStop[i] ? 1 : 0);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
             }
+        }
+        return routeId;
+    }
 
-            if (routeId > 0 && points != null && !points.isEmpty()) {
-                LatLonColumns cols = detectLatLonColumns();
-                String insertPoint = "INSERT INTO route_points (route_id, " + cols.latCol + ", " + cols.lonCol + ") VALUES (?, ?, ?)";
-                try (PreparedStatement ps = connection.prepareStatement(insertPoint)) {
-                    for (GeoPosition p : points) {
-                        ps.setInt(1, routeId);
-                        ps.setDouble(2, p.getLatitude());
-                        ps.setDouble(3, p.getLongitude());
-                        ps.addBatch();
+    public List<GeoPosition> loadRoutePoints(int routeId) {
+        try {
+            return read(connection -> {
+                List<GeoPosition> pts = new ArrayList<>();
+                LatLonColumns cols = detectLatLonColumns(connection);
+                String sql = "SELECT " + cols.latCol + " AS latVal, " + cols.lonCol + " AS lonVal " +
+                        "FROM route_points WHERE route_id = ? ORDER BY id ASC";
+                try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                    ps.setInt(1, routeId);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            pts.add(new GeoPosition(rs.getDouble("latVal"), rs.getDouble("lonVal")));
+                        }
                     }
-                    ps.executeBatch();
                 }
-            }
+                return pts;
+            });
         } catch (SQLException e) {
             e.printStackTrace();
         }
-        return routeId;
+        return new ArrayList<>();
     }
 
-    public List<GeoPosition> loadRoutePoints(int routeId) {
-        List<GeoPosition> pts = new ArrayList<>();
-        LatLonColumns cols = detectLatLonColumns();
-        String sql = "SELECT " + cols.latCol + " AS latVal, " + cols.lonCol + " AS lonVal " +
-                "FROM route_points WHERE route_id = ? ORDER BY id ASC";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setInt(1, routeId);
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    pts.add(new GeoPosition(rs.getDouble("latVal"), rs.getDouble("lonVal")));
+    /**
+     * Indices of the saved route's points that are stops, in point order, or null if the
+     * route has no points or was saved without its stops recorded.
+     */
+    public int[] loadRouteStopIndices(int routeId) {
+        try {
+            return read(connection -> {
+                String sql = "SELECT is_stop FROM route_points WHERE route_id = ? ORDER BY id ASC";
+                List<Integer> stops = new ArrayList<>();
+                int index = 0;
+                try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                    ps.setInt(1, routeId);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            int flag = rs.getInt("is_stop");
+                            if (rs.wasNull()) return null;
+                            if (flag != 0) stops.add(index);
+                            index++;
+                        }
+                    }
                 }
-            }
+                if (index == 0) return null;
+                int[] result = new int[stops.size()];
+                for (int i = 0; i < result.length; i++) result[i] = stops.get(i);
+                return result;
+            });
         } catch (SQLException e) {
             e.printStackTrace();
         }
-        return pts;
+        return null;
     }
 
     public java.util.List<RouteSummary> getAllRoutes() {
-        java.util.List<RouteSummary> list = new java.util.ArrayList<>();
-        try (Statement stmt = connection.createStatement();
-             ResultSet rs = stmt.executeQuery("SELECT id, name, distance, elevation FROM routes ORDER BY id DESC")) {
-            while (rs.next()) {
-                list.add(new RouteSummary(
-                        rs.getInt("id"),
-                        rs.getString("name"),
-                        rs.getDouble("distance"),
-                        rs.getInt("elevation")
-                ));
-            }
+        try {
+            return read(connection -> {
+                java.util.List<RouteSummary> list = new java.util.ArrayList<>();
+                try (Statement stmt = connection.createStatement();
+                     ResultSet rs = stmt.executeQuery("SELECT id, name, distance, elevation FROM routes ORDER BY id DESC")) {
+                    while (rs.next()) {
+                        list.add(new RouteSummary(
+                                rs.getInt("id"),
+                                rs.getString("name"),
+                                rs.getDouble("distance"),
+                                rs.getInt("elevation")
+                        ));
+                    }
+                }
+                return list;
+            });
         } catch (SQLException e) {
             e.printStackTrace();
         }
-        return list;
+        return new java.util.ArrayList<>();
     }
 
 
     public boolean userExists(String username) {
         String sql = "SELECT COUNT(*) FROM users WHERE username = ?";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setString(1, username.toLowerCase());
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getInt(1) > 0;
+        try {
+            return read(connection -> {
+                try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                    ps.setString(1, username.toLowerCase());
+                    try (ResultSet rs = ps.executeQuery()) {
+                        return rs.next() && rs.getInt(1) > 0;
+                    }
                 }
-            }
+            });
         } catch (SQLException e) {
             e.printStackTrace();
         }
@@ -201,26 +395,28 @@ public class Database {
             String salt = generateRandomSaltForPasswordHashing();
             String passwordHash = hashPasswordWithSalt(password, salt);
 
+            // The user and their default profile land together or not at all
+            return writeInTransaction(connection -> {
+                String insertUser = "INSERT INTO users (username, password_hash, salt) VALUES (?, ?, ?)";
+                int userId = -1;
 
-            String insertUser = "INSERT INTO users (username, password_hash, salt) VALUES (?, ?, ?)";
-            int userId = -1;
-
-            try (PreparedStatement ps = connection.prepareStatement(insertUser)) {
-                ps.setString(1, username.toLowerCase());
-                ps.setString(2, passwordHash);
-                ps.setString(3, salt);
-                ps.executeUpdate();
-            }
+                try (PreparedStatement ps = connection.prepareStatement(insertUser)) {
+                    ps.setString(1, username.toLowerCase());
+                    ps.setString(2, passwordHash);
+                    ps.setString(3, salt);
+                    ps.executeUpdate();
+                }
 
-            // Get the new user ID
-            try (Statement stmt = connection.createStatement();
-                 ResultSet rs = stmt.executeQuery("SELECT last_insert_rowid()")) {
-                if (rs.next()) {
-                    userId = rs.getInt(1);
+                // Get the new user ID
+                try (Statement stmt = connection.createStatement();
+                     ResultSet rs = stmt.executeQuery("SELECT last_insert_rowid()")) {
+                    if (rs.next()) {
+                        userId = rs.getInt(1);
+                    }
                 }
-            }
 
-            if (userId > 0) {
+                if (userId <= 0) return null;
+
                 // Create default profile
                 String insertProfile = "INSERT INTO user_profiles (user_id) VALUES (?)";
                 try (PreparedStatement ps = connection.prepareStatement(insertProfile)) {
@@ -232,7 +428,7 @@ public class Database {
                 UserProfile profile = new UserProfile(userId);
                 profile.setUserName(username);
                 return profile;
-            }
+            });
 
         } catch (SQLException e) {
             e.printStackTrace();
@@ -243,23 +439,28 @@ public class Database {
     public UserProfile authenticateAUser(String username, String password) {
         String sql = "SELECT id, password_hash, salt FROM users WHERE username = ?";
 
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setString(1, username.toLowerCase());
-
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    int userId = rs.getInt("id");
-                    String storedHash = rs.getString("password_hash");
-                    String salt = rs.getString("salt");
-
-                    // Verify password
-                    String inputHash = hashPasswordWithSalt(password, salt);
-                    if (storedHash.equals(inputHash)) {
-                        // Load and return user profile
-                        return loadUserProfileFromDatabase(userId, username);
+        try {
+            return read(connection -> {
+                try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                    ps.setString(1, username.toLowerCase());
+
+                    try (ResultSet rs = ps.executeQuery()) {
+                        if (rs.next()) {
+                            int userId = rs.getInt("id");
+                            String storedHash = rs.getString("password_hash");
+                            String salt = rs.getString("salt");
+
+                            // Verify password
+                            String inputHash = hashPasswordWithSalt(password, salt);
+                            if (storedHash.equals(inputHash)) {
+                                // Load and return user profile
+                                return loadUserProfileFromDatabase(connection, userId, username);
+                            }
+                        }
                     }
                 }
-            }
+                return null;
+            });
         } catch (SQLException e) {
             e.printStackTrace();
         }
@@ -267,7 +468,7 @@ public class Database {
     }
 
 
-    private UserProfile loadUserProfileFromDatabase(int userId, String username) {
+    private UserProfile loadUserProfileFromDatabase(Connection connection, int userId, String username) {
         String sql = "SELECT * FROM user_profiles WHERE user_id = ?";
 
         try (PreparedStatement ps = connection.prepareStatement(sql)) {
@@ -319,21 +520,24 @@ public class Database {
                 "total_distance = ?, total_elevation = ?, routes_generated = ?, routes_completed = ? " +
                 "WHERE user_id = ?";
 
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setDouble(1, profile.getPreferredDistanceKm());
-            ps.setInt(2, profile.getPreferredRouteVariety());
-            ps.setInt(3, profile.isPreferHillRoutes() ? 1 : 0);
-            ps.setDouble(4, profile.getMaxElevationGain());
-            ps.setInt(5, profile.isUseMetricUnits() ? 1 : 0);
-            ps.setInt(6, profile.isShowElevation() ? 1 : 0);
-            ps.setInt(7, profile.isAutoFitRoute() ? 1 : 0);
-            ps.setDouble(8, profile.getTotalDistanceRun());
-            ps.setDouble(9, profile.getTotalElevationGained());
-            ps.setInt(10, profile.getTotalRoutesGenerated());
-            ps.setInt(11, profile.getTotalRoutesCompleted());
-            ps.setInt(12, profile.getUserId());
-
-            ps.executeUpdate();
+        try {
+            write(connection -> {
+                try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                    ps.setDouble(1, profile.getPreferredDistanceKm());
+                    ps.setInt(2, profile.getPreferredRouteVariety());
+                    ps.setInt(3, profile.isPreferHillRoutes() ? 1 : 0);
+                    ps.setDouble(4, profile.getMaxElevationGain());
+                    ps.setInt(5, profile.isUseMetricUnits() ? 1 : 0);
+                    ps.setInt(6, profile.isShowElevation() ? 1 : 0);
+                    ps.setInt(7, profile.isAutoFitRoute() ? 1 : 0);
+                    ps.setDouble(8, profile.getTotalDistanceRun());
+                    ps.setDouble(9, profile.getTotalElevationGained());
+                    ps.setInt(10, profile.getTotalRoutesGenerated());
+                    ps.setInt(11, profile.getTotalRoutesCompleted());
+                    ps.setInt(12, profile.getUserId());
+                    return ps.executeUpdate();
+                }
+            });
             System.out.println("Profile saved for user ID: " + profile.getUserId());
         } catch (SQLException e) {
             e.printStackTrace();
@@ -341,6 +545,67 @@ public class Database {
     }
 
 
+    // -------------------------------------------------------------
+    // Async variants, run on the database threads
+    // -------------------------------------------------------------
+
+    public CompletableFuture<Integer> saveRouteAsync(String name, double distance, int elevation,
+                                                     List<GeoPosition> points) {
+        List<GeoPosition> copy = points == null ? null : new ArrayList<>(points);
+        return CompletableFuture.supplyAsync(() -> saveRoute(name, distance, elevation, copy), WRITE_EXECUTOR);
+    }
+
+    public CompletableFuture<Integer> saveRouteAsync(String name, double distance, int elevation,
+                                                     List<GeoPosition> points, int[] stopIndices) {
+        List<GeoPosition> copy = points == null ? null : new ArrayList<>(points);
+        int[] stops = stopIndices == null ? null : stopIndices.clone();
+        return CompletableFuture.supplyAsync(() -> saveRoute(name, distance, elevation, copy, stops), WRITE_EXECUTOR);
+    }
+
+    public CompletableFuture<List<GeoPosition>> loadRoutePointsAsync(int routeId) {
+        return CompletableFuture.supplyAsync(() -> loadRoutePoints(routeId), READ_EXECUTOR);
+    }
+
+    public CompletableFuture<int[]> loadRouteStopIndicesAsync(int routeId) {
+        return CompletableFuture.supplyAsync(() -> loadRouteStopIndices(routeId), READ_EXECUTOR);
+    }
+
+    public CompletableFuture<List<RouteSummary>> getAllRoutesAsync() {
+        return CompletableFuture.supplyAsync(this::getAllRoutes, READ_EXECUTOR);
+    }
+
+    public CompletableFuture<Boolean> userExistsAsync(String username) {
+        return CompletableFuture.supplyAsync(() -> userExists(username), READ_EXECUTOR);
+    }
+
+    public CompletableFuture<UserProfile> createNewUserAsync(String username, String password) {
+        return CompletableFuture.supplyAsync(() -> createNewUser(username, password), WRITE_EXECUTOR);
+    }
+
+    public CompletableFuture<UserProfile> authenticateAUserAsync(String username, String password) {
+        return CompletableFuture.supplyAsync(() -> authenticateAUser(username, password), READ_EXECUTOR);
+    }
+
+    public CompletableFuture<Void> saveUserToDatabaseAsync(UserProfile profile) {
+        return CompletableFuture.runAsync(() -> saveUserToDatabase(profile), WRITE_EXECUTOR);
+    }
+
+    /**
+     * Runs a multi-step flow, such as checking a username and then registering it, on the writer
+     * thread so its steps stay in order with other writes and off the EDT.
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        return CompletableFuture.supplyAsync(task, WRITE_EXECUTOR);
+    }
+
+    /**
+     * Whether queries have their own connections, i.e. the database is a WAL-mode file.
+     */
+    public boolean hasReaderPool() {
+        return readers != null;
+    }
+
+
 
 
     private String generateRandomSaltForPasswordHashing() {
@@ -363,7 +628,18 @@ public class Database {
     }
 
     public void close() {
-        try { if (connection != null) connection.close(); } catch (SQLException ignored) {}
+        synchronized (writeLock) {
+            try { if (connection != null) connection.close(); } catch (SQLException ignored) {}
+        }
+        closeReaders();
+    }
+
+    private void closeReaders() {
+        readers = null;
+        for (Connection reader : allReaders) {
+            try { reader.close(); } catch (SQLException ignored) {}
+        }
+        allReaders.clear();
     }
 
 
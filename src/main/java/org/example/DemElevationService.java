@@ -0,0 +1,310 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Terrain heights from SRTM {@code .hgt} tiles in a local directory, for routes whose
+ * elevation did not come from OpenRouteService.
+ *
+ * Each one-degree tile is memory-mapped read-only the first time a point falls in it and
+ * kept in a small LRU; the OS page cache does the rest. Heights are interpolated bilinearly
+ * between the four surrounding samples, skipping SRTM voids. Batch sampling works on
+ * primitive arrays and only looks a tile up again when a point crosses into another one.
+ * Both 1" (3601 x 3601) and 3" (1201 x 1201) tiles work; the size is taken from the file.
+ */
+public class DemElevationService {
+
+    /**
+     * Total climb and descent along a line of heights.
+     */
+    public static class Climb {
+        private final double ascent;
+        private final double descent;
+
+        Climb(double ascent, double descent) {
+            this.ascent = ascent;
+            this.descent = descent;
+        }
+
+        public double getAscent() { return ascent; }
+        public double getDescent() { return descent; }
+    }
+
+    public static final int DEFAULT_MAX_MAPPED_TILES = 16;
+    // Straight segments are sampled this often so hills between their ends count
+    static final double SEGMENT_SAMPLE_METERS = 30;
+
+    private static final short VOID = Short.MIN_VALUE;
+    private static final Tile MISSING = new Tile(-1, null, 0);
+
+    private final Path directory;
+    private final int maxMappedTiles;
+    private final LinkedHashMap<Integer, Tile> tiles;
+
+    private final AtomicLong pointsSampled = new AtomicLong();
+    private final AtomicLong pointsWithoutData = new AtomicLong();
+    private final AtomicLong tilesMapped = new AtomicLong();
+    private final AtomicLong tilesEvicted = new AtomicLong();
+
+    public DemElevationService(Path directory) {
+        this(directory, DEFAULT_MAX_MAPPED_TILES);
+    }
+
+    public DemElevationService(Path directory, int maxMappedTiles) {
+        this.directory = directory;
+        this.maxMappedTiles = Math.max(1, maxMappedTiles);
+        this.tiles = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+
+
+    /**
+     * Height at one point in metres, or NaN where no tile covers it.
+     */
+    public double sample(double latitude, double longitude) {
+        float[] out = new float[1];
+        sample(new double[]{latitude}, new double[]{longitude}, 1, out);
+        return out[0];
+    }
+
+    /**
+     * Fills {@code out} with the height at each point, NaN where no tile covers it.
+     *
+     * @return how many points got a height
+     */
+    public int sample(double[] latitudes, double[] longitudes, int count, float[] out) {
+        Tile tile = null;
+        int tileKey = Integer.MIN_VALUE;
+        int found = 0;
+        for (int i = 0; i < count; i++) {
+            double lat = latitudes[i];
+            double lon = longitudes[i];
+            int key = tileKey(lat, lon);
+            if (key != tileKey) {
+                tile = tile(key);
+                tileKey = key;
+            }
+            float height = tile == MISSING ? Float.NaN : tile.interpolate(lat, lon);
+            out[i] = height;
+            if (!Float.isNaN(height)) found++;
+        }
+        pointsSampled.addAndGet(count);
+        pointsWithoutData.addAndGet(count - found);
+        return found;
+    }
+
+    /**
+     * Climb and descent over the known heights, ignoring NaN gaps.
+     */
+    public static Climb climbOf(float[] heights, int count) {
+        double ascent = 0;
+        double descent = 0;
+        float previous = Float.NaN;
+        for (int i = 0; i < count; i++) {
+            float height = heights[i];
+            if (Float.isNaN(height)) continue;
+            if (!Float.isNaN(previous)) {
+                if (height > previous) ascent += height - previous;
+                else descent += previous - height;
+            }
+            previous = height;
+        }
+        return new Climb(ascent, descent);
+    }
+
+    /**
+     * Climb along a straight line, sampled every {@link #SEGMENT_SAMPLE_METERS}.
+     */
+    public Climb climbAlongSegment(double fromLat, double fromLon, double toLat, double toLon) {
+        double meters = Point.haversineKm(fromLat, fromLon, toLat, toLon) * 1000;
+        int steps = Math.max(1, (int) Math.ceil(meters / SEGMENT_SAMPLE_METERS));
+        double[] latitudes = new double[steps + 1];
+        double[] longitudes = new double[steps + 1];
+        for (int i = 0; i <= steps; i++) {
+            double t = (double) i / steps;
+            latitudes[i] = fromLat + t * (toLat - fromLat);
+            longitudes[i] = fromLon + t * (toLon - fromLon);
+        }
+        float[] heights = new float[steps + 1];
+        sample(latitudes, longitudes, steps + 1, heights);
+        return climbOf(heights, steps + 1);
+    }
+
+    /**
+     * A copy of {@code result} with sampled point heights and the climb they add up to, or
+     * {@code result} itself if it already has heights or no tile covers it.
+     */
+    public RouteResult withElevations(RouteResult result) {
+        if (result == null || result.hasPointElevations()) return result;
+        int count = result.getPointCount();
+        double[] latitudes = new double[count];
+        double[] longitudes = new double[count];
+        for (int i = 0; i < count; i++) {
+            latitudes[i] = result.getLatitude(i);
+            longitudes[i] = result.getLongitude(i);
+        }
+        float[] heights = new float[count];
+        if (sample(latitudes, longitudes, count, heights) == 0) return result;
+        Climb climb = climbOf(heights, count);
+        return RouteResult.fromArrays(latitudes, longitudes, heights, count, climb.getAscent(), climb.getDescent(),
+                result.getDistance());
+    }
+
+    /**
+     * Replaces the point heights and climb totals of {@code route} with sampled ones.
+     *
+     * @return false if no tile covers the route, in which case it is left alone
+     */
+    public boolean applyTo(Route route) {
+        int count = route.getPoints().size();
+        double[] latitudes = new double[count];
+        double[] longitudes = new double[count];
+        for (int i = 0; i < count; i++) {
+            latitudes[i] = route.getPoints().get(i).getLatitude();
+            longitudes[i] = route.getPoints().get(i).getLongitude();
+        }
+        float[] heights = new float[count];
+        if (count == 0 || sample(latitudes, longitudes, count, heights) == 0) return false;
+        route.setPointElevations(heights);
+        Climb climb = climbOf(heights, count);
+        route.setElevation(climb.getAscent(), climb.getDescent());
+        return true;
+    }
+
+
+
+    private static int tileKey(double latitude, double longitude) {
+        int lat = (int) Math.floor(latitude);
+        int lon = (int) Math.floor(longitude);
+        return (lat + 90) * 360 + (lon + 180);
+    }
+
+    /**
+     * SRTM file name of the tile whose south-west corner is at the given degrees, e.g. N40W106.hgt.
+     */
+    static String tileName(int latitude, int longitude) {
+        return String.format("%s%02d%s%03d.hgt", latitude >= 0 ? "N" : "S", Math.abs(latitude),
+                longitude >= 0 ? "E" : "W", Math.abs(longitude));
+    }
+
+    private Tile tile(int key) {
+        synchronized (tiles) {
+            Tile tile = tiles.get(key);
+            if (tile != null) return tile;
+
+            tile = mapTile(key);
+            tiles.put(key, tile);
+            Iterator<Map.Entry<Integer, Tile>> eldest = tiles.entrySet().iterator();
+            while (tiles.size() > maxMappedTiles && eldest.hasNext()) {
+                eldest.next();
+                eldest.remove();
+                tilesEvicted.incrementAndGet();
+            }
+            return tile;
+        }
+    }
+
+    private Tile mapTile(int key) {
+        int south = key / 360 - 90;
+        int west = key % 360 - 180;
+        Path file = directory.resolve(tileName(south, west));
+        if (!Files.isRegularFile(file)) return MISSING;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            int samples = (int) Math.round(Math.sqrt(size / 2.0));
+            if (samples < 2 || (long) samples * samples * 2 != size) {
+                System.err.println("Ignoring " + file + ": " + size + " bytes is not a square SRTM tile");
+                return MISSING;
+            }
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            tilesMapped.incrementAndGet();
+            return new Tile(key, buffer.order(ByteOrder.BIG_ENDIAN).asShortBuffer(), samples);
+        } catch (IOException e) {
+            System.err.println("Could not map " + file + ": " + e.getMessage());
+            return MISSING;
+        }
+    }
+
+    public int getMappedTileCount() {
+        synchronized (tiles) {
+            int count = 0;
+            for (Tile tile : tiles.values()) {
+                if (tile != MISSING) count++;
+            }
+            return count;
+        }
+    }
+
+    public long getPointsSampled() { return pointsSampled.get(); }
+    public long getPointsWithoutData() { return pointsWithoutData.get(); }
+    public long getTilesMapped() { return tilesMapped.get(); }
+    public long getTilesEvicted() { return tilesEvicted.get(); }
+
+    public String describeStats() {
+        return String.format("points=%d (%d without data), tiles mapped=%d, evicted=%d, resident=%d",
+                pointsSampled.get(), pointsWithoutData.get(), tilesMapped.get(), tilesEvicted.get(),
+                getMappedTileCount());
+    }
+
+
+
+    /**
+     * One mapped tile. Row 0 is the northern edge and column 0 the western edge, and the
+     * outermost rows and columns repeat those of the neighbouring tiles.
+     */
+    private static class Tile {
+        private final int south;
+        private final int west;
+        private final ShortBuffer heights;
+        private final int samples;
+
+        Tile(int key, ShortBuffer heights, int samples) {
+            this.south = key / 360 - 90;
+            this.west = key % 360 - 180;
+            this.heights = heights;
+            this.samples = samples;
+        }
+
+        float interpolate(double latitude, double longitude) {
+            int last = samples - 1;
+            double row = (south + 1 - latitude) * last;
+            double column = (longitude - west) * last;
+            int r0 = Math.min(last - 1, Math.max(0, (int) Math.floor(row)));
+            int c0 = Math.min(last - 1, Math.max(0, (int) Math.floor(column)));
+            double fy = Math.min(1, Math.max(0, row - r0));
+            double fx = Math.min(1, Math.max(0, column - c0));
+
+            int base = r0 * samples + c0;
+            short h00 = heights.get(base);
+            short h01 = heights.get(base + 1);
+            short h10 = heights.get(base + samples);
+            short h11 = heights.get(base + samples + 1);
+
+            // Weighted average over the corners that are not voids
+            double w00 = h00 == VOID ? 0 : (1 - fx) * (1 - fy);
+            double w01 = h01 == VOID ? 0 : fx * (1 - fy);
+            double w10 = h10 == VOID ? 0 : (1 - fx) * fy;
+            double w11 = h11 == VOID ? 0 : fx * fy;
+            double weight = w00 + w01 + w10 + w11;
+            if (weight == 0) return Float.NaN;
+            return (float) ((w00 * h00 + w01 * h01 + w10 * h10 + w11 * h11) / weight);
+        }
+    }
+}
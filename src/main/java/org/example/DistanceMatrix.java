@@ -0,0 +1,165 @@
+package org.example;
+
+import org.jxmapviewer.viewer.GeoPosition;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Travel time and distance between every ordered pair of a set of locations, row by row:
+ * entry (i, j) is the trip from location i to location j. Pairs with no route are
+ * {@link Double#POSITIVE_INFINITY}.
+ *
+ * Comes from the ORS matrix endpoint, from the offline road graph, or, when neither can
+ * answer, from straight lines at the profile's typical speed.
+ */
+public class DistanceMatrix {
+
+    private static final byte[] KEY_DURATIONS = JsonByteReader.keyBytes("durations");
+    private static final byte[] KEY_DISTANCES = JsonByteReader.keyBytes("distances");
+    private static final byte[] KEY_ERROR = JsonByteReader.keyBytes("error");
+
+    // Straight lines understate road distance; this is a typical detour factor in towns
+    private static final double STRAIGHT_LINE_DETOUR = 1.3;
+
+    private final int size;
+    private final double[] seconds;
+    private final double[] meters;
+    private final String source;
+
+    /**
+     * @param seconds row-major {@code size * size} travel times, taken over without copying
+     * @param meters  row-major {@code size * size} distances, taken over without copying
+     * @param source  where the figures came from, for logs and the status bar
+     */
+    public DistanceMatrix(int size, double[] seconds, double[] meters, String source) {
+        if (seconds.length != size * size || meters.length != size * size) {
+            throw new IllegalArgumentException("need " + size * size + " entries for " + size + " locations");
+        }
+        this.size = size;
+        this.seconds = seconds;
+        this.meters = meters;
+        this.source = source;
+    }
+
+    /**
+     * Great-circle distances stretched by a detour factor, at the profile's typical speed.
+     */
+    public static DistanceMatrix straightLine(List<GeoPosition> locations, RoutingAPI.RoutingProfile profile) {
+        int n = locations.size();
+        // Town streets are where most multi-stop routes are drawn
+        double metersPerSecond = RoadGraph.RoadClass.RESIDENTIAL.speedKmh(profile) / 3.6;
+        double[] seconds = new double[n * n];
+        double[] meters = new double[n * n];
+        for (int i = 0; i < n; i++) {
+            GeoPosition from = locations.get(i);
+            for (int j = 0; j < n; j++) {
+                if (i == j) continue;
+                GeoPosition to = locations.get(j);
+                double distance = Point.haversineKm(from.getLatitude(), from.getLongitude(), to.getLatitude(),
+                        to.getLongitude()) * 1000 * STRAIGHT_LINE_DETOUR;
+                meters[i * n + j] = distance;
+                seconds[i * n + j] = distance / metersPerSecond;
+            }
+        }
+        return new DistanceMatrix(n, seconds, meters, "straight lines");
+    }
+
+    /**
+     * Reads an ORS {@code /v2/matrix} response with {@code durations} and {@code distances}.
+     * Unroutable pairs come back as null and are read as infinite.
+     *
+     * @throws IOException if the body is not a complete square matrix
+     */
+    public static DistanceMatrix parse(InputStream in, int size) throws IOException {
+        JsonByteReader reader = new JsonByteReader(in);
+        double[] seconds = null;
+        double[] meters = null;
+        reader.beginObject();
+        while (reader.nextField()) {
+            if (reader.keyEquals(KEY_DURATIONS)) {
+                seconds = readSquare(reader, size);
+            } else if (reader.keyEquals(KEY_DISTANCES)) {
+                meters = readSquare(reader, size);
+            } else if (reader.keyEquals(KEY_ERROR)) {
+                throw new IOException("Matrix request returned an error");
+            } else {
+                reader.skipValue();
+            }
+        }
+        if (seconds == null || meters == null) {
+            throw new IOException("Matrix response is missing " + (seconds == null ? "durations" : "distances"));
+        }
+        return new DistanceMatrix(size, seconds, meters, "OpenRouteService matrix");
+    }
+
+    private static double[] readSquare(JsonByteReader reader, int size) throws IOException {
+        double[] values = new double[size * size];
+        int row = 0;
+        reader.beginArray();
+        while (reader.nextElement()) {
+            if (row == size) throw new IOException("Matrix has more than " + size + " rows");
+            int column = 0;
+            reader.beginArray();
+            while (reader.nextElement()) {
+                if (column == size) throw new IOException("Matrix row " + row + " has more than " + size + " entries");
+                if (reader.peek() == JsonByteReader.ValueType.NULL) {
+                    reader.skipValue();
+                    values[row * size + column] = Double.POSITIVE_INFINITY;
+                } else {
+                    values[row * size + column] = reader.nextDouble();
+                }
+                column++;
+            }
+            if (column != size) throw new IOException("Matrix row " + row + " has " + column + " entries");
+            row++;
+        }
+        if (row != size) throw new IOException("Matrix has " + row + " rows, expected " + size);
+        return values;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public double getSeconds(int from, int to) {
+        return seconds[from * size + to];
+    }
+
+    public double getMeters(int from, int to) {
+        return meters[from * size + to];
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * Whether some location cannot be reached from another one.
+     */
+    public boolean hasUnreachablePairs() {
+        for (int i = 0; i < seconds.length; i++) {
+            if (i % (size + 1) != 0 && Double.isInfinite(seconds[i])) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Travel time along the locations in the given order.
+     */
+    public double secondsAlong(int[] order) {
+        double total = 0;
+        for (int i = 1; i < order.length; i++) total += getSeconds(order[i - 1], order[i]);
+        return total;
+    }
+
+    public long estimateHeapBytes() {
+        return 48 + 16L * size * size;
+    }
+
+    @Override
+    public String toString() {
+        return size + "x" + size + " matrix from " + source;
+    }
+}
@@ -0,0 +1,75 @@
+package org.example;
+
+import org.jxmapviewer.viewer.GeoPosition;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Least-recently-used cache of distance matrices, keyed by profile and the locations in order,
+ * rounded like {@link RouteCache} keys so stops nudged by a metre still hit.
+ *
+ * Reordering the same stops twice, or undoing and optimizing again, asks for the same matrix;
+ * against ORS that is a request of up to 2500 routes each time.
+ */
+public class DistanceMatrixCache {
+
+    public static final int DEFAULT_CAPACITY = 16;
+
+    private final int decimalPlaces;
+    private final Map<RouteCacheKey, DistanceMatrix> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public DistanceMatrixCache() {
+        this(DEFAULT_CAPACITY, RouteCache.DEFAULT_DECIMAL_PLACES);
+    }
+
+    public DistanceMatrixCache(int capacity, int decimalPlaces) {
+        this.decimalPlaces = decimalPlaces;
+        this.entries = new LinkedHashMap<RouteCacheKey, DistanceMatrix>(capacity * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<RouteCacheKey, DistanceMatrix> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    public RouteCacheKey keyFor(RoutingAPI.RoutingProfile profile, List<GeoPosition> locations) {
+        return RouteCacheKey.forRoute(profile, locations, decimalPlaces);
+    }
+
+    /**
+     * @return the cached matrix, or null
+     */
+    public DistanceMatrix get(RouteCacheKey key) {
+        DistanceMatrix matrix;
+        synchronized (entries) {
+            matrix = entries.get(key);
+        }
+        (matrix != null ? hits : misses).incrementAndGet();
+        return matrix;
+    }
+
+    public void put(RouteCacheKey key, DistanceMatrix matrix) {
+        synchronized (entries) {
+            entries.put(key, matrix);
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHits() { return hits.get(); }
+    public long getMisses() { return misses.get(); }
+
+    public String describeStats() {
+        return String.format("matrices=%d, hits=%d, misses=%d", size(), hits.get(), misses.get());
+    }
+}
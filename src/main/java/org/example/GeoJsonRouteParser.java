@@ -0,0 +1,254 @@
+package org.example;
+
+import org.jxmapviewer.viewer.GeoPosition;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Single-pass parser for OpenRouteService GeoJSON direction responses.
+ *
+ * Walks the response once with a {@link JsonByteReader}, writing coordinates and elevations
+ * into growable primitive arrays and picking up the route summary on the way, instead of
+ * running several regexes over a fully buffered String.
+ */
+public class GeoJsonRouteParser {
+
+    private static final byte[] KEY_ERROR = JsonByteReader.keyBytes("error");
+    private static final byte[] KEY_METADATA = JsonByteReader.keyBytes("metadata");
+    private static final byte[] KEY_PROPERTIES = JsonByteReader.keyBytes("properties");
+    private static final byte[] KEY_SUMMARY = JsonByteReader.keyBytes("summary");
+    private static final byte[] KEY_GEOMETRY = JsonByteReader.keyBytes("geometry");
+    private static final byte[] KEY_COORDINATES = JsonByteReader.keyBytes("coordinates");
+    private static final byte[] KEY_DISTANCE = JsonByteReader.keyBytes("distance");
+    private static final byte[] KEY_ASCENT = JsonByteReader.keyBytes("ascent");
+    private static final byte[] KEY_DESCENT = JsonByteReader.keyBytes("descent");
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private enum Scope { ROOT, OTHER, PROPERTIES, SUMMARY, GEOMETRY }
+
+    private double[] latitudes = new double[INITIAL_CAPACITY];
+    private double[] longitudes = new double[INITIAL_CAPACITY];
+    private double[] elevations = new double[INITIAL_CAPACITY];
+    private int pointCount;
+    private boolean hasElevation;
+    private boolean coordinatesFound;
+
+    private double summaryAscent = Double.NaN;
+    private double summaryDescent = Double.NaN;
+    private double summaryDistance = Double.NaN;
+    private double propertiesAscent = Double.NaN;
+    private double propertiesDescent = Double.NaN;
+
+    private boolean errorField;
+    private long bytesParsed;
+
+    public static GeoJsonRouteParser parse(InputStream in) throws IOException {
+        GeoJsonRouteParser parser = new GeoJsonRouteParser();
+        JsonByteReader reader = new JsonByteReader(in);
+        parser.parseDocument(reader);
+        return parser;
+    }
+
+    public static GeoJsonRouteParser parse(byte[] data) throws IOException {
+        GeoJsonRouteParser parser = new GeoJsonRouteParser();
+        JsonByteReader reader = new JsonByteReader(data, 0, data.length);
+        parser.parseDocument(reader);
+        return parser;
+    }
+
+
+
+    private void parseDocument(JsonByteReader reader) throws IOException {
+        if (reader.peek() == JsonByteReader.ValueType.OBJECT) {
+            parseObject(reader, Scope.ROOT);
+        } else {
+            reader.skipValue();
+        }
+        bytesParsed = reader.getBytesConsumed();
+    }
+
+    private void parseObject(JsonByteReader reader, Scope scope) throws IOException {
+        reader.beginObject();
+        while (reader.nextField()) {
+            parseField(reader, scope);
+        }
+    }
+
+    private void parseField(JsonByteReader reader, Scope scope) throws IOException {
+        JsonByteReader.ValueType type = reader.peek();
+
+        if (scope == Scope.ROOT && reader.keyEquals(KEY_ERROR)) {
+            errorField = true;
+            reader.skipValue();
+        } else if (reader.keyEquals(KEY_METADATA)) {
+            // metadata.query echoes the request coordinates, never the route geometry
+            reader.skipValue();
+        } else if (type == JsonByteReader.ValueType.NUMBER) {
+            readNumberField(reader, scope);
+        } else if (type == JsonByteReader.ValueType.ARRAY && scope == Scope.GEOMETRY
+                && reader.keyEquals(KEY_COORDINATES) && !coordinatesFound) {
+            parseCoordinateArray(reader);
+            coordinatesFound = true;
+        } else if (type == JsonByteReader.ValueType.OBJECT) {
+            parseObject(reader, childScopeFor(reader));
+        } else if (type == JsonByteReader.ValueType.ARRAY) {
+            parseArray(reader);
+        } else {
+            reader.skipValue();
+        }
+    }
+
+    private Scope childScopeFor(JsonByteReader reader) {
+        if (reader.keyEquals(KEY_PROPERTIES)) return Scope.PROPERTIES;
+        if (reader.keyEquals(KEY_SUMMARY)) return Scope.SUMMARY;
+        if (reader.keyEquals(KEY_GEOMETRY)) return Scope.GEOMETRY;
+        return Scope.OTHER;
+    }
+
+    private void readNumberField(JsonByteReader reader, Scope scope) throws IOException {
+        if (scope == Scope.SUMMARY) {
+            if (reader.keyEquals(KEY_DISTANCE) && Double.isNaN(summaryDistance)) {
+                summaryDistance = reader.nextDouble();
+                return;
+            }
+            if (reader.keyEquals(KEY_ASCENT) && Double.isNaN(summaryAscent)) {
+                summaryAscent = reader.nextDouble();
+                return;
+            }
+            if (reader.keyEquals(KEY_DESCENT) && Double.isNaN(summaryDescent)) {
+                summaryDescent = reader.nextDouble();
+                return;
+            }
+        } else if (scope == Scope.PROPERTIES) {
+            if (reader.keyEquals(KEY_ASCENT) && Double.isNaN(propertiesAscent)) {
+                propertiesAscent = reader.nextDouble();
+                return;
+            }
+            if (reader.keyEquals(KEY_DESCENT) && Double.isNaN(propertiesDescent)) {
+                propertiesDescent = reader.nextDouble();
+                return;
+            }
+        }
+        reader.skipValue();
+    }
+
+    private void parseArray(JsonByteReader reader) throws IOException {
+        reader.beginArray();
+        while (reader.nextElement()) {
+            if (reader.peek() == JsonByteReader.ValueType.OBJECT) {
+                parseObject(reader, Scope.OTHER);
+            } else {
+                reader.skipValue();
+            }
+        }
+    }
+
+    /**
+     * Reads [[lon,lat],[lon,lat,ele],...] straight into the coordinate arrays.
+     */
+    private void parseCoordinateArray(JsonByteReader reader) throws IOException {
+        reader.beginArray();
+        while (reader.nextElement()) {
+            reader.beginArray();
+            if (!reader.nextElement()) continue;
+            double lon = reader.nextDouble();
+            if (!reader.nextElement()) continue;
+            double lat = reader.nextDouble();
+            double elevation = Double.NaN;
+            if (reader.nextElement()) {
+                elevation = reader.nextDouble();
+                hasElevation = true;
+                while (reader.nextElement()) {
+                    reader.skipValue();
+                }
+            }
+            appendPoint(lat, lon, elevation);
+        }
+    }
+
+    private void appendPoint(double lat, double lon, double elevation) {
+        if (pointCount == latitudes.length) {
+            int newCapacity = latitudes.length * 2;
+            latitudes = Arrays.copyOf(latitudes, newCapacity);
+            longitudes = Arrays.copyOf(longitudes, newCapacity);
+            elevations = Arrays.copyOf(elevations, newCapacity);
+        }
+        latitudes[pointCount] = lat;
+        longitudes[pointCount] = lon;
+        elevations[pointCount] = elevation;
+        pointCount++;
+    }
+
+
+
+    public int getPointCount() {
+        return pointCount;
+    }
+
+    public double getLatitude(int index) {
+        return latitudes[index];
+    }
+
+    public double getLongitude(int index) {
+        return longitudes[index];
+    }
+
+    public double getElevation(int index) {
+        return elevations[index];
+    }
+
+    public boolean hasElevation() {
+        return hasElevation;
+    }
+
+    public double getAscent() {
+        if (!Double.isNaN(summaryAscent)) return summaryAscent;
+        return Double.isNaN(propertiesAscent) ? 0 : propertiesAscent;
+    }
+
+    public double getDescent() {
+        if (!Double.isNaN(summaryDescent)) return summaryDescent;
+        return Double.isNaN(propertiesDescent) ? 0 : propertiesDescent;
+    }
+
+    public double getDistance() {
+        return Double.isNaN(summaryDistance) ? 0 : summaryDistance;
+    }
+
+    public boolean hasErrorField() {
+        return errorField;
+    }
+
+    public long getBytesParsed() {
+        return bytesParsed;
+    }
+
+    public List<GeoPosition> toGeoPositions() {
+        List<GeoPosition> points = new ArrayList<>(pointCount);
+        for (int i = 0; i < pointCount; i++) {
+            points.add(new GeoPosition(latitudes[i], longitudes[i]));
+        }
+        return points;
+    }
+
+    /**
+     * Packed result with trimmed copies of the coordinate arrays; per-point elevations are
+     * kept when the response had them.
+     */
+    public RouteResult toRouteResult() {
+        float[] packedElevations = null;
+        if (hasElevation) {
+            packedElevations = new float[pointCount];
+            for (int i = 0; i < pointCount; i++) {
+                packedElevations[i] = (float) elevations[i];
+            }
+        }
+        return RouteResult.fromArrays(Arrays.copyOf(latitudes, pointCount), Arrays.copyOf(longitudes, pointCount),
+                packedElevations, pointCount, getAscent(), getDescent(), getDistance());
+    }
+}
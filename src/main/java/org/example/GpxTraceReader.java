@@ -0,0 +1,126 @@
+package org.example;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Reads the fixes of a recorded GPX track into a packed {@link RouteResult}.
+ *
+ * Streams the file with StAX and keeps only latitude, longitude and elevation, so traces
+ * with hundreds of thousands of fixes cost a few bytes per point. Track points
+ * ({@code trkpt}) are read from every track and segment in file order; a file with no
+ * tracks falls back to its route points ({@code rtept}).
+ */
+public class GpxTraceReader {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private double[] latitudes = new double[INITIAL_CAPACITY];
+    private double[] longitudes = new double[INITIAL_CAPACITY];
+    private float[] elevations = new float[INITIAL_CAPACITY];
+    private int count;
+    private boolean hasElevation;
+
+    private GpxTraceReader() {
+    }
+
+    public static RouteResult read(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return read(in);
+        }
+    }
+
+    /**
+     * @return the fixes with their elevations (NaN where a fix has none), the climb along
+     *         them and their length; empty if the file has no points
+     * @throws IOException if the file is not well-formed XML
+     */
+    public static RouteResult read(InputStream in) throws IOException {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        // GPX files never need a DTD; refusing them also keeps external entities out
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+
+        GpxTraceReader trackPoints = new GpxTraceReader();
+        GpxTraceReader routePoints = new GpxTraceReader();
+        try {
+            XMLStreamReader xml = factory.createXMLStreamReader(in);
+            GpxTraceReader current = null;
+            boolean inElevation = false;
+            StringBuilder text = new StringBuilder();
+            while (xml.hasNext()) {
+                int event = xml.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String name = xml.getLocalName();
+                    if (name.equals("trkpt") || name.equals("rtept")) {
+                        current = name.equals("trkpt") ? trackPoints : routePoints;
+                        current.startPoint(xml);
+                    } else if (name.equals("ele") && current != null) {
+                        inElevation = true;
+                        text.setLength(0);
+                    }
+                } else if (event == XMLStreamConstants.CHARACTERS && inElevation) {
+                    text.append(xml.getText());
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    String name = xml.getLocalName();
+                    if (name.equals("ele") && inElevation) {
+                        current.setElevation(text.toString());
+                        inElevation = false;
+                    } else if (name.equals("trkpt") || name.equals("rtept")) {
+                        current = null;
+                    }
+                }
+            }
+            xml.close();
+        } catch (XMLStreamException | IllegalArgumentException e) {
+            throw new IOException("Not a readable GPX file: " + e.getMessage(), e);
+        }
+        return (trackPoints.count > 0 ? trackPoints : routePoints).toRouteResult();
+    }
+
+    private void startPoint(XMLStreamReader xml) {
+        String lat = xml.getAttributeValue(null, "lat");
+        String lon = xml.getAttributeValue(null, "lon");
+        if (lat == null || lon == null) {
+            throw new IllegalArgumentException("point without lat/lon at line " + xml.getLocation().getLineNumber());
+        }
+        if (count == latitudes.length) {
+            int capacity = count * 2;
+            latitudes = Arrays.copyOf(latitudes, capacity);
+            longitudes = Arrays.copyOf(longitudes, capacity);
+            elevations = Arrays.copyOf(elevations, capacity);
+        }
+        latitudes[count] = Double.parseDouble(lat.trim());
+        longitudes[count] = Double.parseDouble(lon.trim());
+        elevations[count] = Float.NaN;
+        count++;
+    }
+
+    private void setElevation(String value) {
+        try {
+            elevations[count - 1] = Float.parseFloat(value.trim());
+            hasElevation = true;
+        } catch (NumberFormatException ignored) {
+            // A blank or garbled <ele> just leaves this fix without a height
+        }
+    }
+
+    private RouteResult toRouteResult() {
+        double meters = 0;
+        for (int i = 1; i < count; i++) {
+            meters += Point.haversineKm(latitudes[i - 1], longitudes[i - 1], latitudes[i], longitudes[i]) * 1000;
+        }
+        float[] packedElevations = hasElevation ? Arrays.copyOf(elevations, count) : null;
+        DemElevationService.Climb climb = hasElevation ? DemElevationService.climbOf(packedElevations, count)
+                : new DemElevationService.Climb(0, 0);
+        return RouteResult.fromArrays(Arrays.copyOf(latitudes, count), Arrays.copyOf(longitudes, count),
+                packedElevations, count, climb.getAscent(), climb.getDescent(), meters);
+    }
+}
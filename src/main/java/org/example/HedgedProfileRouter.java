@@ -0,0 +1,236 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs a profile fallback chain as a hedged race instead of one attempt after another.
+ *
+ * The primary profile goes first. If it has not answered within the hedge delay (a percentile
+ * of its recent network latencies as reported through {@link #recordLatency}, clamped to a
+ * floor and ceiling), every fallback profile is fired in parallel. The first good result wins;
+ * when several are already in, the one earliest in the chain is taken. Everything still
+ * running is then cancelled.
+ */
+public class HedgedProfileRouter {
+
+    public interface ProfileAttempt {
+        RouteResult route(RoutingAPI.RoutingProfile profile);
+    }
+
+    private static final int LATENCY_SAMPLES = 64;
+    private static final int MIN_SAMPLES_FOR_PERCENTILE = 5;
+
+    private static final ExecutorService SHARED_EXECUTOR = Executors.newCachedThreadPool(new DaemonThreadFactory("routing-hedge"));
+
+    private final ExecutorService executor;
+    private final java.util.Map<RoutingAPI.RoutingProfile, LatencyTracker> latencies =
+            new EnumMap<>(RoutingAPI.RoutingProfile.class);
+
+    private volatile double delayPercentile = 0.95;
+    private volatile long defaultDelayMillis = 1500;
+    private volatile long minDelayMillis = 250;
+    private volatile long maxDelayMillis = 5000;
+
+    private final AtomicLong races = new AtomicLong();
+    private final AtomicLong hedgesFired = new AtomicLong();
+    private final AtomicLong primaryWinsWithoutHedge = new AtomicLong();
+    private final AtomicLong primaryWinsAfterHedge = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+    private final AtomicLong fallbackWinsAfterFailure = new AtomicLong();
+    private final AtomicLong allFailed = new AtomicLong();
+    private final AtomicLong deadlineExpired = new AtomicLong();
+
+    public HedgedProfileRouter() {
+        this(SHARED_EXECUTOR);
+    }
+
+    public HedgedProfileRouter(ExecutorService executor) {
+        this.executor = executor;
+        for (RoutingAPI.RoutingProfile profile : RoutingAPI.RoutingProfile.values()) {
+            latencies.put(profile, new LatencyTracker(LATENCY_SAMPLES));
+        }
+    }
+
+
+    public RouteResult route(List<RoutingAPI.RoutingProfile> chain, ProfileAttempt attempt, int minimumPoints)
+            throws InterruptedException {
+        return route(chain, attempt, minimumPoints, null);
+    }
+
+    /**
+     * @param deadline optional; once it passes the race gives up and returns null
+     */
+    public RouteResult route(List<RoutingAPI.RoutingProfile> chain, ProfileAttempt attempt, int minimumPoints,
+                             RoutingDeadline deadline) throws InterruptedException {
+        if (chain.isEmpty()) return null;
+        races.incrementAndGet();
+
+        int n = chain.size();
+        CompletionService<Integer> completions = new InterruptibleCompletionService<>(executor);
+        List<Future<Integer>> futures = new ArrayList<>(n);
+        RouteResult[] results = new RouteResult[n];
+        boolean[] finished = new boolean[n];
+        int remaining = n;
+
+        try {
+            futures.add(submitAttempt(completions, chain, 0, attempt, results));
+
+            boolean hedged = false;
+            long hedgeDelay = getHedgeDelayMillis(chain.get(0));
+            if (deadline != null) hedgeDelay = Math.min(hedgeDelay, deadline.remainingMillis());
+            Future<Integer> first = completions.poll(hedgeDelay, TimeUnit.MILLISECONDS);
+            if (first != null) {
+                int index = indexOf(first);
+                finished[index] = true;
+                remaining--;
+                if (isGood(results[index], minimumPoints)) {
+                    primaryWinsWithoutHedge.incrementAndGet();
+                    return results[index];
+                }
+                System.out.println("Primary profile " + profileName(chain.get(0)) + " failed, racing fallbacks...");
+            } else {
+                hedged = true;
+                hedgesFired.incrementAndGet();
+                System.out.println("Primary profile " + profileName(chain.get(0)) + " slow, hedging with fallbacks...");
+            }
+
+            for (int i = 1; i < n; i++) {
+                futures.add(submitAttempt(completions, chain, i, attempt, results));
+            }
+
+            while (remaining > 0) {
+                Future<Integer> next = deadline == null
+                        ? completions.take()
+                        : completions.poll(deadline.remainingMillis(), TimeUnit.MILLISECONDS);
+                if (next == null) {
+                    deadlineExpired.incrementAndGet();
+                    return null;
+                }
+                int index = indexOf(next);
+                finished[index] = true;
+                remaining--;
+
+                int winner = bestFinishedResult(results, finished, minimumPoints);
+                if (winner >= 0) {
+                    recordWinner(winner, hedged);
+                    return results[winner];
+                }
+            }
+
+            allFailed.incrementAndGet();
+            return null;
+        } finally {
+            for (Future<Integer> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private Future<Integer> submitAttempt(CompletionService<Integer> completions, List<RoutingAPI.RoutingProfile> chain,
+                                          int index, ProfileAttempt attempt, RouteResult[] results) {
+        RoutingAPI.RoutingProfile profile = chain.get(index);
+        return completions.submit(() -> {
+            results[index] = attempt.route(profile);
+            return index;
+        });
+    }
+
+    private static int indexOf(Future<Integer> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            // Attempts catch their own failures; this only happens on programming errors
+            throw new IllegalStateException("Routing attempt failed unexpectedly", e.getCause());
+        }
+    }
+
+    private static int bestFinishedResult(RouteResult[] results, boolean[] finished, int minimumPoints) {
+        for (int i = 0; i < results.length; i++) {
+            if (finished[i] && isGood(results[i], minimumPoints)) return i;
+        }
+        return -1;
+    }
+
+    private static String profileName(RoutingAPI.RoutingProfile profile) {
+        return profile == null ? "none" : profile.getValue();
+    }
+
+    private static boolean isGood(RouteResult result, int minimumPoints) {
+        return result != null && result.getPointCount() >= minimumPoints;
+    }
+
+    private void recordWinner(int winner, boolean hedged) {
+        if (winner == 0) {
+            if (hedged) primaryWinsAfterHedge.incrementAndGet();
+            else primaryWinsWithoutHedge.incrementAndGet();
+        } else if (hedged) {
+            hedgeWins.incrementAndGet();
+        } else {
+            fallbackWinsAfterFailure.incrementAndGet();
+        }
+    }
+
+
+
+    /**
+     * Delay before fallbacks are fired for {@code primary}: the configured percentile of its
+     * recent successful latencies, or the default until enough samples exist.
+     */
+    public long getHedgeDelayMillis(RoutingAPI.RoutingProfile primary) {
+        LatencyTracker tracker = primary == null ? null : latencies.get(primary);
+        long delay = defaultDelayMillis;
+        if (tracker != null && tracker.getSampleCount() >= MIN_SAMPLES_FOR_PERCENTILE) {
+            delay = tracker.getPercentile(delayPercentile);
+        }
+        return Math.max(minDelayMillis, Math.min(maxDelayMillis, delay));
+    }
+
+    public void setDelayPercentile(double percentile) {
+        if (percentile <= 0 || percentile > 1) throw new IllegalArgumentException("percentile must be in (0, 1]");
+        this.delayPercentile = percentile;
+    }
+
+    public void setDelayBounds(long defaultMillis, long minMillis, long maxMillis) {
+        if (minMillis < 0 || maxMillis < minMillis) throw new IllegalArgumentException("invalid hedge delay bounds");
+        this.defaultDelayMillis = defaultMillis;
+        this.minDelayMillis = minMillis;
+        this.maxDelayMillis = maxMillis;
+    }
+
+    /**
+     * Feeds the hedge delay. Only requests that went over the network belong here; a cache
+     * hit answered in a millisecond would pull the percentile down and hedge too early.
+     */
+    public void recordLatency(RoutingAPI.RoutingProfile profile, long latencyMillis) {
+        if (profile != null) latencies.get(profile).record(latencyMillis);
+    }
+
+    public LatencyTracker getLatencyTracker(RoutingAPI.RoutingProfile profile) {
+        return latencies.get(profile);
+    }
+
+    public long getRaces() { return races.get(); }
+    public long getHedgesFired() { return hedgesFired.get(); }
+    public long getPrimaryWinsWithoutHedge() { return primaryWinsWithoutHedge.get(); }
+    public long getPrimaryWinsAfterHedge() { return primaryWinsAfterHedge.get(); }
+    public long getHedgeWins() { return hedgeWins.get(); }
+    public long getFallbackWinsAfterFailure() { return fallbackWinsAfterFailure.get(); }
+    public long getAllFailed() { return allFailed.get(); }
+    public long getDeadlineExpired() { return deadlineExpired.get(); }
+
+    public String describeStats() {
+        return String.format("races=%d, hedges fired=%d, hedge wins=%d, primary wins=%d (+%d after hedge), " +
+                        "fallback wins after failure=%d, all failed=%d, out of time=%d",
+                getRaces(), getHedgesFired(), getHedgeWins(), getPrimaryWinsWithoutHedge(),
+                getPrimaryWinsAfterHedge(), getFallbackWinsAfterFailure(), getAllFailed(), getDeadlineExpired());
+    }
+}
@@ -0,0 +1,54 @@
+package org.example;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link java.util.concurrent.ExecutorCompletionService} built on {@link InterruptibleFuture},
+ * so that cancelling a submitted task also closes whatever it registered with
+ * {@link InterruptibleFuture#closeOnCancel}, such as a response body it is blocked reading.
+ */
+class InterruptibleCompletionService<T> implements CompletionService<T> {
+
+    private final Executor executor;
+    private final BlockingQueue<Future<T>> completed = new LinkedBlockingQueue<>();
+
+    InterruptibleCompletionService(Executor executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public Future<T> submit(Callable<T> task) {
+        InterruptibleFuture<T> future = InterruptibleFuture.callAsync(task, executor);
+        future.whenComplete((result, error) -> completed.add(future));
+        return future;
+    }
+
+    @Override
+    public Future<T> submit(Runnable task, T result) {
+        return submit(() -> {
+            task.run();
+            return result;
+        });
+    }
+
+    @Override
+    public Future<T> take() throws InterruptedException {
+        return completed.take();
+    }
+
+    @Override
+    public Future<T> poll() {
+        return completed.poll();
+    }
+
+    @Override
+    public Future<T> poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return completed.poll(timeout, unit);
+    }
+}
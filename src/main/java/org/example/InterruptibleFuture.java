@@ -0,0 +1,144 @@
+package org.example;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * {@link CompletableFuture} whose {@code cancel(true)} interrupts the thread running the work,
+ * the way {@link java.util.concurrent.FutureTask} does. A plain CompletableFuture only marks
+ * itself cancelled and leaves the work running to the end.
+ *
+ * An interrupt stops the HTTP client waiting for response headers, and parsers and searches
+ * give up on it, but a read blocked on a response body that has stopped arriving ignores it.
+ * Work therefore registers such resources with {@link #closeOnCancel}, and cancelling closes
+ * them too, which fails the blocked read. Together that frees the worker thread and the
+ * connection.
+ */
+public class InterruptibleFuture<T> extends CompletableFuture<T> {
+
+    private static final ThreadLocal<InterruptibleFuture<?>> RUNNING = new ThreadLocal<>();
+
+    /**
+     * Undoes a {@link #closeOnCancel} once the resource is finished with.
+     */
+    public interface Registration extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private final Object runnerLock = new Object();
+    // Thread running the work, while it runs
+    private Thread runner;
+    // Closed on cancel; guarded by runnerLock
+    private final List<Closeable> closeOnCancel = new ArrayList<>();
+
+    private InterruptibleFuture() {
+    }
+
+    /**
+     * Runs {@code work} on {@code executor}. An exception thrown by the work completes the
+     * future exceptionally with that exception itself, not wrapped.
+     */
+    public static <T> InterruptibleFuture<T> callAsync(Callable<T> work, Executor executor) {
+        InterruptibleFuture<T> future = new InterruptibleFuture<>();
+        try {
+            executor.execute(() -> future.run(work));
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Closes {@code resource} if the future whose work is running on this thread is cancelled,
+     * or right away if it already has been. Does nothing outside such work.
+     */
+    public static Registration closeOnCancel(Closeable resource) {
+        InterruptibleFuture<?> future = RUNNING.get();
+        return future == null ? () -> { } : future.register(resource);
+    }
+
+    /**
+     * Whether the future whose work is running on this thread has been cancelled. False outside
+     * such work.
+     */
+    public static boolean isCurrentWorkCancelled() {
+        InterruptibleFuture<?> future = RUNNING.get();
+        return future != null && future.isCancelled();
+    }
+
+    private Registration register(Closeable resource) {
+        synchronized (runnerLock) {
+            if (!isCancelled()) {
+                closeOnCancel.add(resource);
+                return () -> {
+                    synchronized (runnerLock) {
+                        closeOnCancel.remove(resource);
+                    }
+                };
+            }
+        }
+        closeQuietly(resource);
+        return () -> { };
+    }
+
+    private void run(Callable<T> work) {
+        synchronized (runnerLock) {
+            if (isDone()) return;
+            runner = Thread.currentThread();
+        }
+        // Direct executors run nested work on the caller's thread
+        InterruptibleFuture<?> outer = RUNNING.get();
+        RUNNING.set(this);
+        try {
+            complete(work.call());
+        } catch (Throwable t) {
+            completeExceptionally(t);
+        } finally {
+            RUNNING.set(outer);
+            synchronized (runnerLock) {
+                runner = null;
+                closeOnCancel.clear();
+            }
+            // A cancel that raced with the end of the work must not leak into the pool's next task
+            if (outer == null) Thread.interrupted();
+        }
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        boolean cancelled = super.cancel(mayInterruptIfRunning);
+        if (cancelled && mayInterruptIfRunning) {
+            List<Closeable> resources;
+            synchronized (runnerLock) {
+                if (runner != null) runner.interrupt();
+                resources = new ArrayList<>(closeOnCancel);
+                closeOnCancel.clear();
+            }
+            for (Closeable resource : resources) closeQuietly(resource);
+        }
+        return cancelled;
+    }
+
+    private static void closeQuietly(Closeable resource) {
+        try {
+            resource.close();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Could not close on cancel: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Stages built on this one are plain futures; cancelling them does not reach back to the work.
+     */
+    @Override
+    public <U> CompletableFuture<U> newIncompleteFuture() {
+        return new CompletableFuture<>();
+    }
+}
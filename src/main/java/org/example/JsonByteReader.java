@@ -0,0 +1,368 @@
+package org.example;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Pull tokenizer over a UTF-8 JSON byte stream.
+ *
+ * Reads straight from an InputStream through one fixed buffer and parses numbers in place,
+ * so large routing responses can be walked without building intermediate Strings.
+ * Object keys are compared as raw bytes against pre-encoded names.
+ */
+public class JsonByteReader {
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final int MAX_KEY_LENGTH = 64;
+
+    // Largest mantissa we can still multiply by 10 and add a digit to without overflow
+    private static final long MANTISSA_LIMIT = (Long.MAX_VALUE - 9) / 10;
+    private static final long EXACT_MANTISSA_LIMIT = 1L << 53;
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    public enum ValueType { OBJECT, ARRAY, STRING, NUMBER, BOOLEAN, NULL, END }
+
+    /**
+     * Receives the unescaped bytes of a string value one at a time.
+     */
+    public interface ByteSink {
+        void accept(int b) throws IOException;
+    }
+
+    private final InputStream in;
+    private final byte[] buffer;
+    private int position;
+    private int limit;
+    private long bytesConsumed;
+
+    private final byte[] keyBuffer = new byte[MAX_KEY_LENGTH];
+    private int keyLength;
+
+    public JsonByteReader(InputStream in) {
+        this.in = in;
+        this.buffer = new byte[BUFFER_SIZE];
+    }
+
+    public JsonByteReader(byte[] data, int offset, int length) {
+        this.in = null;
+        this.buffer = data;
+        this.position = offset;
+        this.limit = offset + length;
+    }
+
+    public static byte[] keyBytes(String key) {
+        return key.getBytes(java.nio.charset.StandardCharsets.UTF_8);
+    }
+
+
+
+    public ValueType peek() throws IOException {
+        int c = skipWhitespace();
+        switch (c) {
+            case '{': return ValueType.OBJECT;
+            case '[': return ValueType.ARRAY;
+            case '"': return ValueType.STRING;
+            case 't':
+            case 'f': return ValueType.BOOLEAN;
+            case 'n': return ValueType.NULL;
+            case -1: return ValueType.END;
+            default: return ValueType.NUMBER;
+        }
+    }
+
+    public void beginObject() throws IOException {
+        expect('{');
+    }
+
+    public void beginArray() throws IOException {
+        expect('[');
+    }
+
+    /**
+     * Advances to the next field of the current object and loads its key.
+     * @return false once the closing brace has been consumed
+     */
+    public boolean nextField() throws IOException {
+        int c = skipWhitespace();
+        if (c == ',') {
+            position++;
+            c = skipWhitespace();
+        }
+        if (c == '}') {
+            position++;
+            return false;
+        }
+        readKey();
+        expect(':');
+        return true;
+    }
+
+    /**
+     * Advances to the next element of the current array.
+     * @return false once the closing bracket has been consumed
+     */
+    public boolean nextElement() throws IOException {
+        int c = skipWhitespace();
+        if (c == ',') {
+            position++;
+            c = skipWhitespace();
+        }
+        if (c == ']') {
+            position++;
+            return false;
+        }
+        if (c == -1) {
+            throw new EOFException("Unterminated JSON array");
+        }
+        return true;
+    }
+
+    public boolean keyEquals(byte[] name) {
+        if (keyLength != name.length) return false;
+        for (int i = 0; i < keyLength; i++) {
+            if (keyBuffer[i] != name[i]) return false;
+        }
+        return true;
+    }
+
+    public String currentKey() {
+        return keyLength < 0 ? "" : new String(keyBuffer, 0, keyLength, java.nio.charset.StandardCharsets.UTF_8);
+    }
+
+    public double nextDouble() throws IOException {
+        int c = skipWhitespace();
+        boolean negative = false;
+        if (c == '-') {
+            negative = true;
+            position++;
+        }
+
+        long mantissa = 0;
+        int exponent = 0;
+        boolean sawDigit = false;
+
+        while ((c = peekByte()) >= '0' && c <= '9') {
+            position++;
+            sawDigit = true;
+            if (mantissa <= MANTISSA_LIMIT) {
+                mantissa = mantissa * 10 + (c - '0');
+            } else {
+                exponent++;
+            }
+        }
+
+        if (c == '.') {
+            position++;
+            while ((c = peekByte()) >= '0' && c <= '9') {
+                position++;
+                sawDigit = true;
+                if (mantissa <= MANTISSA_LIMIT) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    exponent--;
+                }
+            }
+        }
+
+        if (!sawDigit) {
+            throw new IOException("Expected a number but found '" + (char) c + "'");
+        }
+
+        if (c == 'e' || c == 'E') {
+            position++;
+            c = peekByte();
+            boolean negativeExponent = false;
+            if (c == '+' || c == '-') {
+                negativeExponent = c == '-';
+                position++;
+            }
+            int explicitExponent = 0;
+            while ((c = peekByte()) >= '0' && c <= '9') {
+                position++;
+                if (explicitExponent < 10000) {
+                    explicitExponent = explicitExponent * 10 + (c - '0');
+                }
+            }
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+
+        double value = toDouble(mantissa, exponent);
+        return negative ? -value : value;
+    }
+
+    private static double toDouble(long mantissa, int exponent) {
+        if (mantissa == 0) return 0.0;
+        // Both operands are exact doubles here, so one multiply/divide is correctly rounded
+        if (mantissa < EXACT_MANTISSA_LIMIT && exponent >= -22 && exponent <= 22) {
+            return exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+        }
+        return Double.parseDouble(mantissa + "E" + exponent);
+    }
+
+    /**
+     * Streams the next string value into {@code sink} without building a String. Escapes are
+     * resolved, with unicode escapes passed on as their UTF-8 encoding.
+     */
+    public void readStringBytes(ByteSink sink) throws IOException {
+        expect('"');
+        while (true) {
+            int c = nextByte();
+            if (c == '"') return;
+            if (c != '\\') {
+                sink.accept(c);
+                continue;
+            }
+            c = nextByte();
+            switch (c) {
+                case 'b': sink.accept('\b'); break;
+                case 'f': sink.accept('\f'); break;
+                case 'n': sink.accept('\n'); break;
+                case 'r': sink.accept('\r'); break;
+                case 't': sink.accept('\t'); break;
+                case 'u': acceptUtf8(sink, readHexCodeUnit()); break;
+                default: sink.accept(c); break;
+            }
+        }
+    }
+
+    private int readHexCodeUnit() throws IOException {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            int digit = Character.digit(nextByte(), 16);
+            if (digit < 0) throw new IOException("Invalid \\u escape in JSON string");
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+
+    private static void acceptUtf8(ByteSink sink, int codeUnit) throws IOException {
+        if (codeUnit < 0x80) {
+            sink.accept(codeUnit);
+        } else if (codeUnit < 0x800) {
+            sink.accept(0xc0 | (codeUnit >> 6));
+            sink.accept(0x80 | (codeUnit & 0x3f));
+        } else {
+            sink.accept(0xe0 | (codeUnit >> 12));
+            sink.accept(0x80 | ((codeUnit >> 6) & 0x3f));
+            sink.accept(0x80 | (codeUnit & 0x3f));
+        }
+    }
+
+    /**
+     * Skips the next value, including any nested objects or arrays.
+     */
+    public void skipValue() throws IOException {
+        int depth = 0;
+        do {
+            int c = skipWhitespace();
+            switch (c) {
+                case '{':
+                case '[':
+                    depth++;
+                    position++;
+                    break;
+                case '}':
+                case ']':
+                    depth--;
+                    position++;
+                    break;
+                case ',':
+                case ':':
+                    position++;
+                    break;
+                case '"':
+                    skipString();
+                    break;
+                case -1:
+                    throw new EOFException("Unexpected end of JSON while skipping value");
+                default:
+                    skipLiteral();
+                    break;
+            }
+        } while (depth > 0);
+    }
+
+    public long getBytesConsumed() {
+        return bytesConsumed + position;
+    }
+
+
+
+    private void readKey() throws IOException {
+        expect('"');
+        keyLength = 0;
+        while (true) {
+            int c = nextByte();
+            if (c == '"') return;
+            if (c == '\\') {
+                c = nextByte();
+            }
+            if (keyLength >= 0 && keyLength < MAX_KEY_LENGTH) {
+                keyBuffer[keyLength++] = (byte) c;
+            } else {
+                keyLength = -1;
+            }
+        }
+    }
+
+    private void skipString() throws IOException {
+        position++;
+        while (true) {
+            int c = nextByte();
+            if (c == '"') return;
+            if (c == '\\') nextByte();
+        }
+    }
+
+    private void skipLiteral() throws IOException {
+        int c;
+        while ((c = peekByte()) != -1 && c != ',' && c != '}' && c != ']'
+                && c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+            position++;
+        }
+    }
+
+    private void expect(char expected) throws IOException {
+        int c = skipWhitespace();
+        if (c != expected) {
+            throw new IOException("Expected '" + expected + "' but found " +
+                    (c == -1 ? "end of input" : "'" + (char) c + "'"));
+        }
+        position++;
+    }
+
+    private int skipWhitespace() throws IOException {
+        while (true) {
+            int c = peekByte();
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') return c;
+            position++;
+        }
+    }
+
+    private int nextByte() throws IOException {
+        int c = peekByte();
+        if (c == -1) throw new EOFException("Unexpected end of JSON");
+        position++;
+        return c;
+    }
+
+    private int peekByte() throws IOException {
+        if (position >= limit && !fill()) return -1;
+        return buffer[position] & 0xff;
+    }
+
+    private boolean fill() throws IOException {
+        if (in == null) return false;
+        bytesConsumed += limit;
+        position = 0;
+        limit = 0;
+        int n = in.read(buffer, 0, buffer.length);
+        if (n <= 0) return false;
+        limit = n;
+        return true;
+    }
+
+}
@@ -0,0 +1,45 @@
+package org.example;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the most recent latency samples in a fixed ring and answers percentile queries over them.
+ */
+public class LatencyTracker {
+
+    private final long[] samples;
+    private int next;
+    private int size;
+
+    public LatencyTracker(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity must be positive");
+        this.samples = new long[capacity];
+    }
+
+    public synchronized void record(long millis) {
+        samples[next] = millis;
+        next = (next + 1) % samples.length;
+        if (size < samples.length) size++;
+    }
+
+    public synchronized int getSampleCount() {
+        return size;
+    }
+
+    /**
+     * @param percentile between 0 and 1, e.g. 0.95
+     * @return the nearest-rank percentile, or -1 when there are no samples yet
+     */
+    public synchronized long getPercentile(double percentile) {
+        if (size == 0) return -1;
+        long[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(Math.max(0, Math.min(1, percentile)) * size);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    public synchronized void clear() {
+        next = 0;
+        size = 0;
+    }
+}
@@ -0,0 +1,266 @@
+package org.example;
+
+import org.jxmapviewer.viewer.GeoPosition;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Routes the leg to where the pointer rests in draw mode before the user clicks, so that a
+ * click near that spot lands at once.
+ *
+ * Prefetches run one at a time on a single low-priority thread and a new one cancels the one
+ * still running, since the pointer has moved on. They are spaced at least
+ * {@link #DEFAULT_MIN_INTERVAL_MILLIS} apart and skipped outright while the API's rate
+ * limiter is paused, low on server quota or down to its last token, so guessing never costs
+ * a real click its request. Results live for {@link #DEFAULT_TIME_TO_LIVE_MILLIS} and belong
+ * to the route end they started from; the next click takes the one it matches, if any, and
+ * drops the rest.
+ */
+public class LegPrefetcher {
+
+    public static final int DEFAULT_DWELL_MILLIS = 400;
+    public static final long DEFAULT_TIME_TO_LIVE_MILLIS = 20_000;
+    public static final long DEFAULT_MIN_INTERVAL_MILLIS = 1_500;
+    // A click this close to the hovered spot takes its leg, ending at the hovered spot
+    public static final double DEFAULT_MATCH_METERS = 15;
+    // The leg must start at the current route end, give or take rounding
+    private static final double SAME_START_METERS = 1.0;
+    private static final int MAX_ENTRIES = 4;
+    // Leaves the limiter a token for the click itself
+    private static final double MIN_TOKENS_TO_PREFETCH = 2;
+
+    private static final ExecutorService PREFETCH_EXECUTOR =
+            Executors.newSingleThreadExecutor(new DaemonThreadFactory("leg-prefetch", Thread.MIN_PRIORITY));
+
+    /**
+     * A prefetched leg handed to a click: its end point and the leg itself, which may still be
+     * on its way.
+     */
+    public static class Prefetched {
+        private final GeoPosition target;
+        private final CompletableFuture<RouteResult> leg;
+
+        Prefetched(GeoPosition target, CompletableFuture<RouteResult> leg) {
+            this.target = target;
+            this.leg = leg;
+        }
+
+        public GeoPosition getTarget() { return target; }
+        public CompletableFuture<RouteResult> getLeg() { return leg; }
+        public boolean isReady() { return leg.isDone(); }
+    }
+
+    private static class Entry {
+        final GeoPosition from;
+        final GeoPosition to;
+        final RoutingAPI.RoutingProfile profile;
+        final CompletableFuture<RouteResult> leg;
+        final long startedNanos;
+
+        Entry(GeoPosition from, GeoPosition to, RoutingAPI.RoutingProfile profile, CompletableFuture<RouteResult> leg) {
+            this.from = from;
+            this.to = to;
+            this.profile = profile;
+            this.leg = leg;
+            this.startedNanos = System.nanoTime();
+        }
+    }
+
+    private final Executor executor;
+    private final List<Entry> entries = new ArrayList<>();
+    private volatile RoutingRateLimiter rateLimiter;
+    private volatile long timeToLiveNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_TIME_TO_LIVE_MILLIS);
+    private volatile long minIntervalNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_MIN_INTERVAL_MILLIS);
+    private volatile double matchMeters = DEFAULT_MATCH_METERS;
+    private long lastStartNanos;
+    private boolean started;
+
+    private final AtomicLong prefetches = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong cancelled = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong hitsInFlight = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong wasted = new AtomicLong();
+
+    public LegPrefetcher() {
+        this(PREFETCH_EXECUTOR);
+    }
+
+    public LegPrefetcher(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Limiter whose state decides whether a prefetch may spend a request; null to ignore quota.
+     */
+    public void setRateLimiter(RoutingRateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    public void setTimeToLive(Duration timeToLive) {
+        this.timeToLiveNanos = timeToLive.toNanos();
+    }
+
+    /**
+     * Shortest gap between two prefetches; dwells in between are skipped.
+     */
+    public void setMinInterval(Duration minInterval) {
+        this.minIntervalNanos = minInterval.toNanos();
+    }
+
+    public void setMatchMeters(double matchMeters) {
+        this.matchMeters = matchMeters;
+    }
+
+    /**
+     * Starts routing {@code from -> to} in the background unless that leg is already cached or
+     * in flight, the last prefetch was too recent, or the quota is short.
+     *
+     * @return whether a prefetch was started
+     */
+    public synchronized boolean prefetch(RoutingBackend backend, GeoPosition from, GeoPosition to) {
+        RoutingAPI.RoutingProfile profile = backend.getProfile();
+        long now = System.nanoTime();
+        expire(now);
+        for (Entry entry : entries) {
+            if (entry.profile == profile && meters(entry.from, from) <= SAME_START_METERS
+                    && meters(entry.to, to) <= matchMeters) {
+                return false;
+            }
+        }
+        if ((started && now - lastStartNanos < minIntervalNanos) || !quotaAllowsPrefetch()) {
+            throttled.incrementAndGet();
+            return false;
+        }
+
+        // The pointer has moved on from whatever is still being fetched
+        for (Iterator<Entry> it = entries.iterator(); it.hasNext(); ) {
+            Entry entry = it.next();
+            if (!entry.leg.isDone()) {
+                entry.leg.cancel(true);
+                cancelled.incrementAndGet();
+                it.remove();
+            }
+        }
+        while (entries.size() >= MAX_ENTRIES) {
+            entries.remove(0);
+            wasted.incrementAndGet();
+        }
+
+        RoutingDeadline deadline = backend.newLegDeadline();
+        List<GeoPosition> waypoints = Arrays.asList(from, to);
+        entries.add(new Entry(from, to, profile,
+                InterruptibleFuture.callAsync(() -> backend.snapToRoadsWithTwoPoints(waypoints, deadline), executor)));
+        started = true;
+        lastStartNanos = now;
+        prefetches.incrementAndGet();
+        return true;
+    }
+
+    private boolean quotaAllowsPrefetch() {
+        RoutingRateLimiter limiter = rateLimiter;
+        return limiter == null || (!limiter.isPaused() && !limiter.isQuotaLow()
+                && limiter.getAvailableTokens() >= MIN_TOKENS_TO_PREFETCH);
+    }
+
+    /**
+     * Takes the prefetched leg for a click at {@code click}, if one starts at {@code from} and
+     * ends close enough. Every other entry is dropped, since the route end is about to move.
+     *
+     * @return the leg, possibly still running, or null on a miss
+     */
+    public synchronized Prefetched take(GeoPosition from, GeoPosition click, RoutingAPI.RoutingProfile profile) {
+        expire(System.nanoTime());
+        Entry match = null;
+        double bestMeters = Double.POSITIVE_INFINITY;
+        for (Entry entry : entries) {
+            if (entry.profile != profile || meters(entry.from, from) > SAME_START_METERS) continue;
+            double distance = meters(entry.to, click);
+            boolean failed = entry.leg.isCompletedExceptionally()
+                    || (entry.leg.isDone() && entry.leg.getNow(null) == null);
+            if (distance <= matchMeters && distance < bestMeters && !failed) {
+                match = entry;
+                bestMeters = distance;
+            }
+        }
+        for (Entry entry : entries) {
+            if (entry != match) discard(entry);
+        }
+        entries.clear();
+
+        if (match == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        if (!match.leg.isDone()) hitsInFlight.incrementAndGet();
+        return new Prefetched(match.to, match.leg);
+    }
+
+    /**
+     * Cancels and drops everything, e.g. when the route is cleared or undone.
+     */
+    public synchronized void clear() {
+        for (Entry entry : entries) discard(entry);
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private void expire(long now) {
+        for (Iterator<Entry> it = entries.iterator(); it.hasNext(); ) {
+            Entry entry = it.next();
+            if (now - entry.startedNanos > timeToLiveNanos) {
+                discard(entry);
+                it.remove();
+            }
+        }
+    }
+
+    private void discard(Entry entry) {
+        if (!entry.leg.isDone() && entry.leg.cancel(true)) {
+            cancelled.incrementAndGet();
+        } else {
+            wasted.incrementAndGet();
+        }
+    }
+
+    private static double meters(GeoPosition a, GeoPosition b) {
+        return Point.haversineKm(a.getLatitude(), a.getLongitude(), b.getLatitude(), b.getLongitude()) * 1000;
+    }
+
+    public long getPrefetches() { return prefetches.get(); }
+    public long getThrottled() { return throttled.get(); }
+    public long getCancelled() { return cancelled.get(); }
+    public long getHits() { return hits.get(); }
+    public long getMisses() { return misses.get(); }
+    /** Finished prefetches nobody clicked on. */
+    public long getWasted() { return wasted.get(); }
+
+    /**
+     * Share of clicks, after the first point of a route, that found their leg prefetched.
+     */
+    public double getHitRate() {
+        long lookups = hits.get() + misses.get();
+        return lookups == 0 ? 0 : (double) hits.get() / lookups;
+    }
+
+    public String describeStats() {
+        return String.format("prefetches=%d, throttled=%d, cancelled=%d, hits=%d (%d in flight), misses=%d, " +
+                        "wasted=%d, hit rate=%.0f%%", prefetches.get(), throttled.get(), cancelled.get(), hits.get(),
+                hitsInFlight.get(), misses.get(), wasted.get(), getHitRate() * 100);
+    }
+}
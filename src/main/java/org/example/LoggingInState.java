@@ -1,5 +1,8 @@
 package org.example;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
 /**
  * Concrete State: Logging In
  *
@@ -23,21 +26,67 @@ public class LoggingInState implements AuthState {
     public void processLoginAttempt(AuthContext context) {
         System.out.println("Processing login for user: " + username);
 
-
-        if (username == null || username.trim().isEmpty()) {
-            loginFailed(context, "Username cannot be empty");
+        String problem = checkCredentialsEntered();
+        if (problem != null) {
+            loginFailed(context, problem);
             return;
         }
 
-        if (password == null || password.isEmpty()) {
-            loginFailed(context, "Password cannot be empty");
-            return;
+
+        Database db = context.getDatabase();
+        finishLogin(context, db.authenticateAUser(username.trim(), password));
+    }
+
+    /**
+     * Like {@link #processLoginAttempt}, but the credentials are checked on the database thread
+     * and the outcome, with its listener callbacks, is applied on {@code callbackExecutor}.
+     */
+    public CompletableFuture<Void> processLoginAttemptAsync(AuthContext context, Executor callbackExecutor) {
+        System.out.println("Processing login for user: " + username);
+
+        String problem = checkCredentialsEntered();
+        if (problem != null) {
+            loginFailed(context, problem);
+            return CompletableFuture.completedFuture(null);
         }
 
+        CompletableFuture<UserProfile> lookup;
+        try {
+            lookup = context.getDatabase().authenticateAUserAsync(username.trim(), password);
+        } catch (RuntimeException e) {
+            lookup = CompletableFuture.failedFuture(e);
+        }
+        return finishLoginWhenDone(context, lookup, callbackExecutor);
+    }
 
-        Database db = context.getDatabase();
-        UserProfile user = db.authenticateAUser(username.trim(), password);
+    /**
+     * Applies the lookup's outcome on {@code callbackExecutor}. A lookup that failed outright
+     * fails the login too, so the caller is never left waiting in this state.
+     */
+    CompletableFuture<Void> finishLoginWhenDone(AuthContext context, CompletableFuture<UserProfile> lookup,
+                                                Executor callbackExecutor) {
+        return lookup.handleAsync((user, error) -> {
+            if (error != null) {
+                System.err.println("Login lookup failed: " + error);
+                loginFailed(context, "Could not reach the user database. Please try again.");
+            } else {
+                finishLogin(context, user);
+            }
+            return null;
+        }, callbackExecutor);
+    }
+
+    private String checkCredentialsEntered() {
+        if (username == null || username.trim().isEmpty()) {
+            return "Username cannot be empty";
+        }
+        if (password == null || password.isEmpty()) {
+            return "Password cannot be empty";
+        }
+        return null;
+    }
 
+    private void finishLogin(AuthContext context, UserProfile user) {
         if (user != null) {
 
             loginSucceeded(context, user);
@@ -218,9 +218,10 @@ public class LoginDialog extends JDialog implements AuthContext.AuthStateListene
         // Process login through state pattern
         authContext.login(username, password);
 
-        // The state will handle the transition and notify us via listener
+        // The state will handle the transition and notify us via listener; the lookup runs on
+        // the database thread so the dialog stays responsive
         if (authContext.getState() instanceof LoggingInState) {
-            ((LoggingInState) authContext.getState()).processLoginAttempt(authContext);
+            ((LoggingInState) authContext.getState()).processLoginAttemptAsync(authContext, SwingUtilities::invokeLater);
         }
     }
 
@@ -238,7 +239,7 @@ public class LoginDialog extends JDialog implements AuthContext.AuthStateListene
 
         // The state will handle the transition and notify us via listener
         if (authContext.getState() instanceof RegisteringState) {
-            ((RegisteringState) authContext.getState()).processRegistration(authContext);
+            ((RegisteringState) authContext.getState()).processRegistrationAsync(authContext, SwingUtilities::invokeLater);
         }
     }
 
@@ -246,10 +247,11 @@ public class LoginDialog extends JDialog implements AuthContext.AuthStateListene
 
     @Override
     public void onStateChanged(AuthState oldState, AuthState newState) {
-        // Update UI based on new state
+        // Update UI based on new state; no second submit while a lookup is still running
+        boolean inProgress = newState instanceof LoggingInState || newState instanceof RegisteringState;
         SwingUtilities.invokeLater(() -> {
-            loginButton.setEnabled(true);
-            registerButton.setEnabled(true);
+            loginButton.setEnabled(!inProgress);
+            registerButton.setEnabled(!inProgress);
         });
     }
 
@@ -1,12 +1,92 @@
 package org.example;
 
 import javax.swing.SwingUtilities;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
 
 public class Main{
+    /**
+     * Options:
+     * {@code --capture=FILE} appends every routing API exchange to FILE;
+     * {@code --replay=FILE} answers routing requests from FILE instead of the network;
+     * {@code --replay-speed=X} scales the recorded timings when replaying (1 = as recorded, 0 = instant);
+     * {@code --prefetch[=MS]} routes the leg to wherever the pointer rests MS milliseconds in draw mode.
+     */
     public static void main(String[] args) {
+        Integer prefetchDwell;
+        RoutingHttpTransport transport;
+        try {
+            prefetchDwell = prefetchDwellFor(args);
+            transport = transportFor(args);
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Could not set up routing traffic: " + e.getMessage());
+            System.exit(2);
+            return;
+        }
         SwingUtilities.invokeLater(() -> {
-            RouteService app = new RouteService();
+            RouteService app = new RouteService(transport);
+            if (prefetchDwell != null) app.enableLegPrefetch(prefetchDwell);
             app.setVisible(true);
         });
     }
-}
\ No newline at end of file
+
+    /**
+     * @return the dwell in milliseconds, or null if leg prefetch is off
+     */
+    static Integer prefetchDwellFor(String[] args) {
+        Integer dwell = null;
+        for (String arg : args) {
+            if (arg.equals("--prefetch")) {
+                dwell = LegPrefetcher.DEFAULT_DWELL_MILLIS;
+            } else if (arg.startsWith("--prefetch=")) {
+                dwell = Integer.parseInt(arg.substring("--prefetch=".length()));
+                if (dwell < 0) throw new IllegalArgumentException("--prefetch needs a dwell of 0 ms or more");
+            }
+        }
+        return dwell;
+    }
+
+    static RoutingHttpTransport transportFor(String[] args) throws IOException {
+        Path capture = null;
+        Path replay = null;
+        double replaySpeed = 1.0;
+        for (String arg : args) {
+            if (arg.startsWith("--capture=")) {
+                capture = Paths.get(arg.substring("--capture=".length()));
+            } else if (arg.startsWith("--replay=")) {
+                replay = Paths.get(arg.substring("--replay=".length()));
+            } else if (arg.startsWith("--replay-speed=")) {
+                replaySpeed = Double.parseDouble(arg.substring("--replay-speed=".length()));
+            } else if (arg.startsWith("--prefetch")) {
+                // See prefetchDwellFor
+            } else {
+                throw new IllegalArgumentException("unknown option " + arg);
+            }
+        }
+        if (capture != null && replay != null) {
+            throw new IllegalArgumentException("--capture and --replay cannot be combined");
+        }
+
+        if (replay != null) {
+            List<RoutingTrafficLog.Exchange> exchanges = RoutingTrafficLog.readAll(replay);
+            System.out.println("Replaying " + replay + ": " + RoutingTrafficLog.summarize(exchanges));
+            return new ReplayHttpTransport(exchanges, replaySpeed);
+        }
+        if (capture != null) {
+            Path file = capture;
+            RoutingTrafficLog.Writer log = new RoutingTrafficLog.Writer(capture);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    log.close();
+                } catch (IOException e) {
+                    System.err.println("Could not close " + file + ": " + e.getMessage());
+                }
+            }, "capture-close"));
+            System.out.println("Capturing routing traffic to " + capture);
+            return new RecordingHttpTransport(log);
+        }
+        return RoutingHttpTransport.getInstance();
+    }
+}
@@ -23,17 +23,34 @@ public class Map extends JPanel {
         void onMapClick(GeoPosition position);
     }
 
+    /**
+     * Told when the pointer has rested on the map in draw mode for the dwell time.
+     */
+    public interface MapHoverListener {
+        void onHoverDwell(GeoPosition position);
+    }
+
     private final JXMapViewer viewer;
     private boolean drawingMode = false;
     private Route currentRoute;
+    private GeoPosition pendingPoint;
     private MapClickListener clickListener;
+    private MapHoverListener hoverListener;
+    private final Timer hoverTimer;
+    // Where the pointer came to rest, in viewer pixels; null while it is off the map
+    private java.awt.Point hoverPoint;
 
     private static final Color ROUTE_LINE_COLOR = new Color(30, 144, 255);
     private static final Color START_MARKER_COLOR = new Color(34, 139, 34);
     private static final Color END_MARKER_COLOR = new Color(220, 20, 60);
+    private static final Color PENDING_MARKER_COLOR = new Color(255, 165, 0);
     private static final float ROUTE_LINE_WIDTH = 3f;
     private static final int MARKER_OUTER_RADIUS = 8;
     private static final int MARKER_INNER_RADIUS = 6;
+    private static final double EQUATOR_METERS = 40_075_016.686;
+    private static final double RENDER_TOLERANCE_PIXELS = 0.5;
+    // Hand tremor smaller than this does not restart the dwell
+    private static final int HOVER_JITTER_PIXELS = 3;
 
     public Map() {
         setLayout(new BorderLayout());
@@ -52,6 +69,10 @@ public class Map extends JPanel {
         setupPanningWithKeyboard();
         setupClickListenerForWaypoints();
         setupRouteOverlayPainter();
+
+        hoverTimer = new Timer(LegPrefetcher.DEFAULT_DWELL_MILLIS, e -> hoverDwelled());
+        hoverTimer.setRepeats(false);
+        setupHoverListener();
     }
 
 
@@ -115,6 +136,48 @@ public class Map extends JPanel {
         });
     }
 
+    private void setupHoverListener() {
+        MouseAdapter hover = new MouseAdapter() {
+            @Override
+            public void mouseMoved(MouseEvent e) {
+                hoverMovedTo(e.getPoint());
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                hoverLeft();
+            }
+
+            @Override
+            public void mouseExited(MouseEvent e) {
+                hoverLeft();
+            }
+        };
+        viewer.addMouseListener(hover);
+        viewer.addMouseMotionListener(hover);
+    }
+
+    void hoverMovedTo(java.awt.Point point) {
+        if (hoverListener == null || !drawingMode) return;
+        if (hoverPoint != null && hoverPoint.distance(point) <= HOVER_JITTER_PIXELS) return;
+        hoverPoint = point;
+        hoverTimer.restart();
+    }
+
+    void hoverLeft() {
+        hoverPoint = null;
+        hoverTimer.stop();
+    }
+
+    void hoverDwelled() {
+        if (hoverListener == null || !drawingMode || hoverPoint == null) return;
+        hoverListener.onHoverDwell(viewer.convertPointToGeoPosition(hoverPoint));
+    }
+
+    boolean isHoverPending() {
+        return hoverTimer.isRunning();
+    }
+
     private void setupRouteOverlayPainter() {
         viewer.setOverlayPainter(new Painter<JXMapViewer>() {
             @Override
@@ -129,22 +192,35 @@ public class Map extends JPanel {
     private void paintRouteOverlay(Graphics2D g, JXMapViewer map) {
         if (currentRoute == null) return;
 
-        List<GeoPosition> points = currentRoute.getAllPointsAsGeoPositions();
-        if (points == null || points.isEmpty()) return;
-
-        saveGraphicsState(g);
-        enableAntiAliasing(g);
+        if (currentRoute.isEmpty()) return;
 
         int zoom = map.getZoom();
         Rectangle viewport = map.getViewportBounds();
 
+        // Drop points that would land within half a pixel of the drawn line
+        double latitude = currentRoute.getPoints().get(0).getLatitude();
+        List<GeoPosition> points = currentRoute.getSimplifiedGeoPositions(renderToleranceMeters(zoom, latitude));
+
+        saveGraphicsState(g);
+        enableAntiAliasing(g);
+
         drawRouteLines(g, map, points, zoom, viewport);
         drawStartMarker(g, map, points, zoom, viewport);
         drawEndMarker(g, map, points, zoom, viewport);
+        drawPendingMarker(g, map, zoom, viewport);
 
         restoreGraphicsState(g);
     }
 
+    /**
+     * Ground distance covered by {@link #RENDER_TOLERANCE_PIXELS} at the given viewer zoom level.
+     */
+    static double renderToleranceMeters(int zoom, double latitude) {
+        double mapSizePixels = 256.0 * (1L << (19 - zoom));
+        double metersPerPixel = EQUATOR_METERS * Math.cos(Math.toRadians(latitude)) / mapSizePixels;
+        return metersPerPixel * RENDER_TOLERANCE_PIXELS;
+    }
+
     private void saveGraphicsState(Graphics2D g) {
         g.getRenderingHint(RenderingHints.KEY_ANTIALIASING);
         g.getStroke();
@@ -198,6 +274,13 @@ public class Map extends JPanel {
         drawMarkerAtScreenCoordinates(g, screenCoords, END_MARKER_COLOR);
     }
 
+    private void drawPendingMarker(Graphics2D g, JXMapViewer map, int zoom, Rectangle viewport) {
+        if (pendingPoint == null) return;
+
+        int[] screenCoords = convertGeoPositionToScreenCoordinates(map, pendingPoint, zoom, viewport);
+        drawMarkerAtScreenCoordinates(g, screenCoords, PENDING_MARKER_COLOR);
+    }
+
     private int[] convertGeoPositionToScreenCoordinates(JXMapViewer map, GeoPosition position, int zoom, Rectangle viewport) {
         Point2D pixelPoint = map.getTileFactory().geoToPixel(position, zoom);
         int x = (int) (pixelPoint.getX() - viewport.getX());
@@ -227,14 +310,37 @@ public class Map extends JPanel {
         this.clickListener = l;
     }
 
+    /**
+     * @param l           null to stop watching the pointer
+     * @param dwellMillis how long the pointer must rest before {@code l} hears of it
+     */
+    public void setMapHoverListener(MapHoverListener l, int dwellMillis) {
+        this.hoverListener = l;
+        hoverTimer.setInitialDelay(dwellMillis);
+        if (l == null) hoverLeft();
+    }
+
     public void setDrawingMode(boolean enable) {
         this.drawingMode = enable;
+        if (!enable) hoverLeft();
     }
 
     public boolean isDrawingMode() {
         return drawingMode;
     }
 
+    /**
+     * Marks a clicked point whose connecting route is still being fetched; null clears it.
+     */
+    public void setPendingPoint(GeoPosition point) {
+        this.pendingPoint = point;
+        viewer.repaint();
+    }
+
+    public GeoPosition getPendingPoint() {
+        return pendingPoint;
+    }
+
     public void displayRoute(Route route) {
         this.currentRoute = route;
         viewer.repaint();
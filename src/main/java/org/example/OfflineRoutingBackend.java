@@ -0,0 +1,504 @@
+package org.example;
+
+import org.jxmapviewer.viewer.GeoPosition;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Routes on a {@link RoadGraph} held in memory, handing anything it cannot answer to another
+ * backend (normally the OpenRouteService client).
+ *
+ * Each waypoint is projected onto the closest road the profile may use ({@link RoadSnapIndex}),
+ * and consecutive waypoints are joined with {@link BidirectionalAStar} from the nearer end of
+ * that road segment, so routes start and end on the road right next to the click. A waypoint
+ * with no road within {@link #MAX_SNAP_METERS}, i.e. outside the imported extract, or a leg
+ * with no connection, sends the whole request to the fallback.
+ *
+ * Round trips are built locally: {@code points} seeded via-points go on a ring through the
+ * start, sized to the requested distance, and {@link RoundTripCalibrator} rescales the ring
+ * until the routed loop is long enough. The legs of a multi-waypoint route are searched in
+ * parallel on a small worker pool, each worker borrowing its own {@link BidirectionalAStar}
+ * (about 48 bytes per graph node each). Results carry no elevation.
+ */
+public class OfflineRoutingBackend implements RoutingBackend {
+
+    static final double MAX_SNAP_METERS = 500;
+    // Snapped points closer than this to their segment's end are merged into the node
+    private static final double NODE_MERGE_METERS = 1.0;
+    // Road networks add roughly this much to the straight circle a loop is laid out on
+    static final double ROAD_DETOUR_FACTOR = 1.3;
+
+    private static final Duration LEG_BUDGET = Duration.ofSeconds(2);
+    private static final Duration ROUND_TRIP_BUDGET = Duration.ofSeconds(5);
+    private static final int SEARCH_POOL_SIZE = 4;
+
+    private static final ExecutorService LEG_EXECUTOR =
+            Executors.newFixedThreadPool(SEARCH_POOL_SIZE, new DaemonThreadFactory("offline-leg"));
+
+    private final RoadGraph graph;
+    private final RoadSnapIndex snapIndex;
+    private final SearchPool searches;
+    private final RoutingBackend fallback;
+    private final RoundTripSearch roundTripSearch = new RoundTripSearch();
+    private final RoundTripCalibrator roundTripCalibrator = new RoundTripCalibrator();
+    private final DistanceMatrixCache matrixCache = new DistanceMatrixCache();
+
+    private volatile RoutingAPI.RoutingProfile profile = RoutingAPI.RoutingProfile.FOOT_WALKING;
+    private volatile Executor asyncExecutor = RoutingAPI.ASYNC_EXECUTOR;
+
+    private final AtomicLong legsRouted = new AtomicLong();
+    private final AtomicLong fallbacks = new AtomicLong();
+    private final AtomicLong routingNanos = new AtomicLong();
+
+    /**
+     * @param fallback may be null, in which case requests the graph cannot answer return null
+     */
+    public OfflineRoutingBackend(RoadGraph graph, RoutingBackend fallback) {
+        this.graph = graph;
+        this.snapIndex = new RoadSnapIndex(graph);
+        this.searches = new SearchPool(graph, SEARCH_POOL_SIZE);
+        this.fallback = fallback;
+        if (fallback != null) profile = fallback.getProfile();
+    }
+
+    public RoadGraph getGraph() {
+        return graph;
+    }
+
+    public RoadSnapIndex getSnapIndex() {
+        return snapIndex;
+    }
+
+    public RoutingBackend getFallback() {
+        return fallback;
+    }
+
+    @Override
+    public void setProfile(RoutingAPI.RoutingProfile profile) {
+        this.profile = profile;
+        if (fallback != null) fallback.setProfile(profile);
+    }
+
+    @Override
+    public RoutingAPI.RoutingProfile getProfile() {
+        return profile;
+    }
+
+    @Override
+    public RoutingDeadline newLegDeadline() {
+        return fallback != null ? fallback.newLegDeadline() : RoutingDeadline.after(LEG_BUDGET);
+    }
+
+    @Override
+    public RoutingDeadline newRoundTripDeadline() {
+        return fallback != null ? fallback.newRoundTripDeadline() : RoutingDeadline.after(ROUND_TRIP_BUDGET);
+    }
+
+    @Override
+    public GeoPosition snapToNearestRoad(GeoPosition point) {
+        RoadSnapIndex.Snap snap = snapIndex.nearest(point.getLatitude(), point.getLongitude(),
+                RoadGraph.accessMaskFor(profile), MAX_SNAP_METERS);
+        return snap == null ? null : new GeoPosition(snap.getLatitude(), snap.getLongitude());
+    }
+
+    @Override
+    public RouteResult snapToRoadsWithTwoPoints(List<GeoPosition> waypoints, RoutingDeadline deadline) {
+        if (waypoints == null || waypoints.size() < 2) {
+            return null;
+        }
+        RouteResult result = routeThrough(waypoints, profile, deadline);
+        if (result != null || Thread.currentThread().isInterrupted()) {
+            // A cancelled call must not go on to spend a network request
+            return result;
+        }
+        fallbacks.incrementAndGet();
+        return fallback == null ? null : fallback.snapToRoadsWithTwoPoints(waypoints, deadline);
+    }
+
+    @Override
+    public RouteResult generateRoundTripWithAPI(GeoPosition startPoint, double distanceKm, int points, Integer seed,
+                                                RoutingDeadline deadline) {
+        if (startPoint == null || distanceKm <= 0) {
+            return null;
+        }
+        RoutingAPI.RoutingProfile loopProfile = profile;
+        // The profile's route variety (3, 5 or 10) is the number of via-points
+        int viaPoints = Math.max(2, points);
+        try {
+            RouteResult result = roundTripCalibrator.calibrate((int) Math.round(distanceKm * 1000),
+                    length -> generateLoop(startPoint, length, viaPoints, seed, loopProfile, deadline),
+                    deadline).getBest();
+            if (result != null) {
+                return result;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        if (Thread.currentThread().isInterrupted()) {
+            return null;
+        }
+        fallbacks.incrementAndGet();
+        return fallback == null ? null
+                : fallback.generateRoundTripWithAPI(startPoint, distanceKm, points, seed, deadline);
+    }
+
+    @Override
+    public CompletableFuture<RouteResult> snapToRoadsWithTwoPointsAsync(List<GeoPosition> waypoints,
+                                                                      RoutingDeadline deadline) {
+        return InterruptibleFuture.callAsync(() -> snapToRoadsWithTwoPoints(waypoints, deadline), asyncExecutor);
+    }
+
+    @Override
+    public CompletableFuture<RouteResult> generateRoundTripWithAPIAsync(GeoPosition startPoint, double distanceKm,
+                                                                       int points, Integer seed,
+                                                                       RoutingDeadline deadline) {
+        return InterruptibleFuture.callAsync(
+                () -> generateRoundTripWithAPI(startPoint, distanceKm, points, seed, deadline), asyncExecutor);
+    }
+
+    /**
+     * One {@link BidirectionalAStar#oneToMany} search per location, in parallel on the leg pool.
+     * Times are between the road nodes nearest each location. Hands the request to the fallback
+     * when a location is off the graph or some stop cannot reach another.
+     */
+    @Override
+    public DistanceMatrix computeMatrix(List<GeoPosition> locations, RoutingDeadline deadline) {
+        if (locations == null || locations.size() < 2) {
+            return null;
+        }
+        RoutingAPI.RoutingProfile matrixProfile = profile;
+        RouteCacheKey cacheKey = matrixCache.keyFor(matrixProfile, locations);
+        DistanceMatrix matrix = matrixCache.get(cacheKey);
+        if (matrix == null) {
+            matrix = matrixOnGraph(locations, matrixProfile, deadline);
+            if (matrix != null) matrixCache.put(cacheKey, matrix);
+        }
+        if (matrix != null && !matrix.hasUnreachablePairs()) {
+            return matrix;
+        }
+        if (Thread.currentThread().isInterrupted()) {
+            return null;
+        }
+        fallbacks.incrementAndGet();
+        DistanceMatrix fallbackMatrix = fallback == null ? null : fallback.computeMatrix(locations, deadline);
+        // A graph matrix with gaps still beats none at all
+        return fallbackMatrix != null ? fallbackMatrix : matrix;
+    }
+
+    DistanceMatrix matrixOnGraph(List<GeoPosition> locations, RoutingAPI.RoutingProfile matrixProfile,
+                                 RoutingDeadline deadline) {
+        int n = locations.size();
+        int accessMask = RoadGraph.accessMaskFor(matrixProfile);
+        int[] nodes = new int[n];
+        for (int i = 0; i < n; i++) {
+            GeoPosition location = locations.get(i);
+            RoadSnapIndex.Snap snap = snapIndex.nearest(location.getLatitude(), location.getLongitude(), accessMask,
+                    MAX_SNAP_METERS);
+            if (snap == null) {
+                return null;
+            }
+            nodes[i] = snap.getNearerNode();
+        }
+
+        double[] seconds = new double[n * n];
+        double[] meters = new double[n * n];
+        List<Future<Boolean>> rows = new ArrayList<>(n);
+        try {
+            for (int i = 0; i < n; i++) {
+                int row = i;
+                rows.add(LEG_EXECUTOR.submit(() -> matrixRow(nodes, row, matrixProfile, deadline, seconds, meters)));
+            }
+            for (Future<Boolean> row : rows) {
+                boolean complete = deadline == null ? row.get()
+                        : row.get(deadline.remainingMillis(), TimeUnit.MILLISECONDS);
+                if (!complete) {
+                    return null;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException | TimeoutException e) {
+            return null;
+        } finally {
+            for (Future<Boolean> row : rows) {
+                row.cancel(true);
+            }
+        }
+        return new DistanceMatrix(n, seconds, meters, "offline road graph");
+    }
+
+    private boolean matrixRow(int[] nodes, int row, RoutingAPI.RoutingProfile matrixProfile, RoutingDeadline deadline,
+                              double[] seconds, double[] meters) throws InterruptedException {
+        int n = nodes.length;
+        double[] rowSeconds = new double[n];
+        double[] rowMeters = new double[n];
+        BidirectionalAStar search = searches.borrow();
+        try {
+            if (!search.oneToMany(nodes[row], nodes, matrixProfile, deadline, rowSeconds, rowMeters)) {
+                return false;
+            }
+        } finally {
+            searches.release(search);
+        }
+        // Each row writes its own slice; Future.get orders these writes before the reader
+        System.arraycopy(rowSeconds, 0, seconds, row * n, n);
+        System.arraycopy(rowMeters, 0, meters, row * n, n);
+        return true;
+    }
+
+    public DistanceMatrixCache getMatrixCache() {
+        return matrixCache;
+    }
+
+    /**
+     * Where the async variants run. Not {@link #LEG_EXECUTOR}: a call queued there could wait
+     * on its own legs. Defaults to the pool the API client uses.
+     */
+    public void setAsyncExecutor(Executor executor) {
+        this.asyncExecutor = executor;
+    }
+
+    @Override
+    public RoundTripSearch.Result generateBestRoundTrip(GeoPosition startPoint, double distanceKm, int points,
+                                                       List<Integer> seeds, RoundTripScorer scorer,
+                                                       RoutingDeadline deadline) throws InterruptedException {
+        return roundTripSearch.search(seeds,
+                seed -> generateRoundTripWithAPI(startPoint, distanceKm, points, seed, deadline), scorer, deadline);
+    }
+
+    @Override
+    public String describe() {
+        return "Offline road graph (" + graph.describe() + ")";
+    }
+
+
+
+    /**
+     * One loop of about {@code lengthMeters} through {@code viaPoints} seeded points, or null if
+     * any of its legs cannot be routed.
+     */
+    RouteResult generateLoop(GeoPosition start, int lengthMeters, int viaPoints, Integer seed,
+                             RoutingAPI.RoutingProfile loopProfile, RoutingDeadline deadline) {
+        Random random = seed == null ? new Random() : new Random(seed);
+        double radiusMeters = lengthMeters / ROAD_DETOUR_FACTOR / (2 * Math.PI);
+        double bearing = random.nextDouble() * 2 * Math.PI;
+
+        // The start sits on the ring; the centre is one radius away along the bearing
+        double metersPerDegreeLon = 111_320.0 * Math.cos(Math.toRadians(start.getLatitude()));
+        double centerLat = start.getLatitude() + radiusMeters * Math.cos(bearing) / 111_320.0;
+        double centerLon = start.getLongitude() + radiusMeters * Math.sin(bearing) / metersPerDegreeLon;
+
+        List<GeoPosition> waypoints = new ArrayList<>(viaPoints + 2);
+        waypoints.add(start);
+        double step = 2 * Math.PI / (viaPoints + 1);
+        for (int i = 1; i <= viaPoints; i++) {
+            double angle = bearing + Math.PI + i * step + (random.nextDouble() - 0.5) * step * 0.5;
+            double radius = radiusMeters * (0.85 + random.nextDouble() * 0.3);
+            waypoints.add(new GeoPosition(centerLat + radius * Math.cos(angle) / 111_320.0,
+                    centerLon + radius * Math.sin(angle) / metersPerDegreeLon));
+        }
+        waypoints.add(start);
+        return routeThrough(waypoints, loopProfile, deadline);
+    }
+
+    /**
+     * Joins consecutive waypoints on the graph.
+     *
+     * @return the packed path, or null if a waypoint cannot be snapped or a leg cannot be routed
+     */
+    RouteResult routeThrough(List<GeoPosition> waypoints, RoutingAPI.RoutingProfile routeProfile,
+                             RoutingDeadline deadline) {
+        long start = System.nanoTime();
+        int accessMask = RoadGraph.accessMaskFor(routeProfile);
+        RoadSnapIndex.Snap[] snaps = new RoadSnapIndex.Snap[waypoints.size()];
+        for (int i = 0; i < snaps.length; i++) {
+            GeoPosition waypoint = waypoints.get(i);
+            snaps[i] = snapIndex.nearest(waypoint.getLatitude(), waypoint.getLongitude(), accessMask, MAX_SNAP_METERS);
+            if (snaps[i] == null) {
+                return null;
+            }
+        }
+
+        List<BidirectionalAStar.Path> legs = routeLegs(snaps, routeProfile, deadline);
+        if (legs == null) {
+            return null;
+        }
+
+        PathBuilder path = new PathBuilder();
+        path.add(snaps[0].getLatitude(), snaps[0].getLongitude());
+        for (int i = 0; i < legs.size(); i++) {
+            for (int node : legs.get(i).getNodes()) {
+                path.add(graph.getLatitude(node), graph.getLongitude(node));
+            }
+            path.add(snaps[i + 1].getLatitude(), snaps[i + 1].getLongitude());
+        }
+
+        legsRouted.addAndGet(legs.size());
+        routingNanos.addAndGet(System.nanoTime() - start);
+        return path.toRouteResult();
+    }
+
+    /**
+     * Searches every leg between consecutive snaps, in parallel when there is more than one.
+     *
+     * @return the legs in order, or null if any of them fails or the deadline passes
+     */
+    private List<BidirectionalAStar.Path> routeLegs(RoadSnapIndex.Snap[] snaps, RoutingAPI.RoutingProfile routeProfile,
+                                                    RoutingDeadline deadline) {
+        List<Future<BidirectionalAStar.Path>> futures = new ArrayList<>(snaps.length - 1);
+        try {
+            if (snaps.length == 2) {
+                BidirectionalAStar.Path leg = routeLeg(snaps[0], snaps[1], routeProfile, deadline);
+                return leg == null ? null : Collections.singletonList(leg);
+            }
+            for (int i = 1; i < snaps.length; i++) {
+                RoadSnapIndex.Snap from = snaps[i - 1];
+                RoadSnapIndex.Snap to = snaps[i];
+                futures.add(LEG_EXECUTOR.submit(() -> routeLeg(from, to, routeProfile, deadline)));
+            }
+            List<BidirectionalAStar.Path> legs = new ArrayList<>(futures.size());
+            for (Future<BidirectionalAStar.Path> future : futures) {
+                BidirectionalAStar.Path leg = deadline == null ? future.get()
+                        : future.get(deadline.remainingMillis(), TimeUnit.MILLISECONDS);
+                if (leg == null) {
+                    return null;
+                }
+                legs.add(leg);
+            }
+            return legs;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException | TimeoutException e) {
+            return null;
+        } finally {
+            for (Future<BidirectionalAStar.Path> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private BidirectionalAStar.Path routeLeg(RoadSnapIndex.Snap from, RoadSnapIndex.Snap to,
+                                            RoutingAPI.RoutingProfile routeProfile, RoutingDeadline deadline)
+            throws InterruptedException {
+        BidirectionalAStar search = searches.borrow();
+        try {
+            return search.route(from.getNearerNode(), to.getNearerNode(), routeProfile, deadline);
+        } finally {
+            searches.release(search);
+        }
+    }
+
+    /**
+     * Collects path points, merging each one into the previous when they are within
+     * {@link #NODE_MERGE_METERS}, and sums the distance as it goes.
+     */
+    private static class PathBuilder {
+        private double[] latitudes = new double[64];
+        private double[] longitudes = new double[64];
+        private int count;
+        private double meters;
+
+        void add(double latitude, double longitude) {
+            if (count > 0) {
+                double step = Point.haversineKm(latitudes[count - 1], longitudes[count - 1], latitude, longitude) * 1000;
+                if (step < NODE_MERGE_METERS) return;
+                meters += step;
+            }
+            if (count == latitudes.length) {
+                latitudes = Arrays.copyOf(latitudes, count * 2);
+                longitudes = Arrays.copyOf(longitudes, count * 2);
+            }
+            latitudes[count] = latitude;
+            longitudes[count] = longitude;
+            count++;
+        }
+
+        RouteResult toRouteResult() {
+            // A leg that snapped to one spot still needs two points
+            if (count == 1) {
+                latitudes[1] = latitudes[0];
+                longitudes[1] = longitudes[0];
+                count = 2;
+            }
+            return RouteResult.fromArrays(latitudes, longitudes, null, count, 0, 0, meters);
+        }
+    }
+
+    public long getLegsRouted() { return legsRouted.get(); }
+    public long getFallbacks() { return fallbacks.get(); }
+
+    public String describeStats() {
+        long legs = legsRouted.get();
+        return String.format("legs=%d, fallbacks=%d, avg %.2f ms per leg, %s", legs, fallbacks.get(),
+                legs == 0 ? 0.0 : routingNanos.get() / 1e6 / legs, searches.describeStats());
+    }
+
+
+
+    /**
+     * Up to {@code size} searchers, created on first use; borrowing blocks while all are busy.
+     */
+    private static class SearchPool {
+        private final RoadGraph graph;
+        private final int size;
+        private final BlockingQueue<BidirectionalAStar> idle;
+        private final List<BidirectionalAStar> created = new ArrayList<>();
+
+        SearchPool(RoadGraph graph, int size) {
+            this.graph = graph;
+            this.size = size;
+            this.idle = new ArrayBlockingQueue<>(size);
+        }
+
+        BidirectionalAStar borrow() throws InterruptedException {
+            BidirectionalAStar search = idle.poll();
+            if (search != null) return search;
+            synchronized (created) {
+                if (created.size() < size) {
+                    search = new BidirectionalAStar(graph);
+                    created.add(search);
+                    return search;
+                }
+            }
+            return idle.take();
+        }
+
+        void release(BidirectionalAStar search) {
+            idle.offer(search);
+        }
+
+        String describeStats() {
+            long queries = 0;
+            long settled = 0;
+            int count;
+            synchronized (created) {
+                count = created.size();
+                for (BidirectionalAStar search : created) {
+                    queries += search.getQueries();
+                    settled += search.getNodesSettled();
+                }
+            }
+            return String.format("%d searchers, queries=%d, settled nodes=%d (%.0f avg)", count, queries, settled,
+                    queries == 0 ? 0.0 : (double) settled / queries);
+        }
+    }
+}
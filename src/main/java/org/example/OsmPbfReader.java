@@ -0,0 +1,520 @@
+package org.example;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Imports the routable roads of an OpenStreetMap PBF extract into a {@link RoadGraph}.
+ *
+ * The file is read twice. The first pass keeps the node references and tags of every
+ * highway=* way we can route on. The second pass looks up coordinates only for the nodes
+ * those ways use. Both passes decode the protobuf wire format by hand over the inflated
+ * block bytes, so no node, way or edge becomes an object. Only raw and zlib blobs, and the
+ * OsmSchema-V0.6 / DenseNodes features, are supported, which covers the extracts published
+ * by Geofabrik and BBBike.
+ */
+public class OsmPbfReader {
+
+    private static final int MAX_HEADER_BYTES = 64 * 1024;
+    private static final int MAX_BLOB_BYTES = 32 * 1024 * 1024;
+
+    // Way data gathered in pass one: refs of all kept ways back to back
+    private long[] wayRefs = new long[1 << 16];
+    private int wayRefCount;
+    private int[] wayStart = new int[1 << 12];
+    private byte[] wayClass = new byte[1 << 12];
+    private byte[] wayOneway = new byte[1 << 12];
+    private int wayCount;
+
+    // Node data gathered in pass two, indexed like the sorted distinct refs
+    private long[] nodeIds;
+    private int[] nodeLatE7;
+    private int[] nodeLonE7;
+    private boolean[] nodeFound;
+
+    private long blocksRead;
+    private long waysSeen;
+
+    private final Inflater inflater = new Inflater();
+    private byte[] blockBuffer = new byte[1 << 20];
+
+    private OsmPbfReader() {
+    }
+
+    public static RoadGraph read(Path file) throws IOException {
+        OsmPbfReader reader = new OsmPbfReader();
+        long start = System.nanoTime();
+        try {
+            try (InputStream in = Files.newInputStream(file)) {
+                reader.readFile(in, true);
+            }
+            reader.collectNodeIds();
+            try (InputStream in = Files.newInputStream(file)) {
+                reader.readFile(in, false);
+            }
+            RoadGraph graph = reader.buildGraph();
+            System.out.println(String.format("Imported %s: %d of %d ways, %s in %d ms", file.getFileName(),
+                    reader.wayCount, reader.waysSeen, graph.describe(), (System.nanoTime() - start) / 1_000_000));
+            return graph;
+        } finally {
+            reader.inflater.end();
+        }
+    }
+
+    /**
+     * Reads an extract held in memory, e.g. one built by a test.
+     */
+    static RoadGraph read(byte[] data) throws IOException {
+        OsmPbfReader reader = new OsmPbfReader();
+        try {
+            reader.readFile(new ByteArrayInputStream(data), true);
+            reader.collectNodeIds();
+            reader.readFile(new ByteArrayInputStream(data), false);
+            return reader.buildGraph();
+        } finally {
+            reader.inflater.end();
+        }
+    }
+
+
+
+    private void readFile(InputStream raw, boolean waysPass) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(raw, 1 << 16));
+        byte[] headerBytes = new byte[MAX_HEADER_BYTES];
+        byte[] blobBytes = new byte[1 << 16];
+
+        while (true) {
+            int headerLength;
+            try {
+                headerLength = in.readInt();
+            } catch (EOFException e) {
+                return;
+            }
+            if (headerLength <= 0 || headerLength > MAX_HEADER_BYTES) {
+                throw new IOException("Invalid PBF blob header length " + headerLength);
+            }
+            in.readFully(headerBytes, 0, headerLength);
+
+            String type = null;
+            int dataSize = -1;
+            ProtoReader header = new ProtoReader(headerBytes, 0, headerLength);
+            while (header.next()) {
+                if (header.field() == 1) type = header.readString();
+                else if (header.field() == 3) dataSize = (int) header.readVarint();
+                else header.skip();
+            }
+            if (dataSize < 0 || dataSize > MAX_BLOB_BYTES) {
+                throw new IOException("Invalid PBF blob size " + dataSize);
+            }
+            if (blobBytes.length < dataSize) blobBytes = new byte[dataSize];
+            in.readFully(blobBytes, 0, dataSize);
+
+            int blockLength = inflateBlob(blobBytes, dataSize);
+            if ("OSMHeader".equals(type)) {
+                checkHeader(blockBuffer, blockLength);
+            } else if ("OSMData".equals(type)) {
+                blocksRead++;
+                readPrimitiveBlock(blockBuffer, blockLength, waysPass);
+            }
+        }
+    }
+
+    /**
+     * Unpacks a Blob into {@link #blockBuffer}.
+     *
+     * @return the number of block bytes
+     */
+    private int inflateBlob(byte[] blob, int length) throws IOException {
+        ProtoReader reader = new ProtoReader(blob, 0, length);
+        int rawSize = -1;
+        int dataOffset = -1;
+        int dataLength = 0;
+        boolean compressed = false;
+        while (reader.next()) {
+            switch (reader.field()) {
+                case 1:
+                    dataLength = reader.readLengthDelimited();
+                    dataOffset = reader.position() - dataLength;
+                    compressed = false;
+                    break;
+                case 2:
+                    rawSize = (int) reader.readVarint();
+                    break;
+                case 3:
+                    dataLength = reader.readLengthDelimited();
+                    dataOffset = reader.position() - dataLength;
+                    compressed = true;
+                    break;
+                case 4: case 5: case 6: case 7:
+                    throw new IOException("Unsupported PBF compression (field " + reader.field() + ")");
+                default:
+                    reader.skip();
+            }
+        }
+        if (dataOffset < 0) throw new IOException("PBF blob without data");
+
+        if (!compressed) {
+            ensureBlockCapacity(dataLength);
+            System.arraycopy(blob, dataOffset, blockBuffer, 0, dataLength);
+            return dataLength;
+        }
+        if (rawSize < 0 || rawSize > MAX_BLOB_BYTES) throw new IOException("Invalid PBF raw size " + rawSize);
+        ensureBlockCapacity(rawSize);
+        inflater.reset();
+        inflater.setInput(blob, dataOffset, dataLength);
+        try {
+            int inflated = 0;
+            while (inflated < rawSize) {
+                int n = inflater.inflate(blockBuffer, inflated, rawSize - inflated);
+                if (n == 0 && (inflater.finished() || inflater.needsInput())) break;
+                inflated += n;
+            }
+            if (inflated != rawSize) throw new IOException("PBF blob inflated to " + inflated + " of " + rawSize + " bytes");
+            return rawSize;
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt zlib data in PBF blob", e);
+        }
+    }
+
+    private void ensureBlockCapacity(int length) {
+        if (blockBuffer.length < length) blockBuffer = new byte[Math.max(length, blockBuffer.length * 2)];
+    }
+
+    private static void checkHeader(byte[] block, int length) throws IOException {
+        ProtoReader reader = new ProtoReader(block, 0, length);
+        while (reader.next()) {
+            if (reader.field() == 4) {
+                String feature = reader.readString();
+                if (!"OsmSchema-V0.6".equals(feature) && !"DenseNodes".equals(feature)) {
+                    throw new IOException("Unsupported PBF feature " + feature);
+                }
+            } else {
+                reader.skip();
+            }
+        }
+    }
+
+
+
+    private void readPrimitiveBlock(byte[] block, int length, boolean waysPass) throws IOException {
+        // Block-level fields come after the groups in practice, so find them first
+        long granularity = 100;
+        long latOffset = 0;
+        long lonOffset = 0;
+        int stringTableOffset = -1;
+        int stringTableLength = 0;
+        ProtoReader reader = new ProtoReader(block, 0, length);
+        while (reader.next()) {
+            switch (reader.field()) {
+                case 1:
+                    stringTableLength = reader.readLengthDelimited();
+                    stringTableOffset = reader.position() - stringTableLength;
+                    break;
+                case 17: granularity = reader.readVarint(); break;
+                case 19: latOffset = reader.readVarint(); break;
+                case 20: lonOffset = reader.readVarint(); break;
+                default: reader.skip();
+            }
+        }
+
+        String[] strings = waysPass && stringTableOffset >= 0
+                ? readStringTable(block, stringTableOffset, stringTableLength) : null;
+
+        reader = new ProtoReader(block, 0, length);
+        while (reader.next()) {
+            if (reader.field() != 2) {
+                reader.skip();
+                continue;
+            }
+            int groupLength = reader.readLengthDelimited();
+            ProtoReader group = new ProtoReader(block, reader.position() - groupLength, groupLength);
+            while (group.next()) {
+                int field = group.field();
+                if (waysPass && field == 3) {
+                    int wayLength = group.readLengthDelimited();
+                    readWay(block, group.position() - wayLength, wayLength, strings);
+                } else if (!waysPass && field == 2) {
+                    int denseLength = group.readLengthDelimited();
+                    readDenseNodes(block, group.position() - denseLength, denseLength, granularity, latOffset, lonOffset);
+                } else if (!waysPass && field == 1) {
+                    int nodeLength = group.readLengthDelimited();
+                    readNode(block, group.position() - nodeLength, nodeLength, granularity, latOffset, lonOffset);
+                } else {
+                    group.skip();
+                }
+            }
+        }
+    }
+
+    private static String[] readStringTable(byte[] block, int offset, int length) throws IOException {
+        ProtoReader reader = new ProtoReader(block, offset, length);
+        int count = 0;
+        while (reader.next()) {
+            reader.skip();
+            count++;
+        }
+        String[] strings = new String[count];
+        reader = new ProtoReader(block, offset, length);
+        for (int i = 0; reader.next(); i++) {
+            strings[i] = reader.readString();
+        }
+        return strings;
+    }
+
+    private void readWay(byte[] block, int offset, int length, String[] strings) throws IOException {
+        waysSeen++;
+        int keysOffset = -1, keysLength = 0, valsOffset = -1, valsLength = 0, refsOffset = -1, refsLength = 0;
+        ProtoReader reader = new ProtoReader(block, offset, length);
+        while (reader.next()) {
+            switch (reader.field()) {
+                case 2: keysLength = reader.readLengthDelimited(); keysOffset = reader.position() - keysLength; break;
+                case 3: valsLength = reader.readLengthDelimited(); valsOffset = reader.position() - valsLength; break;
+                case 8: refsLength = reader.readLengthDelimited(); refsOffset = reader.position() - refsLength; break;
+                default: reader.skip();
+            }
+        }
+        if (keysOffset < 0 || refsOffset < 0 || strings == null) return;
+
+        RoadGraph.RoadClass roadClass = null;
+        int oneway = 0;
+        boolean excluded = false;
+        ProtoReader keys = new ProtoReader(block, keysOffset, keysLength);
+        ProtoReader vals = new ProtoReader(block, valsOffset, valsLength);
+        while (keys.hasMore() && vals.hasMore()) {
+            String key = strings[(int) keys.readVarint()];
+            String value = strings[(int) vals.readVarint()];
+            switch (key) {
+                case "highway":
+                    roadClass = RoadGraph.RoadClass.fromHighwayTag(value);
+                    break;
+                case "oneway":
+                    if ("yes".equals(value) || "true".equals(value) || "1".equals(value)) oneway = 1;
+                    else if ("-1".equals(value) || "reverse".equals(value)) oneway = -1;
+                    break;
+                case "junction":
+                    if (("roundabout".equals(value) || "circular".equals(value)) && oneway == 0) oneway = 1;
+                    break;
+                case "area":
+                    excluded |= "yes".equals(value);
+                    break;
+                case "access":
+                    excluded |= "no".equals(value) || "private".equals(value);
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (roadClass == null || excluded) return;
+
+        if (wayCount == wayStart.length) {
+            wayStart = Arrays.copyOf(wayStart, wayCount * 2);
+            wayClass = Arrays.copyOf(wayClass, wayCount * 2);
+            wayOneway = Arrays.copyOf(wayOneway, wayCount * 2);
+        }
+        wayStart[wayCount] = wayRefCount;
+        wayClass[wayCount] = (byte) roadClass.ordinal();
+        wayOneway[wayCount] = (byte) oneway;
+        wayCount++;
+
+        ProtoReader refs = new ProtoReader(block, refsOffset, refsLength);
+        long id = 0;
+        while (refs.hasMore()) {
+            id += refs.readSignedVarint();
+            if (wayRefCount == wayRefs.length) wayRefs = Arrays.copyOf(wayRefs, wayRefCount * 2);
+            wayRefs[wayRefCount++] = id;
+        }
+    }
+
+    private void collectNodeIds() {
+        long[] sorted = Arrays.copyOf(wayRefs, wayRefCount);
+        Arrays.sort(sorted);
+        int distinct = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) sorted[distinct++] = sorted[i];
+        }
+        nodeIds = Arrays.copyOf(sorted, distinct);
+        nodeLatE7 = new int[distinct];
+        nodeLonE7 = new int[distinct];
+        nodeFound = new boolean[distinct];
+    }
+
+    private void readDenseNodes(byte[] block, int offset, int length, long granularity, long latOffset,
+                                long lonOffset) throws IOException {
+        int idsOffset = -1, idsLength = 0, latsOffset = -1, latsLength = 0, lonsOffset = -1, lonsLength = 0;
+        ProtoReader reader = new ProtoReader(block, offset, length);
+        while (reader.next()) {
+            switch (reader.field()) {
+                case 1: idsLength = reader.readLengthDelimited(); idsOffset = reader.position() - idsLength; break;
+                case 8: latsLength = reader.readLengthDelimited(); latsOffset = reader.position() - latsLength; break;
+                case 9: lonsLength = reader.readLengthDelimited(); lonsOffset = reader.position() - lonsLength; break;
+                default: reader.skip();
+            }
+        }
+        if (idsOffset < 0 || latsOffset < 0 || lonsOffset < 0) return;
+
+        ProtoReader ids = new ProtoReader(block, idsOffset, idsLength);
+        ProtoReader lats = new ProtoReader(block, latsOffset, latsLength);
+        ProtoReader lons = new ProtoReader(block, lonsOffset, lonsLength);
+        long id = 0, lat = 0, lon = 0;
+        while (ids.hasMore()) {
+            id += ids.readSignedVarint();
+            lat += lats.readSignedVarint();
+            lon += lons.readSignedVarint();
+            storeNode(id, lat, lon, granularity, latOffset, lonOffset);
+        }
+    }
+
+    private void readNode(byte[] block, int offset, int length, long granularity, long latOffset,
+                          long lonOffset) throws IOException {
+        long id = 0, lat = 0, lon = 0;
+        ProtoReader reader = new ProtoReader(block, offset, length);
+        while (reader.next()) {
+            switch (reader.field()) {
+                case 1: id = reader.readSignedVarint(); break;
+                case 8: lat = reader.readSignedVarint(); break;
+                case 9: lon = reader.readSignedVarint(); break;
+                default: reader.skip();
+            }
+        }
+        storeNode(id, lat, lon, granularity, latOffset, lonOffset);
+    }
+
+    private void storeNode(long id, long lat, long lon, long granularity, long latOffset, long lonOffset) {
+        int index = Arrays.binarySearch(nodeIds, id);
+        if (index < 0) return;
+        // Coordinates are in nanodegrees; the graph keeps 1e-7 degrees
+        nodeLatE7[index] = (int) ((latOffset + granularity * lat) / 100);
+        nodeLonE7[index] = (int) ((lonOffset + granularity * lon) / 100);
+        nodeFound[index] = true;
+    }
+
+    private RoadGraph buildGraph() {
+        RoadGraph.Builder builder = new RoadGraph.Builder();
+        // Most way nodes only bend the road; searches then settle the junctions alone
+        builder.setCollapseShapeNodes(true);
+        int[] graphNode = new int[nodeIds.length];
+        Arrays.fill(graphNode, -1);
+        RoadGraph.RoadClass[] classes = RoadGraph.RoadClass.values();
+
+        for (int w = 0; w < wayCount; w++) {
+            int end = w + 1 < wayCount ? wayStart[w + 1] : wayRefCount;
+            int previous = -1;
+            for (int r = wayStart[w]; r < end; r++) {
+                int index = Arrays.binarySearch(nodeIds, wayRefs[r]);
+                if (!nodeFound[index]) {
+                    // Node outside the extract: the way is cut here
+                    previous = -1;
+                    continue;
+                }
+                // Nodes only enter the graph with their first segment, so cut ends leave no strays
+                if (previous >= 0) {
+                    builder.addSegment(graphNodeFor(builder, graphNode, previous), graphNodeFor(builder, graphNode, index),
+                            classes[wayClass[w]], wayOneway[w]);
+                }
+                previous = index;
+            }
+        }
+        return builder.build();
+    }
+
+    private int graphNodeFor(RoadGraph.Builder builder, int[] graphNode, int index) {
+        if (graphNode[index] < 0) graphNode[index] = builder.addNodeE7(nodeLatE7[index], nodeLonE7[index]);
+        return graphNode[index];
+    }
+
+
+
+    /**
+     * Minimal protobuf wire-format cursor over a byte range.
+     */
+    static class ProtoReader {
+        private final byte[] data;
+        private int position;
+        private final int limit;
+        private int field;
+        private int wireType;
+
+        ProtoReader(byte[] data, int offset, int length) {
+            this.data = data;
+            this.position = offset;
+            this.limit = offset + length;
+        }
+
+        boolean hasMore() {
+            return position < limit;
+        }
+
+        /**
+         * Reads the next field key.
+         * @return false at the end of the range
+         */
+        boolean next() throws IOException {
+            if (position >= limit) return false;
+            long key = readVarint();
+            field = (int) (key >>> 3);
+            wireType = (int) (key & 7);
+            return true;
+        }
+
+        int field() {
+            return field;
+        }
+
+        int position() {
+            return position;
+        }
+
+        long readVarint() throws IOException {
+            long result = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (position >= limit) throw new EOFException("Truncated protobuf varint");
+                byte b = data[position++];
+                result |= (long) (b & 0x7f) << shift;
+                if (b >= 0) return result;
+            }
+            throw new IOException("Malformed protobuf varint");
+        }
+
+        long readSignedVarint() throws IOException {
+            long value = readVarint();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        /**
+         * Skips over a length-delimited value.
+         * @return its length; it ends at {@link #position()}
+         */
+        int readLengthDelimited() throws IOException {
+            int length = (int) readVarint();
+            if (length < 0 || position + length > limit) throw new EOFException("Truncated protobuf field");
+            position += length;
+            return length;
+        }
+
+        String readString() throws IOException {
+            int length = readLengthDelimited();
+            return new String(data, position - length, length, StandardCharsets.UTF_8);
+        }
+
+        void skip() throws IOException {
+            switch (wireType) {
+                case 0: readVarint(); break;
+                case 1: position += 8; break;
+                case 2: readLengthDelimited(); break;
+                case 5: position += 4; break;
+                default: throw new IOException("Unsupported protobuf wire type " + wireType);
+            }
+            if (position > limit) throw new EOFException("Truncated protobuf field");
+        }
+    }
+}
@@ -46,11 +46,18 @@ public class Point {
 
 
     public double distanceBetweenPointsUsingHaversineFormula(Point other) {
+        return haversineKm(this.getLatitude(), this.getLongitude(), other.getLatitude(), other.getLongitude());
+    }
+
+    /**
+     * Great-circle distance in km between two coordinates, without creating Points.
+     */
+    public static double haversineKm(double fromLat, double fromLon, double toLat, double toLon) {
         double R = 6371; // Earth's radius in km
-        double lat1 = Math.toRadians(this.getLatitude());
-        double lat2 = Math.toRadians(other.getLatitude());
-        double dLat = Math.toRadians(other.getLatitude() - this.getLatitude());
-        double dLon = Math.toRadians(other.getLongitude() - this.getLongitude());
+        double lat1 = Math.toRadians(fromLat);
+        double lat2 = Math.toRadians(toLat);
+        double dLat = Math.toRadians(toLat - fromLat);
+        double dLon = Math.toRadians(toLon - fromLon);
 
         double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) +
                 Math.cos(lat1) * Math.cos(lat2) *
@@ -0,0 +1,248 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Single-pass parser for OpenRouteService JSON direction responses, whose geometry is an
+ * encoded polyline (/v2/directions/{profile}/json).
+ *
+ * The geometry string is streamed byte by byte from the {@link JsonByteReader} into the
+ * polyline decoder, which writes coordinates straight into primitive arrays; no String is
+ * built for it. Points use the usual 1e-5 degree precision, and with elevation requested each
+ * point carries a third value in centimetres, as ORS encodes it.
+ */
+public class PolylineRouteParser implements JsonByteReader.ByteSink {
+
+    private static final byte[] KEY_ERROR = JsonByteReader.keyBytes("error");
+    private static final byte[] KEY_ROUTES = JsonByteReader.keyBytes("routes");
+    private static final byte[] KEY_SUMMARY = JsonByteReader.keyBytes("summary");
+    private static final byte[] KEY_GEOMETRY = JsonByteReader.keyBytes("geometry");
+    private static final byte[] KEY_DISTANCE = JsonByteReader.keyBytes("distance");
+    private static final byte[] KEY_ASCENT = JsonByteReader.keyBytes("ascent");
+    private static final byte[] KEY_DESCENT = JsonByteReader.keyBytes("descent");
+
+    private static final int INITIAL_CAPACITY = 256;
+    private static final double COORDINATE_SCALE = 1e5;
+    private static final double ELEVATION_SCALE = 100;
+
+    private final int dimensions;
+
+    private double[] latitudes = new double[INITIAL_CAPACITY];
+    private double[] longitudes = new double[INITIAL_CAPACITY];
+    private float[] elevations;
+    private int pointCount;
+    private boolean geometryFound;
+
+    // Decoder state, carried across bytes
+    private final long[] totals = new long[3];
+    private int component;
+    private long chunk;
+    private int shift;
+
+    private double ascent;
+    private double descent;
+    private double distance;
+    private boolean errorField;
+    private long bytesParsed;
+
+    private PolylineRouteParser(boolean withElevation) {
+        this.dimensions = withElevation ? 3 : 2;
+        if (withElevation) elevations = new float[INITIAL_CAPACITY];
+    }
+
+    /**
+     * @param withElevation whether the request asked for elevation, which makes the polyline 3D
+     */
+    public static PolylineRouteParser parse(InputStream in, boolean withElevation) throws IOException {
+        PolylineRouteParser parser = new PolylineRouteParser(withElevation);
+        parser.parseDocument(new JsonByteReader(in));
+        return parser;
+    }
+
+    public static PolylineRouteParser parse(byte[] data, boolean withElevation) throws IOException {
+        PolylineRouteParser parser = new PolylineRouteParser(withElevation);
+        parser.parseDocument(new JsonByteReader(data, 0, data.length));
+        return parser;
+    }
+
+    /**
+     * Decodes a bare polyline string, e.g. one stored outside a response.
+     */
+    public static PolylineRouteParser decode(String polyline, boolean withElevation) throws IOException {
+        PolylineRouteParser parser = new PolylineRouteParser(withElevation);
+        for (int i = 0; i < polyline.length(); i++) {
+            parser.accept(polyline.charAt(i));
+        }
+        parser.finishGeometry();
+        return parser;
+    }
+
+
+
+    private void parseDocument(JsonByteReader reader) throws IOException {
+        if (reader.peek() == JsonByteReader.ValueType.OBJECT) {
+            reader.beginObject();
+            while (reader.nextField()) {
+                if (reader.keyEquals(KEY_ERROR)) {
+                    errorField = true;
+                    reader.skipValue();
+                } else if (reader.keyEquals(KEY_ROUTES) && reader.peek() == JsonByteReader.ValueType.ARRAY) {
+                    parseRoutes(reader);
+                } else {
+                    reader.skipValue();
+                }
+            }
+        } else {
+            reader.skipValue();
+        }
+        bytesParsed = reader.getBytesConsumed();
+    }
+
+    /**
+     * Reads the first route and skips any alternatives.
+     */
+    private void parseRoutes(JsonByteReader reader) throws IOException {
+        reader.beginArray();
+        boolean first = true;
+        while (reader.nextElement()) {
+            if (first && reader.peek() == JsonByteReader.ValueType.OBJECT) {
+                parseRoute(reader);
+            } else {
+                reader.skipValue();
+            }
+            first = false;
+        }
+    }
+
+    private void parseRoute(JsonByteReader reader) throws IOException {
+        reader.beginObject();
+        while (reader.nextField()) {
+            JsonByteReader.ValueType type = reader.peek();
+            if (reader.keyEquals(KEY_SUMMARY) && type == JsonByteReader.ValueType.OBJECT) {
+                parseSummary(reader);
+            } else if (reader.keyEquals(KEY_GEOMETRY) && type == JsonByteReader.ValueType.STRING && !geometryFound) {
+                reader.readStringBytes(this);
+                finishGeometry();
+                geometryFound = true;
+            } else {
+                reader.skipValue();
+            }
+        }
+    }
+
+    private void parseSummary(JsonByteReader reader) throws IOException {
+        reader.beginObject();
+        while (reader.nextField()) {
+            if (reader.peek() != JsonByteReader.ValueType.NUMBER) {
+                reader.skipValue();
+            } else if (reader.keyEquals(KEY_DISTANCE)) {
+                distance = reader.nextDouble();
+            } else if (reader.keyEquals(KEY_ASCENT)) {
+                ascent = reader.nextDouble();
+            } else if (reader.keyEquals(KEY_DESCENT)) {
+                descent = reader.nextDouble();
+            } else {
+                reader.skipValue();
+            }
+        }
+    }
+
+    /**
+     * Feeds one polyline character: 5-bit chunks, low bits first, continuation flag 0x20,
+     * zigzag sign in the lowest bit of each delta.
+     */
+    @Override
+    public void accept(int c) throws IOException {
+        int value = c - 63;
+        if (value < 0 || value > 63) {
+            throw new IOException("Invalid polyline character '" + (char) c + "'");
+        }
+        if (shift > 60) {
+            throw new IOException("Polyline value too long");
+        }
+        chunk |= (long) (value & 0x1f) << shift;
+        shift += 5;
+        if (value >= 0x20) return;
+
+        long delta = (chunk & 1) != 0 ? ~(chunk >> 1) : chunk >> 1;
+        totals[component] += delta;
+        chunk = 0;
+        shift = 0;
+        if (++component == dimensions) {
+            component = 0;
+            appendPoint();
+        }
+    }
+
+    private void finishGeometry() throws IOException {
+        if (component != 0 || shift != 0) {
+            throw new IOException("Polyline ends in the middle of a point");
+        }
+    }
+
+    private void appendPoint() {
+        if (pointCount == latitudes.length) {
+            int newCapacity = latitudes.length * 2;
+            latitudes = Arrays.copyOf(latitudes, newCapacity);
+            longitudes = Arrays.copyOf(longitudes, newCapacity);
+            if (elevations != null) elevations = Arrays.copyOf(elevations, newCapacity);
+        }
+        latitudes[pointCount] = totals[0] / COORDINATE_SCALE;
+        longitudes[pointCount] = totals[1] / COORDINATE_SCALE;
+        if (elevations != null) elevations[pointCount] = (float) (totals[2] / ELEVATION_SCALE);
+        pointCount++;
+    }
+
+
+
+    public int getPointCount() {
+        return pointCount;
+    }
+
+    public double getLatitude(int index) {
+        return latitudes[index];
+    }
+
+    public double getLongitude(int index) {
+        return longitudes[index];
+    }
+
+    public double getElevation(int index) {
+        return elevations == null ? Double.NaN : elevations[index];
+    }
+
+    public boolean hasElevation() {
+        return elevations != null;
+    }
+
+    public double getAscent() {
+        return ascent;
+    }
+
+    public double getDescent() {
+        return descent;
+    }
+
+    public double getDistance() {
+        return distance;
+    }
+
+    public boolean hasErrorField() {
+        return errorField;
+    }
+
+    public long getBytesParsed() {
+        return bytesParsed;
+    }
+
+    /**
+     * Packed result with trimmed copies of the decoded arrays.
+     */
+    public RouteResult toRouteResult() {
+        return RouteResult.fromArrays(Arrays.copyOf(latitudes, pointCount), Arrays.copyOf(longitudes, pointCount),
+                elevations == null ? null : Arrays.copyOf(elevations, pointCount), pointCount,
+                ascent, descent, distance);
+    }
+}
@@ -0,0 +1,202 @@
+package org.example;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Circuit breaker for one routing profile.
+ *
+ * CLOSED: requests go through and their outcomes fill a sliding window. When enough of the
+ * window failed, or was slower than the slow-call threshold, the breaker opens.
+ * OPEN: requests are refused straight away until the open period has passed.
+ * HALF_OPEN: a single trial request is let through; a fast success closes the breaker again,
+ * anything else re-opens it.
+ */
+public class ProfileCircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    /**
+     * Thrown instead of sending a request while the breaker is open.
+     */
+    public static class CircuitOpenException extends Exception {
+        public CircuitOpenException(String message) {
+            super(message);
+        }
+    }
+
+    private final String name;
+
+    private final boolean[] failedWindow;
+    private final boolean[] slowWindow;
+    private int windowNext;
+    private int windowSize;
+
+    private volatile int minimumCalls = 5;
+    private volatile double failureRateThreshold = 0.5;
+    private volatile double slowCallRateThreshold = 0.5;
+    private volatile long slowCallMillis = 4000;
+    private volatile long openMillis = 30_000;
+
+    private State state = State.CLOSED;
+    private long openedAtNanos;
+    private boolean trialInFlight;
+
+    private final AtomicLong callsPermitted = new AtomicLong();
+    private final AtomicLong callsRejected = new AtomicLong();
+    private final AtomicLong timesOpened = new AtomicLong();
+
+    public ProfileCircuitBreaker(String name) {
+        this(name, 10);
+    }
+
+    public ProfileCircuitBreaker(String name, int windowCapacity) {
+        if (windowCapacity <= 0) throw new IllegalArgumentException("window must be positive");
+        this.name = name;
+        this.failedWindow = new boolean[windowCapacity];
+        this.slowWindow = new boolean[windowCapacity];
+    }
+
+    public String getName() {
+        return name;
+    }
+
+
+    /**
+     * @return true if a request may be sent now; every permitted request must be followed by
+     *         exactly one of recordSuccess, recordFailure or recordIgnored
+     */
+    public synchronized boolean tryAcquirePermission() {
+        if (state == State.OPEN && System.nanoTime() - openedAtNanos >= TimeUnit.MILLISECONDS.toNanos(openMillis)) {
+            state = State.HALF_OPEN;
+            trialInFlight = false;
+        }
+        if (state == State.OPEN || (state == State.HALF_OPEN && trialInFlight)) {
+            callsRejected.incrementAndGet();
+            return false;
+        }
+        if (state == State.HALF_OPEN) trialInFlight = true;
+        callsPermitted.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Like tryAcquirePermission, but throws when refused.
+     */
+    public void acquirePermission() throws CircuitOpenException {
+        if (!tryAcquirePermission()) {
+            throw new CircuitOpenException("Circuit for " + name + " is open, skipping (" + describeState() + ")");
+        }
+    }
+
+    public synchronized void recordSuccess(long latencyMillis) {
+        boolean slow = latencyMillis >= slowCallMillis;
+        if (state == State.HALF_OPEN) {
+            if (slow) open();
+            else close();
+            return;
+        }
+        record(false, slow);
+    }
+
+    public synchronized void recordFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+            return;
+        }
+        record(true, false);
+    }
+
+    /**
+     * For outcomes that say nothing about the profile's health (cancelled, quota, bad input).
+     */
+    public synchronized void recordIgnored() {
+        if (state == State.HALF_OPEN) trialInFlight = false;
+    }
+
+    private void record(boolean failed, boolean slow) {
+        if (state != State.CLOSED) return;
+        failedWindow[windowNext] = failed;
+        slowWindow[windowNext] = slow;
+        windowNext = (windowNext + 1) % failedWindow.length;
+        if (windowSize < failedWindow.length) windowSize++;
+
+        if (windowSize >= minimumCalls &&
+                (getFailureRateLocked() >= failureRateThreshold || getSlowCallRateLocked() >= slowCallRateThreshold)) {
+            open();
+        }
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAtNanos = System.nanoTime();
+        trialInFlight = false;
+        timesOpened.incrementAndGet();
+        System.out.println("Circuit for " + name + " opened for " + openMillis + " ms");
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        trialInFlight = false;
+        windowNext = 0;
+        windowSize = 0;
+        System.out.println("Circuit for " + name + " closed again");
+    }
+
+
+    public synchronized State getState() {
+        if (state == State.OPEN && System.nanoTime() - openedAtNanos >= TimeUnit.MILLISECONDS.toNanos(openMillis)) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    public synchronized double getFailureRate() {
+        return getFailureRateLocked();
+    }
+
+    public synchronized double getSlowCallRate() {
+        return getSlowCallRateLocked();
+    }
+
+    private double getFailureRateLocked() {
+        return rate(failedWindow);
+    }
+
+    private double getSlowCallRateLocked() {
+        return rate(slowWindow);
+    }
+
+    private double rate(boolean[] window) {
+        if (windowSize == 0) return 0;
+        int count = 0;
+        for (int i = 0; i < windowSize; i++) {
+            if (window[i]) count++;
+        }
+        return (double) count / windowSize;
+    }
+
+    public void setThresholds(int minimumCalls, double failureRate, double slowCallRate, long slowCallMillis) {
+        if (minimumCalls <= 0 || minimumCalls > failedWindow.length) {
+            throw new IllegalArgumentException("minimumCalls must be between 1 and the window size");
+        }
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRate;
+        this.slowCallRateThreshold = slowCallRate;
+        this.slowCallMillis = slowCallMillis;
+    }
+
+    public void setOpenMillis(long openMillis) {
+        this.openMillis = openMillis;
+    }
+
+    public long getCallsPermitted() { return callsPermitted.get(); }
+    public long getCallsRejected() { return callsRejected.get(); }
+    public long getTimesOpened() { return timesOpened.get(); }
+
+    public synchronized String describeState() {
+        return String.format("%s %s, failures=%.0f%%, slow=%.0f%% of last %d, permitted=%d, rejected=%d, opened=%d",
+                name, getState(), getFailureRateLocked() * 100, getSlowCallRateLocked() * 100, windowSize,
+                getCallsPermitted(), getCallsRejected(), getTimesOpened());
+    }
+}
@@ -0,0 +1,92 @@
+package org.example;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Transport that writes every exchange, with its timings, to a {@link RoutingTrafficLog}.
+ *
+ * The response body is read to the end before it is handed on, so the log records how long
+ * the network took separately from how long the caller then spends parsing. Requests that
+ * time out or fail are logged too, so a replay fails the same way.
+ */
+public class RecordingHttpTransport extends RoutingHttpTransport {
+
+    // The body is logged decoded, so these would describe bytes that are no longer there
+    private static final List<String> DROPPED_HEADERS = List.of("content-encoding", "content-length",
+            "transfer-encoding", "set-cookie");
+
+    private final RoutingTrafficLog.Writer log;
+    private final AtomicLong exchangesRecorded = new AtomicLong();
+    private final AtomicLong recordingFailures = new AtomicLong();
+
+    public RecordingHttpTransport(RoutingTrafficLog.Writer log) {
+        this.log = log;
+    }
+
+    @Override
+    public Response post(String url, String authorization, String jsonBody, Duration timeout)
+            throws IOException, InterruptedException {
+        long startedAtMillis = System.currentTimeMillis();
+        long start = System.nanoTime();
+        Response response;
+        byte[] body;
+        long headersNanos;
+        try {
+            response = super.post(url, authorization, jsonBody, timeout);
+            headersNanos = System.nanoTime() - start;
+            try (Response wire = response) {
+                body = wire.getBody().readAllBytes();
+            }
+        } catch (IOException e) {
+            int failure = e instanceof HttpTimeoutException ? RoutingTrafficLog.Exchange.FAILURE_TIMEOUT
+                    : RoutingTrafficLog.Exchange.FAILURE_IO;
+            record(RoutingTrafficLog.Exchange.failed(startedAtMillis, System.nanoTime() - start, url, jsonBody,
+                    failure, e.getMessage()));
+            throw e;
+        }
+        long bodyNanos = System.nanoTime() - start - headersNanos;
+
+        HttpHeaders headers = HttpHeaders.of(keptHeaders(response.getHeaders()), (name, value) -> true);
+        record(new RoutingTrafficLog.Exchange(startedAtMillis, headersNanos, bodyNanos, url, jsonBody,
+                response.getStatusCode(), response.getVersion(), headers.map(), body));
+        return new Response(response.getStatusCode(), response.getVersion(), headers, new ByteArrayInputStream(body));
+    }
+
+    private static Map<String, List<String>> keptHeaders(HttpHeaders headers) {
+        Map<String, List<String>> kept = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (Map.Entry<String, List<String>> header : headers.map().entrySet()) {
+            // HTTP/2 pseudo-headers such as :status are not real headers
+            if (header.getKey().startsWith(":") || DROPPED_HEADERS.contains(header.getKey().toLowerCase())) continue;
+            kept.put(header.getKey(), header.getValue());
+        }
+        return kept;
+    }
+
+    private void record(RoutingTrafficLog.Exchange exchange) {
+        try {
+            log.append(exchange);
+            exchangesRecorded.incrementAndGet();
+        } catch (IOException e) {
+            // Losing the capture must never break routing
+            recordingFailures.incrementAndGet();
+            System.err.println("Could not record routing exchange: " + e.getMessage());
+        }
+    }
+
+    public long getExchangesRecorded() { return exchangesRecorded.get(); }
+    public long getRecordingFailures() { return recordingFailures.get(); }
+
+    @Override
+    public String describeStats() {
+        return super.describeStats() + String.format(", recorded=%d (%d failed, %d B logged)",
+                exchangesRecorded.get(), recordingFailures.get(), log.getBytesWritten());
+    }
+}
@@ -1,5 +1,8 @@
 package org.example;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
 /**
  * Concrete State: Registering
  *
@@ -24,35 +27,86 @@ public class RegisteringState implements AuthState {
 
     public void processRegistration(AuthContext context) {
         System.out.println("Processing registration for user: " + username);
+        finishRegistration(context, register(context));
+    }
+
+    /**
+     * Like {@link #processRegistration}, but the lookup and insert run on the database thread
+     * and the outcome, with its listener callbacks, is applied on {@code callbackExecutor}.
+     */
+    public CompletableFuture<Void> processRegistrationAsync(AuthContext context, Executor callbackExecutor) {
+        System.out.println("Processing registration for user: " + username);
+        CompletableFuture<Outcome> outcome;
+        try {
+            outcome = context.getDatabase().submit(() -> register(context));
+        } catch (RuntimeException e) {
+            outcome = CompletableFuture.failedFuture(e);
+        }
+        return finishRegistrationWhenDone(context, outcome, callbackExecutor);
+    }
+
+    /**
+     * Applies the outcome on {@code callbackExecutor}. An outcome that failed outright fails the
+     * registration too, so the caller is never left waiting in this state.
+     */
+    CompletableFuture<Void> finishRegistrationWhenDone(AuthContext context, CompletableFuture<Outcome> outcome,
+                                                       Executor callbackExecutor) {
+        return outcome.handleAsync((result, error) -> {
+            if (error != null) {
+                System.err.println("Registration failed unexpectedly: " + error);
+                registrationFailed(context, "Failed to create account. Please try again.");
+            } else {
+                finishRegistration(context, result);
+            }
+            return null;
+        }, callbackExecutor);
+    }
 
+    /**
+     * Either the new user or the reason there is none.
+     */
+    static class Outcome {
+        final UserProfile user;
+        final String failureReason;
+
+        Outcome(UserProfile user, String failureReason) {
+            this.user = user;
+            this.failureReason = failureReason;
+        }
+    }
+
+    private Outcome register(AuthContext context) {
         if (!isUsernameValid()) {
-            registrationFailed(context, "Username must be at least " + MIN_USERNAME_LENGTH + " characters");
-            return;
+            return new Outcome(null, "Username must be at least " + MIN_USERNAME_LENGTH + " characters");
         }
 
         String trimmedUsername = username.trim();
 
         if (isUsernameTaken(context, trimmedUsername)) {
-            registrationFailed(context, "Username already taken");
-            return;
+            return new Outcome(null, "Username already taken");
         }
 
         if (!isPasswordValid()) {
-            registrationFailed(context, "Password must be at least " + MIN_PASSWORD_LENGTH + " characters");
-            return;
+            return new Outcome(null, "Password must be at least " + MIN_PASSWORD_LENGTH + " characters");
         }
 
         if (!doPasswordsMatch()) {
-            registrationFailed(context, "Passwords do not match");
-            return;
+            return new Outcome(null, "Passwords do not match");
         }
 
         UserProfile newUser = createUserInDatabase(context, trimmedUsername);
 
         if (newUser != null) {
-            registrationSucceeded(context, newUser);
+            return new Outcome(newUser, null);
+        }
+        return new Outcome(null, "Failed to create account. Please try again.");
+    }
+
+    private void finishRegistration(AuthContext context, Outcome outcome) {
+        if (outcome.user != null) {
+            registrationSucceeded(context, outcome.user);
         } else {
-            registrationFailed(context, "Failed to create account. Please try again.");
+            registrationFailed(context, outcome.failureReason);
         }
     }
 
@@ -0,0 +1,160 @@
+package org.example;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpTimeoutException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Transport that answers from a {@link RoutingTrafficLog} instead of the network, so a
+ * captured session can be run again against changed parsing, caching or rendering code.
+ *
+ * A request is matched on its path and body, ignoring the host, so a log captured against
+ * the public API also answers requests aimed at another base URL. Identical requests get
+ * their recorded answers in order, and the last one again once those run out. Each answer
+ * waits out the recorded time to headers and body, multiplied by the time scale: 1 for the
+ * original timing, 0 to answer at once. Recorded failures are thrown again after their
+ * recorded time.
+ */
+public class ReplayHttpTransport extends RoutingHttpTransport {
+
+    private final Map<String, Deque<RoutingTrafficLog.Exchange>> exchanges = new HashMap<>();
+    private final Map<String, RoutingTrafficLog.Exchange> lastServed = new HashMap<>();
+    private final double timeScale;
+
+    private final AtomicLong exchangesReplayed = new AtomicLong();
+    private final AtomicLong exchangesRepeated = new AtomicLong();
+    private final AtomicLong requestsUnmatched = new AtomicLong();
+
+    public ReplayHttpTransport(List<RoutingTrafficLog.Exchange> log, double timeScale) {
+        if (timeScale < 0 || Double.isNaN(timeScale)) throw new IllegalArgumentException("time scale " + timeScale);
+        this.timeScale = timeScale;
+        for (RoutingTrafficLog.Exchange exchange : log) {
+            exchanges.computeIfAbsent(key(exchange.getUrl(), exchange.getRequestBody()), k -> new ArrayDeque<>())
+                    .addLast(exchange);
+        }
+    }
+
+    public static ReplayHttpTransport fromFile(Path file, double timeScale) throws IOException {
+        return new ReplayHttpTransport(RoutingTrafficLog.readAll(file), timeScale);
+    }
+
+    private static String key(String url, String body) {
+        String path;
+        try {
+            path = URI.create(url).getPath();
+        } catch (IllegalArgumentException e) {
+            path = url;
+        }
+        return path + "\n" + body;
+    }
+
+    public double getTimeScale() {
+        return timeScale;
+    }
+
+    @Override
+    public Response post(String url, String authorization, String jsonBody, Duration timeout)
+            throws IOException, InterruptedException {
+        RoutingTrafficLog.Exchange exchange = next(key(url, jsonBody));
+        if (exchange == null) {
+            requestsUnmatched.incrementAndGet();
+            throw new IOException("No recorded exchange for POST " + url);
+        }
+
+        long headersNanos = scaled(exchange.getHeadersNanos());
+        if (exchange.isFailure() || headersNanos > timeout.toNanos()) {
+            // Give up where the real client would have: at the recorded failure or at the timeout
+            long waitNanos = Math.min(headersNanos, timeout.toNanos());
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+            if (exchange.getFailure() == RoutingTrafficLog.Exchange.FAILURE_IO && waitNanos == headersNanos) {
+                throw new IOException(exchange.getFailureMessage());
+            }
+            throw new HttpTimeoutException("replayed: " + (exchange.isFailure() ? exchange.getFailureMessage()
+                    : "request timed out"));
+        }
+
+        TimeUnit.NANOSECONDS.sleep(headersNanos);
+        HttpHeaders headers = HttpHeaders.of(exchange.getHeaders(), (name, value) -> true);
+        InputStream body = new DelayedInputStream(new ByteArrayInputStream(exchange.getResponseBody()),
+                scaled(exchange.getBodyNanos()));
+        return new Response(exchange.getStatusCode(), exchange.getVersion(), headers, body);
+    }
+
+    private synchronized RoutingTrafficLog.Exchange next(String key) {
+        Deque<RoutingTrafficLog.Exchange> queue = exchanges.get(key);
+        RoutingTrafficLog.Exchange exchange = queue == null ? null : queue.pollFirst();
+        if (exchange != null) {
+            lastServed.put(key, exchange);
+            exchangesReplayed.incrementAndGet();
+            return exchange;
+        }
+        exchange = lastServed.get(key);
+        if (exchange != null) exchangesRepeated.incrementAndGet();
+        return exchange;
+    }
+
+    private long scaled(long nanos) {
+        return (long) (nanos * timeScale);
+    }
+
+    public long getExchangesReplayed() { return exchangesReplayed.get(); }
+    /** Requests answered again with an answer that had already been used. */
+    public long getExchangesRepeated() { return exchangesRepeated.get(); }
+    public long getRequestsUnmatched() { return requestsUnmatched.get(); }
+
+    @Override
+    public String describeStats() {
+        return String.format("replayed=%d, repeated=%d, unmatched=%d at %.2fx recorded time",
+                exchangesReplayed.get(), exchangesRepeated.get(), requestsUnmatched.get(), timeScale);
+    }
+
+    /**
+     * Holds back the first read until the recorded body transfer time has passed.
+     */
+    private static class DelayedInputStream extends FilterInputStream {
+        private long delayNanos;
+
+        DelayedInputStream(InputStream in, long delayNanos) {
+            super(in);
+            this.delayNanos = delayNanos;
+        }
+
+        private void waitOnce() throws IOException {
+            if (delayNanos <= 0) return;
+            try {
+                TimeUnit.NANOSECONDS.sleep(delayNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("body read interrupted");
+            } finally {
+                delayNanos = 0;
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            waitOnce();
+            return super.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            waitOnce();
+            return super.read(b, off, len);
+        }
+    }
+}
@@ -0,0 +1,786 @@
+package org.example;
+
+import java.util.Arrays;
+
+/**
+ * Road network held in compressed sparse row form, for routing without the network.
+ *
+ * Nodes are stored as fixed-point coordinates (1e-7 degrees, as in OSM) and edges as
+ * parallel primitive arrays grouped by source node, with a second index of incoming edges
+ * for backward searches. Each edge carries its length, road class and a bit mask of the
+ * travel modes allowed along it, so one graph serves every routing profile. A uniform grid
+ * over the nodes answers nearest-node lookups.
+ *
+ * A builder may collapse shape nodes, the nodes that only bend a road between two junctions,
+ * into the edges that pass through them. Such an edge keeps its summed length and the index of
+ * its run of shape nodes, so searches only settle junctions while paths and snapping still
+ * follow the road's geometry. Shape nodes keep their indices and coordinates but have no
+ * edges of their own.
+ */
+public class RoadGraph {
+
+    public static final int ACCESS_CAR = 1;
+    public static final int ACCESS_BIKE = 2;
+    public static final int ACCESS_FOOT = 4;
+    private static final int ACCESS_ALL = ACCESS_CAR | ACCESS_BIKE | ACCESS_FOOT;
+
+    // Same earth radius as Point.haversineKm, so flat and edge distances agree
+    private static final double METERS_PER_DEGREE = 6_371_000 * Math.PI / 180;
+    private static final double E7 = 1e7;
+    private static final int MAX_GRID_CELLS = 4_000_000;
+
+    /**
+     * OSM highway classes we route on, with their car speed and who may use them.
+     */
+    public enum RoadClass {
+        MOTORWAY(110, ACCESS_CAR),
+        TRUNK(90, ACCESS_CAR | ACCESS_BIKE),
+        PRIMARY(65, ACCESS_ALL),
+        SECONDARY(55, ACCESS_ALL),
+        TERTIARY(45, ACCESS_ALL),
+        UNCLASSIFIED(35, ACCESS_ALL),
+        RESIDENTIAL(30, ACCESS_ALL),
+        LIVING_STREET(10, ACCESS_ALL),
+        SERVICE(15, ACCESS_ALL),
+        TRACK(0, ACCESS_BIKE | ACCESS_FOOT),
+        CYCLEWAY(0, ACCESS_BIKE | ACCESS_FOOT),
+        PATH(0, ACCESS_BIKE | ACCESS_FOOT),
+        FOOTWAY(0, ACCESS_FOOT),
+        STEPS(0, ACCESS_FOOT);
+
+        private static final RoadClass[] VALUES = values();
+
+        private final double carKmh;
+        private final int access;
+
+        RoadClass(double carKmh, int access) {
+            this.carKmh = carKmh;
+            this.access = access;
+        }
+
+        public int getAccess() {
+            return access;
+        }
+
+        /**
+         * Travel speed along this class of road for the profile, 0 if the profile may not use it.
+         */
+        public double speedKmh(RoutingAPI.RoutingProfile profile) {
+            if ((access & accessMaskFor(profile)) == 0) return 0;
+            switch (profile) {
+                case DRIVING_CAR: return carKmh;
+                case CYCLING_REGULAR: return this == TRACK || this == PATH ? 12 : 16;
+                default: return this == STEPS ? 3 : 5;
+            }
+        }
+
+        public static double maxSpeedKmh(RoutingAPI.RoutingProfile profile) {
+            double max = 0;
+            for (RoadClass roadClass : VALUES) {
+                max = Math.max(max, roadClass.speedKmh(profile));
+            }
+            return max;
+        }
+
+        /**
+         * @return the class for an OSM highway=* value, or null if it is not routable
+         */
+        public static RoadClass fromHighwayTag(String value) {
+            if (value == null) return null;
+            switch (value) {
+                case "motorway": case "motorway_link": return MOTORWAY;
+                case "trunk": case "trunk_link": return TRUNK;
+                case "primary": case "primary_link": return PRIMARY;
+                case "secondary": case "secondary_link": return SECONDARY;
+                case "tertiary": case "tertiary_link": return TERTIARY;
+                case "unclassified": case "road": return UNCLASSIFIED;
+                case "residential": return RESIDENTIAL;
+                case "living_street": return LIVING_STREET;
+                case "service": return SERVICE;
+                case "track": return TRACK;
+                case "cycleway": return CYCLEWAY;
+                case "path": case "bridleway": return PATH;
+                case "footway": case "pedestrian": return FOOTWAY;
+                case "steps": return STEPS;
+                default: return null;
+            }
+        }
+    }
+
+    public static int accessMaskFor(RoutingAPI.RoutingProfile profile) {
+        switch (profile) {
+            case DRIVING_CAR: return ACCESS_CAR;
+            case CYCLING_REGULAR: return ACCESS_BIKE;
+            default: return ACCESS_FOOT;
+        }
+    }
+
+    private final int nodeCount;
+    private final int[] latitudesE7;
+    private final int[] longitudesE7;
+
+    private final int[] firstEdge;
+    private final int[] edgeTarget;
+    private final float[] edgeMeters;
+    private final byte[] edgeClass;
+    private final byte[] edgeAccess;
+
+    private final int[] firstInEdge;
+    private final int[] inEdge;
+    private final int[] inEdgeSource;
+
+    // Null unless the builder collapsed shape nodes
+    private final Shapes shapes;
+
+    private final int minLatE7;
+    private final int minLonE7;
+    private final int cellSizeE7;
+    private final int gridColumns;
+    private final int gridRows;
+    private final int[] cellStart;
+    private final int[] cellNodes;
+    private final double metersPerDegreeLon;
+
+    private RoadGraph(int nodeCount, int[] latitudesE7, int[] longitudesE7, int[] firstEdge, int[] edgeTarget,
+                      float[] edgeMeters, byte[] edgeClass, byte[] edgeAccess,
+                      int[] firstInEdge, int[] inEdge, int[] inEdgeSource, Shapes shapes) {
+        this.nodeCount = nodeCount;
+        this.latitudesE7 = latitudesE7;
+        this.longitudesE7 = longitudesE7;
+        this.firstEdge = firstEdge;
+        this.edgeTarget = edgeTarget;
+        this.edgeMeters = edgeMeters;
+        this.edgeClass = edgeClass;
+        this.edgeAccess = edgeAccess;
+        this.firstInEdge = firstInEdge;
+        this.inEdge = inEdge;
+        this.inEdgeSource = inEdgeSource;
+        this.shapes = shapes;
+
+        int minLat = Integer.MAX_VALUE, maxLat = Integer.MIN_VALUE;
+        int minLon = Integer.MAX_VALUE, maxLon = Integer.MIN_VALUE;
+        for (int i = 0; i < nodeCount; i++) {
+            minLat = Math.min(minLat, latitudesE7[i]);
+            maxLat = Math.max(maxLat, latitudesE7[i]);
+            minLon = Math.min(minLon, longitudesE7[i]);
+            maxLon = Math.max(maxLon, longitudesE7[i]);
+        }
+        if (nodeCount == 0) {
+            minLat = maxLat = minLon = maxLon = 0;
+        }
+        this.minLatE7 = minLat;
+        this.minLonE7 = minLon;
+        // Scale longitudes at the latitude farthest from the equator, so flat distances never overestimate
+        double farthestLat = Math.max(Math.abs(minLat), Math.abs(maxLat)) / E7;
+        this.metersPerDegreeLon = METERS_PER_DEGREE * Math.cos(Math.toRadians(Math.min(89.0, farthestLat)));
+
+        // About two nodes per cell, and never cells smaller than ~10 m
+        double spanLat = Math.max(1, (double) maxLat - minLat);
+        double spanLon = Math.max(1, (double) maxLon - minLon);
+        long cellSize = Math.max(1000, (long) Math.ceil(Math.sqrt(spanLat * spanLon / Math.max(1, nodeCount / 2.0))));
+        while ((spanLat / cellSize + 1) * (spanLon / cellSize + 1) > MAX_GRID_CELLS) {
+            cellSize *= 2;
+        }
+        this.cellSizeE7 = (int) Math.min(Integer.MAX_VALUE, cellSize);
+        this.gridRows = (int) (spanLat / cellSize) + 1;
+        this.gridColumns = (int) (spanLon / cellSize) + 1;
+
+        int cellCount = gridRows * gridColumns;
+        this.cellStart = new int[cellCount + 1];
+        this.cellNodes = new int[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            cellStart[cellOf(latitudesE7[i], longitudesE7[i]) + 1]++;
+        }
+        for (int c = 0; c < cellCount; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        int[] fill = Arrays.copyOf(cellStart, cellCount);
+        for (int i = 0; i < nodeCount; i++) {
+            cellNodes[fill[cellOf(latitudesE7[i], longitudesE7[i])]++] = i;
+        }
+    }
+
+    private int cellOf(int latE7, int lonE7) {
+        int row = Math.min(gridRows - 1, Math.max(0, (latE7 - minLatE7) / cellSizeE7));
+        int column = Math.min(gridColumns - 1, Math.max(0, (lonE7 - minLonE7) / cellSizeE7));
+        return row * gridColumns + column;
+    }
+
+
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public int getEdgeCount() {
+        return edgeTarget.length;
+    }
+
+    public double getLatitude(int node) {
+        return latitudesE7[node] / E7;
+    }
+
+    public double getLongitude(int node) {
+        return longitudesE7[node] / E7;
+    }
+
+    int edgeStart(int node) {
+        return firstEdge[node];
+    }
+
+    int edgeEnd(int node) {
+        return firstEdge[node + 1];
+    }
+
+    int edgeTarget(int edge) {
+        return edgeTarget[edge];
+    }
+
+    float edgeMeters(int edge) {
+        return edgeMeters[edge];
+    }
+
+    RoadClass edgeClass(int edge) {
+        return RoadClass.VALUES[edgeClass[edge]];
+    }
+
+    boolean edgeAllows(int edge, int accessMask) {
+        return (edgeAccess[edge] & accessMask) != 0;
+    }
+
+    int inEdgeStart(int node) {
+        return firstInEdge[node];
+    }
+
+    int inEdgeEnd(int node) {
+        return firstInEdge[node + 1];
+    }
+
+    /**
+     * Forward edge id of the {@code index}-th incoming edge slot.
+     */
+    int inEdge(int index) {
+        return inEdge[index];
+    }
+
+    int inEdgeSource(int index) {
+        return inEdgeSource[index];
+    }
+
+    boolean isShapeNode(int node) {
+        return shapes != null && shapes.nodeShape[node] >= 0;
+    }
+
+    /**
+     * Number of shape nodes inside {@code edge}, 0 for an edge that was not collapsed.
+     */
+    int shapeCount(int edge) {
+        if (shapes == null || shapes.edgeShape[edge] == 0) return 0;
+        int chain = Math.abs(shapes.edgeShape[edge]) - 1;
+        return shapes.chainStart[chain + 1] - shapes.chainStart[chain];
+    }
+
+    /**
+     * The {@code index}-th shape node inside {@code edge}, in the direction of travel.
+     */
+    int shapeNode(int edge, int index) {
+        int chain = Math.abs(shapes.edgeShape[edge]) - 1;
+        return shapes.edgeShape[edge] > 0 ? shapes.shapeNodes[shapes.chainStart[chain] + index]
+                : shapes.shapeNodes[shapes.chainStart[chain + 1] - 1 - index];
+    }
+
+    /**
+     * Where {@code node} lies inside {@code edge} in the direction of travel, or -1 if it is not
+     * one of its shape nodes.
+     */
+    int shapePosition(int edge, int node) {
+        if (!isShapeNode(node) || shapes.edgeShape[edge] == 0) return -1;
+        int chain = Math.abs(shapes.edgeShape[edge]) - 1;
+        int index = shapes.nodeShape[node];
+        if (index < shapes.chainStart[chain] || index >= shapes.chainStart[chain + 1]) return -1;
+        return shapes.edgeShape[edge] > 0 ? index - shapes.chainStart[chain] : shapes.chainStart[chain + 1] - 1 - index;
+    }
+
+    /**
+     * Distance along {@code edge} from its source to {@code node}, one of its shape nodes.
+     */
+    double metersToShapeNode(int edge, int node) {
+        float fromFirstEnd = shapes.shapeMeters[shapes.nodeShape[node]];
+        return shapes.edgeShape[edge] > 0 ? fromFirstEnd : edgeMeters[edge] - fromFirstEnd;
+    }
+
+    /**
+     * The edge through shape node {@code node} that runs towards the last end of its chain
+     * ({@code towardsLast}) or the first, or -1 if the road is one-way the other way.
+     */
+    int shapeEdge(int node, boolean towardsLast) {
+        int chain = chainOf(shapes.nodeShape[node]);
+        return shapes.chainEdge[2 * chain + (towardsLast ? 0 : 1)];
+    }
+
+    /**
+     * Source of {@code edge}, an edge that has shape nodes.
+     */
+    int shapeEdgeSource(int edge) {
+        int chain = Math.abs(shapes.edgeShape[edge]) - 1;
+        return shapes.chainEnds[2 * chain + (shapes.edgeShape[edge] > 0 ? 0 : 1)];
+    }
+
+    private int chainOf(int shapeIndex) {
+        // Chains are never empty, so the offsets strictly increase
+        int chain = Arrays.binarySearch(shapes.chainStart, shapeIndex);
+        return chain >= 0 ? chain : -chain - 2;
+    }
+
+    /**
+     * Straight-line distance in metres on a flat projection of the graph's area. Never more
+     * than the great-circle distance for points inside the graph.
+     */
+    double flatMeters(int from, int to) {
+        return flatMeters(getLatitude(from), getLongitude(from), getLatitude(to), getLongitude(to));
+    }
+
+    double flatMeters(double fromLat, double fromLon, double toLat, double toLon) {
+        double dy = (toLat - fromLat) * METERS_PER_DEGREE;
+        double dx = (toLon - fromLon) * metersPerDegreeLon;
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    private boolean isReachableWith(int node, int accessMask) {
+        if (isShapeNode(node)) {
+            int along = shapeEdge(node, true);
+            int against = shapeEdge(node, false);
+            return along >= 0 && (edgeAccess[along] & accessMask) != 0
+                    || against >= 0 && (edgeAccess[against] & accessMask) != 0;
+        }
+        for (int e = firstEdge[node]; e < firstEdge[node + 1]; e++) {
+            if ((edgeAccess[e] & accessMask) != 0) return true;
+        }
+        for (int i = firstInEdge[node]; i < firstInEdge[node + 1]; i++) {
+            if ((edgeAccess[inEdge[i]] & accessMask) != 0) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Closest node that has at least one edge usable with {@code accessMask}.
+     *
+     * @return the node index, or -1 if none lies within {@code maxMeters}
+     */
+    public int nearestNode(double latitude, double longitude, int accessMask, double maxMeters) {
+        if (nodeCount == 0) return -1;
+        int latE7 = (int) Math.round(latitude * E7);
+        int lonE7 = (int) Math.round(longitude * E7);
+        int centerRow = (int) Math.floor(((double) latE7 - minLatE7) / cellSizeE7);
+        int centerColumn = (int) Math.floor(((double) lonE7 - minLonE7) / cellSizeE7);
+        double cellMeters = cellSizeE7 / E7 * Math.min(METERS_PER_DEGREE, metersPerDegreeLon);
+
+        int best = -1;
+        double bestMeters = maxMeters;
+        int maxRing = Math.max(gridRows, gridColumns) + Math.max(Math.abs(centerRow), Math.abs(centerColumn));
+        for (int ring = 0; ring <= maxRing; ring++) {
+            // Everything in this ring or beyond is at least (ring - 1) cells away
+            if ((ring - 1) * cellMeters > bestMeters) break;
+            for (int row = centerRow - ring; row <= centerRow + ring; row++) {
+                if (row < 0 || row >= gridRows) continue;
+                boolean edgeRow = row == centerRow - ring || row == centerRow + ring;
+                int step = edgeRow ? 1 : Math.max(1, 2 * ring);
+                for (int column = centerColumn - ring; column <= centerColumn + ring; column += step) {
+                    if (column < 0 || column >= gridColumns) continue;
+                    int cell = row * gridColumns + column;
+                    for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+                        int node = cellNodes[i];
+                        double meters = flatMeters(latitude, longitude, getLatitude(node), getLongitude(node));
+                        if (meters < bestMeters && isReachableWith(node, accessMask)) {
+                            bestMeters = meters;
+                            best = node;
+                        }
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Rough heap footprint of the arrays.
+     */
+    public long estimateHeapBytes() {
+        long bytes = 8L * nodeCount + 4L * firstEdge.length + 10L * edgeTarget.length
+                + 4L * firstInEdge.length + 8L * inEdge.length + 4L * cellStart.length + 4L * cellNodes.length;
+        if (shapes != null) {
+            bytes += 4L * shapes.edgeShape.length + 4L * shapes.nodeShape.length + 8L * shapes.shapeNodes.length
+                    + 4L * shapes.chainStart.length + 4L * shapes.chainEnds.length + 4L * shapes.chainEdge.length;
+        }
+        return bytes;
+    }
+
+    /**
+     * Number of nodes folded into edges, 0 if the builder kept them all as junctions.
+     */
+    public int getShapeNodeCount() {
+        return shapes == null ? 0 : shapes.shapeNodes.length;
+    }
+
+    public String describe() {
+        if (shapes == null) {
+            return String.format("%,d nodes, %,d edges, ~%d MB", nodeCount, getEdgeCount(), estimateHeapBytes() >> 20);
+        }
+        return String.format("%,d nodes (%,d inside collapsed edges), %,d edges, ~%d MB", nodeCount,
+                getShapeNodeCount(), getEdgeCount(), estimateHeapBytes() >> 20);
+    }
+
+
+
+    /**
+     * The shape nodes of collapsed edges. Each chain is one road between two junctions, stored
+     * once from its first end to its last; the edges along and against it both point at it.
+     */
+    private static final class Shapes {
+        // Per edge: 0 if not collapsed, chain + 1 when it runs along its chain, -(chain + 1) against it
+        final int[] edgeShape;
+        // Per node: its index in shapeNodes, or -1 for a junction
+        final int[] nodeShape;
+        final int[] shapeNodes;
+        // Distance from the chain's first end to each shape node
+        final float[] shapeMeters;
+        // Chain c holds shapeNodes[chainStart[c]] up to shapeNodes[chainStart[c + 1]]
+        final int[] chainStart;
+        // First and last end of chain c at 2c and 2c + 1
+        final int[] chainEnds;
+        // Edge along and against chain c at 2c and 2c + 1, -1 where the road is one-way
+        final int[] chainEdge;
+
+        Shapes(int[] edgeShape, int[] nodeShape, int[] shapeNodes, float[] shapeMeters, int[] chainStart,
+               int[] chainEnds, int[] chainEdge) {
+            this.edgeShape = edgeShape;
+            this.nodeShape = nodeShape;
+            this.shapeNodes = shapeNodes;
+            this.shapeMeters = shapeMeters;
+            this.chainStart = chainStart;
+            this.chainEnds = chainEnds;
+            this.chainEdge = chainEdge;
+        }
+    }
+
+
+
+    /**
+     * Collects nodes and road segments, then lays them out in CSR order.
+     */
+    public static class Builder {
+        private int nodeCount;
+        private int[] latitudesE7 = new int[1024];
+        private int[] longitudesE7 = new int[1024];
+
+        private int edgeCount;
+        private int[] edgeFrom = new int[2048];
+        private int[] edgeTo = new int[2048];
+        private float[] edgeMeters = new float[2048];
+        private byte[] edgeClass = new byte[2048];
+        private byte[] edgeAccess = new byte[2048];
+
+        private boolean collapseShapeNodes;
+
+        public int addNode(double latitude, double longitude) {
+            return addNodeE7((int) Math.round(latitude * E7), (int) Math.round(longitude * E7));
+        }
+
+        public int addNodeE7(int latitudeE7, int longitudeE7) {
+            if (nodeCount == latitudesE7.length) {
+                latitudesE7 = Arrays.copyOf(latitudesE7, nodeCount * 2);
+                longitudesE7 = Arrays.copyOf(longitudesE7, nodeCount * 2);
+            }
+            latitudesE7[nodeCount] = latitudeE7;
+            longitudesE7[nodeCount] = longitudeE7;
+            return nodeCount++;
+        }
+
+        public int getNodeCount() {
+            return nodeCount;
+        }
+
+        /**
+         * Whether {@link #build()} folds shape nodes into the edges through them. A node is a
+         * shape node when it joins exactly two neighbours by the same class of road with the same
+         * travel modes on both sides; anything else is a junction. Off by default.
+         */
+        public void setCollapseShapeNodes(boolean collapseShapeNodes) {
+            this.collapseShapeNodes = collapseShapeNodes;
+        }
+
+        /**
+         * Adds the segment between two nodes in both directions, except that cars and bikes
+         * may only travel with a one-way street.
+         *
+         * @param oneway 0 for two-way, 1 for one-way from {@code a} to {@code b}, -1 for the reverse
+         */
+        public void addSegment(int a, int b, RoadClass roadClass, int oneway) {
+            if (a == b) return;
+            float meters = (float) (Point.haversineKm(latitudesE7[a] / E7, longitudesE7[a] / E7,
+                    latitudesE7[b] / E7, longitudesE7[b] / E7) * 1000);
+            int access = roadClass.getAccess();
+            int againstFlow = access & ~(ACCESS_CAR | ACCESS_BIKE);
+            addEdge(a, b, meters, roadClass, oneway >= 0 ? access : againstFlow);
+            addEdge(b, a, meters, roadClass, oneway <= 0 ? access : againstFlow);
+        }
+
+        private void addEdge(int from, int to, float meters, RoadClass roadClass, int access) {
+            if (access == 0) return;
+            if (edgeCount == edgeFrom.length) {
+                int capacity = edgeCount * 2;
+                edgeFrom = Arrays.copyOf(edgeFrom, capacity);
+                edgeTo = Arrays.copyOf(edgeTo, capacity);
+                edgeMeters = Arrays.copyOf(edgeMeters, capacity);
+                edgeClass = Arrays.copyOf(edgeClass, capacity);
+                edgeAccess = Arrays.copyOf(edgeAccess, capacity);
+            }
+            edgeFrom[edgeCount] = from;
+            edgeTo[edgeCount] = to;
+            edgeMeters[edgeCount] = meters;
+            edgeClass[edgeCount] = (byte) roadClass.ordinal();
+            edgeAccess[edgeCount] = (byte) access;
+            edgeCount++;
+        }
+
+        public RoadGraph build() {
+            if (collapseShapeNodes) {
+                return new Collapser().build();
+            }
+            return layOut(edgeCount, edgeFrom, edgeTo, edgeMeters, edgeClass, edgeAccess, null, null);
+        }
+
+        /**
+         * Sorts the given edges into CSR order and indexes them.
+         *
+         * @param shape  per edge, as in {@link Shapes#edgeShape}; null if nothing was collapsed
+         * @param shapes the chains {@code shape} points at, with {@code chainEdge} still to fill in
+         */
+        private RoadGraph layOut(int count, int[] from, int[] to, float[] lengths, byte[] roadClasses, byte[] modes,
+                                 int[] shape, Shapes shapes) {
+            // Counting sort of the edges by source node
+            int[] firstEdge = new int[nodeCount + 1];
+            for (int e = 0; e < count; e++) firstEdge[from[e] + 1]++;
+            for (int n = 0; n < nodeCount; n++) firstEdge[n + 1] += firstEdge[n];
+
+            int[] target = new int[count];
+            float[] meters = new float[count];
+            byte[] classes = new byte[count];
+            byte[] access = new byte[count];
+            int[] sortedShape = shape == null ? null : new int[count];
+            int[] slot = Arrays.copyOf(firstEdge, nodeCount);
+            for (int e = 0; e < count; e++) {
+                int i = slot[from[e]]++;
+                target[i] = to[e];
+                meters[i] = lengths[e];
+                classes[i] = roadClasses[e];
+                access[i] = modes[e];
+                if (sortedShape != null) sortedShape[i] = shape[e];
+            }
+
+            // Incoming edges, pointing back at the sorted forward edges
+            int[] firstInEdge = new int[nodeCount + 1];
+            for (int e = 0; e < count; e++) firstInEdge[target[e] + 1]++;
+            for (int n = 0; n < nodeCount; n++) firstInEdge[n + 1] += firstInEdge[n];
+            int[] inEdge = new int[count];
+            int[] inSource = new int[count];
+            int[] inSlot = Arrays.copyOf(firstInEdge, nodeCount);
+            for (int source = 0; source < nodeCount; source++) {
+                for (int e = firstEdge[source]; e < firstEdge[source + 1]; e++) {
+                    int i = inSlot[target[e]]++;
+                    inEdge[i] = e;
+                    inSource[i] = source;
+                }
+            }
+
+            Shapes sortedShapes = null;
+            if (shapes != null) {
+                for (int e = 0; e < count; e++) {
+                    if (sortedShape[e] > 0) shapes.chainEdge[2 * (sortedShape[e] - 1)] = e;
+                    if (sortedShape[e] < 0) shapes.chainEdge[2 * (-sortedShape[e] - 1) + 1] = e;
+                }
+                sortedShapes = new Shapes(sortedShape, shapes.nodeShape, shapes.shapeNodes, shapes.shapeMeters,
+                        shapes.chainStart, shapes.chainEnds, shapes.chainEdge);
+            }
+
+            return new RoadGraph(nodeCount, Arrays.copyOf(latitudesE7, nodeCount), Arrays.copyOf(longitudesE7, nodeCount),
+                    firstEdge, target, meters, classes, access, firstInEdge, inEdge, inSource, sortedShapes);
+        }
+
+        /**
+         * Walks the roads out of every junction, turning each run of shape nodes and the segments
+         * through it into one edge per direction of travel.
+         */
+        private class Collapser {
+            private final int[] firstOut = new int[nodeCount + 1];
+            private final int[] outEdges = new int[edgeCount];
+            private final int[] firstIn = new int[nodeCount + 1];
+            private final int[] inEdges = new int[edgeCount];
+            private final boolean[] isShape = new boolean[nodeCount];
+            private final int[] nodeShape = new int[nodeCount];
+
+            private int count;
+            private final int[] from = new int[edgeCount];
+            private final int[] to = new int[edgeCount];
+            private final float[] lengths = new float[edgeCount];
+            private final byte[] roadClasses = new byte[edgeCount];
+            private final byte[] modes = new byte[edgeCount];
+            private final int[] shape = new int[edgeCount];
+
+            private int shapeCount;
+            private int[] shapeNodes = new int[1024];
+            private float[] shapeMeters = new float[1024];
+            private int chainCount;
+            private int[] chainStart = new int[1025];
+            private int[] chainEnds = new int[2048];
+            private float[] chainLength = new float[1024];
+
+            RoadGraph build() {
+                for (int e = 0; e < edgeCount; e++) {
+                    firstOut[edgeFrom[e] + 1]++;
+                    firstIn[edgeTo[e] + 1]++;
+                }
+                for (int n = 0; n < nodeCount; n++) {
+                    firstOut[n + 1] += firstOut[n];
+                    firstIn[n + 1] += firstIn[n];
+                }
+                int[] outSlot = Arrays.copyOf(firstOut, nodeCount);
+                int[] inSlot = Arrays.copyOf(firstIn, nodeCount);
+                for (int e = 0; e < edgeCount; e++) {
+                    outEdges[outSlot[edgeFrom[e]]++] = e;
+                    inEdges[inSlot[edgeTo[e]]++] = e;
+                }
+
+                for (int n = 0; n < nodeCount; n++) isShape[n] = passesStraightThrough(n);
+                Arrays.fill(nodeShape, -1);
+                for (int n = 0; n < nodeCount; n++) {
+                    if (!isShape[n]) walkFrom(n);
+                }
+                // Whatever is left forms rings with no junction; one node of each becomes one
+                for (int n = 0; n < nodeCount; n++) {
+                    if (isShape[n] && nodeShape[n] < 0) {
+                        isShape[n] = false;
+                        walkFrom(n);
+                    }
+                }
+
+                Shapes shapes = new Shapes(null, nodeShape, Arrays.copyOf(shapeNodes, shapeCount),
+                        Arrays.copyOf(shapeMeters, shapeCount), Arrays.copyOf(chainStart, chainCount + 1),
+                        Arrays.copyOf(chainEnds, 2 * chainCount), new int[2 * chainCount]);
+                Arrays.fill(shapes.chainEdge, -1);
+                return layOut(count, from, to, lengths, roadClasses, modes, shape, shapes);
+            }
+
+            /**
+             * True if {@code node} has two distinct neighbours, at most one segment each way to each,
+             * one class of road, and the same modes entering from one side as leaving on the other.
+             */
+            private boolean passesStraightThrough(int node) {
+                int outCount = firstOut[node + 1] - firstOut[node];
+                int inCount = firstIn[node + 1] - firstIn[node];
+                if (outCount == 0 || inCount == 0 || outCount > 2 || inCount > 2) return false;
+
+                int roadClass = edgeClass[outEdges[firstOut[node]]];
+                int first = edgeTo[outEdges[firstOut[node]]];
+                int second = -1;
+                for (int i = firstOut[node]; i < firstOut[node + 1]; i++) {
+                    int e = outEdges[i];
+                    if (edgeClass[e] != roadClass) return false;
+                    if (edgeTo[e] != first) second = edgeTo[e];
+                }
+                if (outCount == 2 && second < 0) return false;
+                for (int i = firstIn[node]; i < firstIn[node + 1]; i++) {
+                    int e = inEdges[i];
+                    if (edgeClass[e] != roadClass) return false;
+                    int neighbour = edgeFrom[e];
+                    if (neighbour == first) continue;
+                    if (second >= 0 && neighbour != second) return false;
+                    second = neighbour;
+                }
+                if (second < 0) return false;
+                if (inCount == 2 && edgeFrom[inEdges[firstIn[node]]] == edgeFrom[inEdges[firstIn[node] + 1]]) {
+                    return false;
+                }
+
+                return accessBetween(first, node) == accessBetween(node, second)
+                        && accessBetween(second, node) == accessBetween(node, first);
+            }
+
+            private int accessBetween(int a, int b) {
+                for (int i = firstOut[a]; i < firstOut[a + 1]; i++) {
+                    if (edgeTo[outEdges[i]] == b) return edgeAccess[outEdges[i]];
+                }
+                return 0;
+            }
+
+            private void walkFrom(int junction) {
+                for (int i = firstOut[junction]; i < firstOut[junction + 1]; i++) {
+                    int e = outEdges[i];
+                    int next = edgeTo[e];
+                    if (!isShape[next]) {
+                        addCollapsed(junction, next, edgeMeters[e], e, 0);
+                    } else if (nodeShape[next] >= 0) {
+                        // The chain was already walked from its other end; this edge runs against it
+                        int chain = chainAt(nodeShape[next]);
+                        addCollapsed(junction, chainEnds[2 * chain], chainLength[chain], e, -(chain + 1));
+                    } else {
+                        walkChain(junction, e);
+                    }
+                }
+            }
+
+            private void walkChain(int junction, int firstEdge) {
+                int chain = chainCount++;
+                if (chainCount == chainLength.length) {
+                    chainLength = Arrays.copyOf(chainLength, chainCount * 2);
+                    chainStart = Arrays.copyOf(chainStart, chainCount * 2 + 1);
+                    chainEnds = Arrays.copyOf(chainEnds, chainCount * 4);
+                }
+                chainStart[chain] = shapeCount;
+
+                int previous = junction;
+                int node = edgeTo[firstEdge];
+                double meters = edgeMeters[firstEdge];
+                while (isShape[node]) {
+                    if (shapeCount == shapeNodes.length) {
+                        shapeNodes = Arrays.copyOf(shapeNodes, shapeCount * 2);
+                        shapeMeters = Arrays.copyOf(shapeMeters, shapeCount * 2);
+                    }
+                    nodeShape[node] = shapeCount;
+                    shapeNodes[shapeCount] = node;
+                    shapeMeters[shapeCount] = (float) meters;
+                    shapeCount++;
+
+                    int onward = -1;
+                    for (int i = firstOut[node]; i < firstOut[node + 1]; i++) {
+                        if (edgeTo[outEdges[i]] != previous) onward = outEdges[i];
+                    }
+                    previous = node;
+                    node = edgeTo[onward];
+                    meters += edgeMeters[onward];
+                }
+
+                chainStart[chain + 1] = shapeCount;
+                chainEnds[2 * chain] = junction;
+                chainEnds[2 * chain + 1] = node;
+                chainLength[chain] = (float) meters;
+                addCollapsed(junction, node, chainLength[chain], firstEdge, chain + 1);
+            }
+
+            private int chainAt(int shapeIndex) {
+                int chain = Arrays.binarySearch(chainStart, 0, chainCount, shapeIndex);
+                return chain >= 0 ? chain : -chain - 2;
+            }
+
+            private void addCollapsed(int source, int target, float meters, int firstRawEdge, int chainShape) {
+                from[count] = source;
+                to[count] = target;
+                lengths[count] = meters;
+                roadClasses[count] = edgeClass[firstRawEdge];
+                modes[count] = edgeAccess[firstRawEdge];
+                shape[count] = chainShape;
+                count++;
+            }
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package org.example;
+
+import java.util.Arrays;
+
+/**
+ * Nearest-road lookup over the segments of a {@link RoadGraph}, for snapping map clicks
+ * without a network round trip.
+ *
+ * Each road segment is stored once, whichever directions it may be travelled in, and is
+ * listed in every cell of a uniform grid that its bounding box touches. A query walks the
+ * cells in rings around the clicked point and projects it onto each candidate segment in a
+ * local flat frame, which is accurate to centimetres at snapping distances.
+ */
+public class RoadSnapIndex {
+
+    /**
+     * The closest point on a road segment.
+     */
+    public static class Snap {
+        private final int fromNode;
+        private final int toNode;
+        private final double fraction;
+        private final double latitude;
+        private final double longitude;
+        private final double meters;
+
+        Snap(int fromNode, int toNode, double fraction, double latitude, double longitude, double meters) {
+            this.fromNode = fromNode;
+            this.toNode = toNode;
+            this.fraction = fraction;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.meters = meters;
+        }
+
+        public int getFromNode() { return fromNode; }
+        public int getToNode() { return toNode; }
+        /** Position along the segment, 0 at {@link #getFromNode()} and 1 at {@link #getToNode()}. */
+        public double getFraction() { return fraction; }
+        public double getLatitude() { return latitude; }
+        public double getLongitude() { return longitude; }
+        /** Distance from the query point to the snapped point. */
+        public double getMeters() { return meters; }
+
+        public int getNearerNode() {
+            return fraction <= 0.5 ? fromNode : toNode;
+        }
+    }
+
+    private static final double METERS_PER_DEGREE = 6_371_000 * Math.PI / 180;
+    private static final int MAX_GRID_CELLS = 4_000_000;
+
+    private final RoadGraph graph;
+    private final int segmentCount;
+    private final int[] segmentFrom;
+    private final int[] segmentTo;
+    private final byte[] segmentAccess;
+
+    private final double minLat;
+    private final double minLon;
+    private final double cellDegrees;
+    private final int gridRows;
+    private final int gridColumns;
+    private final int[] cellStart;
+    private final int[] cellSegments;
+
+    public RoadSnapIndex(RoadGraph graph) {
+        this.graph = graph;
+
+        // One entry per node pair: the lower-numbered end's edge, or the only edge if one-way.
+        // A collapsed edge adds one entry per piece between its shape nodes, listed by the edge
+        // along its chain, or the one against it if the road is one-way that way.
+        int capacity = 0;
+        for (int e = 0; e < graph.getEdgeCount(); e++) capacity += graph.shapeCount(e) + 1;
+        int[] from = new int[capacity];
+        int[] to = new int[capacity];
+        byte[] access = new byte[capacity];
+        int count = 0;
+        double totalDegrees = 0;
+        for (int node = 0; node < graph.getNodeCount(); node++) {
+            for (int e = graph.edgeStart(node); e < graph.edgeEnd(node); e++) {
+                int target = graph.edgeTarget(e);
+                int shapeCount = graph.shapeCount(e);
+                int segmentAccess;
+                if (shapeCount == 0) {
+                    int reverseAccess = accessOfEdge(graph, target, node);
+                    if (node > target && reverseAccess != 0) continue;
+                    segmentAccess = accessOfEdge(graph, node, target) | reverseAccess;
+                } else {
+                    int firstShape = graph.shapeNode(e, 0);
+                    int along = graph.shapeEdge(firstShape, true);
+                    int against = graph.shapeEdge(firstShape, false);
+                    if (e != along && along >= 0) continue;
+                    segmentAccess = accessOf(graph, along) | accessOf(graph, against);
+                }
+                int previous = node;
+                for (int i = 0; i <= shapeCount; i++) {
+                    int next = i < shapeCount ? graph.shapeNode(e, i) : target;
+                    from[count] = previous;
+                    to[count] = next;
+                    access[count] = (byte) segmentAccess;
+                    totalDegrees += Math.abs(graph.getLatitude(previous) - graph.getLatitude(next))
+                            + Math.abs(graph.getLongitude(previous) - graph.getLongitude(next));
+                    count++;
+                    previous = next;
+                }
+            }
+        }
+        this.segmentCount = count;
+        this.segmentFrom = Arrays.copyOf(from, count);
+        this.segmentTo = Arrays.copyOf(to, count);
+        this.segmentAccess = Arrays.copyOf(access, count);
+
+        double lowLat = Double.MAX_VALUE, highLat = -Double.MAX_VALUE;
+        double lowLon = Double.MAX_VALUE, highLon = -Double.MAX_VALUE;
+        for (int node = 0; node < graph.getNodeCount(); node++) {
+            lowLat = Math.min(lowLat, graph.getLatitude(node));
+            highLat = Math.max(highLat, graph.getLatitude(node));
+            lowLon = Math.min(lowLon, graph.getLongitude(node));
+            highLon = Math.max(highLon, graph.getLongitude(node));
+        }
+        if (graph.getNodeCount() == 0) {
+            lowLat = highLat = lowLon = highLon = 0;
+        }
+        this.minLat = lowLat;
+        this.minLon = lowLon;
+
+        // Cells about as wide as an average segment, and never smaller than ~10 m
+        double cell = Math.max(1e-4, count == 0 ? 1 : totalDegrees / count);
+        while (((highLat - lowLat) / cell + 1) * ((highLon - lowLon) / cell + 1) > MAX_GRID_CELLS) {
+            cell *= 2;
+        }
+        this.cellDegrees = cell;
+        this.gridRows = (int) ((highLat - lowLat) / cell) + 1;
+        this.gridColumns = (int) ((highLon - lowLon) / cell) + 1;
+
+        int cellCount = gridRows * gridColumns;
+        this.cellStart = new int[cellCount + 1];
+        for (int s = 0; s < count; s++) {
+            forEachCell(s, c -> cellStart[c + 1]++);
+        }
+        for (int c = 0; c < cellCount; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        this.cellSegments = new int[cellStart[cellCount]];
+        int[] fill = Arrays.copyOf(cellStart, cellCount);
+        for (int s = 0; s < count; s++) {
+            int segment = s;
+            forEachCell(s, c -> cellSegments[fill[c]++] = segment);
+        }
+    }
+
+    private static int accessOfEdge(RoadGraph graph, int from, int to) {
+        int access = 0;
+        for (int e = graph.edgeStart(from); e < graph.edgeEnd(from); e++) {
+            if (graph.edgeTarget(e) == to && graph.shapeCount(e) == 0) access |= accessOf(graph, e);
+        }
+        return access;
+    }
+
+    private static int accessOf(RoadGraph graph, int edge) {
+        int access = 0;
+        if (edge < 0) return access;
+        for (int mask = RoadGraph.ACCESS_CAR; mask <= RoadGraph.ACCESS_FOOT; mask <<= 1) {
+            if (graph.edgeAllows(edge, mask)) access |= mask;
+        }
+        return access;
+    }
+
+    private interface CellVisitor {
+        void visit(int cell);
+    }
+
+    private void forEachCell(int segment, CellVisitor visitor) {
+        int a = segmentFrom[segment];
+        int b = segmentTo[segment];
+        int firstRow = row(Math.min(graph.getLatitude(a), graph.getLatitude(b)));
+        int lastRow = row(Math.max(graph.getLatitude(a), graph.getLatitude(b)));
+        int firstColumn = column(Math.min(graph.getLongitude(a), graph.getLongitude(b)));
+        int lastColumn = column(Math.max(graph.getLongitude(a), graph.getLongitude(b)));
+        for (int r = firstRow; r <= lastRow; r++) {
+            for (int c = firstColumn; c <= lastColumn; c++) {
+                visitor.visit(r * gridColumns + c);
+            }
+        }
+    }
+
+    private int row(double latitude) {
+        return Math.min(gridRows - 1, Math.max(0, (int) Math.floor((latitude - minLat) / cellDegrees)));
+    }
+
+    private int column(double longitude) {
+        return Math.min(gridColumns - 1, Math.max(0, (int) Math.floor((longitude - minLon) / cellDegrees)));
+    }
+
+    public RoadGraph getGraph() {
+        return graph;
+    }
+
+    public int getSegmentCount() {
+        return segmentCount;
+    }
+
+    /**
+     * Closest point on any segment that {@code accessMask} may use in at least one direction.
+     *
+     * @return the snap, or null if no such road lies within {@code maxMeters}
+     */
+    public Snap nearest(double latitude, double longitude, int accessMask, double maxMeters) {
+        if (segmentCount == 0) return null;
+        double metersPerDegreeLon = METERS_PER_DEGREE * Math.cos(Math.toRadians(latitude));
+        int centerRow = (int) Math.floor((latitude - minLat) / cellDegrees);
+        int centerColumn = (int) Math.floor((longitude - minLon) / cellDegrees);
+        double cellMeters = cellDegrees * Math.min(METERS_PER_DEGREE, metersPerDegreeLon);
+
+        int bestSegment = -1;
+        double bestMeters = maxMeters;
+        double bestFraction = 0;
+        int maxRing = Math.max(gridRows, gridColumns) + Math.max(Math.abs(centerRow), Math.abs(centerColumn));
+        for (int ring = 0; ring <= maxRing; ring++) {
+            // Everything in this ring or beyond is at least (ring - 1) cells away
+            if ((ring - 1) * cellMeters > bestMeters) break;
+            for (int row = centerRow - ring; row <= centerRow + ring; row++) {
+                if (row < 0 || row >= gridRows) continue;
+                boolean edgeRow = row == centerRow - ring || row == centerRow + ring;
+                int step = edgeRow ? 1 : Math.max(1, 2 * ring);
+                for (int column = centerColumn - ring; column <= centerColumn + ring; column += step) {
+                    if (column < 0 || column >= gridColumns) continue;
+                    int cell = row * gridColumns + column;
+                    for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+                        int segment = cellSegments[i];
+                        if ((segmentAccess[segment] & accessMask) == 0) continue;
+
+                        // Query point at the origin, segment from (ax, ay) to (bx, by) in metres
+                        int a = segmentFrom[segment];
+                        int b = segmentTo[segment];
+                        double ax = (graph.getLongitude(a) - longitude) * metersPerDegreeLon;
+                        double ay = (graph.getLatitude(a) - latitude) * METERS_PER_DEGREE;
+                        double bx = (graph.getLongitude(b) - longitude) * metersPerDegreeLon;
+                        double by = (graph.getLatitude(b) - latitude) * METERS_PER_DEGREE;
+                        double dx = bx - ax;
+                        double dy = by - ay;
+                        double lengthSquared = dx * dx + dy * dy;
+                        double t = lengthSquared == 0 ? 0 : Math.max(0, Math.min(1, -(ax * dx + ay * dy) / lengthSquared));
+                        double px = ax + t * dx;
+                        double py = ay + t * dy;
+                        double meters = Math.sqrt(px * px + py * py);
+                        if (meters < bestMeters) {
+                            bestMeters = meters;
+                            bestSegment = segment;
+                            bestFraction = t;
+                        }
+                    }
+                }
+            }
+        }
+        if (bestSegment < 0) return null;
+
+        int a = segmentFrom[bestSegment];
+        int b = segmentTo[bestSegment];
+        double snappedLat = graph.getLatitude(a) + bestFraction * (graph.getLatitude(b) - graph.getLatitude(a));
+        double snappedLon = graph.getLongitude(a) + bestFraction * (graph.getLongitude(b) - graph.getLongitude(a));
+        return new Snap(a, b, bestFraction, snappedLat, snappedLon, bestMeters);
+    }
+
+    /**
+     * Rough heap footprint of the arrays.
+     */
+    public long estimateHeapBytes() {
+        return 9L * segmentCount + 4L * cellStart.length + 4L * cellSegments.length;
+    }
+}
@@ -0,0 +1,304 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Searches for the round_trip.length to request so the loop ORS returns is actually close to
+ * the distance the user asked for.
+ *
+ * ORS treats the length as a hint, so with a fixed seed the returned distance is a rough,
+ * mostly increasing function of the requested one. The first two probes (the target and a
+ * shorter guess) go out in parallel; after that each probe is a secant step through the two
+ * most recent results, falling back to bisection once the target is bracketed, or to plain
+ * proportional scaling when the secant is unusable. The closest loop seen is returned.
+ */
+public class RoundTripCalibrator {
+
+    public interface Generator {
+        RouteResult generate(int requestedLengthMeters);
+    }
+
+    public static class Probe {
+        private final int requestedMeters;
+        private final RouteResult result;
+
+        Probe(int requestedMeters, RouteResult result) {
+            this.requestedMeters = requestedMeters;
+            this.result = result;
+        }
+
+        public int getRequestedMeters() { return requestedMeters; }
+        public RouteResult getResult() { return result; }
+
+        public double getActualMeters() {
+            return result == null ? Double.NaN : result.getDistance();
+        }
+    }
+
+    public static class Result {
+        private final RouteResult best;
+        private final List<Probe> probes;
+        private final boolean converged;
+        private final long elapsedMillis;
+
+        Result(RouteResult best, List<Probe> probes, boolean converged, long elapsedMillis) {
+            this.best = best;
+            this.probes = Collections.unmodifiableList(probes);
+            this.converged = converged;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public RouteResult getBest() { return best; }
+        public List<Probe> getProbes() { return probes; }
+        public int getProbeCount() { return probes.size(); }
+        public boolean isConverged() { return converged; }
+        public long getElapsedMillis() { return elapsedMillis; }
+    }
+
+    private static final double FIRST_GUESS_RATIO = 0.8;
+    private static final double MIN_LENGTH_RATIO = 0.3;
+    private static final double MAX_LENGTH_RATIO = 3.0;
+
+    private static final ExecutorService SHARED_EXECUTOR =
+            Executors.newCachedThreadPool(new DaemonThreadFactory("round-trip-calibration"));
+
+    private final ExecutorService executor;
+    private volatile double tolerance = 0.05;
+    private volatile int maxProbes = 4;
+
+    private final LatencyTracker latencies = new LatencyTracker(64);
+    private final AtomicLong calibrations = new AtomicLong();
+    private final AtomicLong probesSent = new AtomicLong();
+    private final AtomicLong converged = new AtomicLong();
+    private volatile int lastProbeCount;
+    private volatile long lastElapsedMillis;
+
+    public RoundTripCalibrator() {
+        this(SHARED_EXECUTOR);
+    }
+
+    public RoundTripCalibrator(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * @param tolerance allowed relative distance error, e.g. 0.05 for 5%
+     * @param maxProbes upper bound on requests per calibration, at least 1
+     */
+    public void setLimits(double tolerance, int maxProbes) {
+        if (tolerance <= 0 || maxProbes < 1) throw new IllegalArgumentException("invalid calibration limits");
+        this.tolerance = tolerance;
+        this.maxProbes = maxProbes;
+    }
+
+    public double getTolerance() {
+        return tolerance;
+    }
+
+    public int getMaxProbes() {
+        return maxProbes;
+    }
+
+
+    /**
+     * @param deadline optional; no new probe is started once it has passed
+     */
+    public Result calibrate(int targetMeters, Generator generator, RoutingDeadline deadline)
+            throws InterruptedException {
+        return calibrate(targetMeters, null, generator, deadline);
+    }
+
+    /**
+     * @param atTarget optional loop already generated for {@code targetMeters}; it takes the
+     *                 first probe slot instead of a new request
+     * @param deadline optional; no new probe is started once it has passed
+     */
+    public Result calibrate(int targetMeters, RouteResult atTarget, Generator generator, RoutingDeadline deadline)
+            throws InterruptedException {
+        long start = System.nanoTime();
+        List<Probe> probes = new ArrayList<>();
+
+        // Round one: the target itself and a shorter guess, side by side
+        List<Integer> firstRound = new ArrayList<>();
+        if (atTarget == null) {
+            firstRound.add(targetMeters);
+        } else {
+            probes.add(new Probe(targetMeters, atTarget));
+        }
+        if (maxProbes > 1 && !isWithinTolerance(closest(probes, targetMeters), targetMeters)) {
+            firstRound.add(clamp((int) Math.round(targetMeters * FIRST_GUESS_RATIO), targetMeters));
+        }
+        probes.addAll(runInParallel(firstRound, generator, deadline));
+
+        while (probes.size() < maxProbes && !isWithinTolerance(closest(probes, targetMeters), targetMeters)
+                && (deadline == null || !deadline.isExpired())) {
+            int next = nextLength(probes, targetMeters);
+            if (containsLength(probes, next)) break;
+            probesSent.incrementAndGet();
+            probes.add(new Probe(next, generator.generate(next)));
+            if (Thread.currentThread().isInterrupted()) throw new InterruptedException();
+        }
+
+        Probe best = closest(probes, targetMeters);
+        boolean hit = isWithinTolerance(best, targetMeters);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        calibrations.incrementAndGet();
+        if (hit) converged.incrementAndGet();
+        lastProbeCount = probes.size();
+        lastElapsedMillis = elapsedMillis;
+        latencies.record(elapsedMillis);
+
+        System.out.println(String.format("Round trip calibration: target %d m, best %.0f m after %d probes in %d ms%s",
+                targetMeters, best == null ? Double.NaN : best.getActualMeters(), probes.size(), elapsedMillis,
+                hit ? "" : " (outside tolerance)"));
+        return new Result(best == null ? null : best.getResult(), probes, hit, elapsedMillis);
+    }
+
+    private List<Probe> runInParallel(List<Integer> lengths, Generator generator, RoutingDeadline deadline)
+            throws InterruptedException {
+        List<Future<RouteResult>> futures = new ArrayList<>();
+        for (int length : lengths) {
+            probesSent.incrementAndGet();
+            futures.add(InterruptibleFuture.callAsync(() -> generator.generate(length), executor));
+        }
+        List<Probe> probes = new ArrayList<>();
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                RouteResult result = null;
+                try {
+                    result = deadline == null
+                            ? futures.get(i).get()
+                            : futures.get(i).get(deadline.remainingMillis(), TimeUnit.MILLISECONDS);
+                } catch (ExecutionException e) {
+                    System.err.println("Calibration probe failed: " + e.getCause());
+                } catch (TimeoutException e) {
+                    System.err.println("Calibration probe for " + lengths.get(i) + " m ran out of time");
+                }
+                probes.add(new Probe(lengths.get(i), result));
+            }
+        } finally {
+            for (Future<RouteResult> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return probes;
+    }
+
+    /**
+     * Length to request next, from the usable probes seen so far.
+     */
+    static int nextLength(List<Probe> probes, int targetMeters) {
+        List<Probe> usable = new ArrayList<>();
+        for (Probe probe : probes) {
+            if (isUsable(probe)) usable.add(probe);
+        }
+        if (usable.isEmpty()) {
+            // Nothing came back; try a shorter loop, which is more likely to route
+            return clamp((int) Math.round(targetMeters * Math.pow(FIRST_GUESS_RATIO, probes.size())), targetMeters);
+        }
+
+        // Bisection once the target lies between two requested lengths
+        Probe below = null;
+        Probe above = null;
+        for (Probe probe : usable) {
+            if (probe.getActualMeters() <= targetMeters) {
+                if (below == null || probe.getActualMeters() > below.getActualMeters() ||
+                        (probe.getActualMeters() == below.getActualMeters() &&
+                                probe.getRequestedMeters() > below.getRequestedMeters())) {
+                    below = probe;
+                }
+            } else if (above == null || probe.getActualMeters() < above.getActualMeters() ||
+                    (probe.getActualMeters() == above.getActualMeters() &&
+                            probe.getRequestedMeters() < above.getRequestedMeters())) {
+                above = probe;
+            }
+        }
+
+        if (usable.size() >= 2) {
+            Probe a = usable.get(usable.size() - 2);
+            Probe b = usable.get(usable.size() - 1);
+            double slope = (b.getActualMeters() - a.getActualMeters()) / (b.getRequestedMeters() - a.getRequestedMeters());
+            if (slope > 0 && !Double.isInfinite(slope)) {
+                double secant = b.getRequestedMeters() + (targetMeters - b.getActualMeters()) / slope;
+                boolean insideBracket = below == null || above == null ||
+                        (secant > Math.min(below.getRequestedMeters(), above.getRequestedMeters()) &&
+                                secant < Math.max(below.getRequestedMeters(), above.getRequestedMeters()));
+                if (insideBracket) return clamp((int) Math.round(secant), targetMeters);
+            }
+        }
+
+        if (below != null && above != null) {
+            return clamp((below.getRequestedMeters() + above.getRequestedMeters()) / 2, targetMeters);
+        }
+
+        Probe closest = closest(usable, targetMeters);
+        double scaled = closest.getRequestedMeters() * targetMeters / closest.getActualMeters();
+        return clamp((int) Math.round(scaled), targetMeters);
+    }
+
+    private static boolean isUsable(Probe probe) {
+        return probe.getResult() != null && probe.getActualMeters() > 0;
+    }
+
+    private static Probe closest(List<Probe> probes, int targetMeters) {
+        Probe best = null;
+        for (Probe probe : probes) {
+            if (!isUsable(probe)) continue;
+            if (best == null || Math.abs(probe.getActualMeters() - targetMeters) <
+                    Math.abs(best.getActualMeters() - targetMeters)) {
+                best = probe;
+            }
+        }
+        return best;
+    }
+
+    private boolean isWithinTolerance(Probe probe, int targetMeters) {
+        return probe != null && Math.abs(probe.getActualMeters() - targetMeters) <= tolerance * targetMeters;
+    }
+
+    private static boolean containsLength(List<Probe> probes, int length) {
+        for (Probe probe : probes) {
+            if (probe.getRequestedMeters() == length) return true;
+        }
+        return false;
+    }
+
+    private static int clamp(int length, int targetMeters) {
+        int min = (int) Math.round(targetMeters * MIN_LENGTH_RATIO);
+        int max = (int) Math.round(targetMeters * MAX_LENGTH_RATIO);
+        return Math.max(min, Math.min(max, length));
+    }
+
+
+    public long getCalibrations() { return calibrations.get(); }
+    public long getProbesSent() { return probesSent.get(); }
+    public long getConverged() { return converged.get(); }
+    public int getLastProbeCount() { return lastProbeCount; }
+    public long getLastElapsedMillis() { return lastElapsedMillis; }
+
+    public LatencyTracker getLatencyTracker() {
+        return latencies;
+    }
+
+    public double getAverageProbes() {
+        long count = getCalibrations();
+        return count == 0 ? 0 : (double) getProbesSent() / count;
+    }
+
+    public String describeStats() {
+        return String.format("calibrations=%d, converged=%d, probes=%d (%.1f avg, last %d), " +
+                        "latency p50=%d ms p95=%d ms (last %d ms)",
+                getCalibrations(), getConverged(), getProbesSent(), getAverageProbes(), getLastProbeCount(),
+                latencies.getPercentile(0.5), latencies.getPercentile(0.95), getLastElapsedMillis());
+    }
+}
@@ -0,0 +1,113 @@
+package org.example;
+
+import org.jxmapviewer.viewer.GeoPosition;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Scores generated loops against what the runner asked for. Lower is better.
+ *
+ * The score adds up the relative distance error, an elevation term that rewards climbing
+ * for hill lovers and penalises it otherwise, a steep penalty for going over the maximum
+ * elevation gain, and the fraction of the loop that runs over ground it already covered.
+ */
+public class RoundTripScorer {
+
+    private static final double DISTANCE_WEIGHT = 1.0;
+    private static final double ELEVATION_WEIGHT = 0.3;
+    private static final double OVER_CAP_WEIGHT = 2.0;
+    private static final double OVERLAP_WEIGHT = 0.8;
+    private static final double OVERLAP_CELL_METERS = 25;
+
+    private final double targetMeters;
+    private final boolean preferHills;
+    private final double maxElevationGain;
+
+    public RoundTripScorer(double targetMeters, boolean preferHills, double maxElevationGain) {
+        this.targetMeters = targetMeters;
+        this.preferHills = preferHills;
+        this.maxElevationGain = maxElevationGain;
+    }
+
+    public static RoundTripScorer forUserProfile(UserProfile profile, double distanceKm) {
+        return new RoundTripScorer(distanceKm * 1000, profile.isPreferHillRoutes(), profile.getMaxElevationGain());
+    }
+
+    public double score(RouteResult result) {
+        if (result == null || result.getPointCount() < 3) return Double.POSITIVE_INFINITY;
+        return DISTANCE_WEIGHT * distanceError(result)
+                + elevationTerm(result.getAscent())
+                + OVERLAP_WEIGHT * selfOverlap(result.getPoints());
+    }
+
+    /**
+     * |actual - target| / target, using the API's distance or the polyline length if missing.
+     */
+    public double distanceError(RouteResult result) {
+        if (targetMeters <= 0) return 0;
+        double actual = result.getDistance() > 0 ? result.getDistance() : polylineMeters(result.getPoints());
+        return Math.abs(actual - targetMeters) / targetMeters;
+    }
+
+    double elevationTerm(double ascent) {
+        if (maxElevationGain <= 0) return 0;
+        double withinCap = Math.min(ascent, maxElevationGain) / maxElevationGain;
+        double term = preferHills ? -ELEVATION_WEIGHT * withinCap : ELEVATION_WEIGHT * withinCap;
+        if (ascent > maxElevationGain) {
+            term += OVER_CAP_WEIGHT * (ascent - maxElevationGain) / maxElevationGain;
+        }
+        return term;
+    }
+
+    /**
+     * Fraction of grid cells entered along the loop that had already been entered before,
+     * ignoring the final return into the start cell. 0 for a clean loop, about 0.5 for a pure
+     * out-and-back.
+     */
+    static double selfOverlap(List<GeoPosition> points) {
+        if (points == null || points.size() < 3) return 0;
+
+        double cellLat = OVERLAP_CELL_METERS / 111_320.0;
+        double cellLon = cellLat / Math.max(0.01, Math.cos(Math.toRadians(points.get(0).getLatitude())));
+
+        Set<Long> visited = new HashSet<>();
+        long startCell = cellOf(points.get(0), cellLat, cellLon);
+        long previousCell = startCell;
+        visited.add(startCell);
+        int entered = 0;
+        int revisited = 0;
+
+        for (int i = 1; i < points.size(); i++) {
+            long cell = cellOf(points.get(i), cellLat, cellLon);
+            if (cell == previousCell) continue;
+            previousCell = cell;
+            entered++;
+            if (!visited.add(cell) && !(cell == startCell && i == points.size() - 1)) {
+                revisited++;
+            }
+        }
+        return entered == 0 ? 0 : (double) revisited / entered;
+    }
+
+    private static long cellOf(GeoPosition gp, double cellLat, double cellLon) {
+        long row = (long) Math.floor(gp.getLatitude() / cellLat);
+        long col = (long) Math.floor(gp.getLongitude() / cellLon);
+        return (row << 32) ^ (col & 0xffffffffL);
+    }
+
+    static double polylineMeters(List<GeoPosition> points) {
+        double total = 0;
+        for (int i = 1; i < points.size(); i++) {
+            GeoPosition a = points.get(i - 1);
+            GeoPosition b = points.get(i);
+            total += Point.haversineKm(a.getLatitude(), a.getLongitude(), b.getLatitude(), b.getLongitude()) * 1000;
+        }
+        return total;
+    }
+
+    public double getTargetMeters() {
+        return targetMeters;
+    }
+}
@@ -0,0 +1,172 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Asks for several round trips with different seeds at once and keeps the best-scoring one.
+ *
+ * Requests run on a small bounded pool, so the wall-clock cost is close to one request
+ * while the user gets the pick of several loops. Every candidate that came back is kept,
+ * ordered best first.
+ */
+public class RoundTripSearch {
+
+    public interface Generator {
+        RouteResult generate(int seed);
+    }
+
+    public static class Candidate {
+        private final int seed;
+        private final RouteResult result;
+        private final double score;
+
+        Candidate(int seed, RouteResult result, double score) {
+            this.seed = seed;
+            this.result = result;
+            this.score = score;
+        }
+
+        public int getSeed() { return seed; }
+        public RouteResult getResult() { return result; }
+        public double getScore() { return score; }
+    }
+
+    public static class Result {
+        private final List<Candidate> candidates;
+        private final int seedsRequested;
+        private final long elapsedMillis;
+
+        Result(List<Candidate> candidates, int seedsRequested, long elapsedMillis) {
+            this.candidates = Collections.unmodifiableList(candidates);
+            this.seedsRequested = seedsRequested;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        /**
+         * Candidates that came back, best score first.
+         */
+        public List<Candidate> getCandidates() { return candidates; }
+        public int getSeedsRequested() { return seedsRequested; }
+        public long getElapsedMillis() { return elapsedMillis; }
+
+        public Candidate getBest() {
+            return candidates.isEmpty() ? null : candidates.get(0);
+        }
+
+        public RouteResult getBestResult() {
+            return candidates.isEmpty() ? null : candidates.get(0).getResult();
+        }
+
+        /**
+         * The same search with {@code replacement} in place of the best candidate, re-ranked.
+         */
+        Result withBestReplacedBy(Candidate replacement) {
+            List<Candidate> ranked = new ArrayList<>(candidates);
+            ranked.set(0, replacement);
+            ranked.sort(Comparator.comparingDouble(Candidate::getScore));
+            return new Result(ranked, seedsRequested, elapsedMillis);
+        }
+    }
+
+    public static final int DEFAULT_SEED_COUNT = 4;
+    private static final int POOL_SIZE = 4;
+
+    private static final ExecutorService SHARED_EXECUTOR =
+            Executors.newFixedThreadPool(POOL_SIZE, new DaemonThreadFactory("round-trip-search"));
+
+    private final ExecutorService executor;
+
+    private final AtomicLong searches = new AtomicLong();
+    private final AtomicLong seedsRequested = new AtomicLong();
+    private final AtomicLong candidatesReturned = new AtomicLong();
+
+    public RoundTripSearch() {
+        this(SHARED_EXECUTOR);
+    }
+
+    public RoundTripSearch(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Seeds spread out from {@code baseSeed}, so repeated searches explore different loops.
+     */
+    public static List<Integer> seedsFrom(int baseSeed, int count) {
+        List<Integer> seeds = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            seeds.add(Math.floorMod(baseSeed + i * 7919, 100000));
+        }
+        return seeds;
+    }
+
+    /**
+     * @param deadline optional; candidates still running when it passes are cancelled
+     */
+    public Result search(List<Integer> seeds, Generator generator, RoundTripScorer scorer, RoutingDeadline deadline)
+            throws InterruptedException {
+        long start = System.nanoTime();
+        searches.incrementAndGet();
+        seedsRequested.addAndGet(seeds.size());
+
+        CompletionService<Candidate> completions = new InterruptibleCompletionService<>(executor);
+        List<Future<Candidate>> futures = new ArrayList<>(seeds.size());
+        List<Candidate> candidates = new ArrayList<>();
+
+        try {
+            for (int seed : seeds) {
+                futures.add(completions.submit(() -> {
+                    RouteResult result = generator.generate(seed);
+                    return result == null ? null : new Candidate(seed, result, scorer.score(result));
+                }));
+            }
+
+            for (int i = 0; i < seeds.size(); i++) {
+                Future<Candidate> done = deadline == null
+                        ? completions.take()
+                        : completions.poll(deadline.remainingMillis(), TimeUnit.MILLISECONDS);
+                if (done == null) break;
+                try {
+                    Candidate candidate = done.get();
+                    if (candidate != null && !Double.isInfinite(candidate.getScore())) candidates.add(candidate);
+                } catch (ExecutionException e) {
+                    System.err.println("Round trip candidate failed: " + e.getCause());
+                }
+            }
+        } finally {
+            for (Future<Candidate> future : futures) {
+                future.cancel(true);
+            }
+        }
+
+        candidates.sort(Comparator.comparingDouble(Candidate::getScore));
+        candidatesReturned.addAndGet(candidates.size());
+
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        Result result = new Result(candidates, seeds.size(), elapsedMillis);
+        if (result.getBest() != null) {
+            System.out.println(String.format("Round trip search: %d/%d candidates in %d ms, best seed %d (score %.3f)",
+                    candidates.size(), seeds.size(), elapsedMillis, result.getBest().getSeed(),
+                    result.getBest().getScore()));
+        }
+        return result;
+    }
+
+    public long getSearches() { return searches.get(); }
+    public long getSeedsRequested() { return seedsRequested.get(); }
+    public long getCandidatesReturned() { return candidatesReturned.get(); }
+
+    public String describeStats() {
+        return String.format("searches=%d, seeds requested=%d, candidates returned=%d",
+                getSearches(), getSeedsRequested(), getCandidatesReturned());
+    }
+}
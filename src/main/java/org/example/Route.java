@@ -3,12 +3,17 @@ package org.example;
 import org.jxmapviewer.viewer.GeoPosition;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
 /**
  * Route now stores rich Point objects (with type + GeoPosition) internally,
  * but keeps compatibility helpers so existing code keeps working.
+ *
+ * Per-point elevation is kept alongside in a packed float array, NaN where unknown.
+ * The full geometry is always kept for distance and elevation stats; drawing goes through
+ * simplified views that are cached until the route changes.
  */
 
 public class Route {
@@ -16,12 +21,25 @@ public class Route {
     private int id = -1;
     private String name = "";
     private final List<Point> points = new ArrayList<>();
+    private float[] elevations = new float[16];
+
+    private int modificationCount;
+    private int simplifiedAtModification = -1;
+    private double simplifiedTolerance = Double.NaN;
+    private List<GeoPosition> simplifiedPoints;
 
     private double ascentInMeters = 0;
     private double descentInMeters = 0;
 
+    // False for routes loaded without a record of which points were placed by the user
+    private boolean stopsKnown = true;
+
 
     public void addWaypoint(Point p) {
+        addWaypoint(p, Double.NaN);
+    }
+
+    public void addWaypoint(Point p, double elevation) {
         if (p == null) return;
 
         if (points.isEmpty()) {
@@ -34,17 +52,114 @@ public class Route {
             }
         }
         points.add(p);
+        setElevationAt(points.size() - 1, elevation);
+        modificationCount++;
 
         points.get(points.size() - 1).setType(Point.PointType.END);
     }
 
     public void addWaypoint(GeoPosition gp) {
+        addWaypoint(gp, Double.NaN);
+    }
+
+    public void addWaypoint(GeoPosition gp, double elevation) {
         if (gp == null) return;
-        addWaypoint(new Point(gp, Point.PointType.WAYPOINT));
+        addWaypoint(new Point(gp, Point.PointType.WAYPOINT), elevation);
+    }
+
+    /**
+     * Appends the points of a routed leg with their elevations, optionally skipping its
+     * first point when it repeats the current last one. The leg's inner points are marked
+     * {@link Point.PointType#INTERPOLATED}; its last point is a stop.
+     */
+    public void appendRouteResult(RouteResult result, boolean skipFirst) {
+        if (result == null) return;
+        int count = result.getPointCount();
+        for (int i = skipFirst ? 1 : 0; i < count; i++) {
+            addWaypoint(new GeoPosition(result.getLatitude(i), result.getLongitude(i)), result.getElevation(i));
+            if (i > 0 && i < count - 1) points.get(points.size() - 1).setType(Point.PointType.INTERPOLATED);
+        }
+    }
+
+    /**
+     * Replaces the route with legs laid end to end, each starting where the previous one
+     * ended. The climb totals are the sums of the legs'.
+     */
+    public void loadRouteFromLegs(List<RouteResult> legs) {
+        clear();
+        double ascent = 0;
+        double descent = 0;
+        for (RouteResult leg : legs) {
+            appendRouteResult(leg, !points.isEmpty());
+            ascent += leg.getAscent();
+            descent += leg.getDescent();
+        }
+        setElevation(ascent, descent);
+    }
+
+    /**
+     * Replaces the route with the points, elevations and totals of a routing result.
+     */
+    public void loadRouteFromRouteResult(RouteResult result) {
+        clear();
+        if (result == null) return;
+        int count = result.getPointCount();
+        for (int i = 0; i < count; i++) {
+            Point.PointType t;
+            if (i == 0) t = Point.PointType.START;
+            else if (i == count - 1) t = Point.PointType.END;
+            else t = Point.PointType.INTERPOLATED;
+            points.add(new Point(result.getLatitude(i), result.getLongitude(i), t));
+            setElevationAt(i, result.getElevation(i));
+        }
+        setElevation(result.getAscent(), result.getDescent());
+    }
+
+    /**
+     * Elevation of one point in metres, NaN if it is not known.
+     */
+    public double getElevationAt(int index) {
+        if (index < 0 || index >= points.size()) {
+            throw new IndexOutOfBoundsException("index " + index + " of " + points.size());
+        }
+        return elevations[index];
+    }
+
+    public boolean hasPointElevations() {
+        for (int i = 0; i < points.size(); i++) {
+            if (!Float.isNaN(elevations[i])) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Replaces the height of every point, e.g. with heights sampled from a terrain model.
+     * The climb totals are left as they are.
+     */
+    public void setPointElevations(float[] pointElevations) {
+        if (pointElevations.length < points.size()) {
+            throw new IllegalArgumentException(pointElevations.length + " heights for " + points.size() + " points");
+        }
+        for (int i = 0; i < points.size(); i++) {
+            setElevationAt(i, pointElevations[i]);
+        }
+    }
+
+    private void setElevationAt(int index, double elevation) {
+        if (index >= elevations.length) {
+            elevations = Arrays.copyOf(elevations, Math.max(index + 1, elevations.length * 2));
+        }
+        elevations[index] = (float) elevation;
+    }
+
+    private float[] copyElevations() {
+        return Arrays.copyOf(elevations, points.size());
     }
 
     public void clear() {
         points.clear();
+        modificationCount++;
+        stopsKnown = true;
         ascentInMeters = 0;
         descentInMeters = 0;
     }
@@ -57,25 +172,111 @@ public class Route {
         return Collections.unmodifiableList(points);
     }
 
+    /**
+     * Indices of the points the user placed, start and end included: every point except the
+     * road geometry routed between them.
+     */
+    public int[] getStopIndices() {
+        int[] stops = new int[points.size()];
+        int count = 0;
+        for (int i = 0; i < points.size(); i++) {
+            if (points.get(i).getType() != Point.PointType.INTERPOLATED) stops[count++] = i;
+        }
+        return Arrays.copyOf(stops, count);
+    }
+
+    /**
+     * Packed copy of the points, elevations and climb totals.
+     */
+    public RouteResult toRouteResult() {
+        int count = points.size();
+        double[] latitudes = new double[count];
+        double[] longitudes = new double[count];
+        for (int i = 0; i < count; i++) {
+            latitudes[i] = points.get(i).getLatitude();
+            longitudes[i] = points.get(i).getLongitude();
+        }
+        return RouteResult.fromArrays(latitudes, longitudes, hasPointElevations() ? copyElevations() : null, count,
+                ascentInMeters, descentInMeters, getTotalDistance() * 1000);
+    }
+
     public List<GeoPosition> getAllPointsAsGeoPositions() {
         List<GeoPosition> list = new ArrayList<>(points.size());
         for (Point p : points) list.add(p.getGeoPosition());
         return list;
     }
 
+    /**
+     * Whether {@link #getStopIndices()} reflects the points the user placed. False after
+     * {@link #loadRouteFromGeoPositions(List)}, where every point looks like a stop.
+     */
+    public boolean hasKnownStops() {
+        return stopsKnown;
+    }
+
+    /**
+     * Replaces the route with bare positions whose stops are unknown, e.g. a route saved
+     * before stops were recorded. Every inner point is marked a waypoint.
+     */
     public void loadRouteFromGeoPositions(List<GeoPosition> pts) {
-        points.clear();
+        loadRouteFromGeoPositions(pts, null);
+        stopsKnown = pts == null || pts.isEmpty();
+    }
+
+    /**
+     * Replaces the route with positions of which only those at {@code stopIndices} were placed
+     * by the user; the rest are marked {@link Point.PointType#INTERPOLATED}. A null
+     * {@code stopIndices} marks every point a stop.
+     */
+    public void loadRouteFromGeoPositions(List<GeoPosition> pts, int[] stopIndices) {
+        clear();
         if (pts == null || pts.isEmpty()) return;
+        boolean[] isStop = new boolean[pts.size()];
+        if (stopIndices == null) {
+            Arrays.fill(isStop, true);
+        } else {
+            for (int index : stopIndices) {
+                if (index >= 0 && index < isStop.length) isStop[index] = true;
+            }
+        }
         for (int i = 0; i < pts.size(); i++) {
             Point.PointType t;
             if (i == 0) t = Point.PointType.START;
             else if (i == pts.size() - 1) t = Point.PointType.END;
-            else t = Point.PointType.WAYPOINT;
+            else t = isStop[i] ? Point.PointType.WAYPOINT : Point.PointType.INTERPOLATED;
             points.add(new Point(pts.get(i), t));
+            setElevationAt(i, Double.NaN);
         }
     }
 
 
+    /**
+     * The route simplified so that no dropped point lies more than {@code toleranceMeters}
+     * from the drawn line. The last view is cached until the route or tolerance changes.
+     */
+    public List<GeoPosition> getSimplifiedGeoPositions(double toleranceMeters) {
+        if (simplifiedPoints != null && simplifiedAtModification == modificationCount
+                && simplifiedTolerance == toleranceMeters) {
+            return simplifiedPoints;
+        }
+
+        int count = points.size();
+        double[] latitudes = new double[count];
+        double[] longitudes = new double[count];
+        for (int i = 0; i < count; i++) {
+            latitudes[i] = points.get(i).getLatitude();
+            longitudes[i] = points.get(i).getLongitude();
+        }
+        int[] kept = RouteSimplifier.keptIndices(latitudes, longitudes, count, toleranceMeters);
+        List<GeoPosition> simplified = new ArrayList<>(kept.length);
+        for (int index : kept) simplified.add(points.get(index).getGeoPosition());
+
+        simplifiedPoints = Collections.unmodifiableList(simplified);
+        simplifiedTolerance = toleranceMeters;
+        simplifiedAtModification = modificationCount;
+        return simplifiedPoints;
+    }
+
     public double getTotalDistance() {
         double total = 0.0;
         for (int i = 1; i < points.size(); i++) {
@@ -125,17 +326,24 @@ public class Route {
 
 
     public RouteMemento createMemento() {
-        return new RouteMemento(copyPoints(points), id, name, ascentInMeters, descentInMeters);
+        return new RouteMemento(copyPoints(points), copyElevations(), id, name, ascentInMeters, descentInMeters,
+                stopsKnown);
     }
 
     public void applyMemento(RouteMemento m) {
         if (m == null) return;
         points.clear();
         points.addAll(copyPoints(m.getPoints()));
+        modificationCount++;
+        float[] saved = m.getElevations();
+        for (int i = 0; i < points.size(); i++) {
+            setElevationAt(i, saved != null && i < saved.length ? saved[i] : Double.NaN);
+        }
         this.id = m.getId();
         this.name = m.getName();
         this.ascentInMeters = m.getAscent();
         this.descentInMeters = m.getDescent();
+        this.stopsKnown = m.hasKnownStops();
     }
 
     private static List<Point> copyPoints(List<Point> src) {
@@ -0,0 +1,337 @@
+package org.example;
+
+import org.jxmapviewer.viewer.GeoPosition;
+
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Two-tier cache of routing results.
+ *
+ * The first tier is an in-memory LRU bounded by the estimated size of the cached routes.
+ * The second tier is a SQLite table whose entries expire after a fixed time to live; a hit
+ * there is copied back into memory. Either tier can be left out.
+ */
+public class RouteCache {
+
+    public static final String DEFAULT_DATABASE_URL = "jdbc:sqlite:route_cache.db";
+    public static final long DEFAULT_MEMORY_BYTES = 8L * 1024 * 1024;
+    public static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofDays(7);
+    public static final int DEFAULT_DECIMAL_PLACES = 5;
+
+    // Rough heap cost of one map entry and its key, on top of the result itself
+    private static final long BYTES_PER_ENTRY = 96;
+
+    // First byte of every stored result; rows in any other format are dropped on read
+    static final byte FORMAT_VERSION = 1;
+
+    private final long maxMemoryBytes;
+    private final long timeToLiveMillis;
+    private final int decimalPlaces;
+
+    private final LinkedHashMap<RouteCacheKey, RouteResult> memory = new LinkedHashMap<>(64, 0.75f, true);
+    private long memoryBytes;
+
+    private Connection connection;
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong puts = new AtomicLong();
+    private final AtomicLong memoryEvictions = new AtomicLong();
+    private final AtomicLong diskExpirations = new AtomicLong();
+    private final AtomicLong diskDiscarded = new AtomicLong();
+
+    /**
+     * @param maxMemoryBytes   size bound of the in-memory tier, 0 to disable it
+     * @param databaseUrl      JDBC url of the on-disk tier, null to disable it
+     * @param timeToLive       how long on-disk entries stay valid
+     * @param decimalPlaces    precision waypoints are rounded to before keying
+     */
+    public RouteCache(long maxMemoryBytes, String databaseUrl, Duration timeToLive, int decimalPlaces) {
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.timeToLiveMillis = timeToLive.toMillis();
+        this.decimalPlaces = decimalPlaces;
+
+        if (databaseUrl != null) {
+            try {
+                connection = DriverManager.getConnection(databaseUrl);
+                createTableIfNeeded();
+                purgeExpired();
+            } catch (SQLException e) {
+                System.err.println("Route cache database unavailable, caching in memory only: " + e.getMessage());
+                connection = null;
+            }
+        }
+    }
+
+    /**
+     * Cache with the default sizes, stored in route_cache.db next to routes.db.
+     */
+    public static RouteCache createDefault() {
+        return new RouteCache(DEFAULT_MEMORY_BYTES, DEFAULT_DATABASE_URL, DEFAULT_TIME_TO_LIVE, DEFAULT_DECIMAL_PLACES);
+    }
+
+    private void createTableIfNeeded() throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.executeUpdate(
+                    "CREATE TABLE IF NOT EXISTS route_cache (" +
+                            "  cache_key TEXT PRIMARY KEY," +
+                            "  result BLOB NOT NULL," +
+                            "  created_at INTEGER NOT NULL)"
+            );
+            stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_route_cache_created ON route_cache(created_at)");
+        }
+    }
+
+    public int getDecimalPlaces() {
+        return decimalPlaces;
+    }
+
+    public RouteCacheKey keyForRoute(RoutingAPI.RoutingProfile profile, List<GeoPosition> waypoints) {
+        return RouteCacheKey.forRoute(profile, waypoints, decimalPlaces);
+    }
+
+    public RouteCacheKey keyForRoundTrip(RoutingAPI.RoutingProfile profile, GeoPosition start, int lengthMeters,
+                                         int points, Integer seed) {
+        return RouteCacheKey.forRoundTrip(profile, start, lengthMeters, points, seed, decimalPlaces);
+    }
+
+
+    /**
+     * @return the cached result, or null on a miss
+     */
+    public RouteResult get(RouteCacheKey key) {
+        synchronized (memory) {
+            RouteResult cached = memory.get(key);
+            if (cached != null) {
+                memoryHits.incrementAndGet();
+                return cached;
+            }
+        }
+
+        RouteResult stored = loadFromDisk(key);
+        if (stored != null) {
+            diskHits.incrementAndGet();
+            putInMemory(key, stored);
+            return stored;
+        }
+
+        misses.incrementAndGet();
+        return null;
+    }
+
+    public void put(RouteCacheKey key, RouteResult result) {
+        if (result == null || !result.hasPoints()) return;
+        puts.incrementAndGet();
+        putInMemory(key, result);
+        saveToDisk(key, result);
+    }
+
+    private void putInMemory(RouteCacheKey key, RouteResult result) {
+        long size = estimateBytes(result);
+        if (size > maxMemoryBytes) return;
+
+        synchronized (memory) {
+            RouteResult previous = memory.put(key, result);
+            if (previous != null) memoryBytes -= estimateBytes(previous);
+            memoryBytes += size;
+
+            Iterator<java.util.Map.Entry<RouteCacheKey, RouteResult>> eldest = memory.entrySet().iterator();
+            while (memoryBytes > maxMemoryBytes && eldest.hasNext()) {
+                memoryBytes -= estimateBytes(eldest.next().getValue());
+                eldest.remove();
+                memoryEvictions.incrementAndGet();
+            }
+        }
+    }
+
+    static long estimateBytes(RouteResult result) {
+        return BYTES_PER_ENTRY + result.estimateHeapBytes();
+    }
+
+
+    private synchronized RouteResult loadFromDisk(RouteCacheKey key) {
+        if (connection == null) return null;
+        String sql = "SELECT result, created_at FROM route_cache WHERE cache_key = ?";
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            ps.setString(1, key.toStorageKey());
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return null;
+                if (System.currentTimeMillis() - rs.getLong("created_at") > timeToLiveMillis) {
+                    deleteFromDisk(key);
+                    diskExpirations.incrementAndGet();
+                    return null;
+                }
+                try {
+                    return decode(rs.getBytes("result"));
+                } catch (RuntimeException e) {
+                    // A truncated or old-format row would fail this route on every lookup until it expired
+                    System.err.println("Route cache entry " + key + " unreadable, dropping it: " + e);
+                    deleteFromDisk(key);
+                    diskDiscarded.incrementAndGet();
+                    return null;
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Route cache read failed: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private synchronized void saveToDisk(RouteCacheKey key, RouteResult result) {
+        if (connection == null) return;
+        String sql = "INSERT OR REPLACE INTO route_cache (cache_key, result, created_at) VALUES (?, ?, ?)";
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            ps.setString(1, key.toStorageKey());
+            ps.setBytes(2, encode(result));
+            ps.setLong(3, System.currentTimeMillis());
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            System.err.println("Route cache write failed: " + e.getMessage());
+        }
+    }
+
+    private void deleteFromDisk(RouteCacheKey key) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement("DELETE FROM route_cache WHERE cache_key = ?")) {
+            ps.setString(1, key.toStorageKey());
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Drops every on-disk entry older than the time to live.
+     *
+     * @return number of entries removed
+     */
+    public synchronized int purgeExpired() {
+        if (connection == null) return 0;
+        try (PreparedStatement ps = connection.prepareStatement("DELETE FROM route_cache WHERE created_at < ?")) {
+            ps.setLong(1, System.currentTimeMillis() - timeToLiveMillis);
+            int removed = ps.executeUpdate();
+            diskExpirations.addAndGet(removed);
+            return removed;
+        } catch (SQLException e) {
+            System.err.println("Route cache purge failed: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    public void clear() {
+        synchronized (memory) {
+            memory.clear();
+            memoryBytes = 0;
+        }
+        synchronized (this) {
+            if (connection == null) return;
+            try (Statement stmt = connection.createStatement()) {
+                stmt.executeUpdate("DELETE FROM route_cache");
+            } catch (SQLException e) {
+                System.err.println("Route cache clear failed: " + e.getMessage());
+            }
+        }
+    }
+
+    public synchronized void close() {
+        if (connection == null) return;
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+        }
+        connection = null;
+    }
+
+
+    // Layout: format version, point count, elevation flag, latitudes, longitudes, [elevations],
+    // ascent, descent, distance
+    static byte[] encode(RouteResult result) {
+        int count = result.getPointCount();
+        boolean withElevation = result.hasPointElevations();
+        ByteBuffer buffer = ByteBuffer.allocate(6 + count * (withElevation ? 20 : 16) + 24);
+        buffer.put(FORMAT_VERSION);
+        buffer.putInt(count);
+        buffer.put((byte) (withElevation ? 1 : 0));
+        for (int i = 0; i < count; i++) buffer.putDouble(result.getLatitude(i));
+        for (int i = 0; i < count; i++) buffer.putDouble(result.getLongitude(i));
+        if (withElevation) {
+            for (int i = 0; i < count; i++) buffer.putFloat((float) result.getElevation(i));
+        }
+        buffer.putDouble(result.getAscent());
+        buffer.putDouble(result.getDescent());
+        buffer.putDouble(result.getDistance());
+        return buffer.array();
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code bytes} is not a complete result in the current format
+     */
+    static RouteResult decode(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        byte version = buffer.get();
+        if (version != FORMAT_VERSION) {
+            throw new IllegalArgumentException("unknown route cache format " + version);
+        }
+        int count = buffer.getInt();
+        boolean withElevation = buffer.get() != 0;
+        if (count < 0 || buffer.remaining() != count * (withElevation ? 20L : 16L) + 24) {
+            throw new IllegalArgumentException("route cache entry of " + bytes.length + " bytes does not hold "
+                    + count + " points");
+        }
+        double[] latitudes = new double[count];
+        double[] longitudes = new double[count];
+        for (int i = 0; i < count; i++) latitudes[i] = buffer.getDouble();
+        for (int i = 0; i < count; i++) longitudes[i] = buffer.getDouble();
+        float[] elevations = null;
+        if (withElevation) {
+            elevations = new float[count];
+            for (int i = 0; i < count; i++) elevations[i] = buffer.getFloat();
+        }
+        return RouteResult.fromArrays(latitudes, longitudes, elevations, count,
+                buffer.getDouble(), buffer.getDouble(), buffer.getDouble());
+    }
+
+
+    public long getMemoryHits() { return memoryHits.get(); }
+    public long getDiskHits() { return diskHits.get(); }
+    public long getMisses() { return misses.get(); }
+    public long getPuts() { return puts.get(); }
+    public long getMemoryEvictions() { return memoryEvictions.get(); }
+    public long getDiskExpirations() { return diskExpirations.get(); }
+    public long getDiskDiscarded() { return diskDiscarded.get(); }
+
+    public int getMemoryEntryCount() {
+        synchronized (memory) {
+            return memory.size();
+        }
+    }
+
+    public long getMemoryBytes() {
+        synchronized (memory) {
+            return memoryBytes;
+        }
+    }
+
+    public double getHitRate() {
+        long hits = getMemoryHits() + getDiskHits();
+        long total = hits + getMisses();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    public String describeStats() {
+        return String.format("hits=%d memory + %d disk, misses=%d (%.0f%% hit rate), " +
+                        "memory=%d entries / %d B, evictions=%d, expired=%d, unreadable=%d",
+                getMemoryHits(), getDiskHits(), getMisses(), getHitRate() * 100,
+                getMemoryEntryCount(), getMemoryBytes(), getMemoryEvictions(), getDiskExpirations(),
+                getDiskDiscarded());
+    }
+}
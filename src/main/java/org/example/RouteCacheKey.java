@@ -0,0 +1,115 @@
+package org.example;
+
+import org.jxmapviewer.viewer.GeoPosition;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Identity of one routing request: the profile, the waypoints rounded to a fixed number of
+ * decimal places, and the round-trip options when there are any.
+ *
+ * Clicks a metre or so apart land on the same key, so redrawing a leg can be answered
+ * from the cache instead of the network.
+ */
+public final class RouteCacheKey {
+
+    private static final int NO_ROUND_TRIP = -1;
+
+    private final RoutingAPI.RoutingProfile profile;
+    private final long[] quantizedCoordinates;
+    private final int roundTripLengthMeters;
+    private final int roundTripPoints;
+    private final Integer roundTripSeed;
+    private final int hash;
+
+    private RouteCacheKey(RoutingAPI.RoutingProfile profile, long[] quantizedCoordinates,
+                          int roundTripLengthMeters, int roundTripPoints, Integer roundTripSeed) {
+        this.profile = profile;
+        this.quantizedCoordinates = quantizedCoordinates;
+        this.roundTripLengthMeters = roundTripLengthMeters;
+        this.roundTripPoints = roundTripPoints;
+        this.roundTripSeed = roundTripSeed;
+
+        int h = profile.hashCode();
+        h = 31 * h + Arrays.hashCode(quantizedCoordinates);
+        h = 31 * h + roundTripLengthMeters;
+        h = 31 * h + roundTripPoints;
+        h = 31 * h + (roundTripSeed == null ? 0 : roundTripSeed);
+        this.hash = h;
+    }
+
+    /**
+     * Key for a point-to-point route through {@code waypoints}.
+     */
+    public static RouteCacheKey forRoute(RoutingAPI.RoutingProfile profile, List<GeoPosition> waypoints,
+                                         int decimalPlaces) {
+        return new RouteCacheKey(profile, quantize(waypoints, decimalPlaces), NO_ROUND_TRIP, NO_ROUND_TRIP, null);
+    }
+
+    /**
+     * Key for a generated loop from {@code start}.
+     */
+    public static RouteCacheKey forRoundTrip(RoutingAPI.RoutingProfile profile, GeoPosition start, int lengthMeters,
+                                             int points, Integer seed, int decimalPlaces) {
+        return new RouteCacheKey(profile, quantize(List.of(start), decimalPlaces), lengthMeters, points, seed);
+    }
+
+    static long[] quantize(List<GeoPosition> waypoints, int decimalPlaces) {
+        double scale = Math.pow(10, decimalPlaces);
+        long[] quantized = new long[waypoints.size() * 2];
+        for (int i = 0; i < waypoints.size(); i++) {
+            GeoPosition gp = waypoints.get(i);
+            quantized[2 * i] = Math.round(gp.getLatitude() * scale);
+            quantized[2 * i + 1] = Math.round(gp.getLongitude() * scale);
+        }
+        return quantized;
+    }
+
+    public RoutingAPI.RoutingProfile getProfile() {
+        return profile;
+    }
+
+    public boolean isRoundTrip() {
+        return roundTripLengthMeters != NO_ROUND_TRIP;
+    }
+
+    /**
+     * Stable text form used as the primary key of the on-disk tier.
+     */
+    public String toStorageKey() {
+        StringBuilder sb = new StringBuilder(profile.getValue()).append('|');
+        for (int i = 0; i < quantizedCoordinates.length; i += 2) {
+            if (i > 0) sb.append(';');
+            sb.append(quantizedCoordinates[i]).append(',').append(quantizedCoordinates[i + 1]);
+        }
+        if (isRoundTrip()) {
+            sb.append("|rt=").append(roundTripLengthMeters).append(',').append(roundTripPoints)
+                    .append(',').append(roundTripSeed == null ? "-" : roundTripSeed.toString());
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof RouteCacheKey)) return false;
+        RouteCacheKey other = (RouteCacheKey) o;
+        return hash == other.hash
+                && profile == other.profile
+                && roundTripLengthMeters == other.roundTripLengthMeters
+                && roundTripPoints == other.roundTripPoints
+                && java.util.Objects.equals(roundTripSeed, other.roundTripSeed)
+                && Arrays.equals(quantizedCoordinates, other.quantizedCoordinates);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return toStorageKey();
+    }
+}
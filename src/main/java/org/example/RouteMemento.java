@@ -1,26 +1,46 @@
 package org.example;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 
 public class RouteMemento {
     private final List<Point> points;
+    private final float[] elevations;
     private final int id;
     private final String name;
     private final double ascent;
     private final double descent;
+    private final boolean stopsKnown;
 
     public RouteMemento(List<Point> points, int id, String name, double ascent, double descent) {
+        this(points, null, id, name, ascent, descent);
+    }
+
+    /**
+     * @param elevations per-point elevations parallel to {@code points}, or null if unknown
+     */
+    public RouteMemento(List<Point> points, float[] elevations, int id, String name, double ascent, double descent) {
+        this(points, elevations, id, name, ascent, descent, true);
+    }
+
+    /**
+     * @param stopsKnown whether the point types tell the user's stops from road geometry
+     */
+    public RouteMemento(List<Point> points, float[] elevations, int id, String name, double ascent, double descent,
+                        boolean stopsKnown) {
         List<Point> copy = new ArrayList<>(points.size());
         for (Point p : points) {
             copy.add(new Point(p.getGeoPosition(), p.getType()));
         }
         this.points = copy;
+        this.elevations = elevations == null ? null : Arrays.copyOf(elevations, elevations.length);
         this.id = id;
         this.name = name;
         this.ascent = ascent;
         this.descent = descent;
+        this.stopsKnown = stopsKnown;
     }
 
     public RouteMemento(List<Point> points, int id, String name) {
@@ -35,8 +55,16 @@ public class RouteMemento {
         return copy;
     }
 
+    /**
+     * @return a copy of the per-point elevations, or null if none were saved
+     */
+    public float[] getElevations() {
+        return elevations == null ? null : Arrays.copyOf(elevations, elevations.length);
+    }
+
     public int getId() { return id; }
     public String getName() { return name; }
     public double getAscent() { return ascent; }
     public double getDescent() { return descent; }
+    public boolean hasKnownStops() { return stopsKnown; }
 }
\ No newline at end of file
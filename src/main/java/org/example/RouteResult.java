@@ -1,26 +1,112 @@
 package org.example;
 
 import org.jxmapviewer.viewer.GeoPosition;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.RandomAccess;
 
 /**
  * Holds the result of a routing API call, including coordinates and elevation data.
+ *
+ * Results parsed from the API keep their points in packed primitive arrays (latitude,
+ * longitude and per-point elevation) rather than one GeoPosition per point; getPoints()
+ * then hands out a lazy view over those arrays.
  */
 public class RouteResult {
     private final List<GeoPosition> points;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final float[] elevations;
+    private final int packedCount;
+    private List<GeoPosition> pointsView;
+
     private final double ascentInMeters;
     private final double descentInMeters;
     private final double distanceInMeters;
 
     public RouteResult(List<GeoPosition> points, double ascent, double descent, double distance) {
         this.points = points;
+        this.latitudes = null;
+        this.longitudes = null;
+        this.elevations = null;
+        this.packedCount = 0;
         this.ascentInMeters = ascent;
         this.descentInMeters = descent;
         this.distanceInMeters = distance;
     }
 
+    private RouteResult(double[] latitudes, double[] longitudes, float[] elevations, int count,
+                        double ascent, double descent, double distance) {
+        this.points = null;
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        this.elevations = elevations;
+        this.packedCount = count;
+        this.ascentInMeters = ascent;
+        this.descentInMeters = descent;
+        this.distanceInMeters = distance;
+    }
+
+    /**
+     * Packed result over the first {@code count} entries of the arrays, which are taken over
+     * without copying.
+     *
+     * @param elevations per-point elevation in metres, NaN where unknown, or null if none at all
+     */
+    public static RouteResult fromArrays(double[] latitudes, double[] longitudes, float[] elevations, int count,
+                                         double ascent, double descent, double distance) {
+        if (latitudes.length < count || longitudes.length < count || (elevations != null && elevations.length < count)) {
+            throw new IllegalArgumentException("arrays shorter than point count " + count);
+        }
+        return new RouteResult(latitudes, longitudes, elevations, count, ascent, descent, distance);
+    }
+
+    /**
+     * The points as GeoPositions. For packed results this is a read-only view that creates
+     * each GeoPosition on access.
+     */
     public List<GeoPosition> getPoints() {
-        return points;
+        if (points != null || latitudes == null) return points;
+        if (pointsView == null) pointsView = new PackedPointsView();
+        return pointsView;
+    }
+
+    public double getLatitude(int index) {
+        return latitudes != null ? latitudes[checkIndex(index)] : points.get(index).getLatitude();
+    }
+
+    public double getLongitude(int index) {
+        return longitudes != null ? longitudes[checkIndex(index)] : points.get(index).getLongitude();
+    }
+
+    /**
+     * Elevation of one point in metres, NaN if the API did not send one.
+     */
+    public double getElevation(int index) {
+        if (elevations == null) {
+            checkIndex(index);
+            return Double.NaN;
+        }
+        return elevations[checkIndex(index)];
+    }
+
+    public boolean hasPointElevations() {
+        return elevations != null;
+    }
+
+    public boolean isPacked() {
+        return latitudes != null;
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= getPointCount()) {
+            throw new IndexOutOfBoundsException("index " + index + " of " + getPointCount());
+        }
+        return index;
     }
 
     public double getAscent() {
@@ -50,10 +136,172 @@ public class RouteResult {
     }
 
     public boolean hasPoints() {
-        return points != null && !points.isEmpty();
+        return getPointCount() > 0;
     }
 
     public int getPointCount() {
+        if (latitudes != null) return packedCount;
         return points != null ? points.size() : 0;
     }
-}
\ No newline at end of file
+
+
+    /**
+     * Distance along the route to each point in metres, starting at 0.
+     */
+    public double[] getCumulativeDistances() {
+        int n = getPointCount();
+        double[] cumulative = new double[n];
+        for (int i = 1; i < n; i++) {
+            cumulative[i] = cumulative[i - 1] + getSegmentMeters(i - 1);
+        }
+        return cumulative;
+    }
+
+    public double getSegmentMeters(int fromIndex) {
+        return Point.haversineKm(getLatitude(fromIndex), getLongitude(fromIndex),
+                getLatitude(fromIndex + 1), getLongitude(fromIndex + 1)) * 1000;
+    }
+
+    /**
+     * Grade in percent of the segment from point {@code fromIndex} to the next one, NaN when
+     * either elevation is unknown or the points coincide.
+     */
+    public double getGradePercent(int fromIndex) {
+        double rise = getElevation(fromIndex + 1) - getElevation(fromIndex);
+        double run = getSegmentMeters(fromIndex);
+        if (Double.isNaN(rise) || run <= 0) return Double.NaN;
+        return rise / run * 100;
+    }
+
+    /**
+     * Splits a route requested through several waypoints into one result per leg, cut at the
+     * route point nearest each intermediate waypoint. Each leg gets a share of the distance in
+     * proportion to its length, and its own climb from the point elevations, scaled so the legs
+     * add up to this result's totals.
+     *
+     * @param waypoints the coordinates the route was requested through, start included
+     * @return {@code waypoints.size() - 1} legs, or just this result when it cannot be split
+     */
+    public List<RouteResult> splitAtWaypoints(List<GeoPosition> waypoints) {
+        int n = getPointCount();
+        int legCount = waypoints.size() - 1;
+        if (legCount <= 1 || n < legCount + 1) return Collections.singletonList(this);
+
+        int[] cuts = new int[legCount + 1];
+        cuts[legCount] = n - 1;
+        for (int leg = 1; leg < legCount; leg++) {
+            GeoPosition waypoint = waypoints.get(leg);
+            double cosLat = Math.cos(Math.toRadians(waypoint.getLatitude()));
+            // Leave at least one point for each leg still to come
+            int last = n - 1 - (legCount - leg);
+            int best = cuts[leg - 1] + 1;
+            double bestDistance = Double.MAX_VALUE;
+            for (int i = best; i <= last; i++) {
+                double dLat = getLatitude(i) - waypoint.getLatitude();
+                double dLon = (getLongitude(i) - waypoint.getLongitude()) * cosLat;
+                double distance = dLat * dLat + dLon * dLon;
+                if (distance < bestDistance) {
+                    bestDistance = distance;
+                    best = i;
+                }
+            }
+            cuts[leg] = best;
+        }
+        return splitAtIndices(cuts);
+    }
+
+    /**
+     * Splits the route into legs between the given point indices, sharing out distance and
+     * climb as {@link #splitAtWaypoints} does.
+     *
+     * @param cuts increasing point indices, the first 0 and the last the final point
+     * @return {@code cuts.length - 1} legs, each holding both of its end points
+     */
+    public List<RouteResult> splitAtIndices(int[] cuts) {
+        int n = getPointCount();
+        int legCount = cuts.length - 1;
+        if (legCount < 1 || cuts[0] != 0 || cuts[legCount] != n - 1) {
+            throw new IllegalArgumentException("cuts must run from 0 to " + (n - 1));
+        }
+        for (int leg = 1; leg <= legCount; leg++) {
+            if (cuts[leg] <= cuts[leg - 1]) throw new IllegalArgumentException("cuts must increase");
+        }
+
+        double[] cumulative = getCumulativeDistances();
+        double totalMeters = cumulative[n - 1];
+        float[][] legElevations = new float[legCount][];
+        double[] legAscents = new double[legCount];
+        double[] legDescents = new double[legCount];
+        double rawAscent = 0;
+        double rawDescent = 0;
+        if (elevations != null) {
+            for (int leg = 0; leg < legCount; leg++) {
+                legElevations[leg] = Arrays.copyOfRange(elevations, cuts[leg], cuts[leg + 1] + 1);
+                DemElevationService.Climb climb = DemElevationService.climbOf(legElevations[leg],
+                        legElevations[leg].length);
+                legAscents[leg] = climb.getAscent();
+                legDescents[leg] = climb.getDescent();
+                rawAscent += climb.getAscent();
+                rawDescent += climb.getDescent();
+            }
+        }
+
+        List<RouteResult> legs = new ArrayList<>(legCount);
+        for (int leg = 0; leg < legCount; leg++) {
+            int from = cuts[leg];
+            int count = cuts[leg + 1] - from + 1;
+            double share = totalMeters > 0 ? (cumulative[cuts[leg + 1]] - cumulative[from]) / totalMeters
+                    : 1.0 / legCount;
+            double[] legLatitudes = new double[count];
+            double[] legLongitudes = new double[count];
+            for (int i = 0; i < count; i++) {
+                legLatitudes[i] = getLatitude(from + i);
+                legLongitudes[i] = getLongitude(from + i);
+            }
+            double ascent = rawAscent > 0 ? ascentInMeters * legAscents[leg] / rawAscent : ascentInMeters * share;
+            double descent = rawDescent > 0 ? descentInMeters * legDescents[leg] / rawDescent : descentInMeters * share;
+            legs.add(fromArrays(legLatitudes, legLongitudes, legElevations[leg], count,
+                    ascent, descent, distanceInMeters * share));
+        }
+        return legs;
+    }
+
+    /**
+     * The same path walked the other way: points in reverse order, ascent and descent swapped.
+     */
+    public RouteResult reversed() {
+        int n = getPointCount();
+        double[] reversedLatitudes = new double[n];
+        double[] reversedLongitudes = new double[n];
+        float[] reversedElevations = hasPointElevations() ? new float[n] : null;
+        for (int i = 0; i < n; i++) {
+            reversedLatitudes[i] = getLatitude(n - 1 - i);
+            reversedLongitudes[i] = getLongitude(n - 1 - i);
+            if (reversedElevations != null) reversedElevations[i] = (float) getElevation(n - 1 - i);
+        }
+        return fromArrays(reversedLatitudes, reversedLongitudes, reversedElevations, n, descentInMeters, ascentInMeters,
+                distanceInMeters);
+    }
+
+    /**
+     * Rough heap footprint, used to size caches.
+     */
+    public long estimateHeapBytes() {
+        int n = getPointCount();
+        if (latitudes != null) return 64 + n * 16L + (elevations != null ? n * 4L : 0);
+        return 32 + n * 40L;
+    }
+
+
+    private class PackedPointsView extends AbstractList<GeoPosition> implements RandomAccess {
+        @Override
+        public GeoPosition get(int index) {
+            return new GeoPosition(latitudes[checkIndex(index)], longitudes[index]);
+        }
+
+        @Override
+        public int size() {
+            return packedCount;
+        }
+    }
+}
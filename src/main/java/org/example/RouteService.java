@@ -6,8 +6,17 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
 
 public class RouteService extends JFrame implements Dashboard.DashboardListener, AuthContext.AuthStateListener {
     private final Map map;
@@ -15,34 +24,80 @@ public class RouteService extends JFrame implements Dashboard.DashboardListener,
     private final UndoManager undoManager;
     private final Database database;
     private final RoutingAPI routingAPI;
+    // Where legs and loops are routed: the API, or an offline graph in front of it once loaded
+    private volatile RoutingBackend routingBackend;
+    // Terrain heights for routes without ORS elevation; null when no tiles are installed
+    private final DemElevationService elevationService;
     private final AuthContext authContext;
     private UserProfile userProfile;
     private Route currentRoute;
-    private GeoPosition pendingPoint;
+    // Clicks made while a leg is being routed, sent together once it finishes
+    private final Deque<GeoPosition> queuedClicks = new ArrayDeque<>();
     private boolean isRouting = false;
+    // Only a drawn leg drains queuedClicks when it finishes
+    private boolean isRoutingLeg = false;
+    // Leg, loop or trace being computed; only the one stored here may touch the route when it finishes
+    private CompletableFuture<?> routingWork;
+    // Legs routed ahead of the click while the pointer rests in draw mode; off unless enabled
+    private final LegPrefetcher legPrefetcher = new LegPrefetcher();
+    private boolean legPrefetchEnabled = false;
     private JLabel statusLabel;
 
     // Route generation state
     private boolean isGenerateMode = false;
     private GeoPosition generateStartPoint = null;
+    private int roundTripSeedCount = RoundTripSearch.DEFAULT_SEED_COUNT;
+    private List<RoundTripSearch.Candidate> lastRoundTripCandidates = new ArrayList<>();
+
+    // Extra time the background call gets past its deadline to finish on its own
+    private static final int DEADLINE_GRACE_MILLIS = 250;
+    // ORS accepts up to 50 coordinates per directions request; stay well below that
+    private static final int MAX_QUEUED_CLICKS_PER_REQUEST = 24;
+    // A trace is many requests; give it far longer than a single leg
+    private static final Duration TRACE_MATCH_BUDGET = Duration.ofSeconds(60);
+    // Matrix plus every re-routed leg, all in parallel
+    private static final Duration ORDER_OPTIMIZATION_BUDGET = Duration.ofSeconds(30);
+    // One matrix request's worth of stops
+    private static final int MAX_STOPS_TO_OPTIMIZE = RoutingAPI.MAX_MATRIX_LOCATIONS;
+    // A route ending this close to its start is a loop, and keeps its end where it is
+    private static final double LOOP_CLOSE_METERS = 30;
+
+    // Optional OpenStreetMap extract routed offline when present in the working directory
+    private static final String OFFLINE_EXTRACT_FILE = "roads.osm.pbf";
+    // Optional directory of SRTM .hgt tiles
+    private static final String ELEVATION_TILE_DIRECTORY = "dem";
 
     // Hardcoded API key
     private static final String API_KEY = "eyJvcmciOiI1YjNjZTM1OTc4NTExMTAwMDFjZjYyNDgiLCJpZCI6ImY3NGVlNmM5NGMzYzQ2OGM5NGRhOTNhY2Q5ZWNjMDRlIiwiaCI6Im11cm11cjY0In0=";
 
     public RouteService() {
+        this(RoutingHttpTransport.getInstance());
+    }
+
+    /**
+     * @param transport carries every routing API request; pass a recording or replaying
+     *                  transport to capture or re-run a session
+     */
+    public RouteService(RoutingHttpTransport transport) {
         super("Route Map App");
 
         this.map = new Map();
         this.dashboard = new Dashboard();
         this.undoManager = new UndoManager();
         this.database = Database.getInstance();
-        this.routingAPI = new RoutingAPI(API_KEY);
+        this.routingAPI = new RoutingAPI(API_KEY, transport);
+        this.routingBackend = routingAPI;
+        this.elevationService = Files.isDirectory(Paths.get(ELEVATION_TILE_DIRECTORY))
+                ? new DemElevationService(Paths.get(ELEVATION_TILE_DIRECTORY)) : null;
         this.authContext = AuthContext.getInstance();
         this.userProfile = UserProfile.getInstanceForNonLoggedInUser();
         this.currentRoute = new Route();
 
         authContext.addListener(this);
         userProfile.applyUserSettingsToRoutingAPI(routingAPI);
+        routingAPI.setRouteCache(RouteCache.createDefault());
+        routingAPI.getRateLimiter().addListener(limiter ->
+                SwingUtilities.invokeLater(() -> showRateLimitState(limiter)));
 
         initializeUserInterface();
         setupMapClickListener();
@@ -51,6 +106,37 @@ public class RouteService extends JFrame implements Dashboard.DashboardListener,
         dashboard.setMapReady(true);
         map.displayRoute(currentRoute);
         refreshStats();
+        loadOfflineGraphIfPresent();
+    }
+
+    /**
+     * Imports {@link #OFFLINE_EXTRACT_FILE} in the background and, if that works, routes on it
+     * with the API as fallback. Until then, or if there is no file, everything goes to the API.
+     */
+    private void loadOfflineGraphIfPresent() {
+        Path extract = Paths.get(OFFLINE_EXTRACT_FILE);
+        if (!Files.isRegularFile(extract)) {
+            return;
+        }
+        SwingWorker<RoadGraph, Void> worker = new SwingWorker<RoadGraph, Void>() {
+            @Override
+            protected RoadGraph doInBackground() throws Exception {
+                return OsmPbfReader.read(extract);
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    OfflineRoutingBackend offline = new OfflineRoutingBackend(get(), routingAPI);
+                    offline.setProfile(routingAPI.getProfile());
+                    routingBackend = offline;
+                    setStatusSuccess("Routing offline on " + offline.describe());
+                } catch (Exception ex) {
+                    System.err.println("Could not load " + extract + ": " + ex.getMessage());
+                }
+            }
+        };
+        worker.execute();
     }
 
 
@@ -88,6 +174,29 @@ public class RouteService extends JFrame implements Dashboard.DashboardListener,
         });
     }
 
+    /**
+     * Prefetches the leg to wherever the pointer rests for {@code dwellMillis} in draw mode.
+     * Costs API requests for legs never clicked, so it is opt-in.
+     */
+    public void enableLegPrefetch(int dwellMillis) {
+        legPrefetchEnabled = true;
+        legPrefetcher.setRateLimiter(routingAPI.getRateLimiter());
+        map.setMapHoverListener(this::handleHoverDwell, dwellMillis);
+    }
+
+    public LegPrefetcher getLegPrefetcher() {
+        return legPrefetcher;
+    }
+
+    private void handleHoverDwell(GeoPosition position) {
+        if (!legPrefetchEnabled || isRouting || isGenerateMode || currentRoute.isEmpty()) return;
+        // Snapped the same way as a click, so the click finds the same end point
+        GeoPosition snapped = routingBackend.snapToNearestRoad(position);
+        List<Point> points = currentRoute.getPoints();
+        legPrefetcher.prefetch(routingBackend, points.get(points.size() - 1).getGeoPosition(),
+                snapped != null ? snapped : position);
+    }
+
     private void setupWindowCloseListener() {
         addWindowListener(new WindowAdapter() {
             @Override
@@ -96,6 +205,9 @@ public class RouteService extends JFrame implements Dashboard.DashboardListener,
                     database.close();
                 } catch (Exception ignored) {
                 }
+                if (routingAPI.getRouteCache() != null) {
+                    routingAPI.getRouteCache().close();
+                }
             }
         });
     }
@@ -107,6 +219,12 @@ public class RouteService extends JFrame implements Dashboard.DashboardListener,
         statusLabel.setForeground(color);
     }
 
+    private void showRateLimitState(RoutingRateLimiter limiter) {
+        if (limiter.isPaused() || limiter.isQuotaLow()) {
+            setStatus(limiter.describeState(), Color.ORANGE);
+        }
+    }
+
     private void setStatusSuccess(String message) {
         setStatus(message, new Color(0, 128, 0));
     }
@@ -126,8 +244,19 @@ public class RouteService extends JFrame implements Dashboard.DashboardListener,
 
 
     private void handleMapClick(GeoPosition clickedPoint) {
+        // Snap locally when the backend has road data, so the point lands on the road at once
+        GeoPosition snappedPoint = routingBackend.snapToNearestRoad(clickedPoint);
+        if (snappedPoint != null) {
+            clickedPoint = snappedPoint;
+        }
+
         if (isRouting) {
-            pendingPoint = clickedPoint;
+            if (isRoutingLeg) {
+                queuedClicks.addLast(clickedPoint);
+            } else {
+                // A trace import, loop or reorder replaces the route, so a click made now has nothing to follow
+                setStatus("Please wait for current operation to complete", Color.ORANGE);
+            }
             return;
         }
 
@@ -137,36 +266,74 @@ public class RouteService extends JFrame implements Dashboard.DashboardListener,
 
         if (currentPoints.isEmpty()) {
             addFirstWaypointToRoute(clickedPoint);
+            return;
+        }
+        LegPrefetcher.Prefetched prefetched = legPrefetchEnabled
+                ? legPrefetcher.take(currentPoints.get(currentPoints.size() - 1), clickedPoint,
+                        routingBackend.getProfile())
+                : null;
+        if (prefetched != null) {
+            System.out.println("Leg prefetch hit: " + legPrefetcher.describeStats());
+            routeFromPrefetchedLeg(prefetched, currentPoints.get(currentPoints.size() - 1));
         } else {
-            routeFromLastPointToClickedPoint(clickedPoint, currentPoints);
+            routeFromLastPointToClickedPoints(Collections.singletonList(clickedPoint), currentPoints);
         }
     }
 
+    /**
+     * Uses a leg prefetched while the pointer rested near the click. It ends where the pointer
+     * rested, which is within {@link LegPrefetcher#DEFAULT_MATCH_METERS} of the click.
+     */
+    private void routeFromPrefetchedLeg(LegPrefetcher.Prefetched prefetched, GeoPosition lastPoint) {
+        List<GeoPosition> clickedPoints = Collections.singletonList(prefetched.getTarget());
+        List<GeoPosition> routeRequest = createMultiPointRouteRequest(lastPoint, clickedPoints);
+        setLegRoutingInProgress();
+        if (!prefetched.isReady()) {
+            map.setPendingPoint(prefetched.getTarget());
+            setStatusInfo("Finding road route...");
+        }
+        awaitRoutingWork(prefetched.getLeg(), routingBackend.newLegDeadline(), clickedPoints, routeRequest);
+    }
+
     private void addFirstWaypointToRoute(GeoPosition clickedPoint) {
         currentRoute.addWaypoint(clickedPoint);
         updateMapAndRefreshStats();
         setStatusSuccess("Start point added. Click to add more points.");
     }
 
-    private void routeFromLastPointToClickedPoint(GeoPosition clickedPoint, List<GeoPosition> currentPoints) {
+    private void routeFromLastPointToClickedPoints(List<GeoPosition> clickedPoints, List<GeoPosition> currentPoints) {
         GeoPosition lastPoint = currentPoints.get(currentPoints.size() - 1);
 
-        setRoutingInProgress(true);
-        setStatusInfo("Finding road route...");
+        setLegRoutingInProgress();
+        map.setPendingPoint(clickedPoints.get(clickedPoints.size() - 1));
+        setStatusInfo(clickedPoints.size() == 1 ? "Finding road route..."
+                : "Finding road route through " + clickedPoints.size() + " points...");
 
-        List<GeoPosition> routeRequest = createTwoPointRouteRequest(lastPoint, clickedPoint);
-        executeRoutingApiCall(clickedPoint, routeRequest);
+        List<GeoPosition> routeRequest = createMultiPointRouteRequest(lastPoint, clickedPoints);
+        executeRoutingApiCall(clickedPoints, routeRequest);
     }
 
-    private List<GeoPosition> createTwoPointRouteRequest(GeoPosition fromPoint, GeoPosition toPoint) {
-        List<GeoPosition> routeRequest = new ArrayList<>();
+    private List<GeoPosition> createMultiPointRouteRequest(GeoPosition fromPoint, List<GeoPosition> toPoints) {
+        List<GeoPosition> routeRequest = new ArrayList<>(toPoints.size() + 1);
         routeRequest.add(fromPoint);
-        routeRequest.add(toPoint);
+        routeRequest.addAll(toPoints);
         return routeRequest;
     }
 
+    /**
+     * Like setRoutingInProgress(true), but clicks made meanwhile are queued and routed after the leg.
+     */
+    private void setLegRoutingInProgress() {
+        setRoutingInProgress(true);
+        isRoutingLeg = true;
+    }
+
     private void setRoutingInProgress(boolean inProgress) {
         isRouting = inProgress;
+        isRoutingLeg = false;
+        if (!inProgress) {
+            map.setPendingPoint(null);
+        }
         if (inProgress) {
             map.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
         } else {
@@ -174,64 +341,169 @@ public class RouteService extends JFrame implements Dashboard.DashboardListener,
         }
     }
 
-    private void executeRoutingApiCall(GeoPosition clickedPoint, List<GeoPosition> routeRequest) {
-        SwingWorker<RouteResult, Void> worker = new SwingWorker<RouteResult, Void>() {
-            @Override
-            protected RouteResult doInBackground() {
-                return routingAPI.snapToRoadsWithTwoPoints(routeRequest);
-            }
+    private void executeRoutingApiCall(List<GeoPosition> clickedPoints, List<GeoPosition> routeRequest) {
+        RoutingDeadline deadline = routingBackend.newLegDeadline();
+        awaitRoutingWork(routingBackend.snapToRoadsWithTwoPointsAsync(routeRequest, deadline), deadline, clickedPoints,
+                routeRequest);
+    }
 
-            @Override
-            protected void done() {
-                setRoutingInProgress(false);
-                try {
-                    RouteResult routeResult = get();
-                    handleRoutingApiResult(routeResult, clickedPoint);
-                } catch (Exception ex) {
-                    handleRoutingApiException(ex, clickedPoint);
-                }
-                processAnyPendingPoint();
+    private void awaitRoutingWork(CompletableFuture<RouteResult> work, RoutingDeadline deadline,
+                                  List<GeoPosition> clickedPoints, List<GeoPosition> routeRequest) {
+        whenRoutingWorkDone(work, (routeResult, error) -> {
+            setRoutingInProgress(false);
+            if (error == null) {
+                handleRoutingApiResult(routeResult, routeRequest, clickedPoints);
+            } else {
+                handleRoutingApiException(error, clickedPoints);
             }
-        };
-        worker.execute();
+            processQueuedClicks();
+        });
+        startDeadlineWatchdog(work, deadline, () -> {
+            setRoutingInProgress(false);
+            addStraightLinesAsFallback(clickedPoints);
+            updateMapAndRefreshStats();
+            setStatusError("Road routing took too long - using straight line");
+            processQueuedClicks();
+        });
     }
 
-    private void handleRoutingApiResult(RouteResult routeResult, GeoPosition clickedPoint) {
+    /**
+     * Makes {@code work} the current routing work and runs {@code handler} on the EDT when it
+     * finishes, unless it has been cancelled or replaced by then.
+     */
+    private <T> void whenRoutingWorkDone(CompletableFuture<T> work, BiConsumer<T, Throwable> handler) {
+        routingWork = work;
+        work.whenComplete((result, error) -> SwingUtilities.invokeLater(() -> {
+            if (routingWork != work) return;
+            routingWork = null;
+            handler.accept(result, error);
+        }));
+    }
+
+    /**
+     * Cancels the leg, loop or trace in flight so its result never lands on the route, and
+     * drops the clicks queued behind it.
+     *
+     * @return whether there was anything to cancel
+     */
+    private boolean cancelRoutingWork() {
+        CompletableFuture<?> work = routingWork;
+        if (work == null) return false;
+        routingWork = null;
+        work.cancel(true);
+        queuedClicks.clear();
+        setRoutingInProgress(false);
+        dashboard.setGenerateButtonEnabled(true);
+        System.out.println("Cancelled routing work in flight");
+        return true;
+    }
+
+    /**
+     * Cancels {@code work} shortly after {@code deadline} if it is still running and runs
+     * {@code onTimeout} on the EDT instead of its completion handler, so the UI never waits
+     * on a slow backend.
+     */
+    private void startDeadlineWatchdog(CompletableFuture<?> work, RoutingDeadline deadline, Runnable onTimeout) {
+        Timer watchdog = new Timer((int) Math.min(Integer.MAX_VALUE, deadline.remainingMillis() + DEADLINE_GRACE_MILLIS),
+                e -> {
+                    if (routingWork == work && work.cancel(true)) {
+                        routingWork = null;
+                        System.err.println("Routing call exceeded its " + deadline.getBudgetMillis() + " ms budget");
+                        onTimeout.run();
+                    }
+                });
+        watchdog.setRepeats(false);
+        work.whenComplete((result, error) -> SwingUtilities.invokeLater(watchdog::stop));
+        watchdog.start();
+    }
+
+    private void handleRoutingApiResult(RouteResult routeResult, List<GeoPosition> routeRequest,
+                                        List<GeoPosition> clickedPoints) {
         if (routeResult != null && routeResult.getPointCount() >= 2) {
-            addRoutedPathToCurrentRoute(routeResult);
-            setStatusSuccess("Route snapped to roads (" + routeResult.getPointCount() + " points)");
+            List<RouteResult> legs = routeResult.splitAtWaypoints(routeRequest);
+            for (int i = 0; i < legs.size(); i++) {
+                // One undo step per click, as if each leg had been routed on its own
+                if (i > 0) undoManager.recordMemento(currentRoute.createMemento());
+                addRoutedPathToCurrentRoute(legs.get(i));
+            }
+            if (legs.size() == 1) {
+                setStatusSuccess("Route snapped to roads (" + routeResult.getPointCount() + " points)");
+            } else {
+                setStatusSuccess(legs.size() + " legs snapped to roads in one request ("
+                        + routeResult.getPointCount() + " points)");
+            }
         } else {
-            addStraightLineAsFallback(clickedPoint);
+            addStraightLinesAsFallback(clickedPoints);
             setStatusError("Road routing failed - using straight line");
         }
         updateMapAndRefreshStats();
     }
 
     private void addRoutedPathToCurrentRoute(RouteResult routeResult) {
-        List<GeoPosition> routedPath = routeResult.getPoints();
-        for (int i = 1; i < routedPath.size(); i++) {
-            currentRoute.addWaypoint(routedPath.get(i));
-        }
+        routeResult = withTerrainElevations(routeResult);
+        currentRoute.appendRouteResult(routeResult, true);
         currentRoute.addElevation(routeResult.getAscent(), routeResult.getDescent());
     }
 
     private void addStraightLineAsFallback(GeoPosition clickedPoint) {
-        currentRoute.addWaypoint(clickedPoint);
+        if (elevationService == null || currentRoute.isEmpty()) {
+            currentRoute.addWaypoint(clickedPoint);
+            return;
+        }
+        Point last = currentRoute.getPoints().get(currentRoute.getPoints().size() - 1);
+        DemElevationService.Climb climb = elevationService.climbAlongSegment(last.getLatitude(), last.getLongitude(),
+                clickedPoint.getLatitude(), clickedPoint.getLongitude());
+        currentRoute.addWaypoint(clickedPoint,
+                elevationService.sample(clickedPoint.getLatitude(), clickedPoint.getLongitude()));
+        currentRoute.addElevation(climb.getAscent(), climb.getDescent());
+    }
+
+    private void addStraightLinesAsFallback(List<GeoPosition> clickedPoints) {
+        for (int i = 0; i < clickedPoints.size(); i++) {
+            if (i > 0) undoManager.recordMemento(currentRoute.createMemento());
+            addStraightLineAsFallback(clickedPoints.get(i));
+        }
     }
 
-    private void handleRoutingApiException(Exception ex, GeoPosition clickedPoint) {
+    /**
+     * Fills in heights from the local terrain tiles when the backend returned none.
+     */
+    private RouteResult withTerrainElevations(RouteResult routeResult) {
+        return elevationService == null ? routeResult : elevationService.withElevations(routeResult);
+    }
+
+    private void handleRoutingApiException(Throwable ex, List<GeoPosition> clickedPoints) {
         System.err.println("Routing error: " + ex.getMessage());
-        addStraightLineAsFallback(clickedPoint);
+        addStraightLinesAsFallback(clickedPoints);
         updateMapAndRefreshStats();
         setStatusError("Routing error: " + ex.getMessage());
     }
 
-    private void processAnyPendingPoint() {
-        if (pendingPoint != null) {
-            GeoPosition nextPoint = pendingPoint;
-            pendingPoint = null;
-            SwingUtilities.invokeLater(() -> handleMapClick(nextPoint));
+    /**
+     * Routes every click queued during the last request in a single multi-waypoint request.
+     * Runs on the EDT straight after that request finishes, so no new click can get ahead.
+     */
+    private void processQueuedClicks() {
+        if (queuedClicks.isEmpty()) return;
+        List<GeoPosition> clicks = new ArrayList<>();
+        while (!queuedClicks.isEmpty() && clicks.size() < MAX_QUEUED_CLICKS_PER_REQUEST) {
+            clicks.add(queuedClicks.pollFirst());
         }
+
+        undoManager.recordMemento(currentRoute.createMemento());
+
+        List<GeoPosition> currentPoints = currentRoute.getAllPointsAsGeoPositions();
+        if (currentPoints.isEmpty()) {
+            // The route was emptied (e.g. by undo) while the clicks were queued
+            addFirstWaypointToRoute(clicks.remove(0));
+            if (clicks.isEmpty()) {
+                processQueuedClicks();
+                return;
+            }
+            undoManager.recordMemento(currentRoute.createMemento());
+            currentPoints = currentRoute.getAllPointsAsGeoPositions();
+        }
+        routeFromLastPointToClickedPoints(clicks, currentPoints);
     }
 
 
@@ -357,12 +629,29 @@ public class RouteService extends JFrame implements Dashboard.DashboardListener,
         }
 
         setGenerationInProgress(true, distanceKm);
-        Integer seed = (int) (System.currentTimeMillis() % 100000);
-        executeGenerationApiCall(startPoint, distanceKm, points, seed);
+        int baseSeed = (int) (System.currentTimeMillis() % 100000);
+        List<Integer> seeds = RoundTripSearch.seedsFrom(baseSeed, roundTripSeedCount);
+        RoundTripScorer scorer = RoundTripScorer.forUserProfile(userProfile, distanceKm);
+        executeGenerationApiCall(startPoint, distanceKm, points, seeds, scorer);
+    }
+
+    /**
+     * How many loops to ask for per generation; the best one by the user's preferences is shown.
+     */
+    public void setRoundTripSeedCount(int seedCount) {
+        this.roundTripSeedCount = Math.max(1, seedCount);
+    }
+
+    /**
+     * Every loop the last generation returned, best first. The first one is the one on the map.
+     */
+    public List<RoundTripSearch.Candidate> getLastRoundTripCandidates() {
+        return lastRoundTripCandidates;
     }
 
     private void setGenerationInProgress(boolean inProgress, double distanceKm) {
         isRouting = inProgress;
+        isRoutingLeg = false;
         if (inProgress) {
             map.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
             dashboard.setGenerateButtonEnabled(false);
@@ -373,28 +662,30 @@ public class RouteService extends JFrame implements Dashboard.DashboardListener,
         }
     }
 
-    private void executeGenerationApiCall(GeoPosition startPoint, double distanceKm, int points, Integer seed) {
-        SwingWorker<RouteResult, Void> worker = new SwingWorker<RouteResult, Void>() {
-            @Override
-            protected RouteResult doInBackground() {
-                return routingAPI.generateRoundTripWithAPI(startPoint, distanceKm, points, seed);
-            }
-
-            @Override
-            protected void done() {
-                setGenerationInProgress(false, 0);
-                try {
-                    RouteResult routeResult = get();
-                    handleGenerationResult(routeResult);
-                } catch (Exception ex) {
-                    handleGenerationException(ex);
-                }
+    private void executeGenerationApiCall(GeoPosition startPoint, double distanceKm, int points,
+                                          List<Integer> seeds, RoundTripScorer scorer) {
+        RoutingDeadline deadline = routingBackend.newRoundTripDeadline();
+        RoutingBackend backend = routingBackend;
+        CompletableFuture<RoundTripSearch.Result> work = InterruptibleFuture.callAsync(
+                () -> backend.generateBestRoundTrip(startPoint, distanceKm, points, seeds, scorer, deadline),
+                routingAPI.getAsyncExecutor());
+        whenRoutingWorkDone(work, (search, error) -> {
+            setGenerationInProgress(false, 0);
+            if (error == null) {
+                lastRoundTripCandidates = search.getCandidates();
+                handleGenerationResult(search.getBestResult());
+            } else {
+                handleGenerationException(error);
             }
-        };
-        worker.execute();
+        });
+        startDeadlineWatchdog(work, deadline, () -> {
+            setGenerationInProgress(false, 0);
+            setStatusError("Route generation timed out - try again or pick a shorter distance");
+        });
     }
 
     private void handleGenerationResult(RouteResult routeResult) {
+        routeResult = withTerrainElevations(routeResult);
         if (routeResult != null && routeResult.getPointCount() >= 3) {
             applyGeneratedRoute(routeResult);
             displayGenerationSuccessMessage(routeResult);
@@ -407,8 +698,7 @@ public class RouteService extends JFrame implements Dashboard.DashboardListener,
         undoManager.recordMemento(currentRoute.createMemento());
 
         currentRoute = new Route();
-        currentRoute.loadRouteFromGeoPositions(routeResult.getPoints());
-        currentRoute.setElevation(routeResult.getAscent(), routeResult.getDescent());
+        currentRoute.loadRouteFromRouteResult(routeResult);
 
         userProfile.recordRouteGenerated();
 
@@ -428,12 +718,13 @@ public class RouteService extends JFrame implements Dashboard.DashboardListener,
 
     private void displayGenerationSuccessMessage(RouteResult routeResult) {
         double actualDistance = currentRoute.getTotalDistance();
-        setStatusSuccess(String.format("Generated %s (↑%s)",
+        String choice = lastRoundTripCandidates.size() > 1 ? " - best of " + lastRoundTripCandidates.size() : "";
+        setStatusSuccess(String.format("Generated %s (↑%s)%s",
                 userProfile.formatDistanceForUnitPreference(actualDistance),
-                userProfile.formatElevationForUnitPreference(routeResult.getAscent())));
+                userProfile.formatElevationForUnitPreference(routeResult.getAscent()), choice));
     }
 
-    private void handleGenerationException(Exception ex) {
+    private void handleGenerationException(Throwable ex) {
         System.err.println("Route generation error: " + ex.getMessage());
         ex.printStackTrace();
         setStatusError("Route generation error: " + ex.getMessage());
@@ -458,6 +749,7 @@ public class RouteService extends JFrame implements Dashboard.DashboardListener,
 
     @Override
     public void onClearRoute() {
+        cancelRoutingWork();
         undoManager.recordMemento(currentRoute.createMemento());
         resetAllRouteState();
         updateMapAndRefreshStats();
@@ -466,14 +758,19 @@ public class RouteService extends JFrame implements Dashboard.DashboardListener,
 
     private void resetAllRouteState() {
         currentRoute.clear();
-        pendingPoint = null;
+        legPrefetcher.clear();
+        queuedClicks.clear();
         isRouting = false;
+        isRoutingLeg = false;
         isGenerateMode = false;
         generateStartPoint = null;
     }
 
     @Override
     public void onUndo() {
+        // Work in flight was started from the state being undone; its result would land on the wrong route
+        cancelRoutingWork();
+        legPrefetcher.clear();
         undoManager.undoMemento(currentRoute);
         updateMapAndRefreshStats();
     }
@@ -497,7 +794,6 @@ public class RouteService extends JFrame implements Dashboard.DashboardListener,
         }
 
         saveRouteToDatabase(name.trim());
-        JOptionPane.showMessageDialog(this, "Route saved.");
     }
 
     private String promptForRouteName() {
@@ -505,30 +801,43 @@ public class RouteService extends JFrame implements Dashboard.DashboardListener,
     }
 
     private void saveRouteToDatabase(String name) {
-        int newId = database.saveRoute(
+        // Saved on the database thread; the id lands on the route that was saved, even if the
+        // user has started another one meanwhile
+        Route saved = currentRoute;
+        saved.setName(name);
+        setStatusInfo("Saving route...");
+        database.saveRouteAsync(
                 name,
-                currentRoute.getTotalDistance(),
-                currentRoute.getEstimatedElevation(),
-                currentRoute.getAllPointsAsGeoPositions()
-        );
-        currentRoute.setName(name);
-        currentRoute.setId(newId);
+                saved.getTotalDistance(),
+                saved.getEstimatedElevation(),
+                saved.getAllPointsAsGeoPositions(),
+                saved.hasKnownStops() ? saved.getStopIndices() : null
+        ).whenComplete((newId, error) -> SwingUtilities.invokeLater(() -> {
+            if (error != null || newId == null || newId <= 0) {
+                setStatusError("Could not save route: " + name);
+                return;
+            }
+            saved.setId(newId);
+            setStatusSuccess("Route saved: " + name);
+            JOptionPane.showMessageDialog(this, "Route saved.");
+        }));
     }
 
     @Override
     public void onLoadRoute() {
-        List<Database.RouteSummary> routes = database.getAllRoutes();
-        if (routes.isEmpty()) {
-            JOptionPane.showMessageDialog(this, "No saved routes found.");
-            return;
-        }
+        database.getAllRoutesAsync().whenComplete((routes, error) -> SwingUtilities.invokeLater(() -> {
+            if (error != null || routes == null || routes.isEmpty()) {
+                JOptionPane.showMessageDialog(this, "No saved routes found.");
+                return;
+            }
 
-        Database.RouteSummary choice = promptForRouteSelection(routes);
-        if (choice == null) {
-            return;
-        }
+            Database.RouteSummary choice = promptForRouteSelection(routes);
+            if (choice == null) {
+                return;
+            }
 
-        loadRouteFromDatabase(choice);
+            loadRouteFromDatabase(choice);
+        }));
     }
 
     private Database.RouteSummary promptForRouteSelection(List<Database.RouteSummary> routes) {
@@ -539,7 +848,14 @@ public class RouteService extends JFrame implements Dashboard.DashboardListener,
     }
 
     private void loadRouteFromDatabase(Database.RouteSummary choice) {
-        List<GeoPosition> pts = database.loadRoutePoints(choice.getId());
+        setStatusInfo("Loading route: " + choice.getName());
+        CompletableFuture<int[]> stops = database.loadRouteStopIndicesAsync(choice.getId());
+        database.loadRoutePointsAsync(choice.getId()).whenComplete((pts, error) ->
+                stops.whenComplete((stopIndices, stopsError) ->
+                        SwingUtilities.invokeLater(() -> showLoadedRoute(choice, pts, stopIndices))));
+    }
+
+    private void showLoadedRoute(Database.RouteSummary choice, List<GeoPosition> pts, int[] stopIndices) {
         if (pts == null || pts.isEmpty()) {
             JOptionPane.showMessageDialog(this, "That route has no points.");
             return;
@@ -548,7 +864,14 @@ public class RouteService extends JFrame implements Dashboard.DashboardListener,
         currentRoute = new Route();
         currentRoute.setId(choice.getId());
         currentRoute.setName(choice.getName());
-        currentRoute.loadRouteFromGeoPositions(pts);
+        if (stopIndices != null) {
+            currentRoute.loadRouteFromGeoPositions(pts, stopIndices);
+        } else {
+            currentRoute.loadRouteFromGeoPositions(pts);
+        }
+        if (elevationService != null) {
+            elevationService.applyTo(currentRoute);
+        }
 
         undoManager.clear();
         updateMapAndRefreshStats();
@@ -558,6 +881,171 @@ public class RouteService extends JFrame implements Dashboard.DashboardListener,
         setStatusSuccess("Loaded route: " + choice.getName());
     }
 
+    @Override
+    public void onImportTrace() {
+        if (isRouting) {
+            setStatus("Please wait for current operation to complete", Color.ORANGE);
+            return;
+        }
+
+        JFileChooser chooser = new JFileChooser();
+        chooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("GPX tracks", "gpx"));
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        matchTraceToRoads(chooser.getSelectedFile().toPath());
+    }
+
+    private void matchTraceToRoads(Path file) {
+        setRoutingInProgress(true);
+        setStatusInfo("Matching " + file.getFileName() + " to roads...");
+
+        TraceMatcher matcher = new TraceMatcher(routingBackend);
+        CompletableFuture<TraceMatcher.Result> work = InterruptibleFuture.callAsync(
+                () -> matcher.match(GpxTraceReader.read(file), RoutingDeadline.after(TRACE_MATCH_BUDGET)),
+                routingAPI.getAsyncExecutor());
+        whenRoutingWorkDone(work, (result, error) -> {
+            setRoutingInProgress(false);
+            if (error == null) {
+                handleTraceMatchResult(result, file);
+            } else {
+                System.err.println("Trace import error: " + error.getMessage());
+                setStatusError("Could not import " + file.getFileName() + ": " + error.getMessage());
+            }
+        });
+    }
+
+    private void handleTraceMatchResult(TraceMatcher.Result result, Path file) {
+        Route matched = result.getRoute();
+        if (matched.isEmpty()) {
+            setStatusError(file.getFileName() + " has no track points");
+            return;
+        }
+        if (elevationService != null && !matched.hasPointElevations()) {
+            elevationService.applyTo(matched);
+        }
+
+        undoManager.recordMemento(currentRoute.createMemento());
+        currentRoute.applyMemento(matched.createMemento());
+        updateMapAndRefreshStats();
+        SwingUtilities.invokeLater(() -> map.fitToRoute(currentRoute));
+
+        String summary = String.format("Imported %s: %d fixes matched through %d waypoints in %d ms",
+                file.getFileName(), result.getTracePoints(), result.getWaypoints(), result.getElapsedMillis());
+        if (result.getWindowsFailed() > 0) {
+            setStatus(summary + " (" + result.getWindowsFailed() + " of " + result.getWindows()
+                    + " stretches left unmatched)", Color.ORANGE);
+        } else {
+            setStatusSuccess(summary);
+        }
+    }
+
+    @Override
+    public void onOptimizeOrder() {
+        if (isRouting) {
+            setStatus("Please wait for current operation to complete", Color.ORANGE);
+            return;
+        }
+
+        if (!currentRoute.hasKnownStops()) {
+            setStatusError("This route was saved without its stops, so their order can't be optimized");
+            return;
+        }
+
+        int[] stopIndices = currentRoute.getStopIndices();
+        List<Point> points = currentRoute.getPoints();
+        List<GeoPosition> stops = new ArrayList<>(stopIndices.length);
+        for (int index : stopIndices) stops.add(points.get(index).getGeoPosition());
+        boolean loop = stops.size() > 2 && Point.haversineKm(stops.get(0).getLatitude(), stops.get(0).getLongitude(),
+                stops.get(stops.size() - 1).getLatitude(), stops.get(stops.size() - 1).getLongitude()) * 1000
+                < LOOP_CLOSE_METERS;
+        if (stops.size() < (loop ? 4 : 3)) {
+            setStatusError("Add at least two stops after the start to optimize their order");
+            return;
+        }
+        if (stops.size() > MAX_STOPS_TO_OPTIMIZE) {
+            setStatusError("Too many stops to optimize (" + stops.size() + ", at most " + MAX_STOPS_TO_OPTIMIZE + ")");
+            return;
+        }
+
+        setRoutingInProgress(true);
+        setStatusInfo("Optimizing the order of " + stops.size() + " stops...");
+
+        List<RouteResult> legs = currentRoute.toRouteResult().splitAtIndices(stopIndices);
+        RoutingBackend backend = routingBackend;
+        RoutingDeadline deadline = RoutingDeadline.after(ORDER_OPTIMIZATION_BUDGET);
+        CompletableFuture<OrderOptimization> work = InterruptibleFuture.callAsync(
+                () -> optimizeStopOrder(backend, stops, legs, loop, deadline), routingAPI.getAsyncExecutor());
+        whenRoutingWorkDone(work, (optimization, error) -> {
+            setRoutingInProgress(false);
+            if (error == null) {
+                handleOrderOptimization(optimization);
+            } else {
+                System.err.println("Order optimization error: " + error.getMessage());
+                setStatusError("Could not optimize the stop order: " + error.getMessage());
+            }
+        });
+    }
+
+    /**
+     * What one press of "Optimize Order" worked out, off the EDT.
+     */
+    private static class OrderOptimization {
+        final DistanceMatrix matrix;
+        final WaypointOrderOptimizer.Result order;
+        final StopReorderer.Result legs;
+
+        OrderOptimization(DistanceMatrix matrix, WaypointOrderOptimizer.Result order, StopReorderer.Result legs) {
+            this.matrix = matrix;
+            this.order = order;
+            this.legs = legs;
+        }
+    }
+
+    private static OrderOptimization optimizeStopOrder(RoutingBackend backend, List<GeoPosition> stops,
+                                                       List<RouteResult> legs, boolean loop,
+                                                       RoutingDeadline deadline) throws InterruptedException {
+        DistanceMatrix matrix = backend.computeMatrix(stops, deadline);
+        if (matrix == null) {
+            if (Thread.currentThread().isInterrupted()) throw new InterruptedException("Order optimization cancelled");
+            matrix = DistanceMatrix.straightLine(stops, backend.getProfile());
+        }
+        WaypointOrderOptimizer.Result order = new WaypointOrderOptimizer().optimize(matrix, loop);
+        System.out.println("Stop order from " + matrix + ": " + order.getInitialSeconds() + " s -> " +
+                order.getOptimizedSeconds() + " s in " + order.getElapsedMillis() + " ms");
+        if (!order.isImproved()) {
+            return new OrderOptimization(matrix, order, null);
+        }
+        StopReorderer reorderer = new StopReorderer(backend);
+        return new OrderOptimization(matrix, order, reorderer.reorder(stops, legs, order.getOrder(), deadline));
+    }
+
+    private void handleOrderOptimization(OrderOptimization optimization) {
+        if (optimization.legs == null) {
+            setStatusSuccess("Stops are already in the fastest order found (" + optimization.matrix.getSource() + ")");
+            return;
+        }
+
+        List<RouteResult> legs = new ArrayList<>(optimization.legs.getLegs().size());
+        for (RouteResult leg : optimization.legs.getLegs()) legs.add(withTerrainElevations(leg));
+        undoManager.recordMemento(currentRoute.createMemento());
+        currentRoute.loadRouteFromLegs(legs);
+        updateMapAndRefreshStats();
+
+        StopReorderer.Result result = optimization.legs;
+        double savedSeconds = optimization.order.getSavedSeconds();
+        // Unroutable pairs in the old order leave nothing meaningful to subtract
+        String saving = Double.isFinite(savedSeconds)
+                ? String.format("about %.1f min shorter", savedSeconds / 60) : "unroutable legs avoided";
+        String summary = String.format("Stops reordered: %s by %s, %d of %d legs re-routed", saving,
+                optimization.matrix.getSource(), result.getRerouted(), legs.size());
+        if (result.getFailed() > 0) {
+            setStatus(summary + " (" + result.getFailed() + " drawn as straight lines)", Color.ORANGE);
+        } else {
+            setStatusSuccess(summary);
+        }
+    }
+
     @Override
     public void onGenerateRoute() {
         if (isRouting) {
@@ -665,12 +1153,12 @@ public class RouteService extends JFrame implements Dashboard.DashboardListener,
 
     private void switchToUserProfile(UserProfile user) {
         this.userProfile = user;
-        userProfile.applyUserSettingsToRoutingAPI(routingAPI);
+        userProfile.applyUserSettingsToRoutingAPI(routingBackend);
     }
 
     private void switchToGuestProfile() {
         this.userProfile = UserProfile.getInstanceForNonLoggedInUser();
-        userProfile.applyUserSettingsToRoutingAPI(routingAPI);
+        userProfile.applyUserSettingsToRoutingAPI(routingBackend);
     }
 
 
@@ -0,0 +1,123 @@
+package org.example;
+
+import java.util.Arrays;
+
+/**
+ * Douglas–Peucker simplification of route geometry, for drawing long routes quickly
+ * without cutting corners the way fixed-step sampling does.
+ *
+ * Works directly on packed coordinate arrays: points are projected onto a local flat
+ * plane around the first point on the fly, and the recursion is replaced by an int stack,
+ * so a run allocates only the keep flags, the stack and the returned index array.
+ * Every kept point lies on the original route and every dropped point is within the
+ * tolerance of the simplified line.
+ */
+public class RouteSimplifier {
+
+    private static final double METERS_PER_DEGREE_LAT = 111_320.0;
+
+    private RouteSimplifier() {
+    }
+
+    /**
+     * Indices of the points to keep, in order. The first and last point are always kept.
+     *
+     * @param toleranceMeters largest distance a dropped point may lie from the simplified line
+     */
+    public static int[] keptIndices(double[] latitudes, double[] longitudes, int count, double toleranceMeters) {
+        if (count <= 2 || toleranceMeters <= 0) {
+            int[] all = new int[count];
+            for (int i = 0; i < count; i++) all[i] = i;
+            return all;
+        }
+
+        double metersPerDegreeLon = METERS_PER_DEGREE_LAT * Math.cos(Math.toRadians(latitudes[0]));
+        double toleranceSquared = toleranceMeters * toleranceMeters;
+
+        boolean[] keep = new boolean[count];
+        keep[0] = true;
+        keep[count - 1] = true;
+        int kept = 2;
+
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = count - 1;
+
+        while (top > 0) {
+            int last = stack[--top];
+            int first = stack[--top];
+            if (last - first < 2) continue;
+
+            double ax = longitudes[first] * metersPerDegreeLon;
+            double ay = latitudes[first] * METERS_PER_DEGREE_LAT;
+            double bx = longitudes[last] * metersPerDegreeLon;
+            double by = latitudes[last] * METERS_PER_DEGREE_LAT;
+
+            int farthest = -1;
+            double farthestSquared = toleranceSquared;
+            for (int i = first + 1; i < last; i++) {
+                double d = segmentDistanceSquared(longitudes[i] * metersPerDegreeLon,
+                        latitudes[i] * METERS_PER_DEGREE_LAT, ax, ay, bx, by);
+                if (d > farthestSquared) {
+                    farthestSquared = d;
+                    farthest = i;
+                }
+            }
+            if (farthest < 0) continue;
+
+            keep[farthest] = true;
+            kept++;
+            if (top + 4 > stack.length) stack = Arrays.copyOf(stack, stack.length * 2);
+            stack[top++] = first;
+            stack[top++] = farthest;
+            stack[top++] = farthest;
+            stack[top++] = last;
+        }
+
+        int[] indices = new int[kept];
+        int out = 0;
+        for (int i = 0; i < count; i++) {
+            if (keep[i]) indices[out++] = i;
+        }
+        return indices;
+    }
+
+    /**
+     * Simplified copy of a result, keeping per-point elevations of the kept points. Ascent,
+     * descent and distance are those of the full route.
+     */
+    public static RouteResult simplify(RouteResult result, double toleranceMeters) {
+        int count = result.getPointCount();
+        double[] latitudes = new double[count];
+        double[] longitudes = new double[count];
+        for (int i = 0; i < count; i++) {
+            latitudes[i] = result.getLatitude(i);
+            longitudes[i] = result.getLongitude(i);
+        }
+
+        int[] kept = keptIndices(latitudes, longitudes, count, toleranceMeters);
+        double[] keptLatitudes = new double[kept.length];
+        double[] keptLongitudes = new double[kept.length];
+        float[] keptElevations = result.hasPointElevations() ? new float[kept.length] : null;
+        for (int i = 0; i < kept.length; i++) {
+            keptLatitudes[i] = latitudes[kept[i]];
+            keptLongitudes[i] = longitudes[kept[i]];
+            if (keptElevations != null) keptElevations[i] = (float) result.getElevation(kept[i]);
+        }
+        return RouteResult.fromArrays(keptLatitudes, keptLongitudes, keptElevations, kept.length,
+                result.getAscent(), result.getDescent(), result.getDistance());
+    }
+
+    private static double segmentDistanceSquared(double px, double py, double ax, double ay, double bx, double by) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0 ? 0 : ((px - ax) * dx + (py - ay) * dy) / lengthSquared;
+        if (t < 0) t = 0;
+        else if (t > 1) t = 1;
+        double ex = px - (ax + t * dx);
+        double ey = py - (ay + t * dy);
+        return ex * ex + ey * ey;
+    }
+}
@@ -2,26 +2,42 @@ package org.example;
 
 import org.jxmapviewer.viewer.GeoPosition;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.nio.charset.StandardCharsets;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Routing API that provides road snapping and round-trip route generation functionality.
  *
  * OpenRouteService API
  */
-public class RoutingAPI {
+public class RoutingAPI implements RoutingBackend {
 
     private static final String ORS_BASE_URL = "https://api.openrouteservice.org";
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    private static final Duration DEFAULT_LEG_BUDGET = Duration.ofSeconds(8);
+    private static final Duration DEFAULT_ROUND_TRIP_BUDGET = Duration.ofSeconds(25);
+    // Identical requests only; about a centimetre, well below what the cache rounds to
+    private static final int SINGLE_FLIGHT_DECIMAL_PLACES = 7;
+    // The public API answers matrices of up to 3500 routes; 50 stops is 2500
+    static final int MAX_MATRIX_LOCATIONS = 50;
+    // Default home of the async variants; each call mostly waits on the network, so threads are cheap
+    static final ExecutorService ASYNC_EXECUTOR =
+            Executors.newCachedThreadPool(new DaemonThreadFactory("routing-async"));
     private final String apiKey;
+    private final RoutingHttpTransport transport;
+    private final String baseUrl;
 
     public enum RoutingProfile {
         DRIVING_CAR("driving-car"),
@@ -33,24 +49,203 @@ public class RoutingAPI {
         public String getValue() { return value; }
     }
 
+    /**
+     * Geometry encoding requested from ORS. GeoJSON spells every coordinate out as text; the
+     * encoded polyline packs each point into a few bytes of deltas.
+     */
+    public enum ResponseFormat {
+        GEOJSON("geojson"),
+        ENCODED_POLYLINE("json");
+
+        private final String endpoint;
+        ResponseFormat(String endpoint) { this.endpoint = endpoint; }
+        public String getEndpoint() { return endpoint; }
+    }
+
     private RoutingProfile currentProfile = RoutingProfile.FOOT_WALKING;
+    private volatile ResponseFormat responseFormat = ResponseFormat.GEOJSON;
+    private final HedgedProfileRouter hedgedRouter = new HedgedProfileRouter();
+    private volatile boolean hedgingEnabled = false;
+    private volatile Duration legBudget = DEFAULT_LEG_BUDGET;
+    private volatile Duration roundTripBudget = DEFAULT_ROUND_TRIP_BUDGET;
+    private volatile RouteCache routeCache;
+    private final RoutingSingleFlight singleFlight = new RoutingSingleFlight();
+    private final RoutingRateLimiter rateLimiter;
+    private final RoundTripSearch roundTripSearch = new RoundTripSearch();
+    private final RoundTripCalibrator roundTripCalibrator = new RoundTripCalibrator();
+    private volatile boolean roundTripCalibrationEnabled = false;
+    private final java.util.Map<RoutingProfile, ProfileCircuitBreaker> circuitBreakers = new EnumMap<>(RoutingProfile.class);
+    private volatile Executor asyncExecutor = ASYNC_EXECUTOR;
+    private final DistanceMatrixCache matrixCache = new DistanceMatrixCache();
+
+    /**
+     * Reads a successful response body into a result.
+     */
+    private interface ResponseParser<T> {
+        T parse(InputStream body) throws IOException;
+    }
+
+    /**
+     * Non-2xx answer from the API that is not a rate limit.
+     */
+    public static class ApiResponseException extends Exception {
+        private final int statusCode;
+
+        public ApiResponseException(int statusCode, String message) {
+            super(message);
+            this.statusCode = statusCode;
+        }
+
+        public int getStatusCode() {
+            return statusCode;
+        }
+    }
 
     public RoutingAPI(String apiKey) {
+        this(apiKey, RoutingHttpTransport.getInstance());
+    }
+
+    public RoutingAPI(String apiKey, RoutingHttpTransport transport) {
+        this(apiKey, transport, ORS_BASE_URL, new RoutingRateLimiter());
+    }
+
+    /**
+     * Client for an ORS-compatible server other than the public one, e.g. a self-hosted
+     * instance or a local stand-in for load tests.
+     *
+     * @param baseUrl     scheme, host and optional port, e.g. {@code http://localhost:8080}
+     * @param rateLimiter client-side quota; the public API's 40 requests a minute would
+     *                    throttle a load test long before the server does
+     */
+    public RoutingAPI(String apiKey, RoutingHttpTransport transport, String baseUrl, RoutingRateLimiter rateLimiter) {
+        if (baseUrl == null || baseUrl.trim().isEmpty()) throw new IllegalArgumentException("base URL required");
         this.apiKey = apiKey;
+        this.transport = transport;
+        this.baseUrl = baseUrl.trim().replaceAll("/+$", "");
+        this.rateLimiter = rateLimiter;
+        for (RoutingProfile profile : RoutingProfile.values()) {
+            circuitBreakers.put(profile, new ProfileCircuitBreaker(profile.getValue()));
+        }
     }
 
     public boolean hasApiKey() {
         return apiKey != null && !apiKey.trim().isEmpty();
     }
 
+    @Override
     public void setProfile(RoutingProfile profile) {
         this.currentProfile = profile;
     }
 
+    @Override
     public RoutingProfile getProfile() {
         return currentProfile;
     }
 
+    public void setResponseFormat(ResponseFormat responseFormat) {
+        this.responseFormat = responseFormat;
+    }
+
+    public ResponseFormat getResponseFormat() {
+        return responseFormat;
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    String directionsUrl(RoutingProfile profile, ResponseFormat format) {
+        return baseUrl + "/v2/directions/" + profile.getValue() + "/" + format.getEndpoint();
+    }
+
+    String matrixUrl(RoutingProfile profile) {
+        return baseUrl + "/v2/matrix/" + profile.getValue();
+    }
+
+    @Override
+    public String describe() {
+        return "OpenRouteService (" + currentProfile.getValue() + ")";
+    }
+
+    public RoutingHttpTransport getTransport() {
+        return transport;
+    }
+
+    /**
+     * Where the async variants run. Defaults to a shared pool of daemon threads.
+     */
+    public void setAsyncExecutor(Executor executor) {
+        this.asyncExecutor = executor;
+    }
+
+    public Executor getAsyncExecutor() {
+        return asyncExecutor;
+    }
+
+    /**
+     * Upper bound on one snapToRoadsWithTwoPoints call, fallbacks included.
+     */
+    public void setLegBudget(Duration budget) {
+        this.legBudget = budget;
+    }
+
+    public Duration getLegBudget() {
+        return legBudget;
+    }
+
+    /**
+     * Upper bound on one generateRoundTripWithAPI call, fallbacks included.
+     */
+    public void setRoundTripBudget(Duration budget) {
+        this.roundTripBudget = budget;
+    }
+
+    public Duration getRoundTripBudget() {
+        return roundTripBudget;
+    }
+
+    /**
+     * Cache consulted before every routing request, or null to always go to the network.
+     */
+    public void setRouteCache(RouteCache routeCache) {
+        this.routeCache = routeCache;
+    }
+
+    public RouteCache getRouteCache() {
+        return routeCache;
+    }
+
+    public ProfileCircuitBreaker getCircuitBreaker(RoutingProfile profile) {
+        return circuitBreakers.get(profile);
+    }
+
+    public String describeCircuitBreakers() {
+        StringBuilder sb = new StringBuilder();
+        for (ProfileCircuitBreaker breaker : circuitBreakers.values()) {
+            if (sb.length() > 0) sb.append("; ");
+            sb.append(breaker.describeState());
+        }
+        return sb.toString();
+    }
+
+    public RoutingRateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    public RoutingSingleFlight getSingleFlight() {
+        return singleFlight;
+    }
+
+    @Override
+    public RoutingDeadline newLegDeadline() {
+        return RoutingDeadline.after(legBudget);
+    }
+
+    @Override
+    public RoutingDeadline newRoundTripDeadline() {
+        return RoutingDeadline.after(roundTripBudget);
+    }
+
 
     public RouteResult generateRoundTripWithAPI(GeoPosition startPoint, double distanceKm) {
         return generateRoundTripWithAPI(startPoint, distanceKm, 5, null);
@@ -58,48 +253,158 @@ public class RoutingAPI {
 
 
     public RouteResult generateRoundTripWithAPI(GeoPosition startPoint, double distanceKm, int points, Integer seed) {
+        return generateRoundTripWithAPI(startPoint, distanceKm, points, seed, newRoundTripDeadline());
+    }
+
+
+    @Override
+    public RouteResult generateRoundTripWithAPI(GeoPosition startPoint, double distanceKm, int points, Integer seed,
+                                                RoutingDeadline deadline) {
         if (!hasApiKey() || startPoint == null || distanceKm <= 0) {
             return null;
         }
 
         int distanceMeters = convertKMtoMeters(distanceKm);
 
-        points = makeSureAtLeast3Points(points);
+        int waypointCount = makeSureAtLeast3Points(points);
 
-        // Try with foot-walking first (most likely to succeed for running routes)
-        RouteResult result = generateRoundTripWithProfileAndElevation(startPoint, distanceMeters, points, seed, RoutingProfile.FOOT_WALKING);
+        if (roundTripCalibrationEnabled) {
+            return calibrateRoundTrip(startPoint, distanceMeters, waypointCount, seed, null, deadline);
+        }
+
+        return generateRoundTripForLength(startPoint, distanceMeters, waypointCount, seed, deadline);
+    }
 
-        // If foot-walking fails, try cycling as fallback
-        if (result == null) {
-            System.out.println("Foot-walking round trip failed, trying cycling...");
-            result = generateRoundTripWithProfileAndElevation(startPoint, distanceMeters, points, seed, RoutingProfile.CYCLING_REGULAR);
+    /**
+     * @param atTarget optional loop already generated for {@code distanceMeters}, reused as the first probe
+     */
+    private RouteResult calibrateRoundTrip(GeoPosition startPoint, int distanceMeters, int waypointCount,
+                                           Integer seed, RouteResult atTarget, RoutingDeadline deadline) {
+        try {
+            return roundTripCalibrator.calibrate(distanceMeters, atTarget,
+                    length -> generateRoundTripForLength(startPoint, length, waypointCount, seed, deadline),
+                    deadline).getBest();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            System.out.println("Calibration: " + roundTripCalibrator.describeStats());
+        }
+    }
+
+    @Override
+    public CompletableFuture<RouteResult> generateRoundTripWithAPIAsync(GeoPosition startPoint, double distanceKm,
+                                                                       int points, Integer seed,
+                                                                       RoutingDeadline deadline) {
+        return InterruptibleFuture.callAsync(
+                () -> generateRoundTripWithAPI(startPoint, distanceKm, points, seed, deadline), asyncExecutor);
+    }
+
+
+    private RouteResult generateRoundTripForLength(GeoPosition startPoint, int distanceMeters, int points,
+                                                   Integer seed, RoutingDeadline deadline) {
+        // Try with foot-walking first (most likely to succeed for running routes)
+        RouteResult result = generateRoundTripWithProfileAndElevation(startPoint, distanceMeters, points, seed,
+                RoutingProfile.FOOT_WALKING, deadline);
+
+        // If foot-walking fails, try cycling as fallback with whatever time is left
+        if (result == null && !deadline.isExpired() && !rateLimiter.isPaused()
+                && !Thread.currentThread().isInterrupted()) {
+            System.out.println("Foot-walking round trip failed, trying cycling with " +
+                    deadline.remainingMillis() + " ms left...");
+            result = generateRoundTripWithProfileAndElevation(startPoint, distanceMeters, points, seed,
+                    RoutingProfile.CYCLING_REGULAR, deadline);
         }
 
         return result;
     }
 
 
-    private RouteResult generateRoundTripWithProfileAndElevation(GeoPosition startPoint, int distanceMeters,
-                                                                 int points, Integer seed, RoutingProfile profile) {
-        try {
+    /**
+     * Generates one loop per seed concurrently and ranks them with {@code scorer}.
+     * All requests share {@code deadline}; loops that are not back in time are dropped.
+     * With calibration on, only the winning seed is calibrated, so one search costs at most
+     * one request per seed plus the calibrator's remaining probes.
+     */
+    @Override
+    public RoundTripSearch.Result generateBestRoundTrip(GeoPosition startPoint, double distanceKm, int points,
+                                                       List<Integer> seeds, RoundTripScorer scorer,
+                                                       RoutingDeadline deadline) throws InterruptedException {
+        if (!hasApiKey() || startPoint == null || distanceKm <= 0) {
+            return roundTripSearch.search(seeds, seed -> null, scorer, deadline);
+        }
 
-            StringBuilder jsonBody = buildJsonRequestForRoundTrip(startPoint, distanceMeters, points, seed);
+        int distanceMeters = convertKMtoMeters(distanceKm);
+        int waypointCount = makeSureAtLeast3Points(points);
+
+        RoundTripSearch.Result search = roundTripSearch.search(seeds,
+                seed -> generateRoundTripForLength(startPoint, distanceMeters, waypointCount, seed, deadline),
+                scorer, deadline);
+        RoundTripSearch.Candidate best = search.getBest();
+        if (!roundTripCalibrationEnabled || best == null || deadline.isExpired()) {
+            return search;
+        }
 
-            System.out.println("Round trip request with profile " + profile.getValue() + ": " + jsonBody.toString());
+        RouteResult calibrated = calibrateRoundTrip(startPoint, distanceMeters, waypointCount, best.getSeed(),
+                best.getResult(), deadline);
+        if (calibrated == null || calibrated == best.getResult()) {
+            return search;
+        }
+        double score = scorer.score(calibrated);
+        if (Double.isInfinite(score)) {
+            return search;
+        }
+        return search.withBestReplacedBy(new RoundTripSearch.Candidate(best.getSeed(), calibrated, score));
+    }
 
-            String response = makePostRequest(
-                    ORS_BASE_URL + "/v2/directions/" + profile.getValue() + "/geojson",
-                    jsonBody.toString()
-            );
+    public RoundTripSearch getRoundTripSearch() {
+        return roundTripSearch;
+    }
 
-            System.out.println("Response length: " + response.length());
-            System.out.println("Response preview: " + response.substring(0, Math.min(500, response.length())));
+    /**
+     * When enabled, round trips re-request with adjusted lengths until the returned loop is
+     * within the calibrator's tolerance of the asked-for distance.
+     */
+    public void setRoundTripCalibrationEnabled(boolean enabled) {
+        this.roundTripCalibrationEnabled = enabled;
+    }
+
+    public boolean isRoundTripCalibrationEnabled() {
+        return roundTripCalibrationEnabled;
+    }
 
-            // Check for error in response
-            checkIfResponseHasError(response);
+    public RoundTripCalibrator getRoundTripCalibrator() {
+        return roundTripCalibrator;
+    }
 
-            // Parse GeoJSON response with elevation
-            RouteResult result = parseGeoJsonResponseWithElevation(response);
+
+    private RouteResult generateRoundTripWithProfileAndElevation(GeoPosition startPoint, int distanceMeters,
+                                                                 int points, Integer seed, RoutingProfile profile,
+                                                                 RoutingDeadline deadline) {
+        RouteCache cache = routeCache;
+        RouteCacheKey cacheKey = null;
+        if (cache != null) {
+            cacheKey = cache.keyForRoundTrip(profile, startPoint, distanceMeters, points, seed);
+            RouteResult cached = cache.get(cacheKey);
+            if (cached != null) {
+                System.out.println("Round trip served from cache (" + cacheKey + "): " + cache.describeStats());
+                return cached;
+            }
+        }
+
+        try {
+
+            ResponseFormat format = responseFormat;
+            StringBuilder jsonBody = buildJsonRequestForRoundTrip(startPoint, distanceMeters, points, seed, format);
+
+            System.out.println("Round trip request with profile " + profile.getValue() + ": " + jsonBody.toString());
+
+            // Parse the response with elevation straight off the connection
+            String url = directionsUrl(profile, format);
+            RouteCacheKey flightKey = RouteCacheKey.forRoundTrip(profile, startPoint, distanceMeters, points, seed,
+                    SINGLE_FLIGHT_DECIMAL_PLACES);
+            RouteResult result = singleFlight.execute(flightKey, deadline,
+                    () -> sendThroughCircuitBreaker(profile, url, jsonBody.toString(), routeParser(format), deadline));
 
             // Validate result
             if (result == null || result.getPointCount() < 3) {
@@ -111,8 +416,22 @@ public class RoutingAPI {
             System.out.println("Round trip generation successful with " + profile.getValue() +
                     ": " + result.getPointCount() + " points, ascent: " + result.getAscent() +
                     "m, descent: " + result.getDescent() + "m");
+            if (cache != null) cache.put(cacheKey, result);
             return result;
 
+        } catch (TimeoutException e) {
+            System.err.println("Round trip generation with " + profile.getValue() + " timed out: " + e.getMessage());
+            return null;
+        } catch (RoutingRateLimiter.RateLimitedException e) {
+            System.err.println("Round trip generation with " + profile.getValue() + " rate limited: " + e.getMessage());
+            return null;
+        } catch (ProfileCircuitBreaker.CircuitOpenException e) {
+            System.out.println(e.getMessage());
+            return null;
+        } catch (InterruptedException e) {
+            System.out.println("Round trip generation with " + profile.getValue() + " cancelled");
+            Thread.currentThread().interrupt();
+            return null;
         } catch (Exception e) {
             System.err.println("Round trip generation failed with " + profile.getValue() + ": " + e.getMessage());
             e.printStackTrace();
@@ -121,48 +440,163 @@ public class RoutingAPI {
     }
 
 
+    /**
+     * ORS can only snap as part of a directions request, so clicks are not snapped up front.
+     */
+    @Override
+    public GeoPosition snapToNearestRoad(GeoPosition point) {
+        return null;
+    }
+
+
     public RouteResult snapToRoadsWithTwoPoints(List<GeoPosition> waypoints) {
+        return snapToRoadsWithTwoPoints(waypoints, newLegDeadline());
+    }
+
+
+    @Override
+    public RouteResult snapToRoadsWithTwoPoints(List<GeoPosition> waypoints, RoutingDeadline deadline) {
         if (!hasApiKey() || waypoints == null || waypoints.size() < 2) {
             return null;
         }
 
-        // Try with the current profile first
-        RouteResult result = tryRouteWithProfile(waypoints, currentProfile);
+        List<RoutingProfile> chain = buildSnapFallbackChain();
 
-        // If current profile fails and it's not foot-walking, try foot-walking as fallback
-        if (result == null && currentProfile != RoutingProfile.FOOT_WALKING) {
-            System.out.println("Primary profile failed, trying foot-walking as fallback...");
-            result = tryRouteWithProfile(waypoints, RoutingProfile.FOOT_WALKING);
+        if (hedgingEnabled) {
+            try {
+                return hedgedRouter.route(chain, profile -> tryRouteWithProfile(waypoints, profile, deadline), 2, deadline);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } finally {
+                System.out.println("Hedging: " + hedgedRouter.describeStats());
+            }
         }
 
-        // If still null and not driving, try driving as last resort
-        if (result == null && currentProfile != RoutingProfile.DRIVING_CAR) {
-            System.out.println("Foot-walking failed, trying driving-car as last resort...");
-            result = tryRouteWithProfile(waypoints, RoutingProfile.DRIVING_CAR);
+        // Try with the current profile first
+        RouteResult result = tryRouteWithProfile(waypoints, chain.get(0), deadline);
+
+        // A throttled key fails the same way on every profile, so don't spend more quota on fallbacks
+        for (int i = 1; result == null && i < chain.size() && !deadline.isExpired() && !rateLimiter.isPaused()
+                && !Thread.currentThread().isInterrupted(); i++) {
+            System.out.println("Previous profile failed, trying " + chain.get(i).getValue() + " as fallback with " +
+                    deadline.remainingMillis() + " ms left...");
+            result = tryRouteWithProfile(waypoints, chain.get(i), deadline);
         }
 
         return result;
     }
 
+    @Override
+    public CompletableFuture<RouteResult> snapToRoadsWithTwoPointsAsync(List<GeoPosition> waypoints,
+                                                                      RoutingDeadline deadline) {
+        return InterruptibleFuture.callAsync(() -> snapToRoadsWithTwoPoints(waypoints, deadline), asyncExecutor);
+    }
+
+    /**
+     * One ORS matrix request with the current profile, answered from the cache when the same
+     * stops were asked for before. Gives up on more than {@value #MAX_MATRIX_LOCATIONS}
+     * locations, which the public API refuses.
+     */
+    @Override
+    public DistanceMatrix computeMatrix(List<GeoPosition> locations, RoutingDeadline deadline) {
+        if (!hasApiKey() || locations == null || locations.size() < 2 || locations.size() > MAX_MATRIX_LOCATIONS) {
+            return null;
+        }
+        RoutingProfile profile = currentProfile;
+        RouteCacheKey cacheKey = matrixCache.keyFor(profile, locations);
+        DistanceMatrix cached = matrixCache.get(cacheKey);
+        if (cached != null) {
+            System.out.println("Matrix served from cache: " + matrixCache.describeStats());
+            return cached;
+        }
 
-    private RouteResult tryRouteWithProfile(List<GeoPosition> waypoints, RoutingProfile profile) {
         try {
-            StringBuilder jsonBody = buildJasonRequestForRouteWithProfile(waypoints);
+            String jsonBody = buildJsonRequestForMatrix(locations).toString();
+            System.out.println("Matrix request with profile " + profile.getValue() + " for " + locations.size() +
+                    " locations");
+            DistanceMatrix matrix = sendThroughCircuitBreaker(profile, matrixUrl(profile), jsonBody,
+                    body -> DistanceMatrix.parse(body, locations.size()), deadline);
+            matrixCache.put(cacheKey, matrix);
+            return matrix;
+        } catch (TimeoutException e) {
+            System.err.println("Matrix with " + profile.getValue() + " timed out: " + e.getMessage());
+            return null;
+        } catch (RoutingRateLimiter.RateLimitedException e) {
+            System.err.println("Matrix with " + profile.getValue() + " rate limited: " + e.getMessage());
+            return null;
+        } catch (ProfileCircuitBreaker.CircuitOpenException e) {
+            System.out.println(e.getMessage());
+            return null;
+        } catch (InterruptedException e) {
+            System.out.println("Matrix with " + profile.getValue() + " cancelled");
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (Exception e) {
+            System.err.println("Matrix failed with " + profile.getValue() + ": " + e.getMessage());
+            return null;
+        }
+    }
 
-            System.out.println("Routing request with profile " + profile.getValue() + ": " + jsonBody.toString());
+    public DistanceMatrixCache getMatrixCache() {
+        return matrixCache;
+    }
 
-            String response = makePostRequest(
-                    ORS_BASE_URL + "/v2/directions/" + profile.getValue() + "/geojson",
-                    jsonBody.toString()
-            );
+    /**
+     * Current profile first, then foot-walking, then driving-car as last resort.
+     */
+    List<RoutingProfile> buildSnapFallbackChain() {
+        List<RoutingProfile> chain = new ArrayList<>();
+        chain.add(currentProfile);
+        if (currentProfile != RoutingProfile.FOOT_WALKING) {
+            chain.add(RoutingProfile.FOOT_WALKING);
+        }
+        if (currentProfile != RoutingProfile.DRIVING_CAR) {
+            chain.add(RoutingProfile.DRIVING_CAR);
+        }
+        return chain;
+    }
 
-            System.out.println("Response length: " + response.length());
-            System.out.println("Response preview: " + response.substring(0, Math.min(500, response.length())));
+    public void setHedgingEnabled(boolean enabled) {
+        this.hedgingEnabled = enabled;
+    }
 
+    public boolean isHedgingEnabled() {
+        return hedgingEnabled;
+    }
 
-            checkIfResponseHasError(response);
+    public HedgedProfileRouter getHedgedRouter() {
+        return hedgedRouter;
+    }
 
-            RouteResult result = parseGeoJsonResponseWithElevation(response);
+
+    private RouteResult tryRouteWithProfile(List<GeoPosition> waypoints, RoutingProfile profile, RoutingDeadline deadline) {
+        RouteCache cache = routeCache;
+        RouteCacheKey cacheKey = null;
+        if (cache != null) {
+            cacheKey = cache.keyForRoute(profile, waypoints);
+            RouteResult cached = cache.get(cacheKey);
+            if (cached != null) {
+                System.out.println("Route served from cache (" + cacheKey + "): " + cache.describeStats());
+                return cached;
+            }
+        }
+
+        try {
+            ResponseFormat format = responseFormat;
+            StringBuilder jsonBody = buildJasonRequestForRouteWithProfile(waypoints, format);
+
+            System.out.println("Routing request with profile " + profile.getValue() + ": " + jsonBody.toString());
+
+            String url = directionsUrl(profile, format);
+            RouteCacheKey flightKey = RouteCacheKey.forRoute(profile, waypoints, SINGLE_FLIGHT_DECIMAL_PLACES);
+            long start = System.nanoTime();
+            RouteResult result = singleFlight.execute(flightKey, deadline,
+                    () -> sendThroughCircuitBreaker(profile, url, jsonBody.toString(), routeParser(format), deadline));
+            // Timed here, past the cache, so hits don't drag the hedge delay down
+            if (result != null) {
+                hedgedRouter.recordLatency(profile, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
 
             // Validate result
             if (result == null || result.getPointCount() < 2) {
@@ -174,8 +608,22 @@ public class RoutingAPI {
             System.out.println("Routing successful with " + profile.getValue() +
                     ": " + result.getPointCount() + " points, ascent: " + result.getAscent() +
                     "m, descent: " + result.getDescent() + "m");
+            if (cache != null) cache.put(cacheKey, result);
             return result;
 
+        } catch (TimeoutException e) {
+            System.err.println("Road routing with " + profile.getValue() + " timed out: " + e.getMessage());
+            return null;
+        } catch (RoutingRateLimiter.RateLimitedException e) {
+            System.err.println("Road routing with " + profile.getValue() + " rate limited: " + e.getMessage());
+            return null;
+        } catch (ProfileCircuitBreaker.CircuitOpenException e) {
+            System.out.println(e.getMessage());
+            return null;
+        } catch (InterruptedException e) {
+            System.out.println("Routing with " + profile.getValue() + " cancelled");
+            Thread.currentThread().interrupt();
+            return null;
         } catch (Exception e) {
             System.err.println("Road routing failed with " + profile.getValue() + ": " + e.getMessage());
             e.printStackTrace();
@@ -184,185 +632,158 @@ public class RoutingAPI {
     }
 
 
-    private RouteResult parseGeoJsonResponseWithElevation(String response) {
-        List<GeoPosition> points = new ArrayList<>();
-        double ascent = 0;
-        double descent = 0;
-        double distance = 0;
-
-        try {
-            System.out.println("Parsing GeoJSON response with elevation...");
-
+    private ResponseParser<RouteResult> routeParser(ResponseFormat format) {
+        return format == ResponseFormat.ENCODED_POLYLINE ? this::parsePolylineResponseWithElevation
+                : this::parseGeoJsonResponseWithElevation;
+    }
 
-            System.out.println("Full response (first 2000 chars): " +
-                    response.substring(0, Math.min(2000, response.length())));
+    private RouteResult parseGeoJsonResponseWithElevation(InputStream responseStream) throws IOException {
+        System.out.println("Parsing GeoJSON response with elevation...");
 
-            // Extract ascent and descent from properties.summary
-            // The response contains: "summary":{"distance":X,"ascent":Y,"descent":Z}
-            // Look for "ascent":value and "descent":value (handles both int and float)
-            Pattern ascentPattern = Pattern.compile("\"ascent\"\\s*:\\s*(-?\\d+\\.?\\d*(?:[eE][+-]?\\d+)?)");
-            Pattern descentPattern = Pattern.compile("\"descent\"\\s*:\\s*(-?\\d+\\.?\\d*(?:[eE][+-]?\\d+)?)");
-            Pattern distancePattern = Pattern.compile("\"distance\"\\s*:\\s*(-?\\d+\\.?\\d*(?:[eE][+-]?\\d+)?)");
+        GeoJsonRouteParser parser = GeoJsonRouteParser.parse(responseStream);
 
-            Matcher ascentMatcher = ascentPattern.matcher(response);
-            if (ascentMatcher.find()) {
-                ascent = Double.parseDouble(ascentMatcher.group(1));
-                System.out.println("Found ascent: " + ascent);
-            } else {
-                System.out.println("WARNING: No ascent value found in response");
-            }
+        if (parser.hasErrorField()) {
+            System.err.println("API returned error response");
+        }
 
-            Matcher descentMatcher = descentPattern.matcher(response);
-            if (descentMatcher.find()) {
-                descent = Double.parseDouble(descentMatcher.group(1));
-                System.out.println("Found descent: " + descent);
-            } else {
-                System.out.println("WARNING: No descent value found in response");
-            }
+        System.out.println("Parsed " + parser.getPointCount() + " points from " + parser.getBytesParsed() +
+                " bytes, ascent: " + parser.getAscent() + ", descent: " + parser.getDescent() +
+                ", distance: " + parser.getDistance());
 
-            Matcher distanceMatcher = distancePattern.matcher(response);
-            if (distanceMatcher.find()) {
-                distance = Double.parseDouble(distanceMatcher.group(1));
-                System.out.println("Found distance: " + distance);
-            }
+        return parser.toRouteResult();
+    }
 
-            // Find the coordinates array in the geometry
-            int coordsIndex = response.indexOf("\"coordinates\"");
-            if (coordsIndex == -1) {
-                System.err.println("No coordinates field found in GeoJSON response");
-                return new RouteResult(points, ascent, descent, distance);
-            }
+    private RouteResult parsePolylineResponseWithElevation(InputStream responseStream) throws IOException {
+        System.out.println("Parsing encoded polyline response with elevation...");
 
-            // Find the start of the coordinates array
-            int arrayStart = response.indexOf("[[", coordsIndex);
-            if (arrayStart == -1) {
-                System.err.println("No coordinate array found");
-                return new RouteResult(points, ascent, descent, distance);
-            }
+        PolylineRouteParser parser = PolylineRouteParser.parse(responseStream, true);
 
-            // Find the matching closing brackets
-            int depth = 0;
-            int arrayEnd = arrayStart;
-            boolean inArray = false;
-
-            for (int i = arrayStart; i < response.length(); i++) {
-                char c = response.charAt(i);
-                if (c == '[') {
-                    depth++;
-                    inArray = true;
-                } else if (c == ']') {
-                    depth--;
-                    if (depth == 0 && inArray) {
-                        arrayEnd = i + 1;
-                        break;
-                    }
-                }
-            }
+        if (parser.hasErrorField()) {
+            System.err.println("API returned error response");
+        }
 
-            if (arrayEnd <= arrayStart) {
-                System.err.println("Could not find end of coordinate array");
-                return new RouteResult(points, ascent, descent, distance);
-            }
+        System.out.println("Decoded " + parser.getPointCount() + " points from " + parser.getBytesParsed() +
+                " bytes, ascent: " + parser.getAscent() + ", descent: " + parser.getDescent() +
+                ", distance: " + parser.getDistance());
 
-            // Extract the coordinates substring
-            String coordsString = response.substring(arrayStart, arrayEnd);
-            System.out.println("Found coordinates string, length: " + coordsString.length());
-
-            // Extract individual coordinate pairs/triples: [lon,lat] or [lon,lat,elevation]
-            // Pattern matches [number,number] or [number,number,number]
-            Pattern pairPattern = Pattern.compile("\\[\\s*(-?\\d+\\.?\\d*)\\s*,\\s*(-?\\d+\\.?\\d*)(?:\\s*,\\s*(-?\\d+\\.?\\d*))?\\s*\\]");
-            Matcher pairMatcher = pairPattern.matcher(coordsString);
-
-            while (pairMatcher.find()) {
-                try {
-                    double lon = Double.parseDouble(pairMatcher.group(1));
-                    double lat = Double.parseDouble(pairMatcher.group(2));
-                    // Elevation is in group 3 if present (we don't store it per-point currently)
-                    points.add(new GeoPosition(lat, lon));
-                } catch (NumberFormatException e) {
-                    System.err.println("Failed to parse coordinate: " + pairMatcher.group(0));
-                }
-            }
+        return parser.toRouteResult();
+    }
 
-            System.out.println("Parsed " + points.size() + " points from GeoJSON");
+    /**
+     * Sends the request unless the profile's circuit is open, and feeds the outcome back into it.
+     * Only timeouts, network errors and server errors count against the profile; quota,
+     * cancellation, bad-request answers and a budget spent before sending say nothing about its health.
+     */
+    private <T> T sendThroughCircuitBreaker(RoutingProfile profile, String urlString, String jsonBody,
+                                            ResponseParser<T> parser, RoutingDeadline deadline) throws Exception {
+        ProfileCircuitBreaker breaker = circuitBreakers.get(profile);
+        // Checked first so a spent budget neither takes a half-open trial nor counts as a failure
+        deadline.checkNotExpired("POST " + urlString);
+        breaker.acquirePermission();
+
+        long start = System.nanoTime();
+        try {
+            T result = makePostRequest(urlString, jsonBody, parser, deadline);
+            breaker.recordSuccess(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return result;
+        } catch (RoutingDeadline.ExpiredException e) {
+            // Ran out while waiting to retry a throttled request; nothing reached the server
+            breaker.recordIgnored();
+            throw e;
+        } catch (TimeoutException | IOException e) {
+            breaker.recordFailure();
+            throw e;
+        } catch (RoutingRateLimiter.RateLimitedException e) {
+            if (e.getStatusCode() == 503) breaker.recordFailure();
+            else breaker.recordIgnored();
+            throw e;
+        } catch (ApiResponseException e) {
+            if (e.getStatusCode() >= 500) breaker.recordFailure();
+            else breaker.recordIgnored();
+            throw e;
+        } catch (Exception e) {
+            breaker.recordIgnored();
+            throw e;
+        }
+    }
 
-            // If we got too many points, sample them to keep rendering fast
-            if (points.size() > 500) {
-                List<GeoPosition> sampled = new ArrayList<>();
-                int step = points.size() / 500;
-                for (int i = 0; i < points.size(); i += step) {
-                    sampled.add(points.get(i));
-                }
-                // Always include the last point
-                if (!sampled.get(sampled.size() - 1).equals(points.get(points.size() - 1))) {
-                    sampled.add(points.get(points.size() - 1));
+    private <T> T makePostRequest(String urlString, String jsonBody, ResponseParser<T> parser,
+                                  RoutingDeadline deadline) throws Exception {
+        for (int attempt = 0; ; attempt++) {
+            deadline.checkNotExpired("POST " + urlString);
+            rateLimiter.acquire(deadline);
+            try {
+                return exchange(urlString, jsonBody, parser, deadline);
+            } catch (RoutingRateLimiter.RateLimitedException e) {
+                long backoff = rateLimiter.recordThrottled(e.getStatusCode(), e.getRetryAfterMillis(), attempt);
+                if (attempt >= rateLimiter.getMaxRetries() || backoff >= deadline.remainingMillis()) {
+                    throw e;
                 }
-                System.out.println("Sampled down to " + sampled.size() + " points");
-                return new RouteResult(sampled, ascent, descent, distance);
+                System.out.println("Throttled with " + e.getStatusCode() + ", retrying in " + backoff + " ms");
+                rateLimiter.recordRetry();
+                // acquire() waits out the pause recordThrottled just set
             }
-
-        } catch (Exception e) {
-            System.err.println("Failed to parse GeoJSON response: " + e.getMessage());
-            e.printStackTrace();
         }
-
-        return new RouteResult(points, ascent, descent, distance);
     }
 
-
-    private String makePostRequest(String urlString, String jsonBody) throws Exception {
-        System.out.println("Making POST request to: " + urlString);
+    // cancelHook is only held for its close(), which unregisters the abort once the response is done
+    @SuppressWarnings("try")
+    private <T> T exchange(String urlString, String jsonBody, ResponseParser<T> parser,
+                           RoutingDeadline deadline) throws Exception {
+        System.out.println("Making POST request to: " + urlString + " (" + deadline.remainingMillis() + " ms left)");
         System.out.println("Request body: " + jsonBody);
 
-        URL url = new URL(urlString);
-        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-        conn.setRequestMethod("POST");
-        conn.setRequestProperty("Content-Type", "application/json; charset=utf-8");
-        conn.setRequestProperty("Authorization", apiKey);
-        conn.setRequestProperty("Accept", "application/json, application/geo+json, */*");
-        conn.setDoOutput(true);
-        conn.setConnectTimeout(30000);  // 30 second connect timeout
-        conn.setReadTimeout(30000);     // 30 second read timeout
-
-        // Send request
-        try (OutputStream os = conn.getOutputStream()) {
-            byte[] input = jsonBody.getBytes(StandardCharsets.UTF_8);
-            os.write(input, 0, input.length);
-        }
-
-        // Read response
-        int responseCode = conn.getResponseCode();
-        System.out.println("Response code: " + responseCode);
-
-        BufferedReader br;
-
-        if (responseCode >= 200 && responseCode < 300) {
-            br = new BufferedReader(new InputStreamReader(conn.getInputStream(), StandardCharsets.UTF_8));
-        } else {
-            // Read error stream
-            if (conn.getErrorStream() != null) {
-                br = new BufferedReader(new InputStreamReader(conn.getErrorStream(), StandardCharsets.UTF_8));
-            } else {
-                throw new Exception("API returned error " + responseCode + " with no error details");
+        RoutingDeadline.Guard guard = deadline.interruptCurrentThreadOnExpiry();
+        try (RoutingHttpTransport.Response response =
+                     transport.post(urlString, apiKey, jsonBody, deadline.timeoutFor(REQUEST_TIMEOUT));
+             InterruptibleFuture.Registration cancelHook = InterruptibleFuture.closeOnCancel(response::abort)) {
+            guard.closeOnExpiry(response::abort);
+            int responseCode = response.getStatusCode();
+            System.out.println("Response code: " + responseCode + " over " + response.getVersion());
+            rateLimiter.updateFromHeaders(response.getHeaders());
+
+            if (response.isSuccessful()) {
+                T result = parser.parse(response.getBody());
+                response.discardRemainingBody();
+                System.out.println("Transport: " + transport.describeStats());
+                System.out.println("Single flight: " + singleFlight.describeStats());
+                System.out.println("Rate limiter: " + rateLimiter.describeStats());
+                return result;
             }
-        }
-
-        StringBuilder response = new StringBuilder();
-        String line;
-        while ((line = br.readLine()) != null) {
-            response.append(line);
-        }
-        br.close();
 
-        if (responseCode < 200 || responseCode >= 300) {
-            System.err.println("API Error Response: " + response.toString());
-            throw new Exception("API returned error " + responseCode + ": " + response.toString());
+            String errorBody = response.readBodyAsString();
+            if (responseCode == 429 || responseCode == 503) {
+                throw new RoutingRateLimiter.RateLimitedException("API returned " + responseCode + ": " + errorBody,
+                        responseCode, RoutingRateLimiter.retryAfterMillis(response.getHeaders()));
+            }
+            if (errorBody.isEmpty()) {
+                throw new ApiResponseException(responseCode, "API returned error " + responseCode + " with no error details");
+            }
+            checkIfResponseHasError(errorBody);
+            throw new ApiResponseException(responseCode, "API returned error " + responseCode + ": " + errorBody);
+        } catch (HttpTimeoutException e) {
+            throw new TimeoutException("POST " + urlString + " timed out: " + e.getMessage());
+        } catch (InterruptedException | IOException e) {
+            if (guard.hasFired()) {
+                throw new TimeoutException("POST " + urlString + " cut off at the " +
+                        deadline.getBudgetMillis() + " ms routing budget");
+            }
+            if (e instanceof InterruptedIOException) {
+                // Cancelled while reading the body: not a network fault, so keep it off the circuit breaker
+                throw new InterruptedException("POST " + urlString + " cancelled");
+            }
+            throw e;
+        } finally {
+            guard.close();
         }
-
-        return response.toString();
     }
 
     StringBuilder buildJsonRequestForRoundTrip(GeoPosition startPoint, int distanceMeters, int points, Integer seed) {
+        return buildJsonRequestForRoundTrip(startPoint, distanceMeters, points, seed, responseFormat);
+    }
+
+    StringBuilder buildJsonRequestForRoundTrip(GeoPosition startPoint, int distanceMeters, int points, Integer seed,
+                                               ResponseFormat format) {
         StringBuilder jsonBody = new StringBuilder();
         jsonBody.append("{\"coordinates\":[[");
         jsonBody.append(startPoint.getLongitude()).append(",").append(startPoint.getLatitude());
@@ -375,13 +796,17 @@ public class RoutingAPI {
             jsonBody.append(",\"seed\":").append(seed);
         }
         jsonBody.append("}},");
-        jsonBody.append("\"format\":\"geojson\"");
+        appendGeometryFormat(jsonBody, format);
         jsonBody.append("}");
 
         return jsonBody;
     }
 
     StringBuilder buildJasonRequestForRouteWithProfile(List<GeoPosition> waypoints){
+        return buildJasonRequestForRouteWithProfile(waypoints, responseFormat);
+    }
+
+    StringBuilder buildJasonRequestForRouteWithProfile(List<GeoPosition> waypoints, ResponseFormat format){
         StringBuilder jsonBody = new StringBuilder();
 
         jsonBody.append("{\"coordinates\":[");
@@ -396,12 +821,33 @@ public class RoutingAPI {
 
         jsonBody.append("],");
         jsonBody.append("\"elevation\":true,");  // Request elevation data
-        jsonBody.append("\"format\":\"geojson\"");
+        appendGeometryFormat(jsonBody, format);
         jsonBody.append("}");
 
         return jsonBody;
     }
 
+    StringBuilder buildJsonRequestForMatrix(List<GeoPosition> locations) {
+        StringBuilder jsonBody = new StringBuilder(64 + locations.size() * 40);
+        jsonBody.append("{\"locations\":[");
+        for (int i = 0; i < locations.size(); i++) {
+            GeoPosition gp = locations.get(i);
+            if (i > 0) jsonBody.append(",");
+            jsonBody.append("[").append(gp.getLongitude()).append(",").append(gp.getLatitude()).append("]");
+        }
+        jsonBody.append("],\"metrics\":[\"duration\",\"distance\"],\"units\":\"m\"}");
+        return jsonBody;
+    }
+
+    private static void appendGeometryFormat(StringBuilder jsonBody, ResponseFormat format) {
+        if (format == ResponseFormat.ENCODED_POLYLINE) {
+            // The /json endpoint encodes geometry as a polyline, 3D when elevation is on
+            jsonBody.append("\"geometry\":true");
+        } else {
+            jsonBody.append("\"format\":\"geojson\"");
+        }
+    }
+
     void checkIfResponseHasError(String response) {
         if (response.contains("\"error\"")) {
             System.err.println("API returned error response");
@@ -0,0 +1,75 @@
+package org.example;
+
+import org.jxmapviewer.viewer.GeoPosition;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Something that can route between waypoints and generate round trips: the OpenRouteService
+ * client, or a graph held in memory.
+ *
+ * Calls block and are made off the EDT; a null result means the backend could not route
+ * within the deadline, and the caller falls back to a straight line. The async variants run
+ * the same call on the backend's executor; cancelling their future with {@code cancel(true)}
+ * interrupts the call, which then stops its network exchange and parsing.
+ */
+public interface RoutingBackend {
+
+    void setProfile(RoutingAPI.RoutingProfile profile);
+
+    RoutingAPI.RoutingProfile getProfile();
+
+    RoutingDeadline newLegDeadline();
+
+    RoutingDeadline newRoundTripDeadline();
+
+    /**
+     * Closest point on a road to {@code point}, if the backend can tell without a network call.
+     *
+     * @return the snapped point, or null when there is no local road data near it
+     */
+    GeoPosition snapToNearestRoad(GeoPosition point);
+
+    /**
+     * Road-following path through the waypoints, in order.
+     */
+    RouteResult snapToRoadsWithTwoPoints(List<GeoPosition> waypoints, RoutingDeadline deadline);
+
+    /**
+     * {@link #snapToRoadsWithTwoPoints} off the calling thread.
+     */
+    CompletableFuture<RouteResult> snapToRoadsWithTwoPointsAsync(List<GeoPosition> waypoints, RoutingDeadline deadline);
+
+    /**
+     * A loop of roughly {@code distanceKm} that starts and ends at {@code startPoint}. The same
+     * seed gives the same loop.
+     */
+    RouteResult generateRoundTripWithAPI(GeoPosition startPoint, double distanceKm, int points, Integer seed,
+                                         RoutingDeadline deadline);
+
+    /**
+     * {@link #generateRoundTripWithAPI} off the calling thread.
+     */
+    CompletableFuture<RouteResult> generateRoundTripWithAPIAsync(GeoPosition startPoint, double distanceKm, int points,
+                                                                Integer seed, RoutingDeadline deadline);
+
+    /**
+     * One loop per seed, ranked with {@code scorer}.
+     */
+    RoundTripSearch.Result generateBestRoundTrip(GeoPosition startPoint, double distanceKm, int points,
+                                                List<Integer> seeds, RoundTripScorer scorer,
+                                                RoutingDeadline deadline) throws InterruptedException;
+
+    /**
+     * Travel times and distances between every pair of {@code locations}, for ordering stops.
+     *
+     * @return the matrix, or null if the backend cannot produce one within the deadline
+     */
+    DistanceMatrix computeMatrix(List<GeoPosition> locations, RoutingDeadline deadline);
+
+    /**
+     * Short description for the status bar and logs.
+     */
+    String describe();
+}
@@ -0,0 +1,150 @@
+package org.example;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Time budget for one user-facing routing operation (a drawn leg, a generated loop).
+ *
+ * Created once when the operation starts and passed down through every fallback, so each
+ * attempt only gets the time that is left instead of a fresh timeout of its own.
+ */
+public class RoutingDeadline {
+
+    /**
+     * Thrown by {@link #checkNotExpired} when the budget ran out before anything was sent.
+     */
+    public static class ExpiredException extends TimeoutException {
+        public ExpiredException(String message) {
+            super(message);
+        }
+    }
+
+    private static final ScheduledExecutorService WATCHDOG =
+            Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("routing-deadline"));
+
+    private final long budgetMillis;
+    private final long deadlineNanos;
+
+    private RoutingDeadline(long budgetMillis) {
+        this.budgetMillis = budgetMillis;
+        this.deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+    }
+
+    public static RoutingDeadline after(Duration budget) {
+        return new RoutingDeadline(Math.max(0, budget.toMillis()));
+    }
+
+    public long getBudgetMillis() {
+        return budgetMillis;
+    }
+
+    public long remainingMillis() {
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime()));
+    }
+
+    public boolean isExpired() {
+        return System.nanoTime() - deadlineNanos >= 0;
+    }
+
+    /**
+     * The smaller of what is left and {@code cap}, never zero so it can be handed to HTTP timeouts.
+     */
+    public Duration timeoutFor(Duration cap) {
+        return Duration.ofMillis(Math.max(1, Math.min(cap.toMillis(), remainingMillis())));
+    }
+
+    public void checkNotExpired(String operation) throws ExpiredException {
+        if (isExpired()) {
+            throw new ExpiredException(operation + " skipped: " + budgetMillis + " ms routing budget used up");
+        }
+    }
+
+    /**
+     * Interrupts the calling thread if it is still inside the guarded block when the deadline
+     * passes, and closes whatever was handed to {@link Guard#closeOnExpiry}. The interrupt
+     * unblocks an HTTP send waiting for headers; a body read ignores interrupts, so the response
+     * is registered and closed instead. Per-request timeouts cover neither.
+     */
+    public Guard interruptCurrentThreadOnExpiry() {
+        Guard guard = new Guard(Thread.currentThread());
+        guard.setTask(WATCHDOG.schedule(guard::fire, remainingMillis(), TimeUnit.MILLISECONDS));
+        return guard;
+    }
+
+
+    public static class Guard implements AutoCloseable {
+        private final Thread thread;
+        private final List<Closeable> closeOnFire = new ArrayList<>();
+        private ScheduledFuture<?> task;
+        private boolean active = true;
+        private boolean fired;
+        // The thread already had an interrupt pending that the guard must not swallow
+        private boolean interruptedBeforeFiring;
+
+        private Guard(Thread thread) {
+            this.thread = thread;
+        }
+
+        private synchronized void setTask(ScheduledFuture<?> task) {
+            this.task = task;
+            if (!active) task.cancel(false);
+        }
+
+        private synchronized void fire() {
+            if (active) {
+                fired = true;
+                interruptedBeforeFiring = thread.isInterrupted();
+                thread.interrupt();
+                for (Closeable resource : closeOnFire) closeQuietly(resource);
+            }
+        }
+
+        /**
+         * Closes {@code resource} when the deadline passes inside the guarded block, or right
+         * away if it already has.
+         */
+        public synchronized void closeOnExpiry(Closeable resource) {
+            if (fired) {
+                closeQuietly(resource);
+            } else if (active) {
+                closeOnFire.add(resource);
+            }
+        }
+
+        private static void closeQuietly(Closeable resource) {
+            try {
+                resource.close();
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Could not close on expiry: " + e.getMessage());
+            }
+        }
+
+        public synchronized boolean hasFired() {
+            return fired;
+        }
+
+        /**
+         * Disarms the watchdog and clears the interrupt it caused, if any. An interrupt from
+         * someone else, such as a cancel of the {@link InterruptibleFuture} running this work,
+         * is left pending.
+         */
+        @Override
+        public synchronized void close() {
+            active = false;
+            closeOnFire.clear();
+            if (task != null) task.cancel(false);
+            if (fired && !interruptedBeforeFiring && !InterruptibleFuture.isCurrentWorkCancelled()) {
+                Thread.interrupted();
+            }
+        }
+    }
+}
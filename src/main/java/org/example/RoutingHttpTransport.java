@@ -0,0 +1,424 @@
+package org.example;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLContextSpi;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLServerSocketFactory;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.PushbackInputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyManagementException;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Shared HTTP transport for routing requests.
+ *
+ * One {@link HttpClient} is kept for the whole app so TLS connections stay alive between
+ * legs, HTTP/2 is negotiated where the server offers it, and responses are requested gzip
+ * compressed and handed to the caller as a decoded stream.
+ *
+ * Connection reuse is measured by counting the TLS engines the client asks for: every new
+ * TLS connection needs one, reused connections do not. The client gives no such hook for
+ * plain HTTP, so reuse is only reported for https requests.
+ */
+public class RoutingHttpTransport {
+
+    private static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(30);
+
+    private static RoutingHttpTransport instance;
+
+    private final HttpClient client;
+
+    private final AtomicLong requestsSent = new AtomicLong();
+    private final AtomicLong tlsRequestsSent = new AtomicLong();
+    private final AtomicLong tlsConnectionsOpened = new AtomicLong();
+    private final AtomicLong http2Responses = new AtomicLong();
+    private final AtomicLong gzipResponses = new AtomicLong();
+    private final AtomicLong requestBytesOnWire = new AtomicLong();
+    private final AtomicLong responseBytesOnWire = new AtomicLong();
+    private final AtomicLong responseBytesDecoded = new AtomicLong();
+
+    public RoutingHttpTransport() {
+        this(DEFAULT_CONNECT_TIMEOUT);
+    }
+
+    public RoutingHttpTransport(Duration connectTimeout) {
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(connectTimeout);
+        try {
+            builder.sslContext(new CountingSslContext(SSLContext.getDefault(), tlsConnectionsOpened));
+        } catch (NoSuchAlgorithmException e) {
+            System.err.println("Default SSL context unavailable, TLS connections will not be counted: " + e.getMessage());
+        }
+        this.client = builder.build();
+    }
+
+    public static synchronized RoutingHttpTransport getInstance() {
+        if (instance == null) instance = new RoutingHttpTransport();
+        return instance;
+    }
+
+
+    public Response post(String url, String authorization, String jsonBody, Duration timeout)
+            throws IOException, InterruptedException {
+        byte[] body = jsonBody.getBytes(StandardCharsets.UTF_8);
+
+        URI uri = URI.create(url);
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri)
+                .timeout(timeout)
+                .header("Content-Type", "application/json; charset=utf-8")
+                .header("Accept", "application/json, application/geo+json, */*")
+                .header("Accept-Encoding", "gzip")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body));
+        if (authorization != null) {
+            request.header("Authorization", authorization);
+        }
+
+        requestsSent.incrementAndGet();
+        if ("https".equalsIgnoreCase(uri.getScheme())) {
+            tlsRequestsSent.incrementAndGet();
+        }
+        requestBytesOnWire.addAndGet(body.length);
+
+        HttpResponse<InputStream> response = client.send(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+
+        if (response.version() == HttpClient.Version.HTTP_2) {
+            http2Responses.incrementAndGet();
+        }
+
+        InputStream wire = new CountingInputStream(response.body(), responseBytesOnWire);
+        InputStream decoded = wire;
+        boolean gzip = response.headers().firstValue("Content-Encoding")
+                .map(v -> v.trim().equalsIgnoreCase("gzip"))
+                .orElse(false);
+        if (gzip) {
+            gzipResponses.incrementAndGet();
+            // Not decoded here: reading the gzip header can block, and the caller can only abort once it has the Response
+            decoded = new LazyGzipInputStream(wire);
+        }
+
+        return new Response(response.statusCode(), response.version(), response.headers(), response.body(),
+                new CountingInputStream(decoded, responseBytesDecoded));
+    }
+
+
+
+    public long getRequestsSent() {
+        return requestsSent.get();
+    }
+
+    public long getTlsRequestsSent() {
+        return tlsRequestsSent.get();
+    }
+
+    public long getTlsConnectionsOpened() {
+        return tlsConnectionsOpened.get();
+    }
+
+    /**
+     * Https requests that went out over an already open TLS connection. Plain HTTP requests
+     * are not counted either way.
+     */
+    public long getReusedTlsConnectionRequests() {
+        return Math.max(0, tlsRequestsSent.get() - tlsConnectionsOpened.get());
+    }
+
+    public long getHttp2Responses() {
+        return http2Responses.get();
+    }
+
+    public long getGzipResponses() {
+        return gzipResponses.get();
+    }
+
+    public long getRequestBytesOnWire() {
+        return requestBytesOnWire.get();
+    }
+
+    public long getResponseBytesOnWire() {
+        return responseBytesOnWire.get();
+    }
+
+    public long getResponseBytesDecoded() {
+        return responseBytesDecoded.get();
+    }
+
+    public String describeStats() {
+        return String.format("requests=%d (%d over tls), tls connections=%d, tls reused=%d, http2=%d, gzip=%d, " +
+                        "sent=%d B, received=%d B on wire (%d B decoded)",
+                getRequestsSent(), getTlsRequestsSent(), getTlsConnectionsOpened(), getReusedTlsConnectionRequests(),
+                getHttp2Responses(), getGzipResponses(), getRequestBytesOnWire(),
+                getResponseBytesOnWire(), getResponseBytesDecoded());
+    }
+
+
+    /**
+     * Status, headers and decoded body stream of one exchange. Closing it releases the connection.
+     */
+    public static class Response implements Closeable {
+        private final int statusCode;
+        private final HttpClient.Version version;
+        private final HttpHeaders headers;
+        private final InputStream wire;
+        private final InputStream body;
+        private volatile boolean aborted;
+
+        public Response(int statusCode, HttpClient.Version version, HttpHeaders headers, InputStream body) {
+            this(statusCode, version, headers, body, body);
+        }
+
+        Response(int statusCode, HttpClient.Version version, HttpHeaders headers, InputStream wire,
+                 InputStream body) {
+            this.statusCode = statusCode;
+            this.version = version;
+            this.headers = headers;
+            this.wire = wire;
+            this.body = new AbortableInputStream(body);
+        }
+
+        public int getStatusCode() { return statusCode; }
+        public HttpClient.Version getVersion() { return version; }
+        public HttpHeaders getHeaders() { return headers; }
+        public InputStream getBody() { return body; }
+
+        public boolean isSuccessful() {
+            return statusCode >= 200 && statusCode < 300;
+        }
+
+        public String readBodyAsString() throws IOException {
+            return new String(body.readAllBytes(), StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Reads whatever a parser left unread so the connection can go back to the pool;
+         * closing a half-read HTTP/1.1 body forces the connection shut instead.
+         */
+        public void discardRemainingBody() throws IOException {
+            byte[] scratch = new byte[1024];
+            while (body.read(scratch) >= 0) {
+                // discard
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            body.close();
+        }
+
+        /**
+         * Closes the connection's body stream from any thread. A read blocked on a body that has
+         * stopped arriving ignores interrupts, so this is how a cancel or an expired deadline
+         * frees the reading thread; the read fails with {@link InterruptedIOException}.
+         */
+        public void abort() {
+            aborted = true;
+            try {
+                wire.close();
+            } catch (IOException ignored) {
+            }
+        }
+
+        public boolean isAborted() {
+            return aborted;
+        }
+
+        /**
+         * Reports reads failed by {@link #abort()} as interrupted rather than as network errors.
+         */
+        private class AbortableInputStream extends FilterInputStream {
+            AbortableInputStream(InputStream in) {
+                super(in);
+            }
+
+            private IOException translate(IOException e) {
+                if (!aborted || e instanceof InterruptedIOException) return e;
+                InterruptedIOException interrupted = new InterruptedIOException("response read aborted");
+                interrupted.initCause(e);
+                return interrupted;
+            }
+
+            @Override
+            public int read() throws IOException {
+                try {
+                    return super.read();
+                } catch (IOException e) {
+                    throw translate(e);
+                }
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                try {
+                    return super.read(b, off, len);
+                } catch (IOException e) {
+                    throw translate(e);
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Counts bytes read, and stops reading once the reading thread is interrupted so a
+     * cancelled call does not go on downloading and parsing a body nobody wants. The check runs
+     * between reads only; a read already blocked waiting for data needs {@link Response#abort()}.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        private final AtomicLong counter;
+
+        CountingInputStream(InputStream in, AtomicLong counter) {
+            super(in);
+            this.counter = counter;
+        }
+
+        private static void checkNotInterrupted() throws InterruptedIOException {
+            if (Thread.currentThread().isInterrupted()) throw new InterruptedIOException("response read interrupted");
+        }
+
+        @Override
+        public int read() throws IOException {
+            checkNotInterrupted();
+            int b = super.read();
+            if (b >= 0) counter.incrementAndGet();
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            checkNotInterrupted();
+            int n = super.read(b, off, len);
+            if (n > 0) counter.addAndGet(n);
+            return n;
+        }
+    }
+
+
+    /**
+     * Opens the gzip stream on the first read rather than when constructed, so the header read
+     * happens where {@link Response#abort()} can reach it. An empty body reads as empty instead
+     * of failing on the missing header, as error responses sometimes are.
+     */
+    private static class LazyGzipInputStream extends InputStream {
+        private final PushbackInputStream wire;
+        private InputStream decoded;
+
+        LazyGzipInputStream(InputStream wire) {
+            this.wire = new PushbackInputStream(wire, 1);
+        }
+
+        private InputStream decoded() throws IOException {
+            if (decoded == null) {
+                int first = wire.read();
+                if (first < 0) {
+                    decoded = InputStream.nullInputStream();
+                } else {
+                    wire.unread(first);
+                    decoded = new GZIPInputStream(wire, 8192);
+                }
+            }
+            return decoded;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return decoded().read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return decoded().read(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (decoded != null) decoded.close();
+            wire.close();
+        }
+    }
+
+
+    /**
+     * Delegates to the platform SSL context and counts each engine created.
+     */
+    private static class CountingSslContext extends SSLContext {
+        CountingSslContext(SSLContext delegate, AtomicLong enginesCreated) {
+            super(new CountingSslContextSpi(delegate, enginesCreated), delegate.getProvider(), delegate.getProtocol());
+        }
+    }
+
+    private static class CountingSslContextSpi extends SSLContextSpi {
+        private final SSLContext delegate;
+        private final AtomicLong enginesCreated;
+
+        CountingSslContextSpi(SSLContext delegate, AtomicLong enginesCreated) {
+            this.delegate = delegate;
+            this.enginesCreated = enginesCreated;
+        }
+
+        @Override
+        protected void engineInit(javax.net.ssl.KeyManager[] km, javax.net.ssl.TrustManager[] tm, SecureRandom sr)
+                throws KeyManagementException {
+            delegate.init(km, tm, sr);
+        }
+
+        @Override
+        protected SSLSocketFactory engineGetSocketFactory() {
+            return delegate.getSocketFactory();
+        }
+
+        @Override
+        protected SSLServerSocketFactory engineGetServerSocketFactory() {
+            return delegate.getServerSocketFactory();
+        }
+
+        @Override
+        protected SSLEngine engineCreateSSLEngine() {
+            enginesCreated.incrementAndGet();
+            return delegate.createSSLEngine();
+        }
+
+        @Override
+        protected SSLEngine engineCreateSSLEngine(String host, int port) {
+            enginesCreated.incrementAndGet();
+            return delegate.createSSLEngine(host, port);
+        }
+
+        @Override
+        protected SSLSessionContext engineGetServerSessionContext() {
+            return delegate.getServerSessionContext();
+        }
+
+        @Override
+        protected SSLSessionContext engineGetClientSessionContext() {
+            return delegate.getClientSessionContext();
+        }
+
+        @Override
+        protected SSLParameters engineGetDefaultSSLParameters() {
+            return delegate.getDefaultSSLParameters();
+        }
+
+        @Override
+        protected SSLParameters engineGetSupportedSSLParameters() {
+            return delegate.getSupportedSSLParameters();
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package org.example;
+
+import java.net.http.HttpHeaders;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Client-side token bucket in front of the OpenRouteService quota.
+ *
+ * Every request takes a token; tokens refill at the per-minute rate. The bucket is also
+ * corrected from the x-ratelimit-* headers ORS sends back, and paused outright when the
+ * server answers 429. A request that would have to wait past its deadline is shed locally
+ * instead of being sent. Throttled responses are retried with jittered exponential backoff.
+ */
+public class RoutingRateLimiter {
+
+    public interface Listener {
+        void rateLimitStateChanged(RoutingRateLimiter limiter);
+    }
+
+    /**
+     * Thrown when a request is shed before sending, or still throttled after its retries.
+     */
+    public static class RateLimitedException extends Exception {
+        private final int statusCode;
+        private final long retryAfterMillis;
+
+        public RateLimitedException(String message, int statusCode, long retryAfterMillis) {
+            super(message);
+            this.statusCode = statusCode;
+            this.retryAfterMillis = retryAfterMillis;
+        }
+
+        /**
+         * 429 or 503 from the server, 0 when the request was shed before sending.
+         */
+        public int getStatusCode() {
+            return statusCode;
+        }
+
+        public long getRetryAfterMillis() {
+            return retryAfterMillis;
+        }
+    }
+
+    public static final int DEFAULT_REQUESTS_PER_MINUTE = 40;
+    private static final long LOW_QUOTA_THRESHOLD = 50;
+
+    private final double capacity;
+    private final double tokensPerNano;
+    private double tokens;
+    private long lastRefillNanos;
+    private long pausedUntilNanos;
+    private long serverRemaining = -1;
+    private long serverLimit = -1;
+
+    private volatile int maxRetries = 3;
+    private volatile long baseBackoffMillis = 500;
+    private volatile long maxBackoffMillis = 8000;
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    private final AtomicLong requestsAllowed = new AtomicLong();
+    private final AtomicLong requestsQueued = new AtomicLong();
+    private final AtomicLong requestsShed = new AtomicLong();
+    private final AtomicLong throttledResponses = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+
+    public RoutingRateLimiter() {
+        this(DEFAULT_REQUESTS_PER_MINUTE, DEFAULT_REQUESTS_PER_MINUTE);
+    }
+
+    /**
+     * @param requestsPerMinute steady refill rate
+     * @param burst             bucket size, i.e. how many requests may go out back to back
+     */
+    public RoutingRateLimiter(int requestsPerMinute, int burst) {
+        if (requestsPerMinute <= 0 || burst <= 0) throw new IllegalArgumentException("rate and burst must be positive");
+        this.capacity = burst;
+        this.tokens = burst;
+        this.tokensPerNano = requestsPerMinute / (double) TimeUnit.MINUTES.toNanos(1);
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    private void notifyListeners() {
+        for (Listener listener : listeners) {
+            listener.rateLimitStateChanged(this);
+        }
+    }
+
+
+    /**
+     * Takes a token, waiting for one if needed.
+     *
+     * @param deadline optional; if the wait would run past it the request is shed
+     * @throws RateLimitedException when shed
+     */
+    public void acquire(RoutingDeadline deadline) throws RateLimitedException, InterruptedException {
+        boolean queued = false;
+        while (true) {
+            long waitMillis = tryTake();
+            if (waitMillis == 0) {
+                requestsAllowed.incrementAndGet();
+                return;
+            }
+            if (deadline != null && waitMillis >= deadline.remainingMillis()) {
+                requestsShed.incrementAndGet();
+                notifyListeners();
+                throw new RateLimitedException("Routing request shed: quota frees up in " + waitMillis + " ms", 0,
+                        waitMillis);
+            }
+            if (!queued) {
+                queued = true;
+                requestsQueued.incrementAndGet();
+                notifyListeners();
+            }
+            Thread.sleep(waitMillis);
+        }
+    }
+
+    /**
+     * @return 0 if a token was taken, otherwise how long until one could be
+     */
+    private synchronized long tryTake() {
+        long now = System.nanoTime();
+        refill(now);
+        if (now - pausedUntilNanos < 0) {
+            return Math.max(1, TimeUnit.NANOSECONDS.toMillis(pausedUntilNanos - now));
+        }
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+        return Math.max(1, (long) Math.ceil((1 - tokens) / tokensPerNano / 1_000_000));
+    }
+
+    private void refill(long now) {
+        tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * tokensPerNano);
+        lastRefillNanos = now;
+    }
+
+
+    /**
+     * Corrects the bucket from x-ratelimit-limit / -remaining / -reset on any response.
+     */
+    public void updateFromHeaders(HttpHeaders headers) {
+        long limit = headerAsLong(headers, "x-ratelimit-limit");
+        long remaining = headerAsLong(headers, "x-ratelimit-remaining");
+        long reset = headerAsLong(headers, "x-ratelimit-reset");
+        if (remaining < 0) return;
+
+        boolean wasLow;
+        boolean isLow;
+        synchronized (this) {
+            wasLow = isQuotaLowLocked();
+            if (limit >= 0) serverLimit = limit;
+            serverRemaining = remaining;
+            refill(System.nanoTime());
+            tokens = Math.min(tokens, remaining);
+            if (remaining == 0) {
+                pauseFor(resetToMillisFromNow(reset));
+            }
+            isLow = isQuotaLowLocked();
+        }
+        if (remaining == 0 || wasLow != isLow) notifyListeners();
+    }
+
+    /**
+     * Records a 429/503 and pauses the bucket so no one else sends in the meantime.
+     *
+     * @return how long to wait before retrying
+     */
+    public long recordThrottled(int statusCode, long retryAfterMillis, int attempt) {
+        throttledResponses.incrementAndGet();
+        long backoff = Math.max(retryAfterMillis, backoffMillis(attempt));
+        synchronized (this) {
+            pauseFor(backoff);
+        }
+        notifyListeners();
+        return backoff;
+    }
+
+    /**
+     * Full-jitter exponential backoff: a random delay up to base * 2^attempt, capped.
+     */
+    public long backoffMillis(int attempt) {
+        long ceiling = Math.min(maxBackoffMillis, baseBackoffMillis << Math.min(attempt, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    public void recordRetry() {
+        retries.incrementAndGet();
+    }
+
+    private void pauseFor(long millis) {
+        long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        if (until - pausedUntilNanos > 0) pausedUntilNanos = until;
+    }
+
+    static long resetToMillisFromNow(long reset) {
+        if (reset < 0) return 60_000;
+        // Large values are an epoch timestamp in seconds, small ones a delay in seconds
+        long millis = reset > 1_000_000_000L ? reset * 1000 - System.currentTimeMillis() : reset * 1000;
+        return Math.max(1000, millis);
+    }
+
+    /**
+     * Parses a Retry-After header given in seconds; 0 when absent or in date form.
+     */
+    public static long retryAfterMillis(HttpHeaders headers) {
+        long seconds = headerAsLong(headers, "Retry-After");
+        return seconds < 0 ? 0 : seconds * 1000;
+    }
+
+    private static long headerAsLong(HttpHeaders headers, String name) {
+        return headers.firstValue(name).map(v -> {
+            try {
+                return (long) Double.parseDouble(v.trim());
+            } catch (NumberFormatException e) {
+                return -1L;
+            }
+        }).orElse(-1L);
+    }
+
+
+    public synchronized boolean isPaused() {
+        return System.nanoTime() - pausedUntilNanos < 0;
+    }
+
+    public synchronized long getPausedMillisRemaining() {
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(pausedUntilNanos - System.nanoTime()));
+    }
+
+    public synchronized double getAvailableTokens() {
+        refill(System.nanoTime());
+        return tokens;
+    }
+
+    /**
+     * Remaining server-side quota from the last response, -1 if not reported yet.
+     */
+    public synchronized long getServerRemaining() {
+        return serverRemaining;
+    }
+
+    public synchronized boolean isQuotaLow() {
+        return isQuotaLowLocked();
+    }
+
+    private boolean isQuotaLowLocked() {
+        return serverRemaining >= 0 && serverRemaining <= LOW_QUOTA_THRESHOLD;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public void setBackoff(int maxRetries, long baseMillis, long maxMillis) {
+        if (maxRetries < 0 || baseMillis <= 0 || maxMillis < baseMillis) {
+            throw new IllegalArgumentException("invalid backoff settings");
+        }
+        this.maxRetries = maxRetries;
+        this.baseBackoffMillis = baseMillis;
+        this.maxBackoffMillis = maxMillis;
+    }
+
+    public long getRequestsAllowed() { return requestsAllowed.get(); }
+    public long getRequestsQueued() { return requestsQueued.get(); }
+    public long getRequestsShed() { return requestsShed.get(); }
+    public long getThrottledResponses() { return throttledResponses.get(); }
+    public long getRetries() { return retries.get(); }
+
+    /**
+     * One line for the status bar.
+     */
+    public synchronized String describeState() {
+        long pausedMillis = Math.max(0, TimeUnit.NANOSECONDS.toMillis(pausedUntilNanos - System.nanoTime()));
+        String quota = serverRemaining < 0 ? "" :
+                " (" + serverRemaining + (serverLimit > 0 ? "/" + serverLimit : "") + " requests left in quota)";
+        if (pausedMillis > 0) {
+            return "Routing rate limited - retrying in " + (pausedMillis + 999) / 1000 + " s" + quota;
+        }
+        if (isQuotaLowLocked()) {
+            return "Routing quota almost used up" + quota;
+        }
+        return "Routing quota OK" + quota;
+    }
+
+    public String describeStats() {
+        return String.format("allowed=%d, queued=%d, shed=%d, throttled responses=%d, retries=%d",
+                getRequestsAllowed(), getRequestsQueued(), getRequestsShed(), getThrottledResponses(), getRetries());
+    }
+}
@@ -0,0 +1,116 @@
+package org.example;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collapses identical routing requests that are in flight at the same time into one.
+ *
+ * The first caller for a key makes the request; anyone asking for the same key before it
+ * finishes waits for that request and gets the same result (or the same failure). If the
+ * first caller is cancelled, a waiting caller takes over and makes the request itself.
+ */
+public class RoutingSingleFlight {
+
+    public interface Call {
+        RouteResult call() throws Exception;
+    }
+
+    private final ConcurrentHashMap<RouteCacheKey, CompletableFuture<RouteResult>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong requestsMade = new AtomicLong();
+    private final AtomicLong requestsShared = new AtomicLong();
+    private final AtomicLong takeovers = new AtomicLong();
+
+    /**
+     * @param deadline optional; bounds how long a caller waits on someone else's request
+     */
+    public RouteResult execute(RouteCacheKey key, RoutingDeadline deadline, Call call) throws Exception {
+        while (true) {
+            CompletableFuture<RouteResult> mine = new CompletableFuture<>();
+            CompletableFuture<RouteResult> existing = inFlight.putIfAbsent(key, mine);
+
+            if (existing == null) {
+                return lead(key, mine, call);
+            }
+
+            requestsShared.incrementAndGet();
+            try {
+                return await(existing, deadline);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof InterruptedException) {
+                    // The caller that owned the request was cancelled, not the request itself
+                    requestsShared.decrementAndGet();
+                    takeovers.incrementAndGet();
+                    continue;
+                }
+                if (cause instanceof Exception) throw (Exception) cause;
+                throw new IllegalStateException("Shared routing request failed", cause);
+            } catch (CancellationException e) {
+                requestsShared.decrementAndGet();
+                takeovers.incrementAndGet();
+            }
+        }
+    }
+
+    private RouteResult lead(RouteCacheKey key, CompletableFuture<RouteResult> mine, Call call) throws Exception {
+        requestsMade.incrementAndGet();
+        // Unregister before completing so a waiter that retries never finds the finished call
+        RouteResult result;
+        try {
+            result = call.call();
+        } catch (Exception | Error e) {
+            inFlight.remove(key, mine);
+            mine.completeExceptionally(e);
+            throw e;
+        }
+        inFlight.remove(key, mine);
+        mine.complete(result);
+        return result;
+    }
+
+    private static RouteResult await(CompletableFuture<RouteResult> future, RoutingDeadline deadline)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        if (deadline == null) return future.get();
+        try {
+            return future.get(deadline.remainingMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new TimeoutException("Gave up waiting on shared routing request after " +
+                    deadline.getBudgetMillis() + " ms");
+        }
+    }
+
+
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    /**
+     * Requests actually sent, one per distinct key in flight.
+     */
+    public long getRequestsMade() {
+        return requestsMade.get();
+    }
+
+    /**
+     * Callers that got their answer from another caller's request, i.e. requests saved.
+     */
+    public long getRequestsShared() {
+        return requestsShared.get();
+    }
+
+    public long getTakeovers() {
+        return takeovers.get();
+    }
+
+    public String describeStats() {
+        return String.format("requests made=%d, shared=%d, takeovers=%d, in flight=%d",
+                getRequestsMade(), getRequestsShared(), getTakeovers(), getInFlightCount());
+    }
+}
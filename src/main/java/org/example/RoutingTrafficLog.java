@@ -0,0 +1,327 @@
+package org.example;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Append-only file of routing request/response pairs with their timings, written by
+ * {@link RecordingHttpTransport} and read back by {@link ReplayHttpTransport}.
+ *
+ * The file starts with a four-byte magic number; each exchange after it is one record of
+ * compressed length, raw length and a deflated block holding the timings, URL, request body,
+ * status, response headers and decoded response body. The Authorization header is never
+ * written. A record cut short by a crash is skipped on reading, so the file stays usable
+ * while it is still being appended to.
+ */
+public class RoutingTrafficLog {
+
+    private static final int MAGIC = 0x52544C31; // "RTL1"
+
+    /**
+     * One request and what came back for it: a response, or the failure the transport threw.
+     */
+    public static class Exchange {
+        public static final int FAILURE_NONE = 0;
+        public static final int FAILURE_TIMEOUT = 1;
+        public static final int FAILURE_IO = 2;
+
+        private final long startedAtMillis;
+        private final long headersNanos;
+        private final long bodyNanos;
+        private final String url;
+        private final String requestBody;
+        private final int statusCode;
+        private final HttpClient.Version version;
+        private final Map<String, List<String>> headers;
+        private final byte[] responseBody;
+        private final int failure;
+        private final String failureMessage;
+
+        public Exchange(long startedAtMillis, long headersNanos, long bodyNanos, String url, String requestBody,
+                        int statusCode, HttpClient.Version version, Map<String, List<String>> headers,
+                        byte[] responseBody) {
+            this(startedAtMillis, headersNanos, bodyNanos, url, requestBody, statusCode, version, headers,
+                    responseBody, FAILURE_NONE, null);
+        }
+
+        private Exchange(long startedAtMillis, long headersNanos, long bodyNanos, String url, String requestBody,
+                         int statusCode, HttpClient.Version version, Map<String, List<String>> headers,
+                         byte[] responseBody, int failure, String failureMessage) {
+            this.startedAtMillis = startedAtMillis;
+            this.headersNanos = headersNanos;
+            this.bodyNanos = bodyNanos;
+            this.url = url;
+            this.requestBody = requestBody;
+            this.statusCode = statusCode;
+            this.version = version;
+            this.headers = headers;
+            this.responseBody = responseBody;
+            this.failure = failure;
+            this.failureMessage = failureMessage;
+        }
+
+        /**
+         * A request that never got a response.
+         *
+         * @param failure {@link #FAILURE_TIMEOUT} or {@link #FAILURE_IO}
+         */
+        public static Exchange failed(long startedAtMillis, long elapsedNanos, String url, String requestBody,
+                                      int failure, String message) {
+            return new Exchange(startedAtMillis, elapsedNanos, 0, url, requestBody, 0, HttpClient.Version.HTTP_1_1,
+                    Collections.emptyMap(), new byte[0], failure, message == null ? "" : message);
+        }
+
+        public long getStartedAtMillis() { return startedAtMillis; }
+        /** From sending the request to having the response headers. */
+        public long getHeadersNanos() { return headersNanos; }
+        /** From the headers to the last byte of the body. */
+        public long getBodyNanos() { return bodyNanos; }
+        public String getUrl() { return url; }
+        public String getRequestBody() { return requestBody; }
+        public int getStatusCode() { return statusCode; }
+        public HttpClient.Version getVersion() { return version; }
+        public Map<String, List<String>> getHeaders() { return headers; }
+        public byte[] getResponseBody() { return responseBody; }
+        public int getFailure() { return failure; }
+        public String getFailureMessage() { return failureMessage; }
+
+        public boolean isFailure() {
+            return failure != FAILURE_NONE;
+        }
+    }
+
+    /**
+     * Appends exchanges to a log file, creating it if needed. Safe to share between threads.
+     */
+    public static class Writer implements Closeable {
+        private final OutputStream out;
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        private long exchangesWritten;
+        private long bytesWritten;
+
+        public Writer(Path file) throws IOException {
+            boolean fresh = !Files.exists(file) || Files.size(file) == 0;
+            if (!fresh) checkMagic(file);
+            this.out = Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            if (fresh) {
+                new DataOutputStream(out).writeInt(MAGIC);
+                out.flush();
+            }
+        }
+
+        public synchronized void append(Exchange exchange) throws IOException {
+            byte[] raw = encode(exchange);
+            deflater.reset();
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length / 3 + 64);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buffer);
+                compressed.write(buffer, 0, n);
+            }
+
+            ByteArrayOutputStream record = new ByteArrayOutputStream(compressed.size() + 8);
+            DataOutputStream data = new DataOutputStream(record);
+            data.writeInt(compressed.size());
+            data.writeInt(raw.length);
+            compressed.writeTo(data);
+            // One write per record, flushed, so a crash can only ever tear the last one
+            record.writeTo(out);
+            out.flush();
+            exchangesWritten++;
+            bytesWritten += record.size();
+        }
+
+        public synchronized long getExchangesWritten() { return exchangesWritten; }
+        public synchronized long getBytesWritten() { return bytesWritten; }
+
+        @Override
+        public synchronized void close() throws IOException {
+            deflater.end();
+            out.close();
+        }
+    }
+
+    private RoutingTrafficLog() {
+    }
+
+    private static void checkMagic(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+            readMagic(in, file);
+        }
+    }
+
+    private static void readMagic(DataInputStream in, Path file) throws IOException {
+        try {
+            if (in.readInt() != MAGIC) throw new IOException(file + " is not a routing traffic log");
+        } catch (EOFException e) {
+            throw new IOException(file + " is not a routing traffic log", e);
+        }
+    }
+
+    /**
+     * Every complete exchange in the file, in the order they were written.
+     */
+    public static List<Exchange> readAll(Path file) throws IOException {
+        List<Exchange> exchanges = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            readMagic(in, file);
+            Inflater inflater = new Inflater();
+            try {
+                while (true) {
+                    byte[] raw = readRecord(in, inflater);
+                    if (raw == null) break;
+                    exchanges.add(decode(raw));
+                }
+            } finally {
+                inflater.end();
+            }
+        }
+        return exchanges;
+    }
+
+    /**
+     * @return the inflated record, or null at the end of the file or at a torn last record
+     */
+    private static byte[] readRecord(DataInputStream in, Inflater inflater) throws IOException {
+        int compressedLength;
+        try {
+            compressedLength = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        try {
+            int rawLength = in.readInt();
+            byte[] compressed = new byte[compressedLength];
+            in.readFully(compressed);
+            inflater.reset();
+            inflater.setInput(compressed);
+            byte[] raw = new byte[rawLength];
+            int inflated = 0;
+            while (inflated < rawLength && !inflater.finished()) {
+                int n = inflater.inflate(raw, inflated, rawLength - inflated);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                inflated += n;
+            }
+            if (inflated != rawLength) throw new IOException("corrupt record");
+            return raw;
+        } catch (EOFException e) {
+            System.err.println("Ignoring torn record at the end of the routing traffic log");
+            return null;
+        } catch (DataFormatException e) {
+            throw new IOException("corrupt record: " + e.getMessage(), e);
+        }
+    }
+
+    private static byte[] encode(Exchange exchange) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256 + exchange.responseBody.length);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeLong(exchange.startedAtMillis);
+        out.writeLong(exchange.headersNanos);
+        out.writeLong(exchange.bodyNanos);
+        out.writeUTF(exchange.url);
+        writeBytes(out, exchange.requestBody.getBytes(StandardCharsets.UTF_8));
+        out.writeByte(exchange.failure);
+        out.writeUTF(exchange.failure == Exchange.FAILURE_NONE ? "" : exchange.failureMessage);
+        out.writeShort(exchange.statusCode);
+        out.writeByte(exchange.version == HttpClient.Version.HTTP_2 ? 2 : 1);
+        int headerValues = 0;
+        for (List<String> values : exchange.headers.values()) headerValues += values.size();
+        out.writeShort(headerValues);
+        for (Map.Entry<String, List<String>> header : exchange.headers.entrySet()) {
+            for (String value : header.getValue()) {
+                out.writeUTF(header.getKey());
+                out.writeUTF(value);
+            }
+        }
+        writeBytes(out, exchange.responseBody);
+        return bytes.toByteArray();
+    }
+
+    private static Exchange decode(byte[] raw) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(raw));
+        long startedAtMillis = in.readLong();
+        long headersNanos = in.readLong();
+        long bodyNanos = in.readLong();
+        String url = in.readUTF();
+        String requestBody = new String(readBytes(in), StandardCharsets.UTF_8);
+        int failure = in.readByte();
+        String failureMessage = in.readUTF();
+        int statusCode = in.readShort();
+        HttpClient.Version version = in.readByte() == 2 ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1;
+        int headerValues = in.readShort();
+        Map<String, List<String>> headers = new LinkedHashMap<>();
+        for (int i = 0; i < headerValues; i++) {
+            String name = in.readUTF();
+            headers.computeIfAbsent(name, n -> new ArrayList<>()).add(in.readUTF());
+        }
+        byte[] responseBody = readBytes(in);
+        return new Exchange(startedAtMillis, headersNanos, bodyNanos, url, requestBody, statusCode, version, headers,
+                responseBody, failure, failure == Exchange.FAILURE_NONE ? null : failureMessage);
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    /**
+     * Count, failures and latency percentiles of a log, split into waiting for the headers
+     * and reading the body.
+     */
+    public static String summarize(List<Exchange> exchanges) {
+        int failures = 0;
+        long bytes = 0;
+        long[] headers = new long[exchanges.size()];
+        long[] bodies = new long[exchanges.size()];
+        for (int i = 0; i < exchanges.size(); i++) {
+            Exchange exchange = exchanges.get(i);
+            if (exchange.isFailure() || exchange.getStatusCode() >= 400) failures++;
+            bytes += exchange.getResponseBody().length;
+            headers[i] = exchange.getHeadersNanos();
+            bodies[i] = exchange.getBodyNanos();
+        }
+        Arrays.sort(headers);
+        Arrays.sort(bodies);
+        return String.format("exchanges=%d (%d failed), response bytes=%d, " +
+                        "headers p50/p95/max=%d/%d/%d ms, body p50/p95/max=%d/%d/%d ms",
+                exchanges.size(), failures, bytes,
+                percentileMillis(headers, 0.50), percentileMillis(headers, 0.95), percentileMillis(headers, 1.0),
+                percentileMillis(bodies, 0.50), percentileMillis(bodies, 0.95), percentileMillis(bodies, 1.0));
+    }
+
+    private static long percentileMillis(long[] sortedNanos, double fraction) {
+        if (sortedNanos.length == 0) return 0;
+        int index = Math.max(0, Math.min(sortedNanos.length - 1, (int) Math.ceil(fraction * sortedNanos.length) - 1));
+        return TimeUnit.NANOSECONDS.toMillis(sortedNanos[index]);
+    }
+}
@@ -0,0 +1,157 @@
+package org.example;
+
+import org.jxmapviewer.viewer.GeoPosition;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rebuilds a multi-stop route in a new stop order, routing only the legs the new order
+ * actually changes.
+ *
+ * A leg between two stops that stay next to each other in the same direction is kept as it
+ * is. Walking and cycling legs that now run the other way are reused reversed; car legs are
+ * not, since one-way streets make the way back a different route. Every other leg is routed
+ * on its own, all of them at once through the backend's async calls, and a leg that fails
+ * or runs out of time becomes a straight line so the route is never left with a gap.
+ */
+public class StopReorderer {
+
+    public static class Result {
+        private final List<RouteResult> legs;
+        private final int reused;
+        private final int reversed;
+        private final int rerouted;
+        private final int failed;
+        private final long elapsedMillis;
+
+        Result(List<RouteResult> legs, int reused, int reversed, int rerouted, int failed, long elapsedMillis) {
+            this.legs = Collections.unmodifiableList(legs);
+            this.reused = reused;
+            this.reversed = reversed;
+            this.rerouted = rerouted;
+            this.failed = failed;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        /**
+         * The legs in the new order, each starting where the previous one ends.
+         */
+        public List<RouteResult> getLegs() { return legs; }
+        public int getReused() { return reused; }
+        public int getReversed() { return reversed; }
+        /** Legs sent to the backend, failed ones included. */
+        public int getRerouted() { return rerouted; }
+        /** Rerouted legs that fell back to a straight line. */
+        public int getFailed() { return failed; }
+        public long getElapsedMillis() { return elapsedMillis; }
+    }
+
+    private final RoutingBackend backend;
+
+    private final AtomicLong legsReused = new AtomicLong();
+    private final AtomicLong legsRerouted = new AtomicLong();
+    private final AtomicLong legsFailed = new AtomicLong();
+
+    public StopReorderer(RoutingBackend backend) {
+        this.backend = backend;
+    }
+
+    /**
+     * Whether a leg routed one way can be walked back along the same roads.
+     */
+    static boolean canReverseLegs(RoutingAPI.RoutingProfile profile) {
+        return profile != RoutingAPI.RoutingProfile.DRIVING_CAR;
+    }
+
+    /**
+     * @param stops the stops in their current order
+     * @param legs  the current legs; {@code legs.get(i)} runs from stop i to stop i + 1
+     * @param order indices into {@code stops} in the new visiting order
+     */
+    public Result reorder(List<GeoPosition> stops, List<RouteResult> legs, int[] order, RoutingDeadline deadline)
+            throws InterruptedException {
+        if (legs.size() != stops.size() - 1 || order.length != stops.size()) {
+            throw new IllegalArgumentException(stops.size() + " stops, " + legs.size() + " legs, order of " +
+                    order.length);
+        }
+        long started = System.nanoTime();
+        boolean reversible = canReverseLegs(backend.getProfile());
+        RouteResult[] newLegs = new RouteResult[order.length - 1];
+        List<CompletableFuture<RouteResult>> futures = new ArrayList<>(Collections.nCopies(newLegs.length, null));
+        int reused = 0;
+        int reversed = 0;
+        int rerouted = 0;
+        try {
+            for (int k = 0; k < newLegs.length; k++) {
+                int from = order[k];
+                int to = order[k + 1];
+                if (to == from + 1) {
+                    newLegs[k] = legs.get(from);
+                    reused++;
+                } else if (reversible && from == to + 1) {
+                    newLegs[k] = legs.get(to).reversed();
+                    reversed++;
+                } else {
+                    futures.set(k, backend.snapToRoadsWithTwoPointsAsync(Arrays.asList(stops.get(from), stops.get(to)),
+                            deadline));
+                    rerouted++;
+                }
+            }
+
+            int failed = 0;
+            for (int k = 0; k < newLegs.length; k++) {
+                CompletableFuture<RouteResult> future = futures.get(k);
+                if (future == null) continue;
+                RouteResult leg = awaitLeg(future, deadline);
+                if (leg == null || leg.getPointCount() < 2) {
+                    leg = straightLeg(stops.get(order[k]), stops.get(order[k + 1]));
+                    failed++;
+                }
+                newLegs[k] = leg;
+            }
+
+            legsReused.addAndGet(reused + reversed);
+            legsRerouted.addAndGet(rerouted);
+            legsFailed.addAndGet(failed);
+            return new Result(Arrays.asList(newLegs), reused, reversed, rerouted, failed,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        } finally {
+            for (CompletableFuture<RouteResult> future : futures) {
+                if (future != null) future.cancel(true);
+            }
+        }
+    }
+
+    private static RouteResult awaitLeg(CompletableFuture<RouteResult> future, RoutingDeadline deadline)
+            throws InterruptedException {
+        try {
+            return deadline == null ? future.get() : future.get(deadline.remainingMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            return null;
+        }
+    }
+
+    static RouteResult straightLeg(GeoPosition from, GeoPosition to) {
+        double meters = Point.haversineKm(from.getLatitude(), from.getLongitude(), to.getLatitude(),
+                to.getLongitude()) * 1000;
+        return RouteResult.fromArrays(new double[]{from.getLatitude(), to.getLatitude()},
+                new double[]{from.getLongitude(), to.getLongitude()}, null, 2, 0, 0, meters);
+    }
+
+    public long getLegsReused() { return legsReused.get(); }
+    public long getLegsRerouted() { return legsRerouted.get(); }
+    public long getLegsFailed() { return legsFailed.get(); }
+
+    public String describeStats() {
+        return String.format("reused=%d, rerouted=%d, failed=%d", legsReused.get(), legsRerouted.get(),
+                legsFailed.get());
+    }
+}
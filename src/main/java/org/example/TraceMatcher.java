@@ -0,0 +1,289 @@
+package org.example;
+
+import org.jxmapviewer.viewer.GeoPosition;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Snaps a recorded GPS trace to roads.
+ *
+ * The trace is first thinned with {@link RouteSimplifier} (with a cap on the gap between
+ * kept fixes so long straights still pin the router to the right road), then cut into
+ * windows of at most {@link #DEFAULT_WINDOW_WAYPOINTS} waypoints that overlap their
+ * neighbours by a few fixes. Windows are routed in parallel on a small bounded pool as
+ * ordinary multi-waypoint requests and split back into legs. Each window keeps the legs up
+ * to the middle of its overlap, so every seam falls on a fix that both windows routed
+ * through with context on either side. A window that fails or runs out of time is filled in
+ * with the raw fixes it covered.
+ */
+public class TraceMatcher {
+
+    /**
+     * The matched route and what it took to get it.
+     */
+    public static class Result {
+        private final Route route;
+        private final int tracePoints;
+        private final int waypoints;
+        private final int windows;
+        private final int windowsFailed;
+        private final long elapsedMillis;
+
+        Result(Route route, int tracePoints, int waypoints, int windows, int windowsFailed, long elapsedMillis) {
+            this.route = route;
+            this.tracePoints = tracePoints;
+            this.waypoints = waypoints;
+            this.windows = windows;
+            this.windowsFailed = windowsFailed;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public Route getRoute() { return route; }
+        public int getTracePoints() { return tracePoints; }
+        /** Fixes left after thinning, each one a routing waypoint. */
+        public int getWaypoints() { return waypoints; }
+        public int getWindows() { return windows; }
+        /** Windows that fell back to the raw trace. */
+        public int getWindowsFailed() { return windowsFailed; }
+        public long getElapsedMillis() { return elapsedMillis; }
+    }
+
+    // ORS takes up to 50 coordinates per directions request
+    public static final int DEFAULT_WINDOW_WAYPOINTS = 40;
+    public static final int DEFAULT_OVERLAP_WAYPOINTS = 4;
+    // GPS noise is a few metres; wiggles smaller than this are not worth a waypoint
+    static final double THINNING_TOLERANCE_METERS = 15;
+    // Longest stretch left without a waypoint, so a straight is not rerouted along a parallel road
+    static final double MAX_WAYPOINT_GAP_METERS = 400;
+
+    private static final int POOL_SIZE = 4;
+    private static final ExecutorService WINDOW_EXECUTOR =
+            Executors.newFixedThreadPool(POOL_SIZE, new DaemonThreadFactory("trace-match"));
+
+    private final RoutingBackend backend;
+    private final int windowWaypoints;
+    private final int overlapWaypoints;
+
+    private final AtomicLong tracesMatched = new AtomicLong();
+    private final AtomicLong windowsRouted = new AtomicLong();
+    private final AtomicLong windowsFailed = new AtomicLong();
+
+    public TraceMatcher(RoutingBackend backend) {
+        this(backend, DEFAULT_WINDOW_WAYPOINTS, DEFAULT_OVERLAP_WAYPOINTS);
+    }
+
+    public TraceMatcher(RoutingBackend backend, int windowWaypoints, int overlapWaypoints) {
+        if (windowWaypoints < 2 || overlapWaypoints < 0 || overlapWaypoints > windowWaypoints - 2) {
+            throw new IllegalArgumentException("window of " + windowWaypoints + " with overlap " + overlapWaypoints);
+        }
+        this.backend = backend;
+        this.windowWaypoints = windowWaypoints;
+        this.overlapWaypoints = overlapWaypoints;
+    }
+
+
+
+    /**
+     * Matches {@code trace} to roads within {@code deadline}.
+     *
+     * @return the matched route with the climb of its legs added up; empty for an empty trace
+     */
+    public Result match(RouteResult trace, RoutingDeadline deadline) throws InterruptedException {
+        long started = System.nanoTime();
+        int count = trace.getPointCount();
+        Route route = new Route();
+        if (count == 0) return new Result(route, 0, 0, 0, 0, 0);
+
+        int[] kept = thin(trace);
+        List<GeoPosition> waypoints = new ArrayList<>(kept.length);
+        for (int index : kept) {
+            waypoints.add(new GeoPosition(trace.getLatitude(index), trace.getLongitude(index)));
+        }
+        if (kept.length == 1) {
+            route.addWaypoint(waypoints.get(0), trace.getElevation(0));
+            return new Result(route, count, 1, 0, 0, elapsedMillis(started));
+        }
+
+        int[] windowStarts = windowStarts(kept.length);
+        int windowCount = windowStarts.length;
+        List<Future<RouteResult>> futures = new ArrayList<>(windowCount);
+        for (int w = 0; w < windowCount; w++) {
+            List<GeoPosition> window = waypoints.subList(windowStarts[w], windowEnd(windowStarts[w], kept.length) + 1);
+            futures.add(WINDOW_EXECUTOR.submit(() -> backend.snapToRoadsWithTwoPoints(window, deadline)));
+        }
+
+        int failed = 0;
+        double ascent = 0;
+        double descent = 0;
+        try {
+            for (int w = 0; w < windowCount; w++) {
+                int start = windowStarts[w];
+                int end = windowEnd(start, kept.length);
+                // Legs this window keeps, from waypoint firstLeg up to waypoint lastLeg + 1
+                int firstLeg = w == 0 ? 0 : seam(w - 1, windowStarts, kept.length);
+                int lastLeg = (w == windowCount - 1 ? kept.length - 1 : seam(w, windowStarts, kept.length)) - 1;
+
+                List<RouteResult> legs = legsOf(futures.get(w), waypoints.subList(start, end + 1), deadline);
+                if (legs == null) {
+                    failed++;
+                    for (int leg = firstLeg; leg <= lastLeg; leg++) {
+                        RouteResult raw = rawLeg(trace, kept[leg], kept[leg + 1]);
+                        appendLeg(route, raw);
+                        ascent += raw.getAscent();
+                        descent += raw.getDescent();
+                    }
+                } else {
+                    for (int leg = firstLeg; leg <= lastLeg; leg++) {
+                        RouteResult matched = legs.get(leg - start);
+                        appendLeg(route, matched);
+                        ascent += matched.getAscent();
+                        descent += matched.getDescent();
+                    }
+                }
+            }
+        } finally {
+            for (Future<RouteResult> future : futures) {
+                future.cancel(true);
+            }
+        }
+        route.setElevation(ascent, descent);
+
+        tracesMatched.incrementAndGet();
+        windowsRouted.addAndGet(windowCount - failed);
+        windowsFailed.addAndGet(failed);
+        return new Result(route, count, kept.length, windowCount, failed, elapsedMillis(started));
+    }
+
+    /**
+     * Indices of the fixes kept as waypoints: the Douglas-Peucker survivors, plus enough of the
+     * dropped fixes that no two waypoints are more than {@link #MAX_WAYPOINT_GAP_METERS} apart
+     * along the trace. Always includes the first and last fix.
+     */
+    static int[] thin(RouteResult trace) {
+        int count = trace.getPointCount();
+        double[] latitudes = new double[count];
+        double[] longitudes = new double[count];
+        for (int i = 0; i < count; i++) {
+            latitudes[i] = trace.getLatitude(i);
+            longitudes[i] = trace.getLongitude(i);
+        }
+        int[] simplified = RouteSimplifier.keptIndices(latitudes, longitudes, count, THINNING_TOLERANCE_METERS);
+
+        double[] cumulative = trace.getCumulativeDistances();
+        int[] kept = new int[count];
+        int keptCount = 0;
+        for (int s = 0; s < simplified.length; s++) {
+            int index = simplified[s];
+            if (keptCount > 0) {
+                // Walk the dropped fixes since the last waypoint, keeping one whenever the gap gets too long
+                int previous = kept[keptCount - 1];
+                for (int i = previous + 1; i < index; i++) {
+                    if (cumulative[i + 1] - cumulative[kept[keptCount - 1]] > MAX_WAYPOINT_GAP_METERS) {
+                        kept[keptCount++] = i;
+                    }
+                }
+            }
+            kept[keptCount++] = index;
+        }
+        return Arrays.copyOf(kept, keptCount);
+    }
+
+    /**
+     * First waypoint of each window; consecutive windows share {@code overlapWaypoints + 1}
+     * waypoints.
+     */
+    int[] windowStarts(int waypointCount) {
+        List<Integer> starts = new ArrayList<>();
+        int start = 0;
+        while (true) {
+            starts.add(start);
+            int end = windowEnd(start, waypointCount);
+            if (end >= waypointCount - 1) break;
+            start = end - overlapWaypoints;
+        }
+        int[] result = new int[starts.size()];
+        for (int i = 0; i < result.length; i++) result[i] = starts.get(i);
+        return result;
+    }
+
+    private int windowEnd(int start, int waypointCount) {
+        return Math.min(waypointCount - 1, start + windowWaypoints - 1);
+    }
+
+    /**
+     * The waypoint where window {@code w} hands over to window {@code w + 1}: the middle of
+     * the waypoints they share.
+     */
+    private int seam(int w, int[] windowStarts, int waypointCount) {
+        int end = windowEnd(windowStarts[w], waypointCount);
+        return windowStarts[w + 1] + (end - windowStarts[w + 1] + 1) / 2;
+    }
+
+    /**
+     * The legs of a routed window, or null if it failed, timed out or could not be split.
+     */
+    private List<RouteResult> legsOf(Future<RouteResult> future, List<GeoPosition> window, RoutingDeadline deadline)
+            throws InterruptedException {
+        RouteResult result;
+        try {
+            result = deadline == null ? future.get() : future.get(deadline.remainingMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            System.err.println("Trace window failed: " + e.getCause());
+            return null;
+        } catch (TimeoutException e) {
+            return null;
+        }
+        if (result == null || result.getPointCount() < 2) return null;
+        List<RouteResult> legs = result.splitAtWaypoints(window);
+        return legs.size() == window.size() - 1 ? legs : null;
+    }
+
+    /**
+     * The recorded fixes from {@code from} to {@code to}, for stretches that could not be matched.
+     */
+    private static RouteResult rawLeg(RouteResult trace, int from, int to) {
+        int count = to - from + 1;
+        double[] latitudes = new double[count];
+        double[] longitudes = new double[count];
+        float[] elevations = trace.hasPointElevations() ? new float[count] : null;
+        double meters = 0;
+        for (int i = 0; i < count; i++) {
+            latitudes[i] = trace.getLatitude(from + i);
+            longitudes[i] = trace.getLongitude(from + i);
+            if (elevations != null) elevations[i] = (float) trace.getElevation(from + i);
+            if (i > 0) meters += trace.getSegmentMeters(from + i - 1);
+        }
+        DemElevationService.Climb climb = elevations != null ? DemElevationService.climbOf(elevations, count)
+                : new DemElevationService.Climb(0, 0);
+        return RouteResult.fromArrays(latitudes, longitudes, elevations, count, climb.getAscent(), climb.getDescent(),
+                meters);
+    }
+
+    private static void appendLeg(Route route, RouteResult leg) {
+        // Each leg starts where the previous one ended
+        route.appendRouteResult(leg, !route.isEmpty());
+    }
+
+    private static long elapsedMillis(long startedNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedNanos);
+    }
+
+    public long getTracesMatched() { return tracesMatched.get(); }
+    public long getWindowsRouted() { return windowsRouted.get(); }
+    public long getWindowsFailed() { return windowsFailed.get(); }
+
+    public String describeStats() {
+        return String.format("traces=%d, windows routed=%d, failed=%d",
+                tracesMatched.get(), windowsRouted.get(), windowsFailed.get());
+    }
+}
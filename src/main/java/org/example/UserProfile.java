@@ -23,6 +23,11 @@ public class UserProfile {
     private boolean showElevation;
     private boolean autoFitRoute;
 
+    // Routing modes that spend extra API quota; off unless the user opts in
+    private boolean calibrateRoundTrips;
+    private boolean hedgedRouting;
+    private RoutingAPI.ResponseFormat routeResponseFormat;
+
 
     private double totalDistanceRun;
     private double totalElevationGained;
@@ -54,6 +59,10 @@ public class UserProfile {
         this.showElevation = true;
         this.autoFitRoute = true;
 
+        this.calibrateRoundTrips = false;
+        this.hedgedRouting = false;
+        this.routeResponseFormat = RoutingAPI.ResponseFormat.GEOJSON;
+
         this.totalDistanceRun = 0.0;
         this.totalElevationGained = 0.0;
         this.totalRoutesGenerated = 0;
@@ -116,8 +125,15 @@ public class UserProfile {
 
 
 
-    public void applyUserSettingsToRoutingAPI(RoutingAPI api) {
+    public void applyUserSettingsToRoutingAPI(RoutingBackend api) {
         api.setProfile(preferredRoutingProfile);
+
+        RoutingBackend online = api instanceof OfflineRoutingBackend ? ((OfflineRoutingBackend) api).getFallback() : api;
+        if (online instanceof RoutingAPI) {
+            ((RoutingAPI) online).setRoundTripCalibrationEnabled(calibrateRoundTrips);
+            ((RoutingAPI) online).setHedgingEnabled(hedgedRouting);
+            ((RoutingAPI) online).setResponseFormat(routeResponseFormat);
+        }
     }
 
 
@@ -193,6 +209,41 @@ public class UserProfile {
         this.autoFitRoute = autoFitRoute;
     }
 
+    /**
+     * Re-request generated loops until their length is close to the one asked for. Costs up to
+     * three extra requests per generation.
+     */
+    public boolean isCalibrateRoundTrips() {
+        return calibrateRoundTrips;
+    }
+
+    public void setCalibrateRoundTrips(boolean calibrateRoundTrips) {
+        this.calibrateRoundTrips = calibrateRoundTrips;
+    }
+
+    /**
+     * Race the fallback profiles when the preferred one is slow, instead of trying them in turn.
+     * Faster legs, but a slow leg can spend one request per profile.
+     */
+    public boolean isHedgedRouting() {
+        return hedgedRouting;
+    }
+
+    public void setHedgedRouting(boolean hedgedRouting) {
+        this.hedgedRouting = hedgedRouting;
+    }
+
+    /**
+     * Wire format for directions responses; the encoded polyline is several times smaller.
+     */
+    public RoutingAPI.ResponseFormat getRouteResponseFormat() {
+        return routeResponseFormat;
+    }
+
+    public void setRouteResponseFormat(RoutingAPI.ResponseFormat format) {
+        this.routeResponseFormat = format == null ? RoutingAPI.ResponseFormat.GEOJSON : format;
+    }
+
     public double getTotalDistanceRun() {
         return totalDistanceRun;
     }
@@ -0,0 +1,319 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reorders the stops of a multi-stop route to cut total travel time, keeping the first stop
+ * first and, for loops, the last stop last.
+ *
+ * Several starting orders (the current one, nearest neighbour, then seeded shuffles) are each
+ * improved with 2-opt and Or-opt moves until no move helps, in parallel on a fork-join pool,
+ * and the fastest result wins. Travel times may differ by direction, so a reversed stretch is
+ * priced with prefix sums of the times in both directions, and every move costs O(1) to
+ * evaluate. Fifty stops take a few milliseconds per start.
+ */
+public class WaypointOrderOptimizer {
+
+    public static final int DEFAULT_STARTS = 16;
+    public static final long DEFAULT_SEED = 5800;
+
+    // Stands in for unroutable pairs so the search still avoids them without overflowing sums
+    private static final double UNREACHABLE_SECONDS = 1e7;
+    // Ignores rounding noise so two equal tours never swap back and forth
+    private static final double MIN_GAIN_SECONDS = 1e-6;
+    // Longest run of stops an Or-opt move relocates
+    private static final int MAX_SEGMENT = 3;
+
+    public static class Result {
+        private final int[] order;
+        private final double initialSeconds;
+        private final double optimizedSeconds;
+        private final int bestStart;
+        private final int starts;
+        private final long elapsedMillis;
+
+        Result(int[] order, double initialSeconds, double optimizedSeconds, int bestStart, int starts,
+               long elapsedMillis) {
+            this.order = order;
+            this.initialSeconds = initialSeconds;
+            this.optimizedSeconds = optimizedSeconds;
+            this.bestStart = bestStart;
+            this.starts = starts;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        /**
+         * Matrix indices in visiting order.
+         */
+        public int[] getOrder() { return order.clone(); }
+        public double getInitialSeconds() { return initialSeconds; }
+        public double getOptimizedSeconds() { return optimizedSeconds; }
+        /**
+         * Which starting order led to the result; 0 is the order the stops were given in.
+         */
+        public int getBestStart() { return bestStart; }
+        public int getStarts() { return starts; }
+        public long getElapsedMillis() { return elapsedMillis; }
+
+        public boolean isImproved() {
+            for (int i = 0; i < order.length; i++) {
+                if (order[i] != i) return true;
+            }
+            return false;
+        }
+
+        public double getSavedSeconds() {
+            return initialSeconds - optimizedSeconds;
+        }
+    }
+
+    private final ForkJoinPool pool;
+    private volatile int starts = DEFAULT_STARTS;
+    private volatile long seed = DEFAULT_SEED;
+
+    private final AtomicLong optimizations = new AtomicLong();
+    private final AtomicLong movesApplied = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+
+    public WaypointOrderOptimizer() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public WaypointOrderOptimizer(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * How many starting orders to improve; at least the current order and nearest neighbour run.
+     */
+    public void setStarts(int starts) {
+        this.starts = Math.max(2, starts);
+    }
+
+    public int getStarts() {
+        return starts;
+    }
+
+    /**
+     * Seed for the shuffled starts, so the same stops always come out in the same order.
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * @param keepEnd whether the last location must stay last, as for a loop back to the start
+     */
+    public Result optimize(DistanceMatrix matrix, boolean keepEnd) {
+        long start = System.nanoTime();
+        int n = matrix.size();
+        double[] cost = new double[n * n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                double seconds = matrix.getSeconds(i, j);
+                cost[i * n + j] = Double.isFinite(seconds) ? seconds : UNREACHABLE_SECONDS;
+            }
+        }
+
+        int startCount = starts;
+        long baseSeed = seed;
+        List<ForkJoinTask<Tour>> tasks = new ArrayList<>(startCount);
+        for (int s = 0; s < startCount; s++) {
+            int index = s;
+            tasks.add(pool.submit(() -> improve(cost, n, startingOrder(cost, n, keepEnd, index, baseSeed), keepEnd)));
+        }
+
+        // Ties go to the earlier start, so an order that cannot be beaten stays as it was
+        Tour best = null;
+        int bestStart = 0;
+        for (int s = 0; s < startCount; s++) {
+            Tour tour = tasks.get(s).join();
+            if (best == null || tour.cost < best.cost - MIN_GAIN_SECONDS) {
+                best = tour;
+                bestStart = s;
+            }
+        }
+
+        int[] identity = identity(n);
+        long nanos = System.nanoTime() - start;
+        optimizations.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+        return new Result(best.order, matrix.secondsAlong(identity), matrix.secondsAlong(best.order), bestStart,
+                startCount, TimeUnit.NANOSECONDS.toMillis(nanos));
+    }
+
+    private static class Tour {
+        final int[] order;
+        final double cost;
+
+        Tour(int[] order, double cost) {
+            this.order = order;
+            this.cost = cost;
+        }
+    }
+
+    static int[] startingOrder(double[] cost, int n, boolean keepEnd, int index, long seed) {
+        int[] order = identity(n);
+        int last = lastMovable(n, keepEnd);
+        if (index == 1) {
+            // Nearest neighbour from the first stop
+            for (int p = 1; p <= last; p++) {
+                int closest = p;
+                for (int q = p + 1; q <= last; q++) {
+                    if (cost[order[p - 1] * n + order[q]] < cost[order[p - 1] * n + order[closest]]) closest = q;
+                }
+                swap(order, p, closest);
+            }
+        } else if (index > 1) {
+            Random random = new Random(seed + index);
+            for (int p = last; p > 1; p--) {
+                swap(order, p, 1 + random.nextInt(p));
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Applies improving 2-opt and Or-opt moves until neither finds one.
+     */
+    private Tour improve(double[] cost, int n, int[] order, boolean keepEnd) {
+        int last = lastMovable(n, keepEnd);
+        double[] forward = new double[n];
+        double[] backward = new double[n];
+        long moves = 0;
+        boolean improved = true;
+        while (improved) {
+            prefixSums(cost, n, order, forward, backward);
+            improved = twoOpt(cost, n, order, last, forward, backward) || orOpt(cost, n, order, last, forward, backward);
+            if (improved) moves++;
+        }
+        movesApplied.addAndGet(moves);
+        return new Tour(order, tourCost(cost, n, order));
+    }
+
+    /**
+     * Reverses the first stretch {@code order[i..j]} whose reversal saves time.
+     */
+    private static boolean twoOpt(double[] cost, int n, int[] order, int last, double[] forward, double[] backward) {
+        for (int i = 1; i < last; i++) {
+            int before = order[i - 1];
+            for (int j = i + 1; j <= last; j++) {
+                double delta = cost[before * n + order[j]] - cost[before * n + order[i]]
+                        + (backward[j] - backward[i]) - (forward[j] - forward[i]);
+                if (j + 1 < n) {
+                    int after = order[j + 1];
+                    delta += cost[order[i] * n + after] - cost[order[j] * n + after];
+                }
+                if (delta < -MIN_GAIN_SECONDS) {
+                    for (int a = i, b = j; a < b; a++, b--) swap(order, a, b);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Moves the first run of up to {@link #MAX_SEGMENT} stops, as is or reversed, to the first
+     * other gap where it saves time.
+     */
+    private static boolean orOpt(double[] cost, int n, int[] order, int last, double[] forward, double[] backward) {
+        for (int length = 1; length <= MAX_SEGMENT; length++) {
+            for (int i = 1; i + length - 1 <= last; i++) {
+                int end = i + length - 1;
+                int first = order[i];
+                int tail = order[end];
+                int previous = order[i - 1];
+                int next = end + 1 < n ? order[end + 1] : -1;
+                double removed = cost[previous * n + first] - forward[i] + forward[end];
+                if (next >= 0) removed += cost[tail * n + next] - cost[previous * n + next];
+                double inside = forward[end] - forward[i];
+                double insideReversed = backward[end] - backward[i];
+
+                for (int p = 0; p <= last; p++) {
+                    if (p >= i - 1 && p <= end) continue;
+                    int a = order[p];
+                    int b = p + 1 < n ? order[p + 1] : -1;
+                    for (int reversed = 0; reversed < 2 && (reversed == 0 || length > 1); reversed++) {
+                        int head = reversed == 0 ? first : tail;
+                        int back = reversed == 0 ? tail : first;
+                        double added = cost[a * n + head] + (reversed == 0 ? inside : insideReversed);
+                        if (b >= 0) added += cost[back * n + b] - cost[a * n + b];
+                        if (added - removed < -MIN_GAIN_SECONDS) {
+                            moveSegment(order, i, length, p, reversed == 1);
+                            return true;
+                        }
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Takes {@code order[i..i+length-1]} out and puts it back right after what was {@code order[p]}.
+     */
+    private static void moveSegment(int[] order, int i, int length, int p, boolean reversed) {
+        int[] segment = new int[length];
+        for (int k = 0; k < length; k++) {
+            segment[k] = order[reversed ? i + length - 1 - k : i + k];
+        }
+        if (p < i) {
+            System.arraycopy(order, p + 1, order, p + 1 + length, i - p - 1);
+            System.arraycopy(segment, 0, order, p + 1, length);
+        } else {
+            System.arraycopy(order, i + length, order, i, p - i - length + 1);
+            System.arraycopy(segment, 0, order, p - length + 1, length);
+        }
+    }
+
+    /**
+     * {@code forward[k]} is the time from {@code order[0]} to {@code order[k]}; {@code backward[k]}
+     * the time of the same stretch driven the other way.
+     */
+    private static void prefixSums(double[] cost, int n, int[] order, double[] forward, double[] backward) {
+        forward[0] = 0;
+        backward[0] = 0;
+        for (int k = 1; k < n; k++) {
+            forward[k] = forward[k - 1] + cost[order[k - 1] * n + order[k]];
+            backward[k] = backward[k - 1] + cost[order[k] * n + order[k - 1]];
+        }
+    }
+
+    private static double tourCost(double[] cost, int n, int[] order) {
+        double total = 0;
+        for (int k = 1; k < n; k++) total += cost[order[k - 1] * n + order[k]];
+        return total;
+    }
+
+    private static int lastMovable(int n, boolean keepEnd) {
+        return keepEnd ? n - 2 : n - 1;
+    }
+
+    private static int[] identity(int n) {
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) order[i] = i;
+        return order;
+    }
+
+    private static void swap(int[] order, int a, int b) {
+        int t = order[a];
+        order[a] = order[b];
+        order[b] = t;
+    }
+
+    public long getOptimizations() { return optimizations.get(); }
+    public long getMovesApplied() { return movesApplied.get(); }
+
+    public String describeStats() {
+        long count = optimizations.get();
+        return String.format("optimizations=%d, moves=%d, avg %.1f ms", count, movesApplied.get(),
+                count == 0 ? 0.0 : totalNanos.get() / 1e6 / count);
+    }
+}
@@ -0,0 +1,259 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BidirectionalAStarTest {
+
+    /**
+     * Plain one-directional Dijkstra over the same edge costs, as the reference answer.
+     */
+    private static double dijkstraSeconds(RoadGraph graph, int source, int target, RoutingAPI.RoutingProfile profile) {
+        int accessMask = RoadGraph.accessMaskFor(profile);
+        double[] cost = new double[graph.getNodeCount()];
+        Arrays.fill(cost, Double.POSITIVE_INFINITY);
+        cost[source] = 0;
+        PriorityQueue<double[]> queue = new PriorityQueue<>((a, b) -> Double.compare(a[0], b[0]));
+        queue.add(new double[]{0, source});
+        while (!queue.isEmpty()) {
+            double[] top = queue.poll();
+            int node = (int) top[1];
+            if (top[0] > cost[node]) continue;
+            if (node == target) return cost[node];
+            for (int e = graph.edgeStart(node); e < graph.edgeEnd(node); e++) {
+                if (!graph.edgeAllows(e, accessMask)) continue;
+                double next = cost[node] + graph.edgeMeters(e) / (graph.edgeClass(e).speedKmh(profile) / 3.6);
+                int to = graph.edgeTarget(e);
+                if (next < cost[to]) {
+                    cost[to] = next;
+                    queue.add(new double[]{next, to});
+                }
+            }
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+
+    private static void assertPathIsConnected(RoadGraph graph, BidirectionalAStar.Path path) {
+        int[] nodes = path.getNodes();
+        double meters = 0;
+        for (int i = 1; i < nodes.length; i++) {
+            double best = Double.POSITIVE_INFINITY;
+            for (int e = graph.edgeStart(nodes[i - 1]); e < graph.edgeEnd(nodes[i - 1]); e++) {
+                if (graph.edgeTarget(e) == nodes[i]) best = Math.min(best, graph.edgeMeters(e));
+            }
+            assertTrue(best < Double.POSITIVE_INFINITY, "no edge " + nodes[i - 1] + " -> " + nodes[i]);
+            meters += best;
+        }
+        assertEquals(meters, path.getMeters(), 1e-3);
+    }
+
+    @Test
+    public void matchesDijkstraOnGridForEveryProfileTest() {
+        RoadGraph graph = RoadGraphFixtures.grid(25, 25, 80);
+        BidirectionalAStar search = new BidirectionalAStar(graph);
+        Random random = new Random(7);
+
+        for (RoutingAPI.RoutingProfile profile : RoutingAPI.RoutingProfile.values()) {
+            for (int i = 0; i < 40; i++) {
+                int source = random.nextInt(graph.getNodeCount());
+                int target = random.nextInt(graph.getNodeCount());
+
+                BidirectionalAStar.Path path = search.route(source, target, profile, null);
+
+                assertNotNull(path);
+                assertEquals(source, path.getNodes()[0]);
+                assertEquals(target, path.getNodes()[path.getNodeCount() - 1]);
+                assertEquals(dijkstraSeconds(graph, source, target, profile), path.getSeconds(), 1e-6);
+                assertPathIsConnected(graph, path);
+            }
+        }
+    }
+
+    @Test
+    public void carsGoAroundOnewayStreetTest() {
+        RoadGraph.Builder builder = new RoadGraph.Builder();
+        int a = builder.addNode(40.0, -105.0);
+        int b = builder.addNode(40.001, -105.0);
+        int c = builder.addNode(40.0005, -104.999);
+        builder.addSegment(a, b, RoadGraph.RoadClass.RESIDENTIAL, -1);
+        builder.addSegment(a, c, RoadGraph.RoadClass.RESIDENTIAL, 0);
+        builder.addSegment(c, b, RoadGraph.RoadClass.RESIDENTIAL, 0);
+        RoadGraph graph = builder.build();
+        BidirectionalAStar search = new BidirectionalAStar(graph);
+
+        assertArrayEquals(new int[]{a, c, b}, search.route(a, b, RoutingAPI.RoutingProfile.DRIVING_CAR, null).getNodes());
+        assertArrayEquals(new int[]{a, b}, search.route(a, b, RoutingAPI.RoutingProfile.FOOT_WALKING, null).getNodes());
+        assertArrayEquals(new int[]{b, a}, search.route(b, a, RoutingAPI.RoutingProfile.DRIVING_CAR, null).getNodes());
+    }
+
+    @Test
+    public void unreachableTargetReturnsNullTest() {
+        RoadGraph.Builder builder = new RoadGraph.Builder();
+        int a = builder.addNode(40.0, -105.0);
+        int b = builder.addNode(40.001, -105.0);
+        int c = builder.addNode(40.01, -105.0);
+        int d = builder.addNode(40.011, -105.0);
+        builder.addSegment(a, b, RoadGraph.RoadClass.RESIDENTIAL, 0);
+        builder.addSegment(c, d, RoadGraph.RoadClass.RESIDENTIAL, 0);
+        BidirectionalAStar search = new BidirectionalAStar(builder.build());
+
+        assertNull(search.route(a, d, RoutingAPI.RoutingProfile.FOOT_WALKING, null));
+        // The stamps must not leak into the next query
+        assertNotNull(search.route(c, d, RoutingAPI.RoutingProfile.FOOT_WALKING, null));
+    }
+
+    @Test
+    public void sameSourceAndTargetIsSingleNodePathTest() {
+        BidirectionalAStar search = new BidirectionalAStar(RoadGraphFixtures.grid(3, 3, 100));
+
+        BidirectionalAStar.Path path = search.route(4, 4, RoutingAPI.RoutingProfile.FOOT_WALKING, null);
+
+        assertArrayEquals(new int[]{4}, path.getNodes());
+        assertEquals(0, path.getMeters());
+    }
+
+    @Test
+    public void expiredDeadlineStopsLongSearchTest() {
+        RoadGraph graph = RoadGraphFixtures.grid(200, 200, 50);
+        BidirectionalAStar search = new BidirectionalAStar(graph);
+
+        assertNull(search.route(0, graph.getNodeCount() - 1, RoutingAPI.RoutingProfile.FOOT_WALKING,
+                RoutingDeadline.after(Duration.ZERO)));
+    }
+
+    @Test
+    public void countsQueriesAndSettledNodesTest() {
+        BidirectionalAStar search = new BidirectionalAStar(RoadGraphFixtures.grid(10, 10, 100));
+
+        search.route(0, 99, RoutingAPI.RoutingProfile.FOOT_WALKING, null);
+        search.route(99, 0, RoutingAPI.RoutingProfile.FOOT_WALKING, null);
+
+        assertEquals(2, search.getQueries());
+        assertTrue(search.getNodesSettled() > 0);
+        assertTrue(search.describeStats().startsWith("queries=2"));
+    }
+
+    @Test
+    public void oneToManyMatchesPointToPointSearchesTest() {
+        RoadGraph graph = RoadGraphFixtures.grid(20, 20, 80);
+        BidirectionalAStar search = new BidirectionalAStar(graph);
+        int[] targets = {0, 57, 399, 210, 57};
+        double[] seconds = new double[targets.length];
+        double[] meters = new double[targets.length];
+
+        assertTrue(search.oneToMany(57, targets, RoutingAPI.RoutingProfile.CYCLING_REGULAR, null, seconds, meters));
+
+        for (int i = 0; i < targets.length; i++) {
+            BidirectionalAStar.Path path = search.route(57, targets[i], RoutingAPI.RoutingProfile.CYCLING_REGULAR, null);
+            assertEquals(path.getSeconds(), seconds[i], 1e-6);
+            assertEquals(path.getMeters(), meters[i], 1e-3);
+        }
+        assertEquals(0, seconds[1]);
+    }
+
+    @Test
+    public void oneToManyReportsUnreachableTargetsAsInfiniteTest() {
+        RoadGraph.Builder builder = new RoadGraph.Builder();
+        int a = builder.addNode(40.0, -105.0);
+        int b = builder.addNode(40.001, -105.0);
+        int c = builder.addNode(40.01, -105.0);
+        builder.addSegment(a, b, RoadGraph.RoadClass.RESIDENTIAL, 0);
+        BidirectionalAStar search = new BidirectionalAStar(builder.build());
+        double[] seconds = new double[2];
+        double[] meters = new double[2];
+
+        search.oneToMany(a, new int[]{b, c}, RoutingAPI.RoutingProfile.FOOT_WALKING, null, seconds, meters);
+
+        assertTrue(Double.isFinite(seconds[0]));
+        assertTrue(Double.isInfinite(seconds[1]));
+        assertTrue(Double.isInfinite(meters[1]));
+    }
+
+    @Test
+    public void collapsedShapeNodesGiveSameRoutesTest() {
+        RoadGraph full = RoadGraphFixtures.gridWithShapeNodes(12, 12, 120, 3, false);
+        RoadGraph collapsed = RoadGraphFixtures.gridWithShapeNodes(12, 12, 120, 3, true);
+        BidirectionalAStar fullSearch = new BidirectionalAStar(full);
+        BidirectionalAStar collapsedSearch = new BidirectionalAStar(collapsed);
+        Random random = new Random(11);
+
+        assertTrue(collapsed.getShapeNodeCount() > 0);
+        for (RoutingAPI.RoutingProfile profile : RoutingAPI.RoutingProfile.values()) {
+            for (int i = 0; i < 40; i++) {
+                int source = random.nextInt(full.getNodeCount());
+                int target = random.nextInt(full.getNodeCount());
+                BidirectionalAStar.Path expected = fullSearch.route(source, target, profile, null);
+                BidirectionalAStar.Path actual = collapsedSearch.route(source, target, profile, null);
+
+                assertNotNull(actual, profile + " " + source + " -> " + target);
+                assertEquals(expected.getSeconds(), actual.getSeconds(), 1e-3);
+                assertEquals(source, actual.getNodes()[0]);
+                assertEquals(target, actual.getNodes()[actual.getNodes().length - 1]);
+                assertPathIsConnected(full, actual);
+            }
+        }
+    }
+
+    @Test
+    public void routeBetweenShapeNodesOfOneStreetStaysOnItTest() {
+        RoadGraph graph = RoadGraphFixtures.gridWithShapeNodes(4, 4, 120, 3, true);
+        BidirectionalAStar search = new BidirectionalAStar(graph);
+        int edge = graph.shapeEdge(graph.getNodeCount() - 1, true);
+        int first = graph.shapeNode(edge, 0);
+        int last = graph.shapeNode(edge, graph.shapeCount(edge) - 1);
+
+        BidirectionalAStar.Path path = search.route(first, last, RoutingAPI.RoutingProfile.FOOT_WALKING, null);
+
+        assertEquals(graph.shapeCount(edge), path.getNodes().length);
+        for (int node : path.getNodes()) assertTrue(graph.isShapeNode(node));
+    }
+
+    @Test
+    public void carLeavesOneWayShapeNodeWithTheFlowTest() {
+        RoadGraph full = RoadGraphFixtures.gridWithShapeNodes(6, 6, 120, 2, false);
+        RoadGraph collapsed = RoadGraphFixtures.gridWithShapeNodes(6, 6, 120, 2, true);
+        // rows 0 and 1 hold 11 streets each, so this is the first shape node of row 2's first
+        // street, which is one-way east
+        int shape = 36 + 2 * (2 * 11);
+        int westEnd = 2 * 6;
+
+        BidirectionalAStar.Path expected = new BidirectionalAStar(full)
+                .route(shape, westEnd, RoutingAPI.RoutingProfile.DRIVING_CAR, null);
+        BidirectionalAStar.Path actual = new BidirectionalAStar(collapsed)
+                .route(shape, westEnd, RoutingAPI.RoutingProfile.DRIVING_CAR, null);
+
+        assertTrue(collapsed.isShapeNode(shape));
+        assertEquals(expected.getSeconds(), actual.getSeconds(), 1e-3);
+        assertTrue(actual.getNodes().length > 3);
+        assertPathIsConnected(full, actual);
+    }
+
+    @Test
+    public void oneToManyOnCollapsedGraphMatchesFullGraphTest() {
+        RoadGraph full = RoadGraphFixtures.gridWithShapeNodes(10, 10, 120, 3, false);
+        RoadGraph collapsed = RoadGraphFixtures.gridWithShapeNodes(10, 10, 120, 3, true);
+        Random random = new Random(5);
+        int[] targets = new int[12];
+        for (int i = 0; i < targets.length; i++) targets[i] = random.nextInt(full.getNodeCount());
+
+        for (RoutingAPI.RoutingProfile profile : RoutingAPI.RoutingProfile.values()) {
+            for (int source : new int[]{0, 55, full.getNodeCount() - 1, targets[3]}) {
+                double[] expectedSeconds = new double[targets.length];
+                double[] expectedMeters = new double[targets.length];
+                double[] seconds = new double[targets.length];
+                double[] meters = new double[targets.length];
+                new BidirectionalAStar(full).oneToMany(source, targets, profile, null, expectedSeconds, expectedMeters);
+                new BidirectionalAStar(collapsed).oneToMany(source, targets, profile, null, seconds, meters);
+
+                assertArrayEquals(expectedSeconds, seconds, 1e-3);
+                assertArrayEquals(expectedMeters, meters, 1e-2);
+            }
+        }
+    }
+}
@@ -76,6 +76,8 @@ public class DashboardTest {
         boolean redoCalled;
         boolean saveCalled;
         boolean loadCalled;
+        boolean importCalled;
+        boolean optimizeCalled;
         boolean zoomInCalled;
         boolean zoomOutCalled;
         boolean generateCalled;
@@ -102,6 +104,12 @@ public class DashboardTest {
         @Override
         public void onLoadRoute() { loadCalled = true; }
 
+        @Override
+        public void onImportTrace() { importCalled = true; }
+
+        @Override
+        public void onOptimizeOrder() { optimizeCalled = true; }
+
         @Override
         public void onZoomIn() { zoomInCalled = true; }
 
@@ -129,6 +137,8 @@ public class DashboardTest {
         JButton redoBtn = getField(d, "redoBtn", JButton.class);
         JButton saveBtn = getField(d, "saveBtn", JButton.class);
         JButton loadBtn = getField(d, "loadBtn", JButton.class);
+        JButton importBtn = getField(d, "importBtn", JButton.class);
+        JButton optimizeBtn = getField(d, "optimizeBtn", JButton.class);
         JButton zoomInBtn = getField(d, "zoomInBtn", JButton.class);
         JButton zoomOutBtn = getField(d, "zoomOutBtn", JButton.class);
         JButton generateBtn = getField(d, "generateBtn", JButton.class);
@@ -144,6 +154,8 @@ public class DashboardTest {
         assertNotNull(redoBtn);
         assertNotNull(saveBtn);
         assertNotNull(loadBtn);
+        assertNotNull(importBtn);
+        assertNotNull(optimizeBtn);
         assertNotNull(zoomInBtn);
         assertNotNull(zoomOutBtn);
         assertNotNull(generateBtn);
@@ -195,6 +207,8 @@ public class DashboardTest {
         JButton redoBtn = getField(d, "redoBtn", JButton.class);
         JButton saveBtn = getField(d, "saveBtn", JButton.class);
         JButton loadBtn = getField(d, "loadBtn", JButton.class);
+        JButton importBtn = getField(d, "importBtn", JButton.class);
+        JButton optimizeBtn = getField(d, "optimizeBtn", JButton.class);
         JButton zoomInBtn = getField(d, "zoomInBtn", JButton.class);
         JButton zoomOutBtn = getField(d, "zoomOutBtn", JButton.class);
         JButton generateBtn = getField(d, "generateBtn", JButton.class);
@@ -206,6 +220,8 @@ public class DashboardTest {
         redoBtn.doClick();
         saveBtn.doClick();
         loadBtn.doClick();
+        importBtn.doClick();
+        optimizeBtn.doClick();
         zoomInBtn.doClick();
         zoomOutBtn.doClick();
         generateBtn.doClick();
@@ -217,6 +233,8 @@ public class DashboardTest {
         assertTrue(listener.redoCalled);
         assertTrue(listener.saveCalled);
         assertTrue(listener.loadCalled);
+        assertTrue(listener.importCalled);
+        assertTrue(listener.optimizeCalled);
         assertTrue(listener.zoomInCalled);
         assertTrue(listener.zoomOutCalled);
         assertTrue(listener.generateCalled);
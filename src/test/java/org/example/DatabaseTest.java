@@ -2,13 +2,20 @@ package org.example;
 
 import org.jxmapviewer.viewer.GeoPosition;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.sql.Connection;
+import java.nio.file.Path;
 import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -23,6 +30,8 @@ public class DatabaseTest {
             // Swap out the file-based connection with an in-memory connection
             Connection conn = DriverManager.getConnection("jdbc:sqlite::memory:");
             setField(db, "connection", conn);
+            // An in-memory database is only visible to its own connection, so read through it too
+            setField(db, "readers", null);
 
             // Recreate tables on this in-memory connection
             invokeCreateTablesIfNeeded(db);
@@ -139,6 +148,54 @@ public class DatabaseTest {
         assertTrue(loaded.isEmpty());
     }
 
+    // -------------------------------------------------------------
+    // loadRouteStopIndices(...) tests
+    // -------------------------------------------------------------
+
+    @Test
+    public void saveRouteWithStopsLoadsTheSameStopIndicesTest() {
+        Database db = getDatabaseWithInMemoryConnection();
+
+        List<GeoPosition> points = new ArrayList<>();
+        for (int i = 0; i < 5; i++) points.add(new GeoPosition(10.0 + i * 0.01, 20.0));
+
+        int routeId = db.saveRoute("Stops", 2.0, 0, points, new int[]{0, 2, 4});
+
+        assertArrayEquals(new int[]{0, 2, 4}, db.loadRouteStopIndices(routeId));
+        assertEquals(5, db.loadRoutePoints(routeId).size());
+    }
+
+    @Test
+    public void saveRouteWithoutStopsLoadsStopsAsUnknownTest() {
+        Database db = getDatabaseWithInMemoryConnection();
+
+        int routeId = db.saveRoute("NoStops", 1.0, 0, List.of(new GeoPosition(1.0, 2.0), new GeoPosition(1.1, 2.0)));
+
+        assertNull(db.loadRouteStopIndices(routeId));
+        assertNull(db.loadRouteStopIndices(9999));
+    }
+
+    @Test
+    public void routePointsTableFromBeforeStopsIsMigratedTest() throws Exception {
+        Database db = Database.getInstance();
+        Connection conn = DriverManager.getConnection("jdbc:sqlite::memory:");
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("CREATE TABLE routes (id INTEGER PRIMARY KEY AUTOINCREMENT, name TEXT, distance REAL, elevation INTEGER)");
+            stmt.executeUpdate("CREATE TABLE route_points (id INTEGER PRIMARY KEY AUTOINCREMENT, route_id INTEGER, lat REAL, lon REAL)");
+            stmt.executeUpdate("INSERT INTO routes (name, distance, elevation) VALUES ('Old', 1.0, 0)");
+            stmt.executeUpdate("INSERT INTO route_points (route_id, lat, lon) VALUES (1, 1.0, 2.0), (1, 1.1, 2.0)");
+        }
+        setField(db, "connection", conn);
+        setField(db, "readers", null);
+
+        invokeCreateTablesIfNeeded(db);
+
+        assertNull(db.loadRouteStopIndices(1));
+        int routeId = db.saveRoute("New", 1.0, 0, List.of(new GeoPosition(1.0, 2.0), new GeoPosition(1.2, 2.0)),
+                new int[]{0, 1});
+        assertArrayEquals(new int[]{0, 1}, db.loadRouteStopIndices(routeId));
+    }
+
     // -------------------------------------------------------------
     // getAllRoutes() tests
     // -------------------------------------------------------------
@@ -343,4 +400,97 @@ public class DatabaseTest {
         assertDoesNotThrow(db::close);
         assertDoesNotThrow(db::close);
     }
+
+    // -------------------------------------------------------------
+    // WAL file, reader pool and async tests
+    // -------------------------------------------------------------
+
+    private static String fileUrl(Path dir) {
+        return "jdbc:sqlite:" + dir.resolve("routes.db");
+    }
+
+    @Test
+    public void fileDatabaseOpensInWalModeWithReaderPoolTest(@TempDir Path dir) throws Exception {
+        Database db = new Database(fileUrl(dir), 2);
+        try {
+            assertTrue(db.hasReaderPool());
+            try (Connection conn = DriverManager.getConnection(fileUrl(dir));
+                 Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("PRAGMA journal_mode")) {
+                assertTrue(rs.next());
+                assertEquals("wal", rs.getString(1));
+            }
+        } finally {
+            db.close();
+        }
+    }
+
+    @Test
+    public void inMemoryDatabaseReadsThroughWriterTest() {
+        Database db = new Database("jdbc:sqlite::memory:", 3);
+        try {
+            assertFalse(db.hasReaderPool());
+            int routeId = db.saveRoute("Memory", 1.0, 0, List.of(new GeoPosition(1.0, 2.0)));
+            assertEquals(1, db.loadRoutePoints(routeId).size());
+        } finally {
+            db.close();
+        }
+    }
+
+    @Test
+    public void asyncSaveIsVisibleToPooledReadersTest(@TempDir Path dir) throws Exception {
+        Database db = new Database(fileUrl(dir), 2);
+        try {
+            List<GeoPosition> points = new ArrayList<>();
+            for (int i = 0; i < 5_000; i++) points.add(new GeoPosition(10.0 + i * 1e-4, 20.0));
+
+            int routeId = db.saveRouteAsync("Long", 42.0, 300, points).get();
+
+            assertEquals(5_000, db.loadRoutePointsAsync(routeId).get().size());
+            List<Database.RouteSummary> routes = db.getAllRoutesAsync().get();
+            assertEquals(1, routes.size());
+            assertEquals("Long", routes.get(0).getName());
+        } finally {
+            db.close();
+        }
+    }
+
+    @Test
+    public void concurrentSavesAndReadsGetDistinctIdsTest(@TempDir Path dir) throws Exception {
+        Database db = new Database(fileUrl(dir), 2);
+        try {
+            List<CompletableFuture<Integer>> saves = new ArrayList<>();
+            List<CompletableFuture<List<Database.RouteSummary>>> reads = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                saves.add(db.saveRouteAsync("Route " + i, i, i, List.of(new GeoPosition(i, i))));
+                reads.add(db.getAllRoutesAsync());
+            }
+
+            Set<Integer> ids = new HashSet<>();
+            for (CompletableFuture<Integer> save : saves) ids.add(save.get());
+            for (CompletableFuture<List<Database.RouteSummary>> read : reads) assertNotNull(read.get());
+
+            assertEquals(20, ids.size());
+            assertFalse(ids.contains(-1));
+            assertEquals(20, db.getAllRoutes().size());
+        } finally {
+            db.close();
+        }
+    }
+
+    @Test
+    public void asyncCreateThenAuthenticateUserTest(@TempDir Path dir) throws Exception {
+        Database db = new Database(fileUrl(dir), 2);
+        try {
+            UserProfile created = db.createNewUserAsync("async_user", "secret").get();
+            assertNotNull(created);
+
+            assertTrue(db.userExistsAsync("async_user").get());
+            UserProfile loggedIn = db.authenticateAUserAsync("async_user", "secret").get();
+            assertEquals(created.getUserId(), loggedIn.getUserId());
+            assertNull(db.authenticateAUserAsync("async_user", "wrong").get());
+        } finally {
+            db.close();
+        }
+    }
 }
@@ -0,0 +1,112 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Measures {@link DemElevationService} throughput in points per second on synthetic 1"
+ * SRTM tiles (3601 x 3601, 26 MB each) written to a temporary directory.
+ *
+ * Not a unit test; run it after test-compile with
+ * {@code java -cp target/classes:target/test-classes:<jxmapviewer2 jar> org.example.DemElevationBenchmark}.
+ * Cases: a route-like walk inside one tile, the same walk crossing tiles, and random
+ * points spread over more tiles than the LRU holds.
+ */
+public class DemElevationBenchmark {
+
+    private static final int SAMPLES = 3601;
+    private static final int TILE_ROWS = 2;
+    private static final int TILE_COLUMNS = 3;
+    private static final int POINTS = 2_000_000;
+    private static final long TARGET_NANOS_PER_CASE = 2_000_000_000L;
+
+    public static void main(String[] args) throws IOException {
+        Path directory = Files.createTempDirectory("dem-benchmark");
+        try {
+            for (int r = 0; r < TILE_ROWS; r++) {
+                for (int c = 0; c < TILE_COLUMNS; c++) {
+                    writeTile(directory.resolve(DemElevationService.tileName(40 + r, -106 + c)));
+                }
+            }
+
+            Random random = new Random(42);
+            double[] lat = new double[POINTS];
+            double[] lon = new double[POINTS];
+            float[] out = new float[POINTS];
+
+            System.out.printf("%-34s %14s%n", "case", "points/s");
+
+            walk(lat, lon, 40.5, -105.5, 0.02, random);
+            run("route inside one tile", directory, DemElevationService.DEFAULT_MAX_MAPPED_TILES, lat, lon, out);
+
+            walk(lat, lon, 40.5, -105.5, 2, random);
+            run("route crossing tiles", directory, DemElevationService.DEFAULT_MAX_MAPPED_TILES, lat, lon, out);
+
+            for (int i = 0; i < POINTS; i++) {
+                lat[i] = 40 + random.nextDouble() * TILE_ROWS;
+                lon[i] = -106 + random.nextDouble() * TILE_COLUMNS;
+            }
+            run("random points, LRU of 16", directory, DemElevationService.DEFAULT_MAX_MAPPED_TILES, lat, lon, out);
+            run("random points, LRU of 2", directory, 2, lat, lon, out);
+        } finally {
+            try (java.util.stream.Stream<Path> files = Files.list(directory)) {
+                files.forEach(file -> file.toFile().delete());
+            }
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    /**
+     * Rolling hills, so the interpolation reads real values.
+     */
+    private static void writeTile(Path file) throws IOException {
+        ByteBuffer row = ByteBuffer.allocate(SAMPLES * 2);
+        try (OutputStream out = Files.newOutputStream(file)) {
+            for (int r = 0; r < SAMPLES; r++) {
+                row.clear();
+                for (int c = 0; c < SAMPLES; c++) {
+                    row.putShort((short) (1600 + 300 * Math.sin(r / 97.0) * Math.cos(c / 131.0)));
+                }
+                out.write(row.array());
+            }
+        }
+    }
+
+    /**
+     * A meandering walk with {@code stepMeters} between points, kept inside the tiles.
+     */
+    private static void walk(double[] lat, double[] lon, double startLat, double startLon, double stepMeters,
+                             Random random) {
+        double heading = 0;
+        double y = startLat;
+        double x = startLon;
+        for (int i = 0; i < lat.length; i++) {
+            heading += random.nextGaussian() * 0.05;
+            y = Math.min(40 + TILE_ROWS - 1e-6, Math.max(40, y + stepMeters * Math.cos(heading) / 111_320.0));
+            x = Math.min(-106 + TILE_COLUMNS - 1e-6, Math.max(-106, x + stepMeters * Math.sin(heading) / 85_000.0));
+            lat[i] = y;
+            lon[i] = x;
+        }
+    }
+
+    private static void run(String name, Path directory, int maxTiles, double[] lat, double[] lon, float[] out) {
+        DemElevationService service = new DemElevationService(directory, maxTiles);
+        long warmupEnd = System.nanoTime() + TARGET_NANOS_PER_CASE / 2;
+        while (System.nanoTime() < warmupEnd) {
+            service.sample(lat, lon, POINTS, out);
+        }
+        long points = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            service.sample(lat, lon, POINTS, out);
+            points += POINTS;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < TARGET_NANOS_PER_CASE);
+        System.out.printf("%-34s %,14.0f   (%s)%n", name, points / (elapsed / 1e9), service.describeStats());
+    }
+}
@@ -0,0 +1,196 @@
+package org.example;
+
+import org.jxmapviewer.viewer.GeoPosition;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DemElevationServiceTest {
+
+    @TempDir
+    Path directory;
+
+    private interface HeightFunction {
+        short at(int row, int column);
+    }
+
+    /**
+     * Writes a samples x samples big-endian tile, row 0 at the northern edge.
+     */
+    static void writeTile(Path directory, int south, int west, int samples, HeightFunction heights) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(samples * samples * 2);
+        for (int row = 0; row < samples; row++) {
+            for (int column = 0; column < samples; column++) {
+                buffer.putShort(heights.at(row, column));
+            }
+        }
+        Files.write(directory.resolve(DemElevationService.tileName(south, west)), buffer.array());
+    }
+
+    @Test
+    public void tileNamesFollowSrtmConventionTest() {
+        assertEquals("N40W106.hgt", DemElevationService.tileName(40, -106));
+        assertEquals("S01E009.hgt", DemElevationService.tileName(-1, 9));
+        assertEquals("N00E000.hgt", DemElevationService.tileName(0, 0));
+    }
+
+    @Test
+    public void samplesExactGridPointsTest() throws IOException {
+        // 11 samples per side: 0.1 degree spacing; height = 100 * row + column
+        writeTile(directory, 40, -106, 11, (row, column) -> (short) (100 * row + column));
+        DemElevationService service = new DemElevationService(directory);
+
+        assertEquals(100, service.sample(40.9, -106.0), 1e-3);
+        assertEquals(1000, service.sample(40.0, -106.0), 1e-3);
+        assertEquals(309, service.sample(40.7, -105.1), 1e-3);
+        // The northern edge belongs to the tile above, which is not installed
+        assertTrue(Double.isNaN(service.sample(41.0, -106.0)));
+    }
+
+    @Test
+    public void interpolatesBilinearlyBetweenSamplesTest() throws IOException {
+        writeTile(directory, 40, -106, 11, (row, column) -> (short) (100 * row + column));
+        DemElevationService service = new DemElevationService(directory);
+
+        // Halfway between rows 2 and 3 and a quarter of the way from column 4 to 5
+        assertEquals(254.25, service.sample(40.75, -105.575), 1e-2);
+    }
+
+    @Test
+    public void voidSamplesAreLeftOutTest() throws IOException {
+        writeTile(directory, 40, -106, 3, (row, column) -> row == 0 && column == 0 ? Short.MIN_VALUE : (short) 500);
+        DemElevationService service = new DemElevationService(directory);
+
+        assertEquals(500, service.sample(40.9, -105.9), 1e-3);
+        // Right next to the void the remaining corners still give a height
+        assertEquals(500, service.sample(40.99, -105.99), 1e-3);
+    }
+
+    @Test
+    public void missingTileGivesNanTest() {
+        DemElevationService service = new DemElevationService(directory);
+
+        assertTrue(Double.isNaN(service.sample(10.5, 10.5)));
+        assertEquals(1, service.getPointsWithoutData());
+        assertEquals(0, service.getTilesMapped());
+    }
+
+    @Test
+    public void batchCrossesTileBoundaryTest() throws IOException {
+        writeTile(directory, 40, -106, 3, (row, column) -> (short) 100);
+        writeTile(directory, 40, -105, 3, (row, column) -> (short) 200);
+        DemElevationService service = new DemElevationService(directory);
+        double[] lat = {40.5, 40.5, 40.5, 40.5};
+        double[] lon = {-105.9, -105.1, -104.9, -103.5};
+        float[] out = new float[4];
+
+        int found = service.sample(lat, lon, 4, out);
+
+        assertEquals(3, found);
+        assertEquals(100, out[0], 1e-3);
+        assertEquals(100, out[1], 1e-3);
+        assertEquals(200, out[2], 1e-3);
+        assertTrue(Float.isNaN(out[3]));
+        assertEquals(2, service.getTilesMapped());
+    }
+
+    @Test
+    public void leastRecentlyUsedTileIsEvictedTest() throws IOException {
+        for (int west = -106; west < -102; west++) {
+            writeTile(directory, 40, west, 3, (row, column) -> (short) 1);
+        }
+        DemElevationService service = new DemElevationService(directory, 2);
+
+        service.sample(40.5, -105.5);
+        service.sample(40.5, -104.5);
+        service.sample(40.5, -105.5);
+        service.sample(40.5, -103.5);
+
+        assertEquals(3, service.getTilesMapped());
+        assertEquals(1, service.getTilesEvicted());
+        assertEquals(2, service.getMappedTileCount());
+        // -105 was used more recently than -104, so it is still mapped
+        service.sample(40.5, -105.5);
+        assertEquals(3, service.getTilesMapped());
+    }
+
+    @Test
+    public void wrongSizedFileIsIgnoredTest() throws IOException {
+        Files.write(directory.resolve(DemElevationService.tileName(40, -106)), new byte[10]);
+        DemElevationService service = new DemElevationService(directory);
+
+        assertTrue(Double.isNaN(service.sample(40.5, -105.5)));
+    }
+
+    @Test
+    public void climbSkipsGapsTest() {
+        float[] heights = {100, 110, Float.NaN, 105, 120, 90};
+
+        DemElevationService.Climb climb = DemElevationService.climbOf(heights, heights.length);
+
+        assertEquals(25, climb.getAscent(), 1e-6);
+        assertEquals(35, climb.getDescent(), 1e-6);
+    }
+
+    @Test
+    public void straightSegmentCountsHillInBetweenTest() throws IOException {
+        // A ridge along the middle column; both ends are at 0 m
+        writeTile(directory, 40, -106, 11, (row, column) -> (short) (column == 5 ? 300 : 0));
+        DemElevationService service = new DemElevationService(directory);
+
+        DemElevationService.Climb climb = service.climbAlongSegment(40.5, -105.9, 40.5, -105.1);
+
+        assertEquals(300, climb.getAscent(), 1);
+        assertEquals(300, climb.getDescent(), 1);
+    }
+
+    @Test
+    public void withElevationsAddsHeightsAndClimbTest() throws IOException {
+        writeTile(directory, 40, -106, 11, (row, column) -> (short) (100 * row));
+        DemElevationService service = new DemElevationService(directory);
+        RouteResult flat = RouteResult.fromArrays(new double[]{40.9, 40.5, 40.7}, new double[]{-105.5, -105.5, -105.5},
+                null, 3, 0, 0, 1234);
+
+        RouteResult result = service.withElevations(flat);
+
+        assertTrue(result.hasPointElevations());
+        assertEquals(100, result.getElevation(0), 1e-3);
+        assertEquals(500, result.getElevation(1), 1e-3);
+        assertEquals(400, result.getAscent(), 1e-3);
+        assertEquals(200, result.getDescent(), 1e-3);
+        assertEquals(1234, result.getDistance());
+    }
+
+    @Test
+    public void withElevationsKeepsResultOutsideTilesTest() {
+        DemElevationService service = new DemElevationService(directory);
+        RouteResult flat = RouteResult.fromArrays(new double[]{40.9, 40.5}, new double[]{-105.5, -105.5}, null, 2, 0, 0, 1);
+
+        assertSame(flat, service.withElevations(flat));
+    }
+
+    @Test
+    public void applyToSetsRouteHeightsAndTotalsTest() throws IOException {
+        writeTile(directory, 40, -106, 11, (row, column) -> (short) (10 * column));
+        DemElevationService service = new DemElevationService(directory);
+        Route route = new Route();
+        route.loadRouteFromGeoPositions(Arrays.asList(
+                new GeoPosition(40.5, -106.0),
+                new GeoPosition(40.5, -105.1),
+                new GeoPosition(40.5, -105.5)));
+
+        assertTrue(service.applyTo(route));
+
+        assertEquals(0, route.getElevationAt(0), 1e-3);
+        assertEquals(90, route.getElevationAt(1), 1e-3);
+        assertEquals(90, route.getAscentInMeters(), 1e-3);
+        assertEquals(40, route.getDescentInMeters(), 1e-3);
+    }
+}
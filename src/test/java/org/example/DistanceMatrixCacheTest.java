@@ -0,0 +1,45 @@
+package org.example;
+
+import org.jxmapviewer.viewer.GeoPosition;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DistanceMatrixCacheTest {
+
+    private static final List<GeoPosition> STOPS = List.of(new GeoPosition(49.41, 8.68), new GeoPosition(49.42, 8.69));
+
+    @Test
+    public void nearbyStopsHitAndOtherProfilesMissTest() {
+        DistanceMatrixCache cache = new DistanceMatrixCache();
+        DistanceMatrix matrix = DistanceMatrix.straightLine(STOPS, RoutingAPI.RoutingProfile.FOOT_WALKING);
+        cache.put(cache.keyFor(RoutingAPI.RoutingProfile.FOOT_WALKING, STOPS), matrix);
+
+        List<GeoPosition> nudged = List.of(new GeoPosition(49.410001, 8.68), new GeoPosition(49.42, 8.690001));
+        assertSame(matrix, cache.get(cache.keyFor(RoutingAPI.RoutingProfile.FOOT_WALKING, nudged)));
+        assertNull(cache.get(cache.keyFor(RoutingAPI.RoutingProfile.DRIVING_CAR, STOPS)));
+        assertNull(cache.get(cache.keyFor(RoutingAPI.RoutingProfile.FOOT_WALKING, List.of(STOPS.get(1), STOPS.get(0)))));
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedTest() {
+        DistanceMatrixCache cache = new DistanceMatrixCache(2, RouteCache.DEFAULT_DECIMAL_PLACES);
+        RouteCacheKey walking = cache.keyFor(RoutingAPI.RoutingProfile.FOOT_WALKING, STOPS);
+        RouteCacheKey cycling = cache.keyFor(RoutingAPI.RoutingProfile.CYCLING_REGULAR, STOPS);
+        RouteCacheKey driving = cache.keyFor(RoutingAPI.RoutingProfile.DRIVING_CAR, STOPS);
+        DistanceMatrix matrix = DistanceMatrix.straightLine(STOPS, RoutingAPI.RoutingProfile.FOOT_WALKING);
+
+        cache.put(walking, matrix);
+        cache.put(cycling, matrix);
+        cache.get(walking);
+        cache.put(driving, matrix);
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get(walking));
+        assertNull(cache.get(cycling));
+    }
+}
@@ -0,0 +1,68 @@
+package org.example;
+
+import org.jxmapviewer.viewer.GeoPosition;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DistanceMatrixTest {
+
+    private static InputStream json(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void parsesOrsMatrixWithUnroutablePairsTest() throws Exception {
+        String body = OrsResponseFixtures.matrixJson(
+                new double[][]{{0, 120.5}, {Double.NaN, 0}},
+                new double[][]{{0, 900}, {Double.NaN, 0}});
+
+        DistanceMatrix matrix = DistanceMatrix.parse(json(body), 2);
+
+        assertEquals(2, matrix.size());
+        assertEquals(120.5, matrix.getSeconds(0, 1), 1e-9);
+        assertEquals(900, matrix.getMeters(0, 1), 1e-9);
+        assertTrue(Double.isInfinite(matrix.getSeconds(1, 0)));
+        assertTrue(matrix.hasUnreachablePairs());
+        assertEquals(120.5, matrix.secondsAlong(new int[]{0, 1}), 1e-9);
+    }
+
+    @Test
+    public void rejectsMatricesOfTheWrongShapeTest() {
+        String tooFewRows = "{\"durations\":[[0,1]],\"distances\":[[0,1]]}";
+        String shortRow = "{\"durations\":[[0,1],[1]],\"distances\":[[0,1],[1,0]]}";
+        String missingDistances = "{\"durations\":[[0,1],[1,0]]}";
+
+        assertThrows(IOException.class, () -> DistanceMatrix.parse(json(tooFewRows), 2));
+        assertThrows(IOException.class, () -> DistanceMatrix.parse(json(shortRow), 2));
+        assertThrows(IOException.class, () -> DistanceMatrix.parse(json(missingDistances), 2));
+        assertThrows(IOException.class, () -> DistanceMatrix.parse(json("{\"error\":{\"code\":6099}}"), 2));
+    }
+
+    @Test
+    public void straightLineMatrixIsSymmetricAndScaledBySpeedTest() {
+        List<GeoPosition> locations = List.of(new GeoPosition(49.41, 8.68), new GeoPosition(49.42, 8.68),
+                new GeoPosition(49.42, 8.70));
+
+        DistanceMatrix walking = DistanceMatrix.straightLine(locations, RoutingAPI.RoutingProfile.FOOT_WALKING);
+        DistanceMatrix driving = DistanceMatrix.straightLine(locations, RoutingAPI.RoutingProfile.DRIVING_CAR);
+
+        assertEquals(0, walking.getSeconds(1, 1));
+        assertEquals(walking.getMeters(0, 2), walking.getMeters(2, 0), 1e-9);
+        // About 1.1 km north, stretched by the detour factor
+        assertEquals(1112 * 1.3, walking.getMeters(0, 1), 15);
+        assertTrue(driving.getSeconds(0, 1) < walking.getSeconds(0, 1));
+        assertFalse(walking.hasUnreachablePairs());
+    }
+
+    @Test
+    public void constructorRejectsMismatchedArraysTest() {
+        assertThrows(IllegalArgumentException.class, () -> new DistanceMatrix(2, new double[4], new double[3], "x"));
+    }
+}
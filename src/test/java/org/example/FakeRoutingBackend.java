@@ -0,0 +1,102 @@
+package org.example;
+
+import org.jxmapviewer.viewer.GeoPosition;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link RoutingBackend} for tests that needs no road data. Each leg is its own waypoints
+ * joined by straight lines, climbing 2 m per waypoint, with 10 m of ascent and 100 m of
+ * distance per waypoint after the first; round trips and the async variants build on that.
+ * Counts the calls that reach it, and how many legs ran at once.
+ */
+class FakeRoutingBackend implements RoutingBackend {
+
+    final AtomicInteger legCalls = new AtomicInteger();
+    final AtomicInteger roundTripCalls = new AtomicInteger();
+    final AtomicInteger matrixCalls = new AtomicInteger();
+    final AtomicInteger running = new AtomicInteger();
+    final AtomicInteger maxRunning = new AtomicInteger();
+
+    RoutingAPI.RoutingProfile profile = RoutingAPI.RoutingProfile.FOOT_WALKING;
+    /** Legs through this point throw, as when the backend cannot route there. */
+    GeoPosition failAt;
+    /** How long each leg takes. */
+    long delayMillis;
+    /** Returned for every leg and round trip instead of the straight lines, when set. */
+    RouteResult answer;
+
+    @Override public void setProfile(RoutingAPI.RoutingProfile profile) { this.profile = profile; }
+    @Override public RoutingAPI.RoutingProfile getProfile() { return profile; }
+    @Override public RoutingDeadline newLegDeadline() { return RoutingDeadline.after(Duration.ofSeconds(5)); }
+    @Override public RoutingDeadline newRoundTripDeadline() { return RoutingDeadline.after(Duration.ofSeconds(5)); }
+    @Override public GeoPosition snapToNearestRoad(GeoPosition point) { return null; }
+
+    @Override
+    public RouteResult snapToRoadsWithTwoPoints(List<GeoPosition> waypoints, RoutingDeadline deadline) {
+        legCalls.incrementAndGet();
+        maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+        try {
+            if (delayMillis > 0) Thread.sleep(delayMillis);
+            if (failAt != null && waypoints.contains(failAt)) throw new IllegalStateException("no route");
+            return answer != null ? answer : straightLines(waypoints);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            running.decrementAndGet();
+        }
+    }
+
+    @Override
+    public RouteResult generateRoundTripWithAPI(GeoPosition startPoint, double distanceKm, int points, Integer seed,
+                                                RoutingDeadline deadline) {
+        roundTripCalls.incrementAndGet();
+        return answer != null ? answer : straightLines(List.of(startPoint, startPoint));
+    }
+
+    @Override
+    public CompletableFuture<RouteResult> snapToRoadsWithTwoPointsAsync(List<GeoPosition> waypoints,
+                                                                      RoutingDeadline deadline) {
+        return CompletableFuture.supplyAsync(() -> snapToRoadsWithTwoPoints(waypoints, deadline));
+    }
+
+    @Override
+    public CompletableFuture<RouteResult> generateRoundTripWithAPIAsync(GeoPosition startPoint, double distanceKm,
+                                                                       int points, Integer seed,
+                                                                       RoutingDeadline deadline) {
+        return CompletableFuture.supplyAsync(() -> generateRoundTripWithAPI(startPoint, distanceKm, points, seed,
+                deadline));
+    }
+
+    @Override
+    public RoundTripSearch.Result generateBestRoundTrip(GeoPosition startPoint, double distanceKm, int points,
+                                                       List<Integer> seeds, RoundTripScorer scorer,
+                                                       RoutingDeadline deadline) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public DistanceMatrix computeMatrix(List<GeoPosition> locations, RoutingDeadline deadline) {
+        matrixCalls.incrementAndGet();
+        return DistanceMatrix.straightLine(locations, profile);
+    }
+
+    @Override public String describe() { return "fake"; }
+
+    private static RouteResult straightLines(List<GeoPosition> waypoints) {
+        int n = waypoints.size();
+        double[] latitudes = new double[n];
+        double[] longitudes = new double[n];
+        float[] elevations = new float[n];
+        for (int i = 0; i < n; i++) {
+            latitudes[i] = waypoints.get(i).getLatitude();
+            longitudes[i] = waypoints.get(i).getLongitude();
+            elevations[i] = 2 * i;
+        }
+        return RouteResult.fromArrays(latitudes, longitudes, elevations, n, 10.0 * (n - 1), 0, 100.0 * (n - 1));
+    }
+}
@@ -0,0 +1,130 @@
+package org.example;
+
+import org.jxmapviewer.viewer.GeoPosition;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares the streaming {@link GeoJsonRouteParser} with the regex-based parser that
+ * RoutingAPI used before it, on ORS-shaped responses of 1k, 10k and 100k points.
+ *
+ * Not a unit test; run it after test-compile with
+ * {@code java -cp target/classes:target/test-classes:<jxmapviewer2 jar> org.example.GeoJsonParserBenchmark}.
+ * The regex path includes decoding the byte payload to a String, since that is what the
+ * old readLine() loop produced before parsing started.
+ */
+public class GeoJsonParserBenchmark {
+
+    private static final int[] POINT_COUNTS = {1_000, 10_000, 100_000};
+    private static final long TARGET_NANOS_PER_CASE = 2_000_000_000L;
+
+    private static final Pattern ASCENT = Pattern.compile("\"ascent\"\\s*:\\s*(-?\\d+\\.?\\d*(?:[eE][+-]?\\d+)?)");
+    private static final Pattern DESCENT = Pattern.compile("\"descent\"\\s*:\\s*(-?\\d+\\.?\\d*(?:[eE][+-]?\\d+)?)");
+    private static final Pattern DISTANCE = Pattern.compile("\"distance\"\\s*:\\s*(-?\\d+\\.?\\d*(?:[eE][+-]?\\d+)?)");
+    private static final Pattern PAIR = Pattern.compile(
+            "\\[\\s*(-?\\d+\\.?\\d*)\\s*,\\s*(-?\\d+\\.?\\d*)(?:\\s*,\\s*(-?\\d+\\.?\\d*))?\\s*\\]");
+
+    private static volatile Object sink;
+
+    public static void main(String[] args) throws IOException {
+        System.out.printf("%-9s %-10s %12s %12s %10s%n", "points", "parser", "ms/parse", "MB/s", "speedup");
+        for (int pointCount : POINT_COUNTS) {
+            byte[] payload = OrsResponseFixtures.directionsGeoJson(pointCount, 120.0, 118.0, pointCount * 5.0)
+                    .getBytes(StandardCharsets.UTF_8);
+
+            verifySameOutput(payload);
+
+            double regexMs = measure(() -> sink = parseWithRegex(payload));
+            double streamMs = measure(() -> sink = GeoJsonRouteParser.parse(new ByteArrayInputStream(payload)).toRouteResult());
+
+            double megabytes = payload.length / (1024.0 * 1024.0);
+            System.out.printf("%-9d %-10s %12.3f %12.1f %10s%n", pointCount, "regex", regexMs, megabytes / (regexMs / 1000), "");
+            System.out.printf("%-9d %-10s %12.3f %12.1f %9.1fx%n", pointCount, "streaming", streamMs,
+                    megabytes / (streamMs / 1000), regexMs / streamMs);
+        }
+    }
+
+    private interface Task {
+        void run() throws IOException;
+    }
+
+    private static double measure(Task task) throws IOException {
+        // Warm up until the JIT has settled on both paths
+        long warmupEnd = System.nanoTime() + TARGET_NANOS_PER_CASE / 2;
+        while (System.nanoTime() < warmupEnd) {
+            task.run();
+        }
+
+        int iterations = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            task.run();
+            iterations++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < TARGET_NANOS_PER_CASE);
+        return elapsed / 1e6 / iterations;
+    }
+
+    private static void verifySameOutput(byte[] payload) throws IOException {
+        RouteResult regex = parseWithRegex(payload);
+        RouteResult streaming = GeoJsonRouteParser.parse(new ByteArrayInputStream(payload)).toRouteResult();
+        if (regex.getPointCount() != streaming.getPointCount()) {
+            throw new IllegalStateException("Point counts differ: " + regex.getPointCount() + " vs " + streaming.getPointCount());
+        }
+        for (int i = 0; i < regex.getPointCount(); i++) {
+            if (!regex.getPoints().get(i).equals(streaming.getPoints().get(i))) {
+                throw new IllegalStateException("Point " + i + " differs");
+            }
+        }
+    }
+
+    /**
+     * The pre-streaming parser, minus its logging and render sampling.
+     */
+    private static RouteResult parseWithRegex(byte[] payload) {
+        String response = new String(payload, StandardCharsets.UTF_8);
+        double ascent = 0;
+        double descent = 0;
+        double distance = 0;
+
+        Matcher m = ASCENT.matcher(response);
+        if (m.find()) ascent = Double.parseDouble(m.group(1));
+        m = DESCENT.matcher(response);
+        if (m.find()) descent = Double.parseDouble(m.group(1));
+        m = DISTANCE.matcher(response);
+        if (m.find()) distance = Double.parseDouble(m.group(1));
+
+        List<GeoPosition> points = new ArrayList<>();
+        int coordsIndex = response.indexOf("\"coordinates\"");
+        int arrayStart = response.indexOf("[[", coordsIndex);
+        int depth = 0;
+        int arrayEnd = arrayStart;
+        for (int i = arrayStart; i < response.length(); i++) {
+            char c = response.charAt(i);
+            if (c == '[') {
+                depth++;
+            } else if (c == ']') {
+                depth--;
+                if (depth == 0) {
+                    arrayEnd = i + 1;
+                    break;
+                }
+            }
+        }
+
+        Matcher pair = PAIR.matcher(response.substring(arrayStart, arrayEnd));
+        while (pair.find()) {
+            double lon = Double.parseDouble(pair.group(1));
+            double lat = Double.parseDouble(pair.group(2));
+            points.add(new GeoPosition(lat, lon));
+        }
+        return new RouteResult(points, ascent, descent, distance);
+    }
+}
@@ -0,0 +1,131 @@
+package org.example;
+
+import org.jxmapviewer.viewer.GeoPosition;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GeoJsonRouteParserTest {
+
+    private GeoJsonRouteParser parse(String json) throws IOException {
+        return GeoJsonRouteParser.parse(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    // -------------------------------------------------------------
+    // coordinate tests
+    // -------------------------------------------------------------
+
+    @Test
+    public void parseReadsGeometryCoordinatesAsLatLonWithElevationTest() throws IOException {
+        double[][] track = {{8.681495, 49.41461, 107.2}, {8.686507, 49.41943, 111.9}, {8.687872, 49.420318, 112.5}};
+        GeoJsonRouteParser parser = parse(OrsResponseFixtures.directionsGeoJson(track, 5.5, 0.4, 1200.0));
+
+        assertEquals(3, parser.getPointCount());
+        assertEquals(49.41461, parser.getLatitude(0), 1e-12);
+        assertEquals(8.681495, parser.getLongitude(0), 1e-12);
+        assertEquals(112.5, parser.getElevation(2), 1e-12);
+        assertTrue(parser.hasElevation());
+    }
+
+    @Test
+    public void parseIgnoresQueryCoordinatesInMetadataTest() throws IOException {
+        GeoJsonRouteParser parser = parse(OrsResponseFixtures.directionsGeoJson(4, 0, 0, 100.0));
+
+        assertEquals(4, parser.getPointCount());
+        for (GeoPosition gp : parser.toGeoPositions()) {
+            assertNotEquals(2.0, gp.getLatitude());
+        }
+    }
+
+    @Test
+    public void parseHandlesTwoDimensionalCoordinatesWithoutElevationTest() throws IOException {
+        String json = "{\"features\":[{\"geometry\":{\"type\":\"LineString\",\"coordinates\":[[1.5,2.5],[3.5,4.5]]}}]}";
+
+        GeoJsonRouteParser parser = parse(json);
+
+        assertEquals(2, parser.getPointCount());
+        assertFalse(parser.hasElevation());
+        assertTrue(Double.isNaN(parser.getElevation(1)));
+    }
+
+    @Test
+    public void parseGrowsArraysForLargeResponsesTest() throws IOException {
+        GeoJsonRouteParser parser = parse(OrsResponseFixtures.directionsGeoJson(10_000, 0, 0, 0));
+
+        assertEquals(10_000, parser.getPointCount());
+        assertEquals(10_000, parser.toGeoPositions().size());
+    }
+
+    // -------------------------------------------------------------
+    // summary tests
+    // -------------------------------------------------------------
+
+    @Test
+    public void parseTakesDistanceFromSummaryRatherThanFirstSegmentTest() throws IOException {
+        GeoJsonRouteParser parser = parse(OrsResponseFixtures.directionsGeoJson(3, 42.0, 17.5, 2400.0));
+
+        assertEquals(2400.0, parser.getDistance(), 1e-9);
+        assertEquals(42.0, parser.getAscent(), 1e-9);
+        assertEquals(17.5, parser.getDescent(), 1e-9);
+    }
+
+    @Test
+    public void parseFallsBackToPropertiesAscentWhenSummaryHasNoneTest() throws IOException {
+        String json = "{\"features\":[{\"properties\":{\"ascent\":12.5,\"descent\":3,\"summary\":{\"distance\":80}}," +
+                "\"geometry\":{\"coordinates\":[[1,2],[3,4]]}}]}";
+
+        GeoJsonRouteParser parser = parse(json);
+
+        assertEquals(12.5, parser.getAscent(), 1e-9);
+        assertEquals(3.0, parser.getDescent(), 1e-9);
+        assertEquals(80.0, parser.getDistance(), 1e-9);
+    }
+
+    @Test
+    public void parseReturnsZerosWhenSummaryMissingTest() throws IOException {
+        GeoJsonRouteParser parser = parse("{\"features\":[]}");
+
+        assertEquals(0, parser.getPointCount());
+        assertEquals(0.0, parser.getAscent());
+        assertEquals(0.0, parser.getDescent());
+        assertEquals(0.0, parser.getDistance());
+    }
+
+    // -------------------------------------------------------------
+    // error / result tests
+    // -------------------------------------------------------------
+
+    @Test
+    public void parseFlagsTopLevelErrorFieldTest() throws IOException {
+        GeoJsonRouteParser parser = parse("{\"error\":{\"code\":2010,\"message\":\"Could not find routable point\"}}");
+
+        assertTrue(parser.hasErrorField());
+        assertEquals(0, parser.getPointCount());
+    }
+
+    @Test
+    public void toRouteResultCarriesPointsAndSummaryTest() throws IOException {
+        GeoJsonRouteParser parser = parse(OrsResponseFixtures.directionsGeoJson(5, 9.0, 4.0, 500.0));
+
+        RouteResult result = parser.toRouteResult();
+        List<GeoPosition> points = result.getPoints();
+
+        assertEquals(5, result.getPointCount());
+        assertEquals(parser.getLatitude(4), points.get(4).getLatitude(), 1e-12);
+        assertEquals(9.0, result.getAscent(), 1e-9);
+        assertEquals(4.0, result.getDescent(), 1e-9);
+        assertEquals(500.0, result.getDistance(), 1e-9);
+    }
+
+    @Test
+    public void parseThrowsOnTruncatedCoordinateArrayTest() {
+        String json = "{\"features\":[{\"geometry\":{\"coordinates\":[[1,2],[3,";
+
+        assertThrows(IOException.class, () -> parse(json));
+    }
+}
@@ -0,0 +1,115 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GpxTraceReaderTest {
+
+    private static RouteResult read(String gpx) throws IOException {
+        return GpxTraceReader.read(new ByteArrayInputStream(gpx.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void readsTrackPointsFromEverySegmentInOrderTest() throws IOException {
+        RouteResult trace = read("<?xml version=\"1.0\"?>\n"
+                + "<gpx version=\"1.1\" xmlns=\"http://www.topografix.com/GPX/1/1\"><trk><name>Run</name>"
+                + "<trkseg><trkpt lat=\"40.0\" lon=\"-105.0\"><ele>1600.5</ele><time>2024-05-01T07:00:00Z</time></trkpt>"
+                + "<trkpt lat=\"40.001\" lon=\"-105.0\"><ele>1610</ele></trkpt></trkseg>"
+                + "<trkseg><trkpt lat=\"40.002\" lon=\"-105.0\"><ele>1605</ele></trkpt></trkseg></trk></gpx>");
+
+        assertEquals(3, trace.getPointCount());
+        assertEquals(40.002, trace.getLatitude(2), 1e-9);
+        assertEquals(-105.0, trace.getLongitude(2), 1e-9);
+        assertEquals(1600.5, trace.getElevation(0), 1e-3);
+        assertEquals(9.5, trace.getAscent(), 1e-3);
+        assertEquals(5.0, trace.getDescent(), 1e-3);
+        assertEquals(222.4, trace.getDistance(), 1.0);
+    }
+
+    @Test
+    public void fixesWithoutElevationGetNaNTest() throws IOException {
+        RouteResult trace = read("<gpx><trk><trkseg>"
+                + "<trkpt lat=\"40.0\" lon=\"-105.0\"><ele>1600</ele></trkpt>"
+                + "<trkpt lat=\"40.001\" lon=\"-105.0\"/>"
+                + "<trkpt lat=\"40.002\" lon=\"-105.0\"><ele> </ele></trkpt>"
+                + "</trkseg></trk></gpx>");
+
+        assertTrue(trace.hasPointElevations());
+        assertTrue(Double.isNaN(trace.getElevation(1)));
+        assertTrue(Double.isNaN(trace.getElevation(2)));
+    }
+
+    @Test
+    public void traceWithoutAnyElevationHasNoPointElevationsTest() throws IOException {
+        RouteResult trace = read("<gpx><trk><trkseg><trkpt lat=\"1\" lon=\"2\"/><trkpt lat=\"1.001\" lon=\"2\"/>"
+                + "</trkseg></trk></gpx>");
+
+        assertFalse(trace.hasPointElevations());
+        assertEquals(0.0, trace.getAscent(), 0.0);
+    }
+
+    @Test
+    public void fallsBackToRoutePointsWhenThereIsNoTrackTest() throws IOException {
+        RouteResult trace = read("<gpx><wpt lat=\"5\" lon=\"5\"/><rte>"
+                + "<rtept lat=\"10\" lon=\"20\"/><rtept lat=\"11\" lon=\"21\"/></rte></gpx>");
+
+        assertEquals(2, trace.getPointCount());
+        assertEquals(11.0, trace.getLatitude(1), 1e-9);
+    }
+
+    @Test
+    public void growsPastInitialCapacityTest() throws IOException {
+        StringBuilder gpx = new StringBuilder("<gpx><trk><trkseg>");
+        for (int i = 0; i < 5000; i++) {
+            gpx.append("<trkpt lat=\"").append(40 + i * 1e-5).append("\" lon=\"-105\"><ele>").append(i % 7)
+                    .append("</ele></trkpt>");
+        }
+        gpx.append("</trkseg></trk></gpx>");
+
+        RouteResult trace = read(gpx.toString());
+
+        assertEquals(5000, trace.getPointCount());
+        assertEquals(40 + 4999 * 1e-5, trace.getLatitude(4999), 1e-9);
+        assertEquals(4999 % 7, trace.getElevation(4999), 1e-6);
+    }
+
+    @Test
+    public void readsFromFileTest(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("run.gpx");
+        Files.write(file, "<gpx><trk><trkseg><trkpt lat=\"1\" lon=\"2\"/></trkseg></trk></gpx>"
+                .getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(1, GpxTraceReader.read(file).getPointCount());
+    }
+
+    @Test
+    public void emptyFileGivesEmptyTraceTest() throws IOException {
+        assertFalse(read("<gpx/>").hasPoints());
+    }
+
+    @Test
+    public void malformedXmlThrowsIOExceptionTest() {
+        assertThrows(IOException.class, () -> read("<gpx><trk><trkseg><trkpt lat=\"1\" lon=\"2\">"));
+    }
+
+    @Test
+    public void pointWithoutCoordinatesThrowsIOExceptionTest() {
+        assertThrows(IOException.class, () -> read("<gpx><trk><trkseg><trkpt lat=\"1\"/></trkseg></trk></gpx>"));
+        assertThrows(IOException.class, () -> read("<gpx><trk><trkseg><trkpt lat=\"x\" lon=\"2\"/></trkseg></trk></gpx>"));
+    }
+
+    @Test
+    public void refusesDoctypeDeclarationsTest() {
+        assertThrows(IOException.class, () -> read("<?xml version=\"1.0\"?><!DOCTYPE gpx [<!ENTITY x SYSTEM "
+                + "\"file:///etc/passwd\">]><gpx><trk><trkseg><trkpt lat=\"1\" lon=\"2\"><ele>&x;</ele></trkpt>"
+                + "</trkseg></trk></gpx>"));
+    }
+}
@@ -0,0 +1,186 @@
+package org.example;
+
+import org.jxmapviewer.viewer.GeoPosition;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HedgedProfileRouterTest {
+
+    private static final List<RoutingAPI.RoutingProfile> CHAIN = Arrays.asList(
+            RoutingAPI.RoutingProfile.CYCLING_REGULAR,
+            RoutingAPI.RoutingProfile.FOOT_WALKING,
+            RoutingAPI.RoutingProfile.DRIVING_CAR);
+
+    private static RouteResult resultWithPoints(int count) {
+        GeoPosition[] points = new GeoPosition[count];
+        for (int i = 0; i < count; i++) {
+            points[i] = new GeoPosition(i, i);
+        }
+        return new RouteResult(Arrays.asList(points), 0, 0, 0);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private HedgedProfileRouter routerWithDelay(long delayMillis) {
+        HedgedProfileRouter router = new HedgedProfileRouter();
+        router.setDelayBounds(delayMillis, 0, delayMillis);
+        return router;
+    }
+
+    // -------------------------------------------------------------
+    // route(...) tests
+    // -------------------------------------------------------------
+
+    @Test
+    public void routeReturnsFastPrimaryWithoutFiringFallbacksTest() throws InterruptedException {
+        HedgedProfileRouter router = routerWithDelay(500);
+        AtomicBoolean fallbackCalled = new AtomicBoolean();
+
+        RouteResult result = router.route(CHAIN, profile -> {
+            if (profile != RoutingAPI.RoutingProfile.CYCLING_REGULAR) fallbackCalled.set(true);
+            return resultWithPoints(3);
+        }, 2);
+
+        assertNotNull(result);
+        assertFalse(fallbackCalled.get());
+        assertEquals(0, router.getHedgesFired());
+        assertEquals(1, router.getPrimaryWinsWithoutHedge());
+    }
+
+    @Test
+    public void routeHedgesSlowPrimaryAndTakesFallbackResultTest() throws InterruptedException {
+        HedgedProfileRouter router = routerWithDelay(50);
+        RouteResult walking = resultWithPoints(4);
+        CountDownLatch primaryInterrupted = new CountDownLatch(1);
+
+        long start = System.nanoTime();
+        RouteResult result = router.route(CHAIN, profile -> {
+            if (profile == RoutingAPI.RoutingProfile.CYCLING_REGULAR) {
+                try {
+                    Thread.sleep(5000);
+                } catch (InterruptedException e) {
+                    primaryInterrupted.countDown();
+                }
+                return resultWithPoints(5);
+            }
+            if (profile == RoutingAPI.RoutingProfile.FOOT_WALKING) return walking;
+            sleep(2000);
+            return resultWithPoints(6);
+        }, 2);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertSame(walking, result);
+        assertTrue(elapsedMillis < 1500, "hedged route took " + elapsedMillis + " ms");
+        assertTrue(primaryInterrupted.await(2, TimeUnit.SECONDS));
+        assertEquals(1, router.getHedgesFired());
+        assertEquals(1, router.getHedgeWins());
+    }
+
+    @Test
+    public void routePrefersEarlierProfileWhenBothAreFinishedTest() throws InterruptedException {
+        HedgedProfileRouter router = routerWithDelay(10);
+        RouteResult primary = resultWithPoints(3);
+
+        RouteResult result = router.route(CHAIN, profile -> {
+            if (profile == RoutingAPI.RoutingProfile.CYCLING_REGULAR) {
+                sleep(100);
+                return primary;
+            }
+            sleep(300);
+            return resultWithPoints(3);
+        }, 2);
+
+        assertSame(primary, result);
+        assertEquals(1, router.getPrimaryWinsAfterHedge());
+    }
+
+    @Test
+    public void routeFallsThroughWhenPrimaryFailsFastTest() throws InterruptedException {
+        HedgedProfileRouter router = routerWithDelay(1000);
+        RouteResult driving = resultWithPoints(2);
+
+        RouteResult result = router.route(CHAIN, profile -> {
+            if (profile == RoutingAPI.RoutingProfile.DRIVING_CAR) return driving;
+            return null;
+        }, 2);
+
+        assertSame(driving, result);
+        assertEquals(0, router.getHedgesFired());
+        assertEquals(1, router.getFallbackWinsAfterFailure());
+    }
+
+    @Test
+    public void routeReturnsNullWhenEveryProfileFailsTest() throws InterruptedException {
+        HedgedProfileRouter router = routerWithDelay(10);
+
+        RouteResult result = router.route(CHAIN, profile -> resultWithPoints(1), 2);
+
+        assertNull(result);
+        assertEquals(1, router.getAllFailed());
+    }
+
+    @Test
+    public void routeGivesUpWhenDeadlinePassesBeforeAnyResultTest() throws InterruptedException {
+        HedgedProfileRouter router = routerWithDelay(50);
+        RoutingDeadline deadline = RoutingDeadline.after(java.time.Duration.ofMillis(200));
+
+        long start = System.nanoTime();
+        RouteResult result = router.route(CHAIN, profile -> {
+            sleep(2000);
+            return resultWithPoints(3);
+        }, 2, deadline);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertNull(result);
+        assertTrue(elapsedMillis < 1500, "took " + elapsedMillis + " ms");
+        assertEquals(1, router.getDeadlineExpired());
+    }
+
+    // -------------------------------------------------------------
+    // getHedgeDelayMillis(...) tests
+    // -------------------------------------------------------------
+
+    @Test
+    public void getHedgeDelayMillisUsesDefaultUntilEnoughSamplesTest() {
+        HedgedProfileRouter router = new HedgedProfileRouter();
+        router.setDelayBounds(1500, 100, 4000);
+
+        assertEquals(1500, router.getHedgeDelayMillis(RoutingAPI.RoutingProfile.FOOT_WALKING));
+    }
+
+    @Test
+    public void getHedgeDelayMillisFollowsP95OfRecordedLatenciesWithinBoundsTest() {
+        HedgedProfileRouter router = new HedgedProfileRouter();
+        router.setDelayBounds(1500, 100, 4000);
+        LatencyTracker tracker = router.getLatencyTracker(RoutingAPI.RoutingProfile.FOOT_WALKING);
+        for (int i = 1; i <= 20; i++) {
+            tracker.record(i * 100);
+        }
+
+        assertEquals(1900, router.getHedgeDelayMillis(RoutingAPI.RoutingProfile.FOOT_WALKING));
+
+        router.setDelayBounds(1500, 100, 800);
+        assertEquals(800, router.getHedgeDelayMillis(RoutingAPI.RoutingProfile.FOOT_WALKING));
+    }
+
+    @Test
+    public void setDelayPercentileRejectsOutOfRangeValuesTest() {
+        HedgedProfileRouter router = new HedgedProfileRouter();
+
+        assertThrows(IllegalArgumentException.class, () -> router.setDelayPercentile(0));
+        assertThrows(IllegalArgumentException.class, () -> router.setDelayPercentile(1.5));
+    }
+}
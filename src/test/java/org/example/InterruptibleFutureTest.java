@@ -0,0 +1,160 @@
+package org.example;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InterruptibleFutureTest {
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(new DaemonThreadFactory("future-test"));
+
+    @AfterEach
+    public void shutDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void completesWithValueOfWorkTest() throws Exception {
+        assertEquals("done", InterruptibleFuture.callAsync(() -> "done", executor).get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void exceptionOfWorkIsNotWrappedTest() {
+        CompletableFuture<String> future = InterruptibleFuture.callAsync(() -> {
+            throw new IOException("disk gone");
+        }, executor);
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(1, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof IOException);
+        assertEquals("disk gone", e.getCause().getMessage());
+    }
+
+    @Test
+    public void cancelInterruptsRunningWorkTest() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        CompletableFuture<String> future = InterruptibleFuture.callAsync(() -> {
+            started.countDown();
+            try {
+                Thread.sleep(10_000);
+                return "slept";
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                throw e;
+            }
+        }, executor);
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+
+        assertTrue(future.cancel(true));
+
+        assertTrue(interrupted.await(1, TimeUnit.SECONDS));
+        assertTrue(future.isCancelled());
+        assertThrows(CancellationException.class, future::join);
+    }
+
+    @Test
+    public void workCancelledBeforeItStartsNeverRunsTest() throws Exception {
+        CountDownLatch blocker = new CountDownLatch(1);
+        executor.execute(() -> {
+            try {
+                blocker.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        AtomicBoolean ran = new AtomicBoolean();
+        CompletableFuture<String> future = InterruptibleFuture.callAsync(() -> {
+            ran.set(true);
+            return "ran";
+        }, executor);
+
+        future.cancel(true);
+        blocker.countDown();
+        executor.submit(() -> { }).get(1, TimeUnit.SECONDS);
+
+        assertFalse(ran.get());
+    }
+
+    @Test
+    public void cancelAfterCompletionLeavesPoolThreadUninterruptedTest() throws Exception {
+        CompletableFuture<String> future = InterruptibleFuture.callAsync(() -> "done", executor);
+        future.get(1, TimeUnit.SECONDS);
+
+        assertFalse(future.cancel(true));
+
+        assertFalse(executor.submit(() -> Thread.currentThread().isInterrupted()).get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void cancellingDependentStageDoesNotCancelWorkTest() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> future = InterruptibleFuture.callAsync(() -> {
+            release.await();
+            return "done";
+        }, executor);
+        CompletableFuture<Integer> length = future.thenApply(String::length);
+
+        length.cancel(true);
+        release.countDown();
+
+        assertEquals("done", future.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void rejectedWorkFailsFutureTest() {
+        executor.shutdown();
+
+        CompletableFuture<String> future = InterruptibleFuture.callAsync(() -> "never", executor);
+
+        assertTrue(future.isCompletedExceptionally());
+        ExecutionException e = assertThrows(ExecutionException.class, future::get);
+        assertTrue(e.getCause() instanceof RejectedExecutionException);
+    }
+
+    @Test
+    public void cancelClosesRegisteredResourcesUntilTheyAreReleasedTest() throws Exception {
+        AtomicBoolean kept = new AtomicBoolean();
+        AtomicBoolean released = new AtomicBoolean();
+        CountDownLatch registered = new CountDownLatch(1);
+        CountDownLatch closed = new CountDownLatch(1);
+        CompletableFuture<String> future = InterruptibleFuture.callAsync(() -> {
+            InterruptibleFuture.closeOnCancel(() -> released.set(true)).close();
+            InterruptibleFuture.closeOnCancel(() -> {
+                kept.set(true);
+                closed.countDown();
+            });
+            registered.countDown();
+            // Stands in for a read that ignores interrupts
+            closed.await();
+            return "unblocked";
+        }, executor);
+        assertTrue(registered.await(1, TimeUnit.SECONDS));
+
+        assertTrue(future.cancel(true));
+
+        assertTrue(closed.await(1, TimeUnit.SECONDS));
+        assertTrue(kept.get());
+        assertFalse(released.get());
+    }
+
+    @Test
+    public void closeOnCancelOutsideFutureWorkDoesNothingTest() {
+        AtomicBoolean closed = new AtomicBoolean();
+
+        InterruptibleFuture.closeOnCancel(() -> closed.set(true)).close();
+
+        assertFalse(closed.get());
+    }
+}
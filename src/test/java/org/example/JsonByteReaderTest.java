@@ -0,0 +1,173 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JsonByteReaderTest {
+
+    private JsonByteReader readerFor(String json) {
+        return new JsonByteReader(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    // -------------------------------------------------------------
+    // nextDouble() tests
+    // -------------------------------------------------------------
+
+    @Test
+    public void nextDoubleParsesIntegersDecimalsAndNegativesTest() throws IOException {
+        JsonByteReader reader = readerFor("[12, -3.25, 0.000125, 8.681495]");
+        reader.beginArray();
+
+        assertTrue(reader.nextElement());
+        assertEquals(12.0, reader.nextDouble());
+        assertTrue(reader.nextElement());
+        assertEquals(-3.25, reader.nextDouble());
+        assertTrue(reader.nextElement());
+        assertEquals(0.000125, reader.nextDouble());
+        assertTrue(reader.nextElement());
+        assertEquals(8.681495, reader.nextDouble());
+        assertFalse(reader.nextElement());
+    }
+
+    @Test
+    public void nextDoubleMatchesJdkParsingForExponentsAndLongMantissasTest() throws IOException {
+        String[] values = {"1.5e3", "-2E-4", "6.02214076e+23", "123456789012345678901234", "0.1234567890123456789"};
+        for (String value : values) {
+            JsonByteReader reader = readerFor(value);
+
+            assertEquals(Double.parseDouble(value), reader.nextDouble(), Math.ulp(Double.parseDouble(value)) * 2);
+        }
+    }
+
+    @Test
+    public void nextDoubleThrowsWhenValueIsNotANumberTest() {
+        JsonByteReader reader = readerFor("\"abc\"");
+
+        assertThrows(IOException.class, reader::nextDouble);
+    }
+
+    // -------------------------------------------------------------
+    // nextField() / keyEquals(...) tests
+    // -------------------------------------------------------------
+
+    @Test
+    public void nextFieldWalksKeysInOrderAndStopsAtClosingBraceTest() throws IOException {
+        JsonByteReader reader = readerFor("{ \"a\" : 1, \"summary\": {\"x\": true}, \"b\": \"str\" }");
+        reader.beginObject();
+
+        assertTrue(reader.nextField());
+        assertTrue(reader.keyEquals(JsonByteReader.keyBytes("a")));
+        assertEquals(1.0, reader.nextDouble());
+
+        assertTrue(reader.nextField());
+        assertTrue(reader.keyEquals(JsonByteReader.keyBytes("summary")));
+        assertEquals(JsonByteReader.ValueType.OBJECT, reader.peek());
+        reader.skipValue();
+
+        assertTrue(reader.nextField());
+        assertEquals("b", reader.currentKey());
+        assertEquals(JsonByteReader.ValueType.STRING, reader.peek());
+        reader.skipValue();
+
+        assertFalse(reader.nextField());
+        assertEquals(JsonByteReader.ValueType.END, reader.peek());
+    }
+
+    @Test
+    public void keyEqualsReturnsFalseForDifferentLengthKeyTest() throws IOException {
+        JsonByteReader reader = readerFor("{\"ascent\":1}");
+        reader.beginObject();
+        reader.nextField();
+
+        assertFalse(reader.keyEquals(JsonByteReader.keyBytes("ascents")));
+        assertFalse(reader.keyEquals(JsonByteReader.keyBytes("descent")));
+    }
+
+    // -------------------------------------------------------------
+    // skipValue() tests
+    // -------------------------------------------------------------
+
+    @Test
+    public void skipValueSkipsNestedStructuresAndEscapedStringsTest() throws IOException {
+        JsonByteReader reader = readerFor("[{\"q\":\"a\\\"]}\",\"n\":[[1,2],[3,{}]]}, null, 7]");
+        reader.beginArray();
+
+        assertTrue(reader.nextElement());
+        reader.skipValue();
+        assertTrue(reader.nextElement());
+        assertEquals(JsonByteReader.ValueType.NULL, reader.peek());
+        reader.skipValue();
+        assertTrue(reader.nextElement());
+        assertEquals(7.0, reader.nextDouble());
+        assertFalse(reader.nextElement());
+    }
+
+    // -------------------------------------------------------------
+    // buffering tests
+    // -------------------------------------------------------------
+
+    @Test
+    public void readerHandlesTokensSplitAcrossSmallReadsTest() throws IOException {
+        byte[] json = "{\"coordinates\":[8.6814953,49.4141541,107.5]}".getBytes(StandardCharsets.UTF_8);
+        InputStream trickle = new ByteArrayInputStream(json) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, 3));
+            }
+        };
+        JsonByteReader reader = new JsonByteReader(trickle);
+
+        reader.beginObject();
+        assertTrue(reader.nextField());
+        assertTrue(reader.keyEquals(JsonByteReader.keyBytes("coordinates")));
+        reader.beginArray();
+        reader.nextElement();
+        assertEquals(8.6814953, reader.nextDouble());
+        reader.nextElement();
+        assertEquals(49.4141541, reader.nextDouble());
+        reader.nextElement();
+        assertEquals(107.5, reader.nextDouble());
+        assertFalse(reader.nextElement());
+        assertFalse(reader.nextField());
+        assertEquals(json.length, reader.getBytesConsumed());
+    }
+
+    // -------------------------------------------------------------
+    // readStringBytes(...) tests
+    // -------------------------------------------------------------
+
+    private String readString(JsonByteReader reader) throws IOException {
+        java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+        reader.readStringBytes(out::write);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void readStringBytesResolvesEscapesTest() throws IOException {
+        JsonByteReader reader = readerFor("[\"a\\\\b\\\"c\\n\\u00e9\"]");
+        reader.beginArray();
+        assertTrue(reader.nextElement());
+
+        assertEquals("a\\b\"c\n\u00e9", readString(reader));
+        assertFalse(reader.nextElement());
+    }
+
+    @Test
+    public void readStringBytesStreamsAcrossBufferRefillsTest() throws IOException {
+        StringBuilder longValue = new StringBuilder();
+        for (int i = 0; i < 40_000; i++) longValue.append((char) ('?' + i % 29));
+        JsonByteReader reader = readerFor("{\"geometry\":\"" + longValue + "\",\"x\":1}");
+        reader.beginObject();
+        assertTrue(reader.nextField());
+
+        assertEquals(longValue.toString(), readString(reader));
+        assertTrue(reader.nextField());
+        assertEquals(1.0, reader.nextDouble());
+    }
+}
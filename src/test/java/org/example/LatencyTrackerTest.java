@@ -0,0 +1,62 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatencyTrackerTest {
+
+    // -------------------------------------------------------------
+    // getPercentile(...) tests
+    // -------------------------------------------------------------
+
+    @Test
+    public void getPercentileReturnsMinusOneWhenEmptyTest() {
+        LatencyTracker tracker = new LatencyTracker(10);
+
+        assertEquals(-1, tracker.getPercentile(0.95));
+    }
+
+    @Test
+    public void getPercentileUsesNearestRankTest() {
+        LatencyTracker tracker = new LatencyTracker(100);
+        for (int i = 1; i <= 100; i++) {
+            tracker.record(i);
+        }
+
+        assertEquals(95, tracker.getPercentile(0.95));
+        assertEquals(50, tracker.getPercentile(0.5));
+        assertEquals(100, tracker.getPercentile(1.0));
+        assertEquals(1, tracker.getPercentile(0.0));
+    }
+
+    // -------------------------------------------------------------
+    // record(...) tests
+    // -------------------------------------------------------------
+
+    @Test
+    public void recordOverwritesOldestSamplesOnceFullTest() {
+        LatencyTracker tracker = new LatencyTracker(3);
+        tracker.record(1000);
+        tracker.record(10);
+        tracker.record(20);
+        tracker.record(30);
+
+        assertEquals(3, tracker.getSampleCount());
+        assertEquals(30, tracker.getPercentile(1.0));
+    }
+
+    @Test
+    public void clearDropsAllSamplesTest() {
+        LatencyTracker tracker = new LatencyTracker(3);
+        tracker.record(5);
+        tracker.clear();
+
+        assertEquals(0, tracker.getSampleCount());
+    }
+
+    @Test
+    public void constructorRejectsNonPositiveCapacityTest() {
+        assertThrows(IllegalArgumentException.class, () -> new LatencyTracker(0));
+    }
+}
@@ -0,0 +1,147 @@
+package org.example;
+
+import org.jxmapviewer.viewer.GeoPosition;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LegPrefetcherTest {
+
+    private static final double SPACING = 100;
+    private static final RoutingAPI.RoutingProfile WALKING = RoutingAPI.RoutingProfile.FOOT_WALKING;
+
+    private static GeoPosition gridPoint(double row, double column) {
+        return new GeoPosition(RoadGraphFixtures.gridLatitude(0, SPACING) + row * SPACING / 111_320.0,
+                RoadGraphFixtures.gridLongitude((int) column, SPACING));
+    }
+
+    private static OfflineRoutingBackend gridBackend() {
+        return new OfflineRoutingBackend(RoadGraphFixtures.grid(10, 10, SPACING), null);
+    }
+
+    /**
+     * Holds tasks until {@link #runAll()}, so prefetches stay in flight.
+     */
+    private static class QueuedExecutor implements Executor {
+        final List<Runnable> tasks = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable task) {
+            tasks.add(task);
+        }
+
+        void runAll() {
+            for (Runnable task : tasks) task.run();
+            tasks.clear();
+        }
+    }
+
+    @Test
+    public void clickNearHoveredPointTakesPrefetchedLegTest() throws Exception {
+        LegPrefetcher prefetcher = new LegPrefetcher(Runnable::run);
+        OfflineRoutingBackend backend = gridBackend();
+
+        assertTrue(prefetcher.prefetch(backend, gridPoint(0, 0), gridPoint(3, 4)));
+        LegPrefetcher.Prefetched prefetched = prefetcher.take(gridPoint(0, 0), gridPoint(3.05, 4), WALKING);
+
+        assertNotNull(prefetched);
+        assertTrue(prefetched.isReady());
+        assertEquals(gridPoint(3, 4), prefetched.getTarget());
+        assertEquals(700, prefetched.getLeg().get().getDistance(), 2);
+        assertEquals(1, prefetcher.getHits());
+        assertEquals(1.0, prefetcher.getHitRate());
+        assertEquals(0, prefetcher.size());
+    }
+
+    @Test
+    public void clickElsewhereOrFromAnotherEndMissesAndDropsEntriesTest() {
+        LegPrefetcher prefetcher = new LegPrefetcher(Runnable::run);
+        prefetcher.setMinInterval(Duration.ZERO);
+        OfflineRoutingBackend backend = gridBackend();
+
+        prefetcher.prefetch(backend, gridPoint(0, 0), gridPoint(3, 4));
+        assertNull(prefetcher.take(gridPoint(0, 0), gridPoint(5, 4), WALKING));
+        prefetcher.prefetch(backend, gridPoint(0, 0), gridPoint(3, 4));
+        assertNull(prefetcher.take(gridPoint(1, 0), gridPoint(3, 4), WALKING));
+        prefetcher.prefetch(backend, gridPoint(0, 0), gridPoint(3, 4));
+        assertNull(prefetcher.take(gridPoint(0, 0), gridPoint(3, 4), RoutingAPI.RoutingProfile.DRIVING_CAR));
+
+        assertEquals(3, prefetcher.getMisses());
+        assertEquals(3, prefetcher.getWasted());
+        assertEquals(0, prefetcher.size());
+        assertTrue(prefetcher.describeStats().contains("hit rate=0%"));
+    }
+
+    @Test
+    public void newDwellCancelsPrefetchStillRunningTest() {
+        QueuedExecutor executor = new QueuedExecutor();
+        LegPrefetcher prefetcher = new LegPrefetcher(executor);
+        prefetcher.setMinInterval(Duration.ZERO);
+        OfflineRoutingBackend backend = gridBackend();
+
+        prefetcher.prefetch(backend, gridPoint(0, 0), gridPoint(3, 4));
+        prefetcher.prefetch(backend, gridPoint(0, 0), gridPoint(6, 2));
+
+        assertEquals(1, prefetcher.getCancelled());
+        assertEquals(1, prefetcher.size());
+        executor.runAll();
+        assertNotNull(prefetcher.take(gridPoint(0, 0), gridPoint(6, 2), WALKING));
+        assertEquals(1, backend.getLegsRouted());
+    }
+
+    @Test
+    public void clickWhilePrefetchRunsWaitsForItTest() throws Exception {
+        QueuedExecutor executor = new QueuedExecutor();
+        LegPrefetcher prefetcher = new LegPrefetcher(executor);
+        prefetcher.prefetch(gridBackend(), gridPoint(0, 0), gridPoint(3, 4));
+
+        LegPrefetcher.Prefetched prefetched = prefetcher.take(gridPoint(0, 0), gridPoint(3, 4), WALKING);
+
+        assertFalse(prefetched.isReady());
+        executor.runAll();
+        assertNotNull(prefetched.getLeg().get());
+        assertTrue(prefetcher.describeStats().contains("hits=1 (1 in flight)"));
+    }
+
+    @Test
+    public void prefetchesAreSpacedOutAndNotRepeatedTest() {
+        LegPrefetcher prefetcher = new LegPrefetcher(Runnable::run);
+        OfflineRoutingBackend backend = gridBackend();
+
+        assertTrue(prefetcher.prefetch(backend, gridPoint(0, 0), gridPoint(3, 4)));
+        assertFalse(prefetcher.prefetch(backend, gridPoint(0, 0), gridPoint(3.05, 4)));
+        assertEquals(0, prefetcher.getThrottled());
+        assertFalse(prefetcher.prefetch(backend, gridPoint(0, 0), gridPoint(6, 2)));
+
+        assertEquals(1, prefetcher.getThrottled());
+        assertEquals(1, prefetcher.getPrefetches());
+    }
+
+    @Test
+    public void pausedRateLimiterStopsPrefetchTest() {
+        LegPrefetcher prefetcher = new LegPrefetcher(Runnable::run);
+        RoutingRateLimiter limiter = new RoutingRateLimiter();
+        limiter.recordThrottled(429, 60_000, 0);
+        prefetcher.setRateLimiter(limiter);
+
+        assertFalse(prefetcher.prefetch(gridBackend(), gridPoint(0, 0), gridPoint(3, 4)));
+        assertEquals(1, prefetcher.getThrottled());
+        assertEquals(0, prefetcher.getPrefetches());
+    }
+
+    @Test
+    public void expiredPrefetchIsNotUsedTest() throws Exception {
+        LegPrefetcher prefetcher = new LegPrefetcher(Runnable::run);
+        prefetcher.setTimeToLive(Duration.ofMillis(1));
+        prefetcher.prefetch(gridBackend(), gridPoint(0, 0), gridPoint(3, 4));
+        Thread.sleep(5);
+
+        assertNull(prefetcher.take(gridPoint(0, 0), gridPoint(3, 4), WALKING));
+        assertEquals(1, prefetcher.getWasted());
+    }
+}
@@ -3,6 +3,8 @@ package org.example;
 import org.junit.jupiter.api.Test;
 
 import java.lang.reflect.Field;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -307,4 +309,61 @@ public class LoggingInStateTest {
         assertNotNull(msg);
         assertFalse(msg.trim().isEmpty());
     }
+
+    // -------------------------------------------------------------
+    // processLoginAttemptAsync(...) tests
+    // -------------------------------------------------------------
+
+    @Test
+    public void processLoginAttemptAsyncReportsOutcomeOnCallbackExecutorTest() throws Exception {
+        AuthContext ctx = getContext();
+        resetContext(ctx);
+
+        String username = "async_login_" + System.nanoTime();
+        assertNotNull(ctx.getDatabase().createNewUser(username, "secret123"));
+
+        LoggingInState state = new LoggingInState(username, "wrongpass");
+        TestAuthListener listener = new TestAuthListener();
+        ctx.addListener(listener);
+        AtomicInteger callbacks = new AtomicInteger();
+
+        try {
+            ctx.setState(state);
+            state.processLoginAttemptAsync(ctx, task -> {
+                callbacks.incrementAndGet();
+                task.run();
+            }).get();
+
+            assertEquals(1, callbacks.get());
+            assertTrue(listener.loginFailureCalled);
+            assertEquals("Invalid username or password", listener.failureReason);
+            assertEquals("Logged Out", ctx.getStateName());
+        } finally {
+            ctx.removeListener(listener);
+            resetContext(ctx);
+        }
+    }
+
+    @Test
+    public void failedLookupStillEndsLoginWithFailureTest() throws Exception {
+        AuthContext ctx = getContext();
+        resetContext(ctx);
+
+        LoggingInState state = new LoggingInState("someone", "secret123");
+        TestAuthListener listener = new TestAuthListener();
+        ctx.addListener(listener);
+
+        try {
+            ctx.setState(state);
+            state.finishLoginWhenDone(ctx, CompletableFuture.failedFuture(new IllegalStateException("writer down")),
+                    Runnable::run).get();
+
+            assertTrue(listener.loginFailureCalled);
+            assertTrue(listener.failureReason.contains("user database"));
+            assertEquals("Logged Out", ctx.getStateName());
+        } finally {
+            ctx.removeListener(listener);
+            resetContext(ctx);
+        }
+    }
 }
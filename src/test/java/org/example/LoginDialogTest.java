@@ -217,6 +217,28 @@ public class LoginDialogTest {
         }
     }
 
+    @Test
+    public void onStateChangedKeepsButtonsDisabledWhileLoggingInTest() throws Exception {
+        AuthContext ctx = getContext();
+        resetContext(ctx);
+        TestLoginDialog dialog = new TestLoginDialog(null);
+        try {
+            JButton loginButton = getField(dialog, "loginButton", JButton.class);
+            JButton registerButton = getField(dialog, "registerButton", JButton.class);
+
+            dialog.onStateChanged(new LoggedOutState(), new LoggingInState("someone", "secret123"));
+
+            SwingUtilities.invokeAndWait(() -> {});
+
+            assertFalse(loginButton.isEnabled());
+            assertFalse(registerButton.isEnabled());
+        } finally {
+            ctx.removeListener(dialog);
+            dialog.dispose();
+            resetContext(ctx);
+        }
+    }
+
     @Test
     public void onStateChangedHandlesNullStatesWithoutExceptionTest() throws Exception {
         AuthContext ctx = getContext();
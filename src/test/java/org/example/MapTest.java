@@ -6,6 +6,7 @@ import org.junit.jupiter.api.Test;
 
 import java.awt.*;
 import java.lang.reflect.Field;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -110,6 +111,18 @@ public class MapTest {
     // setDrawingMode(...) / isDrawingMode() tests
     // -------------------------------------------------------------
 
+    @Test
+    public void setPendingPointStoresAndClearsMarkerTest() {
+        Map map = createMap();
+        GeoPosition point = new GeoPosition(40.0, -105.0);
+
+        map.setPendingPoint(point);
+        assertSame(point, map.getPendingPoint());
+
+        map.setPendingPoint(null);
+        assertNull(map.getPendingPoint());
+    }
+
     @Test
     public void setDrawingModeTrueSetsFlagAndIsDrawingModeReturnsTrueTest() {
         Map map = createMap();
@@ -131,6 +144,46 @@ public class MapTest {
         assertFalse(getBooleanField(map, "drawingMode"));
     }
 
+    // -------------------------------------------------------------
+    // hover dwell tests
+    // -------------------------------------------------------------
+
+    @Test
+    public void hoverInDrawingModeStartsDwellAndReportsPositionTest() {
+        Map map = createMap();
+        List<GeoPosition> dwells = new ArrayList<>();
+        map.setMapHoverListener(dwells::add, 10_000);
+        map.setDrawingMode(true);
+
+        map.hoverMovedTo(new java.awt.Point(10, 10));
+        assertTrue(map.isHoverPending());
+        map.hoverDwelled();
+
+        assertEquals(1, dwells.size());
+        map.hoverLeft();
+        assertFalse(map.isHoverPending());
+    }
+
+    @Test
+    public void hoverOutsideDrawingModeOrWithinJitterIsIgnoredTest() {
+        Map map = createMap();
+        List<GeoPosition> dwells = new ArrayList<>();
+        map.setMapHoverListener(dwells::add, 10_000);
+
+        map.hoverMovedTo(new java.awt.Point(10, 10));
+        assertFalse(map.isHoverPending());
+
+        map.setDrawingMode(true);
+        map.hoverMovedTo(new java.awt.Point(10, 10));
+        map.hoverDwelled();
+        map.hoverMovedTo(new java.awt.Point(12, 11));
+        assertEquals(new java.awt.Point(10, 10), getField(map, "hoverPoint", java.awt.Point.class));
+
+        map.setDrawingMode(false);
+        map.hoverDwelled();
+        assertEquals(1, dwells.size());
+    }
+
     // -------------------------------------------------------------
     // displayRoute(...) tests
     // -------------------------------------------------------------
@@ -312,4 +365,24 @@ public class MapTest {
 
         assertEquals(before + 1, viewer.getZoom());
     }
+
+    // -------------------------------------------------------------
+    // renderToleranceMeters(...) tests
+    // -------------------------------------------------------------
+
+    @Test
+    public void renderToleranceHalvesWithEachZoomStepInTest() {
+        double coarse = Map.renderToleranceMeters(10, 40.0);
+        double fine = Map.renderToleranceMeters(9, 40.0);
+
+        assertEquals(coarse / 2, fine, 1e-9);
+    }
+
+    @Test
+    public void renderToleranceAtStreetLevelIsUnderOneMeterTest() {
+        // Viewer zoom 2 is OSM zoom 17, about 1.19 m per pixel at the equator
+        double tolerance = Map.renderToleranceMeters(2, 0.0);
+
+        assertEquals(0.597, tolerance, 0.001);
+    }
 }
@@ -0,0 +1,451 @@
+package org.example;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Embedded stand-in for the OpenRouteService directions API on localhost, so
+ * {@link RoutingAPI} can be tested, load-tested and benchmarked without the real service.
+ *
+ * Serves {@code POST /v2/directions/{profile}/geojson} and {@code /json}, and
+ * {@code /v2/matrix/{profile}} with straight-line times at walking pace. By default every
+ * directions request gets a synthetic route through its coordinates (or a circle for round trips) with
+ * {@link #setPointsPerResponse(int) a chosen number of points} and a rolling elevation
+ * profile, built with {@link OrsResponseFixtures}; a recorded response body can be served
+ * instead. Latency, server errors and 429s can be injected at random or for the next few
+ * requests. Randomness comes from the seed, so a single-threaded run is repeatable.
+ */
+public class MockRoutingServer implements Closeable {
+
+    /**
+     * How long the server sits on a request before answering.
+     */
+    public interface LatencyModel {
+        long sampleMillis(Random random);
+    }
+
+    public static LatencyModel noLatency() {
+        return random -> 0;
+    }
+
+    public static LatencyModel fixedLatency(long millis) {
+        return random -> millis;
+    }
+
+    public static LatencyModel uniformLatency(long minMillis, long maxMillis) {
+        return random -> minMillis + (long) (random.nextDouble() * (maxMillis - minMillis));
+    }
+
+    /**
+     * Long-tailed latency like a real API: half the requests take under {@code medianMillis},
+     * and {@code sigma} of about 0.5 puts the 99th percentile at roughly three times that.
+     */
+    public static LatencyModel logNormalLatency(long medianMillis, double sigma) {
+        return random -> Math.round(medianMillis * Math.exp(sigma * random.nextGaussian()));
+    }
+
+    private static final Pattern PATH = Pattern.compile("/v2/directions/([a-z-]+)/(geojson|json)/?");
+    private static final Pattern MATRIX_PATH = Pattern.compile("/v2/matrix/([a-z-]+)/?");
+    private static final Pattern COORDINATE = Pattern.compile("\\[\\s*(-?[0-9.eE+-]+)\\s*,\\s*(-?[0-9.eE+-]+)\\s*]");
+    private static final Pattern ROUND_TRIP_LENGTH = Pattern.compile("\"length\"\\s*:\\s*([0-9.]+)");
+    private static final double METERS_PER_DEGREE = 111_320.0;
+    private static final double MATRIX_METERS_PER_SECOND = 1.4;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final long seed;
+
+    private volatile LatencyModel latency = noLatency();
+    private volatile double errorRate;
+    private volatile double rateLimitRate;
+    private volatile int retryAfterSeconds = 1;
+    private volatile int pointsPerResponse = 200;
+    private volatile byte[] recordedResponse;
+    private volatile String requiredApiKey;
+    private volatile long bodyStallMillis;
+    private volatile double roundTripStretch = 1.0;
+    private final AtomicInteger forcedFailures = new AtomicInteger();
+    private volatile int forcedFailureStatus;
+    private final Map<String, Integer> failingProfiles = new ConcurrentHashMap<>();
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong successes = new AtomicLong();
+    private final AtomicLong serverErrors = new AtomicLong();
+    private final AtomicLong rateLimited = new AtomicLong();
+    private final AtomicLong clientErrors = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong stalledBodies = new AtomicLong();
+    private final Map<String, AtomicLong> requestsByProfile = new ConcurrentHashMap<>();
+    private volatile String lastRequestBody;
+
+    private MockRoutingServer(long seed) throws IOException {
+        this.seed = seed;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        // Enough threads that injected latency never queues requests behind each other
+        this.executor = Executors.newCachedThreadPool(new DaemonThreadFactory("mock-ors"));
+        server.setExecutor(executor);
+        server.createContext("/v2/directions/", this::handle);
+        server.createContext("/v2/matrix/", this::handle);
+    }
+
+    /**
+     * Starts a server on a free localhost port.
+     */
+    public static MockRoutingServer start() throws IOException {
+        return start(42);
+    }
+
+    public static MockRoutingServer start(long seed) throws IOException {
+        MockRoutingServer mock = new MockRoutingServer(seed);
+        mock.server.start();
+        return mock;
+    }
+
+    /**
+     * The URL to hand to {@link RoutingAPI}, e.g. {@code http://127.0.0.1:54321}.
+     */
+    public String getBaseUrl() {
+        InetSocketAddress address = server.getAddress();
+        return "http://" + address.getAddress().getHostAddress() + ":" + address.getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+
+
+    public void setLatency(LatencyModel latency) {
+        this.latency = latency;
+    }
+
+    /**
+     * Fraction of requests answered with a 500 and an ORS error body.
+     */
+    public void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    /**
+     * Fraction of requests answered with a 429 and a Retry-After header.
+     */
+    public void setRateLimitRate(double rateLimitRate) {
+        this.rateLimitRate = rateLimitRate;
+    }
+
+    public void setRetryAfterSeconds(int retryAfterSeconds) {
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Points in each synthetic route, which sets the payload size: roughly 40 bytes a point
+     * as GeoJSON and 8 as an encoded polyline.
+     */
+    public void setPointsPerResponse(int pointsPerResponse) {
+        this.pointsPerResponse = Math.max(2, pointsPerResponse);
+    }
+
+    /**
+     * Serves this body to every successful request instead of a synthetic route, or goes back
+     * to synthetic routes when null.
+     */
+    public void setRecordedResponse(String body) {
+        this.recordedResponse = body == null ? null : body.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Sends the headers and half of every successful body, then waits this long before the
+     * rest, like a server that stalls mid-response.
+     */
+    public void setBodyStall(long millis) {
+        this.bodyStallMillis = millis;
+    }
+
+    /**
+     * Scales every synthetic round trip, e.g. 1.4 answers a 5 km request with a 7 km loop,
+     * like a region whose roads make loops run long.
+     */
+    public void setRoundTripStretch(double stretch) {
+        this.roundTripStretch = stretch;
+    }
+
+    /**
+     * Answers with 403 unless the Authorization header is exactly this key; null accepts any.
+     */
+    public void setRequiredApiKey(String apiKey) {
+        this.requiredApiKey = apiKey;
+    }
+
+    /**
+     * Answers the next {@code count} requests with {@code statusCode}, whatever the rates say.
+     */
+    public void failNext(int count, int statusCode) {
+        forcedFailureStatus = statusCode;
+        forcedFailures.set(count);
+    }
+
+    /**
+     * Answers every request for {@code profile} (e.g. "foot-walking") with {@code statusCode}.
+     */
+    public void failProfile(String profile, int statusCode) {
+        failingProfiles.put(profile, statusCode);
+    }
+
+    public void clearFailures() {
+        failingProfiles.clear();
+        forcedFailures.set(0);
+        errorRate = 0;
+        rateLimitRate = 0;
+    }
+
+
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            long number = requests.incrementAndGet();
+            Random random = new Random(seed * 31 + number);
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            lastRequestBody = body;
+
+            Matcher path = PATH.matcher(exchange.getRequestURI().getPath());
+            Matcher matrixPath = MATRIX_PATH.matcher(exchange.getRequestURI().getPath());
+            boolean matrix = !path.matches() && matrixPath.matches();
+            if (!exchange.getRequestMethod().equals("POST") || !(matrix || path.matches())) {
+                sendError(exchange, 404, 2099, "Unknown endpoint " + exchange.getRequestURI().getPath());
+                return;
+            }
+            String profile = matrix ? matrixPath.group(1) : path.group(1);
+            boolean polyline = !matrix && path.group(2).equals("json");
+            requestsByProfile.computeIfAbsent(profile, p -> new AtomicLong()).incrementAndGet();
+
+            long delay = latency.sampleMillis(random);
+            if (delay > 0) Thread.sleep(delay);
+
+            String key = requiredApiKey;
+            if (key != null && !key.equals(exchange.getRequestHeaders().getFirst("Authorization"))) {
+                sendError(exchange, 403, 403, "Access to this API has been disallowed");
+                return;
+            }
+            Integer profileStatus = failingProfiles.get(profile);
+            if (profileStatus != null) {
+                sendFailure(exchange, profileStatus);
+                return;
+            }
+            if (forcedFailures.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                sendFailure(exchange, forcedFailureStatus);
+                return;
+            }
+            double roll = random.nextDouble();
+            if (roll < rateLimitRate) {
+                sendFailure(exchange, 429);
+                return;
+            }
+            if (roll < rateLimitRate + errorRate) {
+                sendFailure(exchange, 500);
+                return;
+            }
+
+            byte[] response = recordedResponse != null ? recordedResponse
+                    : matrix ? syntheticMatrix(body) : syntheticResponse(body, polyline);
+            send(exchange, 200, response, bodyStallMillis);
+            successes.incrementAndGet();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private byte[] syntheticResponse(String requestBody, boolean polyline) {
+        double[][] track = syntheticTrack(requestBody, pointsPerResponse, roundTripStretch);
+        double distance = 0;
+        double ascent = 0;
+        double descent = 0;
+        for (int i = 1; i < track.length; i++) {
+            distance += Point.haversineKm(track[i - 1][1], track[i - 1][0], track[i][1], track[i][0]) * 1000;
+            double rise = track[i][2] - track[i - 1][2];
+            if (rise > 0) ascent += rise; else descent -= rise;
+        }
+        String json = polyline
+                ? OrsResponseFixtures.directionsPolylineJson(track, ascent, descent, distance)
+                : OrsResponseFixtures.directionsGeoJson(track, ascent, descent, distance);
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Great-circle distances between the requested locations, covered at walking pace.
+     */
+    static byte[] syntheticMatrix(String requestBody) {
+        List<double[]> locations = new ArrayList<>();
+        int start = requestBody.indexOf("\"locations\"");
+        int end = start < 0 ? -1 : requestBody.indexOf("]]", start);
+        if (end > 0) {
+            Matcher m = COORDINATE.matcher(requestBody.substring(start, end + 1));
+            while (m.find()) {
+                locations.add(new double[]{Double.parseDouble(m.group(1)), Double.parseDouble(m.group(2))});
+            }
+        }
+        int n = locations.size();
+        double[][] durations = new double[n][n];
+        double[][] distances = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                double[] a = locations.get(i);
+                double[] b = locations.get(j);
+                distances[i][j] = Point.haversineKm(a[1], a[0], b[1], b[0]) * 1000;
+                durations[i][j] = distances[i][j] / MATRIX_METERS_PER_SECOND;
+            }
+        }
+        return OrsResponseFixtures.matrixJson(durations, distances).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Straight lines through the requested coordinates, or a circle through the start for a
+     * round trip, as [lon, lat, ele] rows with a rolling elevation profile.
+     */
+    static double[][] syntheticTrack(String requestBody, int pointCount) {
+        return syntheticTrack(requestBody, pointCount, 1.0);
+    }
+
+    static double[][] syntheticTrack(String requestBody, int pointCount, double roundTripStretch) {
+        List<double[]> coordinates = new ArrayList<>();
+        int start = requestBody.indexOf("\"coordinates\"");
+        int end = start < 0 ? -1 : requestBody.indexOf("]]", start);
+        if (end > 0) {
+            Matcher m = COORDINATE.matcher(requestBody.substring(start, end + 1));
+            while (m.find()) {
+                coordinates.add(new double[]{Double.parseDouble(m.group(1)), Double.parseDouble(m.group(2))});
+            }
+        }
+        if (coordinates.isEmpty()) coordinates.add(new double[]{8.681495, 49.41461});
+
+        double[][] track = new double[pointCount][];
+        double[] first = coordinates.get(0);
+        double metersPerDegreeLon = METERS_PER_DEGREE * Math.cos(Math.toRadians(first[1]));
+        Matcher length = ROUND_TRIP_LENGTH.matcher(requestBody);
+        if (coordinates.size() == 1) {
+            double radius = (length.find() ? Double.parseDouble(length.group(1)) : 5000) * roundTripStretch
+                    / (2 * Math.PI);
+            for (int i = 0; i < pointCount; i++) {
+                double angle = 2 * Math.PI * i / (pointCount - 1);
+                track[i] = new double[]{first[0] + radius * Math.sin(angle) / metersPerDegreeLon,
+                        first[1] + radius * (1 - Math.cos(angle)) / METERS_PER_DEGREE, elevation(i)};
+            }
+            return track;
+        }
+
+        int legs = coordinates.size() - 1;
+        for (int i = 0; i < pointCount; i++) {
+            double position = (double) i * legs / (pointCount - 1);
+            int leg = Math.min(legs - 1, (int) position);
+            double t = position - leg;
+            double[] a = coordinates.get(leg);
+            double[] b = coordinates.get(leg + 1);
+            track[i] = new double[]{a[0] + t * (b[0] - a[0]), a[1] + t * (b[1] - a[1]), elevation(i)};
+        }
+        return track;
+    }
+
+    private static double elevation(int index) {
+        return 110 + 25 * Math.sin(index / 300.0) + 3 * Math.sin(index / 7.0);
+    }
+
+    private void sendFailure(HttpExchange exchange, int statusCode) throws IOException {
+        if (statusCode == 429) {
+            exchange.getResponseHeaders().set("Retry-After", Integer.toString(retryAfterSeconds));
+            sendError(exchange, 429, 429, "Rate limit exceeded");
+        } else {
+            sendError(exchange, statusCode, 2099, "Unknown internal error");
+        }
+    }
+
+    private void sendError(HttpExchange exchange, int statusCode, int code, String message) throws IOException {
+        if (statusCode == 429) rateLimited.incrementAndGet();
+        else if (statusCode >= 500) serverErrors.incrementAndGet();
+        else clientErrors.incrementAndGet();
+        String json = "{\"error\":{\"code\":" + code + ",\"message\":\"" + message + "\"},"
+                + "\"info\":{\"engine\":{\"version\":\"7.1.0\"},\"timestamp\":1700000000000}}";
+        send(exchange, statusCode, json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void send(HttpExchange exchange, int statusCode, byte[] body) throws IOException {
+        try {
+            send(exchange, statusCode, body, 0);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void send(HttpExchange exchange, int statusCode, byte[] body, long stallMillis)
+            throws IOException, InterruptedException {
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("Content-Type", "application/geo+json;charset=UTF-8");
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4 + 64);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                gzip.write(body);
+            }
+            body = compressed.toByteArray();
+            headers.set("Content-Encoding", "gzip");
+        }
+        exchange.sendResponseHeaders(statusCode, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            if (stallMillis > 0) {
+                out.write(body, 0, body.length / 2);
+                out.flush();
+                stalledBodies.incrementAndGet();
+                Thread.sleep(stallMillis);
+                out.write(body, body.length / 2, body.length - body.length / 2);
+            } else {
+                out.write(body);
+            }
+        }
+        bytesSent.addAndGet(body.length);
+    }
+
+
+
+    public long getRequests() { return requests.get(); }
+    public long getSuccesses() { return successes.get(); }
+    public long getServerErrors() { return serverErrors.get(); }
+    public long getRateLimited() { return rateLimited.get(); }
+    public long getClientErrors() { return clientErrors.get(); }
+    public long getBytesSent() { return bytesSent.get(); }
+    /** Responses whose body is now, or was, held back halfway. */
+    public long getStalledBodies() { return stalledBodies.get(); }
+    public String getLastRequestBody() { return lastRequestBody; }
+
+    public long getRequestsFor(String profile) {
+        AtomicLong count = requestsByProfile.get(profile);
+        return count == null ? 0 : count.get();
+    }
+
+    public String describeStats() {
+        return String.format("requests=%d, ok=%d, 5xx=%d, 429=%d, 4xx=%d, sent=%d B",
+                getRequests(), getSuccesses(), getServerErrors(), getRateLimited(), getClientErrors(), getBytesSent());
+    }
+}
@@ -0,0 +1,251 @@
+package org.example;
+
+import org.jxmapviewer.viewer.GeoPosition;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OfflineRoutingBackendTest {
+
+    private static final double SPACING = 100;
+
+    private static GeoPosition gridPoint(int row, int column) {
+        return new GeoPosition(RoadGraphFixtures.gridLatitude(row, SPACING), RoadGraphFixtures.gridLongitude(column, SPACING));
+    }
+
+    @Test
+    public void routesLegOnGraphTest() {
+        FakeRoutingBackend fallback = new FakeRoutingBackend();
+        OfflineRoutingBackend backend = new OfflineRoutingBackend(RoadGraphFixtures.grid(10, 10, SPACING), fallback);
+
+        RouteResult result = backend.snapToRoadsWithTwoPoints(Arrays.asList(gridPoint(0, 0), gridPoint(3, 4)),
+                backend.newLegDeadline());
+
+        assertNotNull(result);
+        assertTrue(result.isPacked());
+        assertEquals(8, result.getPointCount());
+        assertEquals(700, result.getDistance(), 2);
+        assertEquals(RoadGraphFixtures.gridLatitude(3, SPACING), result.getLatitude(7), 1e-6);
+        assertEquals(0, fallback.legCalls.get());
+        assertEquals(1, backend.getLegsRouted());
+    }
+
+    @Test
+    public void multipleWaypointsAreJoinedWithoutDuplicatesTest() {
+        OfflineRoutingBackend backend = new OfflineRoutingBackend(RoadGraphFixtures.grid(10, 10, SPACING), null);
+
+        RouteResult result = backend.snapToRoadsWithTwoPoints(
+                Arrays.asList(gridPoint(0, 0), gridPoint(0, 3), gridPoint(2, 3)), backend.newLegDeadline());
+
+        assertEquals(6, result.getPointCount());
+        assertEquals(500, result.getDistance(), 2);
+        assertEquals(2, backend.getLegsRouted());
+    }
+
+    @Test
+    public void legStartsAndEndsOnRoadNextToClicksTest() {
+        OfflineRoutingBackend backend = new OfflineRoutingBackend(RoadGraphFixtures.grid(10, 10, SPACING), null);
+        double metersPerDegreeLon = 111_320.0 * Math.cos(Math.toRadians(RoadGraphFixtures.ORIGIN_LAT));
+        // 40 m along the street on row 1, 10 m off it; then 60 m along row 4
+        GeoPosition from = new GeoPosition(RoadGraphFixtures.gridLatitude(1, SPACING) - 10 / 111_320.0,
+                RoadGraphFixtures.gridLongitude(2, SPACING) + 40 / metersPerDegreeLon);
+        GeoPosition to = new GeoPosition(RoadGraphFixtures.gridLatitude(4, SPACING),
+                RoadGraphFixtures.gridLongitude(5, SPACING) + 60 / metersPerDegreeLon);
+
+        RouteResult result = backend.snapToRoadsWithTwoPoints(Arrays.asList(from, to), backend.newLegDeadline());
+
+        assertEquals(RoadGraphFixtures.gridLatitude(1, SPACING), result.getLatitude(0), 1e-6);
+        assertEquals(from.getLongitude(), result.getLongitude(0), 1e-6);
+        int last = result.getPointCount() - 1;
+        assertEquals(to.getLatitude(), result.getLatitude(last), 1e-6);
+        assertEquals(to.getLongitude(), result.getLongitude(last), 1e-6);
+        // From 40 m past column 2 to node (1, 2), up to row 4, across to column 6, back 40 m
+        assertEquals(40 + 300 + 400 + 40, result.getDistance(), 3);
+    }
+
+    @Test
+    public void snapToNearestRoadProjectsOntoGraphTest() {
+        OfflineRoutingBackend backend = new OfflineRoutingBackend(RoadGraphFixtures.grid(5, 5, SPACING), null);
+        GeoPosition click = new GeoPosition(RoadGraphFixtures.gridLatitude(2, SPACING) + 15 / 111_320.0,
+                RoadGraphFixtures.gridLongitude(2, SPACING) + 0.0002);
+
+        GeoPosition snapped = backend.snapToNearestRoad(click);
+
+        assertEquals(RoadGraphFixtures.gridLatitude(2, SPACING), snapped.getLatitude(), 1e-6);
+        assertEquals(click.getLongitude(), snapped.getLongitude(), 1e-6);
+        assertNull(backend.snapToNearestRoad(new GeoPosition(45.0, -100.0)));
+    }
+
+    @Test
+    public void waypointOutsideGraphGoesToFallbackTest() {
+        FakeRoutingBackend fallback = new FakeRoutingBackend();
+        fallback.answer = RouteResult.fromArrays(new double[]{1, 2}, new double[]{3, 4}, null, 2, 0, 0, 42);
+        OfflineRoutingBackend backend = new OfflineRoutingBackend(RoadGraphFixtures.grid(5, 5, SPACING), fallback);
+
+        RouteResult result = backend.snapToRoadsWithTwoPoints(
+                Arrays.asList(gridPoint(0, 0), new GeoPosition(45.0, -100.0)), backend.newLegDeadline());
+
+        assertSame(fallback.answer, result);
+        assertEquals(1, fallback.legCalls.get());
+        assertEquals(1, backend.getFallbacks());
+    }
+
+    @Test
+    public void withoutFallbackUnroutableLegIsNullTest() {
+        OfflineRoutingBackend backend = new OfflineRoutingBackend(RoadGraphFixtures.grid(5, 5, SPACING), null);
+
+        assertNull(backend.snapToRoadsWithTwoPoints(
+                Arrays.asList(gridPoint(0, 0), new GeoPosition(45.0, -100.0)), backend.newLegDeadline()));
+    }
+
+    @Test
+    public void setProfileIsForwardedToFallbackTest() {
+        FakeRoutingBackend fallback = new FakeRoutingBackend();
+        OfflineRoutingBackend backend = new OfflineRoutingBackend(RoadGraphFixtures.grid(3, 3, SPACING), fallback);
+
+        backend.setProfile(RoutingAPI.RoutingProfile.CYCLING_REGULAR);
+
+        assertEquals(RoutingAPI.RoutingProfile.CYCLING_REGULAR, backend.getProfile());
+        assertEquals(RoutingAPI.RoutingProfile.CYCLING_REGULAR, fallback.profile);
+    }
+
+    @Test
+    public void roundTripStartsAndEndsAtStartTest() {
+        FakeRoutingBackend fallback = new FakeRoutingBackend();
+        OfflineRoutingBackend backend = new OfflineRoutingBackend(RoadGraphFixtures.grid(60, 60, SPACING), fallback);
+        GeoPosition start = gridPoint(30, 30);
+
+        RouteResult loop = backend.generateRoundTripWithAPI(start, 5.0, 5, 3, backend.newRoundTripDeadline());
+
+        assertNotNull(loop);
+        assertEquals(0, fallback.roundTripCalls.get());
+        int last = loop.getPointCount() - 1;
+        assertEquals(loop.getLatitude(0), loop.getLatitude(last), 1e-6);
+        assertEquals(loop.getLongitude(0), loop.getLongitude(last), 1e-6);
+        assertEquals(5000, loop.getDistance(), 5000 * 0.15);
+    }
+
+    @Test
+    public void sameSeedGivesSameLoopTest() {
+        OfflineRoutingBackend backend = new OfflineRoutingBackend(RoadGraphFixtures.grid(40, 40, SPACING), null);
+        GeoPosition start = gridPoint(20, 20);
+
+        RouteResult first = backend.generateLoop(start, 3000, 4, 11, RoutingAPI.RoutingProfile.FOOT_WALKING, null);
+        RouteResult second = backend.generateLoop(start, 3000, 4, 11, RoutingAPI.RoutingProfile.FOOT_WALKING, null);
+
+        assertEquals(first.getPointCount(), second.getPointCount());
+        assertEquals(first.getDistance(), second.getDistance());
+    }
+
+    @Test
+    public void loopHasOneLegPerViaPointPlusReturnTest() {
+        OfflineRoutingBackend backend = new OfflineRoutingBackend(RoadGraphFixtures.grid(40, 40, SPACING), null);
+
+        for (int viaPoints : new int[]{3, 5, 10}) {
+            long before = backend.getLegsRouted();
+            assertNotNull(backend.generateLoop(gridPoint(20, 20), 3000, viaPoints, 5,
+                    RoutingAPI.RoutingProfile.FOOT_WALKING, null));
+            assertEquals(viaPoints + 1, backend.getLegsRouted() - before);
+        }
+    }
+
+    @Test
+    public void parallelLegsMatchLegsRoutedOneByOneTest() {
+        OfflineRoutingBackend backend = new OfflineRoutingBackend(RoadGraphFixtures.grid(30, 30, SPACING), null);
+        List<GeoPosition> waypoints = Arrays.asList(gridPoint(0, 0), gridPoint(20, 5), gridPoint(3, 25),
+                gridPoint(29, 29), gridPoint(10, 10));
+
+        RouteResult together = backend.snapToRoadsWithTwoPoints(waypoints, backend.newLegDeadline());
+        double separately = 0;
+        for (int i = 1; i < waypoints.size(); i++) {
+            separately += backend.snapToRoadsWithTwoPoints(waypoints.subList(i - 1, i + 1),
+                    backend.newLegDeadline()).getDistance();
+        }
+
+        assertEquals(separately, together.getDistance(), 1e-3);
+    }
+
+    @Test
+    public void concurrentRoundTripsAreConsistentTest() throws Exception {
+        OfflineRoutingBackend backend = new OfflineRoutingBackend(RoadGraphFixtures.grid(50, 50, SPACING), null);
+        GeoPosition start = gridPoint(25, 25);
+        RouteResult expected = backend.generateLoop(start, 4000, 5, 9, RoutingAPI.RoutingProfile.FOOT_WALKING, null);
+
+        ExecutorService pool = Executors.newFixedThreadPool(6);
+        try {
+            List<Future<RouteResult>> futures = new ArrayList<>();
+            for (int i = 0; i < 12; i++) {
+                futures.add(pool.submit(() -> backend.generateLoop(start, 4000, 5, 9,
+                        RoutingAPI.RoutingProfile.FOOT_WALKING, null)));
+            }
+            for (Future<RouteResult> future : futures) {
+                assertEquals(expected.getDistance(), future.get().getDistance(), 1e-9);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void roundTripFinishesWellUnderOneSecondTest() {
+        OfflineRoutingBackend backend = new OfflineRoutingBackend(RoadGraphFixtures.grid(200, 200, 50), null);
+        GeoPosition start = new GeoPosition(RoadGraphFixtures.gridLatitude(100, 50), RoadGraphFixtures.gridLongitude(100, 50));
+        backend.generateRoundTripWithAPI(start, 5.0, 5, 1, backend.newRoundTripDeadline());
+
+        long begin = System.nanoTime();
+        RouteResult loop = backend.generateRoundTripWithAPI(start, 5.0, 10, 2, backend.newRoundTripDeadline());
+        long millis = (System.nanoTime() - begin) / 1_000_000;
+
+        assertNotNull(loop);
+        assertTrue(millis < 1000, "took " + millis + " ms");
+    }
+
+    @Test
+    public void bestRoundTripRanksSeedsTest() throws InterruptedException {
+        OfflineRoutingBackend backend = new OfflineRoutingBackend(RoadGraphFixtures.grid(60, 60, SPACING), null);
+
+        RoundTripSearch.Result result = backend.generateBestRoundTrip(gridPoint(30, 30), 4.0, 4,
+                RoundTripSearch.seedsFrom(1, 3), new RoundTripScorer(4000, false, 1000),
+                backend.newRoundTripDeadline());
+
+        assertFalse(result.getCandidates().isEmpty());
+        assertNotNull(result.getBestResult());
+    }
+
+    @Test
+    public void matrixIsComputedOnGraphAndCachedTest() {
+        FakeRoutingBackend fallback = new FakeRoutingBackend();
+        OfflineRoutingBackend backend = new OfflineRoutingBackend(RoadGraphFixtures.grid(10, 10, SPACING), fallback);
+        List<GeoPosition> stops = Arrays.asList(gridPoint(0, 0), gridPoint(3, 4), gridPoint(0, 4));
+
+        DistanceMatrix matrix = backend.computeMatrix(stops, backend.newLegDeadline());
+
+        assertEquals(3, matrix.size());
+        assertEquals(700, matrix.getMeters(0, 1), 2);
+        assertEquals(300, matrix.getMeters(1, 2), 2);
+        assertEquals(matrix.getSeconds(0, 2), matrix.getSeconds(2, 0), 1e-9);
+        assertEquals(0, fallback.matrixCalls.get());
+        assertSame(matrix, backend.computeMatrix(stops, backend.newLegDeadline()));
+        assertEquals(1, backend.getMatrixCache().getHits());
+    }
+
+    @Test
+    public void matrixWithStopOffTheGraphGoesToFallbackTest() {
+        FakeRoutingBackend fallback = new FakeRoutingBackend();
+        OfflineRoutingBackend backend = new OfflineRoutingBackend(RoadGraphFixtures.grid(10, 10, SPACING), fallback);
+
+        DistanceMatrix matrix = backend.computeMatrix(Arrays.asList(gridPoint(0, 0), new GeoPosition(0, 0)),
+                backend.newLegDeadline());
+
+        assertEquals("straight lines", matrix.getSource());
+        assertEquals(1, fallback.matrixCalls.get());
+        assertEquals(1, backend.getFallbacks());
+    }
+}
@@ -0,0 +1,179 @@
+package org.example;
+
+import org.jxmapviewer.viewer.GeoPosition;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * Measures leg routing on a metro-sized synthetic road grid with {@link BidirectionalAStar},
+ * against a plain one-directional Dijkstra over the same graph, click snapping with
+ * {@link RoadSnapIndex}, and local round-trip generation with {@link OfflineRoutingBackend}.
+ *
+ * Not a unit test; run it after test-compile with
+ * {@code java -Xmx2g -cp target/classes:target/test-classes:<jxmapviewer2 jar> org.example.OfflineRoutingBenchmark}.
+ * Prints the graph size, per routing method the time and nodes settled per query, the time
+ * per snap, and the time per calibrated loop. Last, it routes a smaller grid whose streets bend
+ * through shape nodes, once as imported and once with the shape nodes collapsed into edges.
+ */
+public class OfflineRoutingBenchmark {
+
+    private static final int GRID_SIZE = 800;
+    private static final double SPACING_METERS = 60;
+    private static final int QUERIES = 200;
+    private static final int DIJKSTRA_QUERIES = 20;
+    private static final int SNAPS = 1_000_000;
+    private static final int ROUND_TRIPS = 10;
+    private static final int SHAPE_GRID_SIZE = 300;
+    private static final int SHAPE_NODES_PER_STREET = 4;
+
+    public static void main(String[] args) {
+        long buildStart = System.nanoTime();
+        RoadGraph graph = RoadGraphFixtures.grid(GRID_SIZE, GRID_SIZE, SPACING_METERS);
+        System.out.printf("%s, built in %d ms%n%n", graph.describe(), (System.nanoTime() - buildStart) / 1_000_000);
+
+        Random random = new Random(42);
+        int[][] pairs = new int[QUERIES][2];
+        for (int[] pair : pairs) {
+            pair[0] = random.nextInt(graph.getNodeCount());
+            pair[1] = random.nextInt(graph.getNodeCount());
+        }
+
+        BidirectionalAStar search = new BidirectionalAStar(graph);
+        for (RoutingAPI.RoutingProfile profile : RoutingAPI.RoutingProfile.values()) {
+            // Warm up, then measure
+            for (int[] pair : pairs) search.route(pair[0], pair[1], profile, null);
+            long settledBefore = search.getNodesSettled();
+            double km = 0;
+            long start = System.nanoTime();
+            for (int[] pair : pairs) km += search.route(pair[0], pair[1], profile, null).getMeters() / 1000;
+            double ms = (System.nanoTime() - start) / 1e6 / QUERIES;
+            System.out.printf("%-32s %8.2f ms/query %10.0f settled/query  (avg %.1f km)%n",
+                    "bidirectional A* " + profile.getValue(), ms,
+                    (double) (search.getNodesSettled() - settledBefore) / QUERIES, km / QUERIES);
+        }
+
+        RoutingAPI.RoutingProfile profile = RoutingAPI.RoutingProfile.FOOT_WALKING;
+        long[] settled = new long[1];
+        for (int i = 0; i < DIJKSTRA_QUERIES; i++) dijkstra(graph, pairs[i][0], pairs[i][1], profile, settled);
+        settled[0] = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < DIJKSTRA_QUERIES; i++) dijkstra(graph, pairs[i][0], pairs[i][1], profile, settled);
+        double ms = (System.nanoTime() - start) / 1e6 / DIJKSTRA_QUERIES;
+        System.out.printf("%-32s %8.2f ms/query %10.0f settled/query%n", "dijkstra " + profile.getValue(), ms,
+                (double) settled[0] / DIJKSTRA_QUERIES);
+
+        measureSnapping(graph, random);
+        measureRoundTrips(graph);
+
+        graph = null;
+        measureShapeNodes(random);
+    }
+
+    private static void measureShapeNodes(Random random) {
+        System.out.println();
+        int[][] pairs = null;
+        for (boolean collapse : new boolean[]{false, true}) {
+            RoadGraph graph = RoadGraphFixtures.gridWithShapeNodes(SHAPE_GRID_SIZE, SHAPE_GRID_SIZE, SPACING_METERS,
+                    SHAPE_NODES_PER_STREET, collapse);
+            System.out.println(graph.describe());
+            if (pairs == null) {
+                // Same pairs for both graphs; node ids do not change when collapsing
+                pairs = new int[QUERIES][2];
+                for (int[] pair : pairs) {
+                    pair[0] = random.nextInt(graph.getNodeCount());
+                    pair[1] = random.nextInt(graph.getNodeCount());
+                }
+            }
+            BidirectionalAStar search = new BidirectionalAStar(graph);
+            RoutingAPI.RoutingProfile profile = RoutingAPI.RoutingProfile.DRIVING_CAR;
+            for (int[] pair : pairs) search.route(pair[0], pair[1], profile, null);
+            long settledBefore = search.getNodesSettled();
+            long start = System.nanoTime();
+            for (int[] pair : pairs) search.route(pair[0], pair[1], profile, null);
+            System.out.printf("%-32s %8.2f ms/query %10.0f settled/query%n",
+                    (collapse ? "collapsed " : "shape nodes ") + profile.getValue(),
+                    (System.nanoTime() - start) / 1e6 / QUERIES,
+                    (double) (search.getNodesSettled() - settledBefore) / QUERIES);
+        }
+    }
+
+    private static void measureRoundTrips(RoadGraph graph) {
+        OfflineRoutingBackend backend = new OfflineRoutingBackend(graph, null);
+        GeoPosition start = new GeoPosition(RoadGraphFixtures.gridLatitude(GRID_SIZE / 2, SPACING_METERS),
+                RoadGraphFixtures.gridLongitude(GRID_SIZE / 2, SPACING_METERS));
+        System.out.println();
+        for (double km : new double[]{5, 10, 21}) {
+            for (int viaPoints : new int[]{3, 10}) {
+                // Warm up, then measure
+                for (int seed = 0; seed < ROUND_TRIPS; seed++) {
+                    backend.generateRoundTripWithAPI(start, km, viaPoints, seed, backend.newRoundTripDeadline());
+                }
+                double actualKm = 0;
+                long begin = System.nanoTime();
+                for (int seed = 0; seed < ROUND_TRIPS; seed++) {
+                    actualKm += backend.generateRoundTripWithAPI(start, km, viaPoints, seed,
+                            backend.newRoundTripDeadline()).getDistance() / 1000;
+                }
+                System.out.printf("%-32s %8.2f ms/loop  (avg %.2f km)%n",
+                        String.format("round trip %.0f km, %d via", km, viaPoints),
+                        (System.nanoTime() - begin) / 1e6 / ROUND_TRIPS, actualKm / ROUND_TRIPS);
+            }
+        }
+    }
+
+    private static void measureSnapping(RoadGraph graph, Random random) {
+        long buildStart = System.nanoTime();
+        RoadSnapIndex index = new RoadSnapIndex(graph);
+        System.out.printf("%nsnap index: %,d segments, ~%d MB, built in %d ms%n", index.getSegmentCount(),
+                index.estimateHeapBytes() >> 20, (System.nanoTime() - buildStart) / 1_000_000);
+
+        double[] latitudes = new double[SNAPS];
+        double[] longitudes = new double[SNAPS];
+        double maxLat = RoadGraphFixtures.gridLatitude(GRID_SIZE - 1, SPACING_METERS);
+        double maxLon = RoadGraphFixtures.gridLongitude(GRID_SIZE - 1, SPACING_METERS);
+        for (int i = 0; i < SNAPS; i++) {
+            latitudes[i] = RoadGraphFixtures.ORIGIN_LAT + random.nextDouble() * (maxLat - RoadGraphFixtures.ORIGIN_LAT);
+            longitudes[i] = RoadGraphFixtures.ORIGIN_LON + random.nextDouble() * (maxLon - RoadGraphFixtures.ORIGIN_LON);
+        }
+        for (int round = 0; round < 2; round++) {
+            double meters = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < SNAPS; i++) {
+                meters += index.nearest(latitudes[i], longitudes[i], RoadGraph.ACCESS_FOOT, 500).getMeters();
+            }
+            if (round == 1) {
+                System.out.printf("%-32s %8.2f us/snap  (avg %.1f m to road)%n", "snap index",
+                        (System.nanoTime() - start) / 1e3 / SNAPS, meters / SNAPS);
+            }
+        }
+    }
+
+    private static double dijkstra(RoadGraph graph, int source, int target, RoutingAPI.RoutingProfile profile,
+                                   long[] settled) {
+        int accessMask = RoadGraph.accessMaskFor(profile);
+        double[] cost = new double[graph.getNodeCount()];
+        Arrays.fill(cost, Double.POSITIVE_INFINITY);
+        cost[source] = 0;
+        PriorityQueue<double[]> queue = new PriorityQueue<>((a, b) -> Double.compare(a[0], b[0]));
+        queue.add(new double[]{0, source});
+        while (!queue.isEmpty()) {
+            double[] top = queue.poll();
+            int node = (int) top[1];
+            if (top[0] > cost[node]) continue;
+            settled[0]++;
+            if (node == target) return cost[node];
+            for (int e = graph.edgeStart(node); e < graph.edgeEnd(node); e++) {
+                if (!graph.edgeAllows(e, accessMask)) continue;
+                double next = cost[node] + graph.edgeMeters(e) / (graph.edgeClass(e).speedKmh(profile) / 3.6);
+                int to = graph.edgeTarget(e);
+                if (next < cost[to]) {
+                    cost[to] = next;
+                    queue.add(new double[]{next, to});
+                }
+            }
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+}
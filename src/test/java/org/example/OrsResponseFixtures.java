@@ -0,0 +1,164 @@
+package org.example;
+
+import java.util.Locale;
+
+/**
+ * Builds OpenRouteService-shaped GeoJSON, encoded-polyline and matrix responses for tests
+ * and benchmarks.
+ *
+ * The layout mirrors what /v2/directions/{profile}/geojson and /json return (bbox,
+ * per-segment distances before the summary, metadata echoing the query coordinates) so
+ * parsers are exercised against the same key order they see in production.
+ */
+public final class OrsResponseFixtures {
+
+    private OrsResponseFixtures() {}
+
+    public static String directionsGeoJson(int pointCount, double ascent, double descent, double distance) {
+        return directionsGeoJson(syntheticTrack(pointCount), ascent, descent, distance);
+    }
+
+    public static String directionsGeoJson(double[][] lonLatEle, double ascent, double descent, double distance) {
+        StringBuilder sb = new StringBuilder(64 + lonLatEle.length * 40);
+        sb.append("{\"type\":\"FeatureCollection\",\"bbox\":[8.681423,49.414599,107.0,8.690123,49.420514,119.6],");
+        sb.append("\"features\":[{\"bbox\":[8.681423,49.414599,8.690123,49.420514],\"type\":\"Feature\",");
+        sb.append("\"properties\":{\"ascent\":").append(fmt(ascent)).append(",\"descent\":").append(fmt(descent));
+        sb.append(",\"segments\":[{\"distance\":").append(fmt(distance / 2)).append(",\"duration\":431.2,");
+        sb.append("\"steps\":[{\"distance\":12.3,\"duration\":8.9,\"type\":11,\"instruction\":\"Head \\\"north\\\"\",");
+        sb.append("\"name\":\"-\",\"way_points\":[0,1]}]}],");
+        sb.append("\"summary\":{\"distance\":").append(fmt(distance)).append(",\"duration\":862.4,");
+        sb.append("\"ascent\":").append(fmt(ascent)).append(",\"descent\":").append(fmt(descent)).append("},");
+        sb.append("\"way_points\":[0,").append(Math.max(0, lonLatEle.length - 1)).append("]},");
+        sb.append("\"geometry\":{\"coordinates\":[");
+        for (int i = 0; i < lonLatEle.length; i++) {
+            if (i > 0) sb.append(',');
+            sb.append('[').append(fmt(lonLatEle[i][0])).append(',').append(fmt(lonLatEle[i][1]));
+            if (lonLatEle[i].length > 2) {
+                sb.append(',').append(fmt(lonLatEle[i][2]));
+            }
+            sb.append(']');
+        }
+        sb.append("],\"type\":\"LineString\"}}],");
+        sb.append("\"metadata\":{\"attribution\":\"openrouteservice.org | OpenStreetMap contributors\",");
+        sb.append("\"service\":\"routing\",\"timestamp\":1700000000000,\"query\":{\"coordinates\":");
+        sb.append("[[1.0,2.0],[3.0,4.0]],\"profile\":\"foot-walking\",\"format\":\"geojson\",\"elevation\":true},");
+        sb.append("\"engine\":{\"version\":\"7.1.0\"}}}");
+        return sb.toString();
+    }
+
+    public static String directionsPolylineJson(int pointCount, double ascent, double descent, double distance) {
+        return directionsPolylineJson(syntheticTrack(pointCount), ascent, descent, distance);
+    }
+
+    public static String directionsPolylineJson(double[][] lonLatEle, double ascent, double descent, double distance) {
+        StringBuilder sb = new StringBuilder(256 + lonLatEle.length * 8);
+        sb.append("{\"bbox\":[8.681423,49.414599,107.0,8.690123,49.420514,119.6],\"routes\":[{");
+        sb.append("\"summary\":{\"distance\":").append(fmt(distance)).append(",\"duration\":862.4,");
+        sb.append("\"ascent\":").append(fmt(ascent)).append(",\"descent\":").append(fmt(descent)).append("},");
+        sb.append("\"segments\":[{\"distance\":").append(fmt(distance / 2)).append(",\"duration\":431.2,");
+        sb.append("\"steps\":[{\"distance\":12.3,\"duration\":8.9,\"type\":11,\"instruction\":\"Head \\\"north\\\"\",");
+        sb.append("\"name\":\"-\",\"way_points\":[0,1]}]}],");
+        sb.append("\"bbox\":[8.681423,49.414599,8.690123,49.420514],");
+        sb.append("\"geometry\":\"").append(encodePolyline(lonLatEle).replace("\\", "\\\\")).append("\",");
+        sb.append("\"way_points\":[0,").append(Math.max(0, lonLatEle.length - 1)).append("]}],");
+        sb.append("\"metadata\":{\"attribution\":\"openrouteservice.org | OpenStreetMap contributors\",");
+        sb.append("\"service\":\"routing\",\"timestamp\":1700000000000,\"query\":{\"coordinates\":");
+        sb.append("[[1.0,2.0],[3.0,4.0]],\"profile\":\"foot-walking\",\"format\":\"json\",\"elevation\":true},");
+        sb.append("\"engine\":{\"version\":\"7.1.0\"}}}");
+        return sb.toString();
+    }
+
+    /**
+     * Encodes [lon, lat, ele] points the way ORS does: latitude and longitude at 1e-5 degrees,
+     * elevation (when present on the first point) in centimetres.
+     */
+    public static String encodePolyline(double[][] lonLatEle) {
+        boolean withElevation = lonLatEle.length > 0 && lonLatEle[0].length > 2;
+        StringBuilder sb = new StringBuilder();
+        long lastLat = 0;
+        long lastLon = 0;
+        long lastEle = 0;
+        for (double[] point : lonLatEle) {
+            long lat = Math.round(point[1] * 1e5);
+            long lon = Math.round(point[0] * 1e5);
+            encodeValue(sb, lat - lastLat);
+            encodeValue(sb, lon - lastLon);
+            lastLat = lat;
+            lastLon = lon;
+            if (withElevation) {
+                long ele = Math.round(point[2] * 100);
+                encodeValue(sb, ele - lastEle);
+                lastEle = ele;
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void encodeValue(StringBuilder sb, long value) {
+        long v = value < 0 ? ~(value << 1) : value << 1;
+        while (v >= 0x20) {
+            sb.append((char) ((0x20 | (v & 0x1f)) + 63));
+            v >>= 5;
+        }
+        sb.append((char) (v + 63));
+    }
+
+    /**
+     * A /v2/matrix/{profile} response; NaN entries are written as null, the way ORS reports
+     * pairs it cannot route.
+     */
+    public static String matrixJson(double[][] durations, double[][] distances) {
+        StringBuilder sb = new StringBuilder(64 + durations.length * durations.length * 16);
+        sb.append("{\"durations\":");
+        appendRows(sb, durations);
+        sb.append(",\"distances\":");
+        appendRows(sb, distances);
+        sb.append(",\"metadata\":{\"attribution\":\"openrouteservice.org\",\"service\":\"matrix\",");
+        sb.append("\"engine\":{\"version\":\"7.1.0\"}}}");
+        return sb.toString();
+    }
+
+    private static void appendRows(StringBuilder sb, double[][] rows) {
+        sb.append("[");
+        for (int i = 0; i < rows.length; i++) {
+            if (i > 0) sb.append(",");
+            sb.append("[");
+            for (int j = 0; j < rows[i].length; j++) {
+                if (j > 0) sb.append(",");
+                sb.append(Double.isNaN(rows[i][j]) ? "null" : fmt(round(rows[i][j], 2)));
+            }
+            sb.append("]");
+        }
+        sb.append("]");
+    }
+
+    /**
+     * A deterministic meandering track starting in Heidelberg, with ~5 m spacing and a
+     * gently varying elevation profile.
+     */
+    public static double[][] syntheticTrack(int pointCount) {
+        double[][] track = new double[pointCount][];
+        double lon = 8.681495;
+        double lat = 49.41461;
+        for (int i = 0; i < pointCount; i++) {
+            double heading = Math.sin(i / 40.0) * 1.2 + i / 900.0;
+            lon += Math.cos(heading) * 0.00006;
+            lat += Math.sin(heading) * 0.00004;
+            double ele = 110 + 25 * Math.sin(i / 300.0) + 3 * Math.sin(i / 7.0);
+            track[i] = new double[]{round(lon, 6), round(lat, 6), round(ele, 1)};
+        }
+        return track;
+    }
+
+    private static double round(double value, int decimals) {
+        double scale = Math.pow(10, decimals);
+        return Math.round(value * scale) / scale;
+    }
+
+    private static String fmt(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return String.format(Locale.ROOT, "%.1f", value);
+        }
+        return Double.toString(value);
+    }
+}
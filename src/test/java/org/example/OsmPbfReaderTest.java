@@ -0,0 +1,118 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OsmPbfReaderTest {
+
+    private static RoadGraphFixtures.PbfWriter threeNodeStreet() {
+        return new RoadGraphFixtures.PbfWriter()
+                .node(10, 40.0, -105.0)
+                .node(11, 40.001, -105.0)
+                .node(12, 40.002, -105.0)
+                .node(99, 41.0, -106.0)
+                .way(new long[]{10, 11, 12}, "highway", "residential", "name", "Pearl St");
+    }
+
+    @Test
+    public void readsHighwayWayIntoGraphTest() throws IOException {
+        RoadGraph graph = OsmPbfReader.read(threeNodeStreet().toBytes());
+
+        // Node 99 is not on any road and is left out; node 11 only shapes the street
+        assertEquals(3, graph.getNodeCount());
+        assertEquals(2, graph.getEdgeCount());
+        assertEquals(1, graph.getShapeNodeCount());
+        assertEquals(40.001, graph.getLatitude(1), 1e-7);
+        assertEquals(-105.0, graph.getLongitude(1), 1e-7);
+    }
+
+    @Test
+    public void readsUncompressedBlobsTest() throws IOException {
+        RoadGraph graph = OsmPbfReader.read(threeNodeStreet().uncompressed().toBytes());
+
+        assertEquals(3, graph.getNodeCount());
+    }
+
+    @Test
+    public void skipsNonRoadAndPrivateWaysTest() throws IOException {
+        byte[] data = new RoadGraphFixtures.PbfWriter()
+                .node(1, 40.0, -105.0)
+                .node(2, 40.001, -105.0)
+                .node(3, 40.002, -105.0)
+                .way(new long[]{1, 2}, "building", "yes")
+                .way(new long[]{2, 3}, "highway", "service", "access", "private")
+                .way(new long[]{1, 3}, "highway", "proposed")
+                .toBytes();
+
+        assertEquals(0, OsmPbfReader.read(data).getNodeCount());
+    }
+
+    @Test
+    public void sharedNodesJoinWaysTest() throws IOException {
+        byte[] data = new RoadGraphFixtures.PbfWriter()
+                .node(1, 40.0, -105.0)
+                .node(2, 40.001, -105.0)
+                .node(3, 40.001, -104.999)
+                .way(new long[]{1, 2}, "highway", "primary")
+                .way(new long[]{2, 3}, "highway", "footway")
+                .toBytes();
+        RoadGraph graph = OsmPbfReader.read(data);
+
+        assertEquals(3, graph.getNodeCount());
+        BidirectionalAStar.Path path = new BidirectionalAStar(graph).route(0, 2, RoutingAPI.RoutingProfile.FOOT_WALKING, null);
+        assertEquals(3, path.getNodeCount());
+    }
+
+    @Test
+    public void onewayAndRoundaboutTagsAreAppliedTest() throws IOException {
+        byte[] data = new RoadGraphFixtures.PbfWriter()
+                .node(1, 40.0, -105.0)
+                .node(2, 40.001, -105.0)
+                .node(3, 40.002, -105.0)
+                .node(4, 40.003, -105.0)
+                .way(new long[]{1, 2}, "highway", "residential", "oneway", "yes")
+                .way(new long[]{2, 3}, "highway", "residential", "junction", "roundabout")
+                .way(new long[]{3, 4}, "highway", "residential", "oneway", "-1")
+                .toBytes();
+        RoadGraph graph = OsmPbfReader.read(data);
+        BidirectionalAStar search = new BidirectionalAStar(graph);
+
+        assertNotNull(search.route(0, 2, RoutingAPI.RoutingProfile.DRIVING_CAR, null));
+        assertNull(search.route(2, 0, RoutingAPI.RoutingProfile.DRIVING_CAR, null));
+        assertNotNull(search.route(3, 2, RoutingAPI.RoutingProfile.DRIVING_CAR, null));
+        assertNull(search.route(2, 3, RoutingAPI.RoutingProfile.DRIVING_CAR, null));
+    }
+
+    @Test
+    public void wayCutAtMissingNodeTest() throws IOException {
+        byte[] data = new RoadGraphFixtures.PbfWriter()
+                .node(1, 40.0, -105.0)
+                .node(3, 40.002, -105.0)
+                .node(4, 40.003, -105.0)
+                .way(new long[]{1, 2, 3, 4}, "highway", "residential")
+                .toBytes();
+        RoadGraph graph = OsmPbfReader.read(data);
+
+        assertEquals(2, graph.getNodeCount());
+        assertEquals(2, graph.getEdgeCount());
+    }
+
+    @Test
+    public void unsupportedRequiredFeatureIsRejectedTest() throws IOException {
+        byte[] data = threeNodeStreet().requiredFeature("HistoricalInformation").toBytes();
+
+        IOException error = assertThrows(IOException.class, () -> OsmPbfReader.read(data));
+        assertTrue(error.getMessage().contains("HistoricalInformation"));
+    }
+
+    @Test
+    public void truncatedFileIsRejectedTest() throws IOException {
+        byte[] data = threeNodeStreet().toBytes();
+        byte[] truncated = java.util.Arrays.copyOf(data, data.length - 5);
+
+        assertThrows(IOException.class, () -> OsmPbfReader.read(truncated));
+    }
+}
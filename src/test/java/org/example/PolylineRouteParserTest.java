@@ -0,0 +1,116 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PolylineRouteParserTest {
+
+    private PolylineRouteParser parse(String json, boolean withElevation) throws IOException {
+        return PolylineRouteParser.parse(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), withElevation);
+    }
+
+    // -------------------------------------------------------------
+    // decode(...) tests
+    // -------------------------------------------------------------
+
+    @Test
+    public void decodeReadsReferencePolylineTest() throws IOException {
+        // Example from the polyline algorithm documentation
+        PolylineRouteParser parser = PolylineRouteParser.decode("_p~iF~ps|U_ulLnnqC_mqNvxq`@", false);
+
+        assertEquals(3, parser.getPointCount());
+        assertEquals(38.5, parser.getLatitude(0), 1e-9);
+        assertEquals(-120.2, parser.getLongitude(0), 1e-9);
+        assertEquals(40.7, parser.getLatitude(1), 1e-9);
+        assertEquals(-120.95, parser.getLongitude(1), 1e-9);
+        assertEquals(43.252, parser.getLatitude(2), 1e-9);
+        assertEquals(-126.453, parser.getLongitude(2), 1e-9);
+        assertFalse(parser.hasElevation());
+        assertTrue(Double.isNaN(parser.getElevation(0)));
+    }
+
+    @Test
+    public void decodeReadsElevationInCentimetresTest() throws IOException {
+        double[][] track = {{8.68149, 49.41461, 107.25}, {8.68651, 49.41943, 111.9}, {8.68787, 49.42032, 98.0}};
+
+        PolylineRouteParser parser = PolylineRouteParser.decode(OrsResponseFixtures.encodePolyline(track), true);
+
+        assertEquals(3, parser.getPointCount());
+        assertEquals(49.41943, parser.getLatitude(1), 1e-9);
+        assertEquals(8.68787, parser.getLongitude(2), 1e-9);
+        assertEquals(107.25, parser.getElevation(0), 1e-4);
+        assertEquals(98.0, parser.getElevation(2), 1e-4);
+    }
+
+    @Test
+    public void decodeRejectsTruncatedPolylineTest() {
+        String encoded = OrsResponseFixtures.encodePolyline(new double[][]{{8.68149, 49.41461, 107.0}});
+
+        assertThrows(IOException.class, () -> PolylineRouteParser.decode(encoded.substring(0, encoded.length() - 1), true));
+    }
+
+    @Test
+    public void decodeRejectsCharactersOutsidePolylineAlphabetTest() {
+        assertThrows(IOException.class, () -> PolylineRouteParser.decode("_p~iF ~ps|U", false));
+    }
+
+    // -------------------------------------------------------------
+    // response tests
+    // -------------------------------------------------------------
+
+    @Test
+    public void parseReadsGeometryAndSummaryFromFirstRouteTest() throws IOException {
+        double[][] track = OrsResponseFixtures.syntheticTrack(250);
+
+        PolylineRouteParser parser = parse(OrsResponseFixtures.directionsPolylineJson(track, 9.0, 4.0, 1250.0), true);
+
+        assertEquals(250, parser.getPointCount());
+        assertEquals(9.0, parser.getAscent(), 1e-9);
+        assertEquals(4.0, parser.getDescent(), 1e-9);
+        assertEquals(1250.0, parser.getDistance(), 1e-9);
+        for (int i = 0; i < track.length; i++) {
+            assertEquals(track[i][0], parser.getLongitude(i), 1e-5);
+            assertEquals(track[i][1], parser.getLatitude(i), 1e-5);
+            assertEquals(track[i][2], parser.getElevation(i), 1e-4);
+        }
+    }
+
+    @Test
+    public void parseMatchesGeoJsonParserOnSameTrackTest() throws IOException {
+        double[][] track = OrsResponseFixtures.syntheticTrack(1000);
+
+        RouteResult polyline = parse(OrsResponseFixtures.directionsPolylineJson(track, 1, 2, 3), true).toRouteResult();
+        RouteResult geoJson = GeoJsonRouteParser.parse(
+                OrsResponseFixtures.directionsGeoJson(track, 1, 2, 3).getBytes(StandardCharsets.UTF_8)).toRouteResult();
+
+        assertEquals(geoJson.getPointCount(), polyline.getPointCount());
+        for (int i = 0; i < geoJson.getPointCount(); i++) {
+            assertEquals(geoJson.getLatitude(i), polyline.getLatitude(i), 1e-5);
+            assertEquals(geoJson.getLongitude(i), polyline.getLongitude(i), 1e-5);
+            assertEquals(geoJson.getElevation(i), polyline.getElevation(i), 1e-2);
+        }
+        assertEquals(geoJson.getDistance(), polyline.getDistance(), 1e-9);
+    }
+
+    @Test
+    public void parseFlagsErrorResponsesTest() throws IOException {
+        PolylineRouteParser parser = parse("{\"error\":{\"code\":2010,\"message\":\"Could not find point\"}}", true);
+
+        assertTrue(parser.hasErrorField());
+        assertEquals(0, parser.getPointCount());
+    }
+
+    @Test
+    public void toRouteResultIsPackedWithElevationsTest() throws IOException {
+        RouteResult result = parse(OrsResponseFixtures.directionsPolylineJson(10, 1, 1, 50), true).toRouteResult();
+
+        assertTrue(result.isPacked());
+        assertTrue(result.hasPointElevations());
+        assertEquals(10, result.getPointCount());
+    }
+}
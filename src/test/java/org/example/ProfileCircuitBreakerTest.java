@@ -0,0 +1,147 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProfileCircuitBreakerTest {
+
+    private static ProfileCircuitBreaker breaker() {
+        ProfileCircuitBreaker breaker = new ProfileCircuitBreaker("foot-walking", 4);
+        breaker.setThresholds(4, 0.5, 0.5, 1000);
+        return breaker;
+    }
+
+    private static void fail(ProfileCircuitBreaker breaker, int times) {
+        for (int i = 0; i < times; i++) {
+            assertTrue(breaker.tryAcquirePermission());
+            breaker.recordFailure();
+        }
+    }
+
+    private static void succeed(ProfileCircuitBreaker breaker, int times, long latencyMillis) {
+        for (int i = 0; i < times; i++) {
+            assertTrue(breaker.tryAcquirePermission());
+            breaker.recordSuccess(latencyMillis);
+        }
+    }
+
+    // -------------------------------------------------------------
+    // closed -> open tests
+    // -------------------------------------------------------------
+
+    @Test
+    public void staysClosedBelowMinimumCallsTest() {
+        ProfileCircuitBreaker breaker = breaker();
+
+        fail(breaker, 3);
+
+        assertEquals(ProfileCircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void opensWhenFailureRateReachesThresholdTest() {
+        ProfileCircuitBreaker breaker = breaker();
+
+        succeed(breaker, 2, 10);
+        fail(breaker, 2);
+
+        assertEquals(ProfileCircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(1, breaker.getTimesOpened());
+    }
+
+    @Test
+    public void opensWhenTooManyCallsAreSlowTest() {
+        ProfileCircuitBreaker breaker = breaker();
+
+        succeed(breaker, 2, 10);
+        succeed(breaker, 2, 5000);
+
+        assertEquals(ProfileCircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void ignoredOutcomesDoNotCountTest() {
+        ProfileCircuitBreaker breaker = breaker();
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(breaker.tryAcquirePermission());
+            breaker.recordIgnored();
+        }
+
+        assertEquals(ProfileCircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(0.0, breaker.getFailureRate(), 1e-9);
+    }
+
+    // -------------------------------------------------------------
+    // open / half-open tests
+    // -------------------------------------------------------------
+
+    @Test
+    public void openBreakerRejectsRequestsImmediatelyTest() {
+        ProfileCircuitBreaker breaker = breaker();
+        fail(breaker, 4);
+
+        assertFalse(breaker.tryAcquirePermission());
+        assertThrows(ProfileCircuitBreaker.CircuitOpenException.class, breaker::acquirePermission);
+        assertEquals(2, breaker.getCallsRejected());
+    }
+
+    @Test
+    public void halfOpenAllowsOneTrialAndClosesOnFastSuccessTest() throws InterruptedException {
+        ProfileCircuitBreaker breaker = breaker();
+        breaker.setOpenMillis(20);
+        fail(breaker, 4);
+        Thread.sleep(40);
+
+        assertEquals(ProfileCircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.tryAcquirePermission());
+        assertFalse(breaker.tryAcquirePermission());
+
+        breaker.recordSuccess(10);
+
+        assertEquals(ProfileCircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(0.0, breaker.getFailureRate(), 1e-9);
+    }
+
+    @Test
+    public void halfOpenReopensOnFailedTrialTest() throws InterruptedException {
+        ProfileCircuitBreaker breaker = breaker();
+        breaker.setOpenMillis(20);
+        fail(breaker, 4);
+        Thread.sleep(40);
+
+        assertTrue(breaker.tryAcquirePermission());
+        breaker.recordFailure();
+
+        assertEquals(ProfileCircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(2, breaker.getTimesOpened());
+    }
+
+    @Test
+    public void halfOpenIgnoredTrialLetsAnotherTrialThroughTest() throws InterruptedException {
+        ProfileCircuitBreaker breaker = breaker();
+        breaker.setOpenMillis(20);
+        fail(breaker, 4);
+        Thread.sleep(40);
+
+        assertTrue(breaker.tryAcquirePermission());
+        breaker.recordIgnored();
+
+        assertTrue(breaker.tryAcquirePermission());
+    }
+
+    @Test
+    public void describeStateIncludesNameAndStateTest() {
+        ProfileCircuitBreaker breaker = breaker();
+
+        assertTrue(breaker.describeState().startsWith("foot-walking CLOSED"));
+    }
+
+    @Test
+    public void setThresholdsRejectsMinimumCallsLargerThanWindowTest() {
+        ProfileCircuitBreaker breaker = new ProfileCircuitBreaker("x", 4);
+
+        assertThrows(IllegalArgumentException.class, () -> breaker.setThresholds(5, 0.5, 0.5, 1000));
+    }
+}
@@ -0,0 +1,73 @@
+package org.example;
+
+import org.jxmapviewer.viewer.GeoPosition;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RecordingHttpTransportTest {
+
+    private static final List<GeoPosition> TWO_POINTS = List.of(new GeoPosition(49.41, 8.68), new GeoPosition(49.42, 8.69));
+
+    @Test
+    public void recordsDecodedResponseAndTimingsButNoCredentialsTest(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("session.rtl");
+        try (MockRoutingServer server = MockRoutingServer.start();
+             RoutingTrafficLog.Writer log = new RoutingTrafficLog.Writer(file)) {
+            server.setPointsPerResponse(200);
+            server.setLatency(MockRoutingServer.fixedLatency(30));
+            RecordingHttpTransport transport = new RecordingHttpTransport(log);
+            RoutingAPI api = new RoutingAPI("secret-key", transport, server.getBaseUrl(),
+                    new RoutingRateLimiter(6000, 100));
+
+            assertNotNull(api.snapToRoadsWithTwoPoints(TWO_POINTS, RoutingDeadline.after(Duration.ofSeconds(5))));
+            assertEquals(1, transport.getExchangesRecorded());
+            assertEquals(0, transport.getRecordingFailures());
+        }
+
+        List<RoutingTrafficLog.Exchange> exchanges = RoutingTrafficLog.readAll(file);
+        assertEquals(1, exchanges.size());
+        RoutingTrafficLog.Exchange exchange = exchanges.get(0);
+        assertEquals(200, exchange.getStatusCode());
+        assertTrue(exchange.getUrl().endsWith("/v2/directions/foot-walking/geojson"), exchange.getUrl());
+        assertTrue(exchange.getHeadersNanos() >= 30_000_000L);
+        // Stored after decompression, so the encoding header must not survive
+        String body = new String(exchange.getResponseBody(), StandardCharsets.UTF_8);
+        assertTrue(body.startsWith("{"), body.substring(0, Math.min(20, body.length())));
+        assertNull(exchange.getHeaders().get("content-encoding"));
+        assertFalse(new String(Files.readAllBytes(file), StandardCharsets.ISO_8859_1).contains("secret-key"));
+    }
+
+    @Test
+    public void recordsServerErrorsAndConnectionFailuresTest(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("session.rtl");
+        try (RoutingTrafficLog.Writer log = new RoutingTrafficLog.Writer(file)) {
+            RecordingHttpTransport transport = new RecordingHttpTransport(log);
+            String deadUrl;
+            try (MockRoutingServer server = MockRoutingServer.start()) {
+                server.failNext(1, 502);
+                deadUrl = server.getBaseUrl() + "/v2/directions/foot-walking/geojson";
+
+                try (RoutingHttpTransport.Response response = transport.post(deadUrl, "k", "{}", Duration.ofSeconds(5))) {
+                    assertEquals(502, response.getStatusCode());
+                    response.getBody().readAllBytes();
+                }
+            }
+            // The server is shut down by now, so the same URL refuses the connection
+            assertThrows(IOException.class, () -> transport.post(deadUrl, "k", "{}", Duration.ofSeconds(2)));
+            assertEquals(2, transport.getExchangesRecorded());
+        }
+
+        List<RoutingTrafficLog.Exchange> exchanges = RoutingTrafficLog.readAll(file);
+        assertEquals(502, exchanges.get(0).getStatusCode());
+        assertTrue(exchanges.get(1).isFailure());
+    }
+}
@@ -3,6 +3,7 @@ package org.example;
 import org.junit.jupiter.api.Test;
 
 import java.lang.reflect.Field;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -301,4 +302,58 @@ public class RegisteringStateTest {
         assertNotNull(msg);
         assertFalse(msg.trim().isEmpty());
     }
+
+    // -------------------------------------------------------------
+    // processRegistrationAsync(...) tests
+    // -------------------------------------------------------------
+
+    @Test
+    public void processRegistrationAsyncCreatesAccountThenRejectsDuplicateTest() throws Exception {
+        AuthContext ctx = getContext();
+        resetContext(ctx);
+
+        String username = "async_reg_" + System.nanoTime();
+        TestAuthListener listener = new TestAuthListener();
+        ctx.addListener(listener);
+
+        try {
+            new RegisteringState(username, "secret123", "secret123").processRegistrationAsync(ctx, Runnable::run).get();
+
+            assertTrue(listener.registrationSuccessCalled);
+            assertEquals(username, ctx.getCurrentUser().getUserName());
+
+            resetContext(ctx);
+            ctx.addListener(listener);
+            new RegisteringState(username, "secret123", "secret123").processRegistrationAsync(ctx, Runnable::run).get();
+
+            assertTrue(listener.registrationFailureCalled);
+            assertEquals("Username already taken", listener.failureReason);
+        } finally {
+            ctx.removeListener(listener);
+            resetContext(ctx);
+        }
+    }
+
+    @Test
+    public void failedRegistrationTaskStillEndsWithFailureTest() throws Exception {
+        AuthContext ctx = getContext();
+        resetContext(ctx);
+
+        RegisteringState state = new RegisteringState("someone", "secret123", "secret123");
+        TestAuthListener listener = new TestAuthListener();
+        ctx.addListener(listener);
+
+        try {
+            ctx.setState(state);
+            state.finishRegistrationWhenDone(ctx, CompletableFuture.failedFuture(new NullPointerException()),
+                    Runnable::run).get();
+
+            assertTrue(listener.registrationFailureCalled);
+            assertEquals("Failed to create account. Please try again.", listener.failureReason);
+            assertEquals("Logged Out", ctx.getStateName());
+        } finally {
+            ctx.removeListener(listener);
+            resetContext(ctx);
+        }
+    }
 }
@@ -0,0 +1,127 @@
+package org.example;
+
+import org.jxmapviewer.viewer.GeoPosition;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReplayHttpTransportTest {
+
+    private static final List<GeoPosition> TWO_POINTS = List.of(new GeoPosition(49.41, 8.68), new GeoPosition(49.42, 8.69));
+
+    private static RoutingTrafficLog.Exchange exchange(String url, String body, String response, long headersMillis,
+                                                       long bodyMillis) {
+        return new RoutingTrafficLog.Exchange(0L, headersMillis * 1_000_000, bodyMillis * 1_000_000, url, body, 200,
+                HttpClient.Version.HTTP_1_1, Map.of(), response.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String read(RoutingHttpTransport.Response response) throws IOException {
+        try (response) {
+            return new String(response.getBody().readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    public void recordedSessionReplaysWithoutServerTest(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("session.rtl");
+        RouteResult recorded;
+        try (MockRoutingServer server = MockRoutingServer.start();
+             RoutingTrafficLog.Writer log = new RoutingTrafficLog.Writer(file)) {
+            server.setPointsPerResponse(300);
+            RoutingAPI api = new RoutingAPI("test-key", new RecordingHttpTransport(log), server.getBaseUrl(),
+                    new RoutingRateLimiter(6000, 100));
+            recorded = api.snapToRoadsWithTwoPoints(TWO_POINTS, RoutingDeadline.after(Duration.ofSeconds(5)));
+        }
+        assertNotNull(recorded);
+
+        // The server is gone and the base URL points elsewhere; only the path and body have to match
+        ReplayHttpTransport replay = ReplayHttpTransport.fromFile(file, 0);
+        RoutingAPI api = new RoutingAPI("other-key", replay, "http://127.0.0.1:9", new RoutingRateLimiter(6000, 100));
+        RouteResult replayed = api.snapToRoadsWithTwoPoints(TWO_POINTS, RoutingDeadline.after(Duration.ofSeconds(5)));
+
+        assertNotNull(replayed);
+        assertEquals(recorded.getPointCount(), replayed.getPointCount());
+        assertEquals(recorded.getDistance(), replayed.getDistance(), 1e-9);
+        assertEquals(recorded.getAscent(), replayed.getAscent(), 1e-9);
+        assertEquals(recorded.getLatitude(150), replayed.getLatitude(150), 0.0);
+        assertEquals(1, replay.getExchangesReplayed());
+    }
+
+    @Test
+    public void identicalRequestsGetRecordedAnswersInOrderThenTheLastAgainTest() throws Exception {
+        ReplayHttpTransport replay = new ReplayHttpTransport(List.of(
+                exchange("http://a/v2/x", "{}", "first", 0, 0),
+                exchange("http://a/v2/x", "{}", "second", 0, 0),
+                exchange("http://a/v2/x", "{\"other\":1}", "other", 0, 0)), 1.0);
+
+        assertEquals("first", read(replay.post("http://b/v2/x", "k", "{}", Duration.ofSeconds(1))));
+        assertEquals("second", read(replay.post("http://b/v2/x", "k", "{}", Duration.ofSeconds(1))));
+        assertEquals("second", read(replay.post("http://b/v2/x", "k", "{}", Duration.ofSeconds(1))));
+        assertEquals("other", read(replay.post("http://b/v2/x", "k", "{\"other\":1}", Duration.ofSeconds(1))));
+        assertEquals(3, replay.getExchangesReplayed());
+        assertEquals(1, replay.getExchangesRepeated());
+    }
+
+    @Test
+    public void unmatchedRequestThrowsIOExceptionTest() {
+        ReplayHttpTransport replay = new ReplayHttpTransport(List.of(exchange("http://a/v2/x", "{}", "r", 0, 0)), 1.0);
+
+        assertThrows(IOException.class, () -> replay.post("http://a/v2/y", "k", "{}", Duration.ofSeconds(1)));
+        assertThrows(IOException.class, () -> replay.post("http://a/v2/x", "k", "{\"a\":2}", Duration.ofSeconds(1)));
+        assertEquals(2, replay.getRequestsUnmatched());
+    }
+
+    @Test
+    public void recordedTimingIsScaledTest() throws Exception {
+        List<RoutingTrafficLog.Exchange> log = List.of(exchange("http://a/v2/x", "{}", "r", 200, 100));
+
+        long started = System.nanoTime();
+        read(new ReplayHttpTransport(log, 1.0).post("http://a/v2/x", "k", "{}", Duration.ofSeconds(5)));
+        long originalMillis = (System.nanoTime() - started) / 1_000_000;
+
+        started = System.nanoTime();
+        read(new ReplayHttpTransport(log, 0.1).post("http://a/v2/x", "k", "{}", Duration.ofSeconds(5)));
+        long scaledMillis = (System.nanoTime() - started) / 1_000_000;
+
+        assertTrue(originalMillis >= 300, "took " + originalMillis + " ms");
+        assertTrue(scaledMillis >= 30 && scaledMillis < 250, "took " + scaledMillis + " ms");
+    }
+
+    @Test
+    public void recordedFailuresAreThrownAgainTest() {
+        ReplayHttpTransport replay = new ReplayHttpTransport(List.of(
+                RoutingTrafficLog.Exchange.failed(0L, 0, "http://a/v2/t", "{}",
+                        RoutingTrafficLog.Exchange.FAILURE_TIMEOUT, "request timed out"),
+                RoutingTrafficLog.Exchange.failed(0L, 0, "http://a/v2/io", "{}",
+                        RoutingTrafficLog.Exchange.FAILURE_IO, "connection reset")), 1.0);
+
+        assertThrows(HttpTimeoutException.class, () -> replay.post("http://a/v2/t", "k", "{}", Duration.ofSeconds(1)));
+        IOException e = assertThrows(IOException.class,
+                () -> replay.post("http://a/v2/io", "k", "{}", Duration.ofSeconds(1)));
+        assertEquals("connection reset", e.getMessage());
+    }
+
+    @Test
+    public void slowerRecordingThanTimeoutTimesOutTest() {
+        ReplayHttpTransport replay = new ReplayHttpTransport(List.of(exchange("http://a/v2/x", "{}", "r", 5_000, 0)), 1.0);
+
+        long started = System.nanoTime();
+        assertThrows(HttpTimeoutException.class, () -> replay.post("http://a/v2/x", "k", "{}", Duration.ofMillis(50)));
+        assertTrue((System.nanoTime() - started) / 1_000_000 < 1_000);
+    }
+
+    @Test
+    public void rejectsNegativeTimeScaleTest() {
+        assertThrows(IllegalArgumentException.class, () -> new ReplayHttpTransport(List.of(), -1));
+    }
+}
@@ -0,0 +1,61 @@
+package org.example;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compares ORS's GeoJSON and encoded-polyline responses for the same route: payload size
+ * and the time to turn each into a {@link RouteResult}, on routes of 1k, 10k and 100k points.
+ *
+ * Not a unit test; run it after test-compile with
+ * {@code java -cp target/classes:target/test-classes:<jxmapviewer2 jar> org.example.ResponseFormatBenchmark}.
+ * Both payloads carry elevation and the same summary, segments and metadata.
+ */
+public class ResponseFormatBenchmark {
+
+    private static final int[] POINT_COUNTS = {1_000, 10_000, 100_000};
+    private static final long TARGET_NANOS_PER_CASE = 2_000_000_000L;
+
+    private static volatile Object sink;
+
+    public static void main(String[] args) throws IOException {
+        System.out.printf("%-9s %-10s %12s %10s %12s %10s%n", "points", "format", "bytes", "size", "ms/parse", "speedup");
+        for (int pointCount : POINT_COUNTS) {
+            double[][] track = OrsResponseFixtures.syntheticTrack(pointCount);
+            byte[] geoJson = OrsResponseFixtures.directionsGeoJson(track, 120.0, 118.0, pointCount * 5.0)
+                    .getBytes(StandardCharsets.UTF_8);
+            byte[] polyline = OrsResponseFixtures.directionsPolylineJson(track, 120.0, 118.0, pointCount * 5.0)
+                    .getBytes(StandardCharsets.UTF_8);
+
+            double geoJsonMs = measure(() -> sink = GeoJsonRouteParser.parse(new ByteArrayInputStream(geoJson)).toRouteResult());
+            double polylineMs = measure(() -> sink = PolylineRouteParser.parse(new ByteArrayInputStream(polyline), true).toRouteResult());
+
+            System.out.printf("%-9d %-10s %12d %10s %12.3f %10s%n", pointCount, "geojson", geoJson.length, "",
+                    geoJsonMs, "");
+            System.out.printf("%-9d %-10s %12d %9.1f%% %12.3f %9.1fx%n", pointCount, "polyline", polyline.length,
+                    100.0 * polyline.length / geoJson.length, polylineMs, geoJsonMs / polylineMs);
+        }
+    }
+
+    private interface Task {
+        void run() throws IOException;
+    }
+
+    private static double measure(Task task) throws IOException {
+        long warmupEnd = System.nanoTime() + TARGET_NANOS_PER_CASE / 2;
+        while (System.nanoTime() < warmupEnd) {
+            task.run();
+        }
+
+        int iterations = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            task.run();
+            iterations++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < TARGET_NANOS_PER_CASE);
+        return elapsed / 1e6 / iterations;
+    }
+}
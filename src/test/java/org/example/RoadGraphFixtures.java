@@ -0,0 +1,286 @@
+package org.example;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * Synthetic road networks for the offline routing tests: grid graphs, and a tiny OSM PBF
+ * writer for feeding {@link OsmPbfReader}.
+ */
+final class RoadGraphFixtures {
+
+    static final double ORIGIN_LAT = 40.0;
+    static final double ORIGIN_LON = -105.0;
+
+    private RoadGraphFixtures() {
+    }
+
+    /**
+     * A rows x columns grid of two-way residential streets, {@code spacingMeters} apart, with
+     * node index row * columns + column. Every fifth row and column is a primary road.
+     */
+    static RoadGraph grid(int rows, int columns, double spacingMeters) {
+        RoadGraph.Builder builder = new RoadGraph.Builder();
+        double latStep = spacingMeters / 111_320.0;
+        double lonStep = spacingMeters / (111_320.0 * Math.cos(Math.toRadians(ORIGIN_LAT)));
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < columns; c++) {
+                builder.addNode(ORIGIN_LAT + r * latStep, ORIGIN_LON + c * lonStep);
+            }
+        }
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < columns; c++) {
+                int node = r * columns + c;
+                if (c + 1 < columns) {
+                    builder.addSegment(node, node + 1, r % 5 == 0 ? RoadGraph.RoadClass.PRIMARY
+                            : RoadGraph.RoadClass.RESIDENTIAL, 0);
+                }
+                if (r + 1 < rows) {
+                    builder.addSegment(node, node + columns, c % 5 == 0 ? RoadGraph.RoadClass.PRIMARY
+                            : RoadGraph.RoadClass.RESIDENTIAL, 0);
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Like {@link #grid}, but {@code shapeNodes} nodes zigzag along every street between two
+     * crossings, and every fourth row (starting with row 2) is one-way eastbound. Crossings keep
+     * index row * columns + column; the shape nodes come after them. With {@code collapse} the
+     * shape nodes are folded into their streets' edges.
+     */
+    static RoadGraph gridWithShapeNodes(int rows, int columns, double spacingMeters, int shapeNodes,
+                                        boolean collapse) {
+        RoadGraph.Builder builder = new RoadGraph.Builder();
+        builder.setCollapseShapeNodes(collapse);
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < columns; c++) {
+                builder.addNode(gridLatitude(r, spacingMeters), gridLongitude(c, spacingMeters));
+            }
+        }
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < columns; c++) {
+                int node = r * columns + c;
+                if (c + 1 < columns) {
+                    addShapedStreet(builder, node, node + 1, r, c, r, c + 1, spacingMeters, shapeNodes, r % 5 == 0 ? RoadGraph.RoadClass.PRIMARY
+                            : RoadGraph.RoadClass.RESIDENTIAL, r % 4 == 2 ? 1 : 0);
+                }
+                if (r + 1 < rows) {
+                    addShapedStreet(builder, node, node + columns, r, c, r + 1, c, spacingMeters, shapeNodes, c % 5 == 0 ? RoadGraph.RoadClass.PRIMARY
+                            : RoadGraph.RoadClass.RESIDENTIAL, 0);
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    private static void addShapedStreet(RoadGraph.Builder builder, int from, int to, int fromRow, int fromColumn,
+                                        int toRow, int toColumn, double spacingMeters, int shapeNodes,
+                                        RoadGraph.RoadClass roadClass, int oneway) {
+        double lat = gridLatitude(fromRow, spacingMeters), lon = gridLongitude(fromColumn, spacingMeters);
+        double dLat = gridLatitude(toRow, spacingMeters) - lat, dLon = gridLongitude(toColumn, spacingMeters) - lon;
+        int previous = from;
+        for (int k = 1; k <= shapeNodes; k++) {
+            double t = k / (shapeNodes + 1.0);
+            double bend = (k % 2 == 0 ? 0.1 : -0.1) / (shapeNodes + 1);
+            int shape = builder.addNode(lat + t * dLat - bend * dLon, lon + t * dLon + bend * dLat);
+            builder.addSegment(previous, shape, roadClass, oneway);
+            previous = shape;
+        }
+        builder.addSegment(previous, to, roadClass, oneway);
+    }
+
+    static double gridLatitude(int row, double spacingMeters) {
+        return ORIGIN_LAT + row * spacingMeters / 111_320.0;
+    }
+
+    static double gridLongitude(int column, double spacingMeters) {
+        return ORIGIN_LON + column * spacingMeters / (111_320.0 * Math.cos(Math.toRadians(ORIGIN_LAT)));
+    }
+
+    /**
+     * Builds a PBF file with one header block and one data block holding dense nodes and ways.
+     */
+    static class PbfWriter {
+        private final LinkedHashMap<Long, double[]> nodes = new LinkedHashMap<>();
+        private final List<long[]> wayRefs = new ArrayList<>();
+        private final List<String[]> wayTags = new ArrayList<>();
+        private boolean compress = true;
+        private String extraFeature;
+
+        PbfWriter node(long id, double latitude, double longitude) {
+            nodes.put(id, new double[]{latitude, longitude});
+            return this;
+        }
+
+        /**
+         * @param tags alternating keys and values
+         */
+        PbfWriter way(long[] refs, String... tags) {
+            wayRefs.add(refs);
+            wayTags.add(tags);
+            return this;
+        }
+
+        PbfWriter uncompressed() {
+            compress = false;
+            return this;
+        }
+
+        PbfWriter requiredFeature(String feature) {
+            extraFeature = feature;
+            return this;
+        }
+
+        byte[] toBytes() throws IOException {
+            ByteArrayOutputStream file = new ByteArrayOutputStream();
+            writeBlob(file, "OSMHeader", headerBlock());
+            writeBlob(file, "OSMData", primitiveBlock());
+            return file.toByteArray();
+        }
+
+        private byte[] headerBlock() {
+            Proto header = new Proto();
+            header.string(4, "OsmSchema-V0.6");
+            header.string(4, "DenseNodes");
+            if (extraFeature != null) header.string(4, extraFeature);
+            return header.toBytes();
+        }
+
+        private byte[] primitiveBlock() {
+            List<String> strings = new ArrayList<>();
+            strings.add("");
+
+            Proto dense = new Proto();
+            Proto ids = new Proto();
+            Proto lats = new Proto();
+            Proto lons = new Proto();
+            long lastId = 0, lastLat = 0, lastLon = 0;
+            for (java.util.Map.Entry<Long, double[]> node : nodes.entrySet()) {
+                long lat = Math.round(node.getValue()[0] * 1e7);
+                long lon = Math.round(node.getValue()[1] * 1e7);
+                ids.rawSignedVarint(node.getKey() - lastId);
+                lats.rawSignedVarint(lat - lastLat);
+                lons.rawSignedVarint(lon - lastLon);
+                lastId = node.getKey();
+                lastLat = lat;
+                lastLon = lon;
+            }
+            dense.bytes(1, ids.toBytes());
+            dense.bytes(8, lats.toBytes());
+            dense.bytes(9, lons.toBytes());
+
+            Proto group = new Proto();
+            group.bytes(2, dense.toBytes());
+            for (int w = 0; w < wayRefs.size(); w++) {
+                Proto way = new Proto();
+                way.varint(1, w + 1);
+                Proto keys = new Proto();
+                Proto vals = new Proto();
+                String[] tags = wayTags.get(w);
+                for (int t = 0; t + 1 < tags.length; t += 2) {
+                    keys.rawVarint(indexOf(strings, tags[t]));
+                    vals.rawVarint(indexOf(strings, tags[t + 1]));
+                }
+                way.bytes(2, keys.toBytes());
+                way.bytes(3, vals.toBytes());
+                Proto refs = new Proto();
+                long last = 0;
+                for (long ref : wayRefs.get(w)) {
+                    refs.rawSignedVarint(ref - last);
+                    last = ref;
+                }
+                way.bytes(8, refs.toBytes());
+                group.bytes(3, way.toBytes());
+            }
+
+            Proto table = new Proto();
+            for (String s : strings) table.string(1, s);
+
+            Proto block = new Proto();
+            block.bytes(1, table.toBytes());
+            block.bytes(2, group.toBytes());
+            block.varint(17, 100);
+            return block.toBytes();
+        }
+
+        private static int indexOf(List<String> strings, String value) {
+            int index = strings.indexOf(value);
+            if (index >= 0) return index;
+            strings.add(value);
+            return strings.size() - 1;
+        }
+
+        private void writeBlob(ByteArrayOutputStream file, String type, byte[] block) throws IOException {
+            Proto blob = new Proto();
+            if (compress) {
+                Deflater deflater = new Deflater();
+                deflater.setInput(block);
+                deflater.finish();
+                byte[] buffer = new byte[block.length + 64];
+                int length = deflater.deflate(buffer);
+                deflater.end();
+                blob.varint(2, block.length);
+                blob.bytes(3, java.util.Arrays.copyOf(buffer, length));
+            } else {
+                blob.bytes(1, block);
+            }
+            byte[] blobBytes = blob.toBytes();
+
+            Proto header = new Proto();
+            header.string(1, type);
+            header.varint(3, blobBytes.length);
+            byte[] headerBytes = header.toBytes();
+
+            DataOutputStream out = new DataOutputStream(file);
+            out.writeInt(headerBytes.length);
+            out.write(headerBytes);
+            out.write(blobBytes);
+        }
+    }
+
+    /**
+     * Protobuf wire-format writer, just enough for {@link PbfWriter}.
+     */
+    static class Proto {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        void varint(int field, long value) {
+            rawVarint((long) field << 3);
+            rawVarint(value);
+        }
+
+        void bytes(int field, byte[] value) {
+            rawVarint(((long) field << 3) | 2);
+            rawVarint(value.length);
+            out.write(value, 0, value.length);
+        }
+
+        void string(int field, String value) {
+            bytes(field, value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        void rawVarint(long value) {
+            while ((value & ~0x7fL) != 0) {
+                out.write((int) ((value & 0x7f) | 0x80));
+                value >>>= 7;
+            }
+            out.write((int) value);
+        }
+
+        void rawSignedVarint(long value) {
+            rawVarint((value << 1) ^ (value >> 63));
+        }
+
+        byte[] toBytes() {
+            return out.toByteArray();
+        }
+    }
+}
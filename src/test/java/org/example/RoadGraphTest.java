@@ -0,0 +1,197 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RoadGraphTest {
+
+    private static int countEdges(RoadGraph graph, int from, int to) {
+        int count = 0;
+        for (int e = graph.edgeStart(from); e < graph.edgeEnd(from); e++) {
+            if (graph.edgeTarget(e) == to) count++;
+        }
+        return count;
+    }
+
+    @Test
+    public void gridHasTwoEdgesPerSegmentTest() {
+        RoadGraph graph = RoadGraphFixtures.grid(4, 5, 100);
+
+        assertEquals(20, graph.getNodeCount());
+        // 4 rows of 4 horizontal segments, 5 columns of 3 vertical ones, both directions
+        assertEquals(2 * (4 * 4 + 5 * 3), graph.getEdgeCount());
+    }
+
+    @Test
+    public void edgeLengthIsHaversineDistanceTest() {
+        RoadGraph graph = RoadGraphFixtures.grid(2, 2, 100);
+
+        for (int e = graph.edgeStart(0); e < graph.edgeEnd(0); e++) {
+            assertEquals(100, graph.edgeMeters(e), 0.5);
+        }
+    }
+
+    @Test
+    public void incomingIndexMirrorsOutgoingEdgesTest() {
+        RoadGraph graph = RoadGraphFixtures.grid(3, 3, 50);
+
+        for (int node = 0; node < graph.getNodeCount(); node++) {
+            for (int i = graph.inEdgeStart(node); i < graph.inEdgeEnd(node); i++) {
+                int edge = graph.inEdge(i);
+                assertEquals(node, graph.edgeTarget(edge));
+                int source = graph.inEdgeSource(i);
+                assertTrue(edge >= graph.edgeStart(source) && edge < graph.edgeEnd(source));
+            }
+        }
+    }
+
+    @Test
+    public void onewayBlocksCarsButNotWalkersAgainstFlowTest() {
+        RoadGraph.Builder builder = new RoadGraph.Builder();
+        int a = builder.addNode(40.0, -105.0);
+        int b = builder.addNode(40.001, -105.0);
+        builder.addSegment(a, b, RoadGraph.RoadClass.RESIDENTIAL, 1);
+        RoadGraph graph = builder.build();
+
+        int backwards = graph.edgeStart(b);
+        assertEquals(1, countEdges(graph, b, a));
+        assertFalse(graph.edgeAllows(backwards, RoadGraph.ACCESS_CAR));
+        assertFalse(graph.edgeAllows(backwards, RoadGraph.ACCESS_BIKE));
+        assertTrue(graph.edgeAllows(backwards, RoadGraph.ACCESS_FOOT));
+        assertTrue(graph.edgeAllows(graph.edgeStart(a), RoadGraph.ACCESS_CAR));
+    }
+
+    @Test
+    public void motorwayOnewayHasNoReverseEdgeTest() {
+        RoadGraph.Builder builder = new RoadGraph.Builder();
+        int a = builder.addNode(40.0, -105.0);
+        int b = builder.addNode(40.01, -105.0);
+        builder.addSegment(a, b, RoadGraph.RoadClass.MOTORWAY, 1);
+        RoadGraph graph = builder.build();
+
+        assertEquals(1, countEdges(graph, a, b));
+        assertEquals(0, countEdges(graph, b, a));
+    }
+
+    @Test
+    public void nearestNodeFindsClosestGridNodeTest() {
+        RoadGraph graph = RoadGraphFixtures.grid(10, 10, 100);
+        double lat = RoadGraphFixtures.gridLatitude(3, 100) + 20 / 111_320.0;
+        double lon = RoadGraphFixtures.gridLongitude(7, 100);
+
+        assertEquals(3 * 10 + 7, graph.nearestNode(lat, lon, RoadGraph.ACCESS_FOOT, 500));
+    }
+
+    @Test
+    public void nearestNodeRespectsMaxDistanceTest() {
+        RoadGraph graph = RoadGraphFixtures.grid(3, 3, 100);
+
+        assertEquals(-1, graph.nearestNode(41.0, -105.0, RoadGraph.ACCESS_FOOT, 500));
+    }
+
+    @Test
+    public void nearestNodeSkipsNodesTheProfileCannotUseTest() {
+        RoadGraph.Builder builder = new RoadGraph.Builder();
+        int a = builder.addNode(40.0, -105.0);
+        int b = builder.addNode(40.0005, -105.0);
+        int c = builder.addNode(40.002, -105.0);
+        int d = builder.addNode(40.003, -105.0);
+        builder.addSegment(a, b, RoadGraph.RoadClass.FOOTWAY, 0);
+        builder.addSegment(c, d, RoadGraph.RoadClass.RESIDENTIAL, 0);
+        RoadGraph graph = builder.build();
+
+        assertEquals(a, graph.nearestNode(40.0, -105.0, RoadGraph.ACCESS_FOOT, 1000));
+        assertEquals(c, graph.nearestNode(40.0, -105.0, RoadGraph.ACCESS_CAR, 1000));
+    }
+
+    @Test
+    public void flatDistanceNeverExceedsEdgeLengthTest() {
+        RoadGraph graph = RoadGraphFixtures.grid(6, 6, 250);
+
+        for (int node = 0; node < graph.getNodeCount(); node++) {
+            for (int e = graph.edgeStart(node); e < graph.edgeEnd(node); e++) {
+                assertTrue(graph.flatMeters(node, graph.edgeTarget(e)) <= graph.edgeMeters(e) + 1e-3);
+            }
+        }
+    }
+
+    @Test
+    public void highwayTagsMapToRoadClassesTest() {
+        assertEquals(RoadGraph.RoadClass.MOTORWAY, RoadGraph.RoadClass.fromHighwayTag("motorway_link"));
+        assertEquals(RoadGraph.RoadClass.FOOTWAY, RoadGraph.RoadClass.fromHighwayTag("pedestrian"));
+        assertNull(RoadGraph.RoadClass.fromHighwayTag("proposed"));
+        assertEquals(0, RoadGraph.RoadClass.FOOTWAY.speedKmh(RoutingAPI.RoutingProfile.DRIVING_CAR));
+        assertEquals(110, RoadGraph.RoadClass.maxSpeedKmh(RoutingAPI.RoutingProfile.DRIVING_CAR));
+    }
+
+    @Test
+    public void collapsingFoldsShapeNodesIntoEdgeTest() {
+        RoadGraph.Builder builder = new RoadGraph.Builder();
+        builder.setCollapseShapeNodes(true);
+        int a = builder.addNode(40.0, -105.0);
+        int x = builder.addNode(40.001, -105.0005);
+        int y = builder.addNode(40.002, -105.0);
+        int b = builder.addNode(40.003, -105.0);
+        int c = builder.addNode(40.003, -105.001);
+        builder.addSegment(a, x, RoadGraph.RoadClass.RESIDENTIAL, 0);
+        builder.addSegment(x, y, RoadGraph.RoadClass.RESIDENTIAL, 0);
+        builder.addSegment(y, b, RoadGraph.RoadClass.RESIDENTIAL, 0);
+        builder.addSegment(b, c, RoadGraph.RoadClass.PRIMARY, 0);
+        RoadGraph graph = builder.build();
+
+        assertEquals(5, graph.getNodeCount());
+        assertEquals(2, graph.getShapeNodeCount());
+        assertEquals(4, graph.getEdgeCount());
+        assertTrue(graph.isShapeNode(x) && graph.isShapeNode(y));
+        int forward = graph.edgeStart(a);
+        assertEquals(forward + 1, graph.edgeEnd(a));
+        assertEquals(b, graph.edgeTarget(forward));
+        assertEquals(x, graph.shapeNode(forward, 0));
+        assertEquals(y, graph.shapeNode(forward, 1));
+        double ax = Point.haversineKm(40.0, -105.0, 40.001, -105.0005) * 1000;
+        double xy = Point.haversineKm(40.001, -105.0005, 40.002, -105.0) * 1000;
+        double yb = Point.haversineKm(40.002, -105.0, 40.003, -105.0) * 1000;
+        assertEquals(ax + xy + yb, graph.edgeMeters(forward), 0.01);
+        assertEquals(ax + xy, graph.metersToShapeNode(forward, y), 0.01);
+        assertEquals(1, countEdges(graph, b, a));
+    }
+
+    @Test
+    public void roadClassOrOnewayChangeKeepsJunctionTest() {
+        RoadGraph.Builder builder = new RoadGraph.Builder();
+        builder.setCollapseShapeNodes(true);
+        int a = builder.addNode(40.0, -105.0);
+        int b = builder.addNode(40.001, -105.0);
+        int c = builder.addNode(40.002, -105.0);
+        int d = builder.addNode(40.003, -105.0);
+        builder.addSegment(a, b, RoadGraph.RoadClass.RESIDENTIAL, 0);
+        builder.addSegment(b, c, RoadGraph.RoadClass.PRIMARY, 0);
+        builder.addSegment(c, d, RoadGraph.RoadClass.PRIMARY, 1);
+        RoadGraph graph = builder.build();
+
+        assertEquals(0, graph.getShapeNodeCount());
+        assertEquals(1, countEdges(graph, a, b));
+        assertEquals(1, countEdges(graph, b, c));
+        assertEquals(1, countEdges(graph, c, d));
+    }
+
+    @Test
+    public void ringWithoutJunctionKeepsOneNodeAsJunctionTest() {
+        RoadGraph.Builder builder = new RoadGraph.Builder();
+        builder.setCollapseShapeNodes(true);
+        int[] ring = {
+                builder.addNode(40.0, -105.0), builder.addNode(40.001, -105.0),
+                builder.addNode(40.001, -105.001), builder.addNode(40.0, -105.001)};
+        for (int i = 0; i < ring.length; i++) {
+            builder.addSegment(ring[i], ring[(i + 1) % ring.length], RoadGraph.RoadClass.RESIDENTIAL, 0);
+        }
+        RoadGraph graph = builder.build();
+
+        assertEquals(3, graph.getShapeNodeCount());
+        BidirectionalAStar.Path path = new BidirectionalAStar(graph)
+                .route(ring[1], ring[3], RoutingAPI.RoutingProfile.FOOT_WALKING, null);
+        assertNotNull(path);
+        assertEquals(3, path.getNodes().length);
+    }
+}
@@ -0,0 +1,143 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RoadSnapIndexTest {
+
+    private static final double SPACING = 100;
+
+    /**
+     * Exhaustive nearest-segment search, as the reference answer.
+     */
+    private static double bruteForceMeters(RoadGraph graph, double lat, double lon, int accessMask) {
+        double best = Double.POSITIVE_INFINITY;
+        double metersPerDegree = 6_371_000 * Math.PI / 180;
+        double metersPerDegreeLon = metersPerDegree * Math.cos(Math.toRadians(lat));
+        for (int node = 0; node < graph.getNodeCount(); node++) {
+            for (int e = graph.edgeStart(node); e < graph.edgeEnd(node); e++) {
+                if (!graph.edgeAllows(e, accessMask)) continue;
+                int target = graph.edgeTarget(e);
+                double ax = (graph.getLongitude(node) - lon) * metersPerDegreeLon;
+                double ay = (graph.getLatitude(node) - lat) * metersPerDegree;
+                double dx = (graph.getLongitude(target) - lon) * metersPerDegreeLon - ax;
+                double dy = (graph.getLatitude(target) - lat) * metersPerDegree - ay;
+                double t = Math.max(0, Math.min(1, -(ax * dx + ay * dy) / (dx * dx + dy * dy)));
+                best = Math.min(best, Math.hypot(ax + t * dx, ay + t * dy));
+            }
+        }
+        return best;
+    }
+
+    @Test
+    public void storesEachTwoWaySegmentOnceTest() {
+        RoadSnapIndex index = new RoadSnapIndex(RoadGraphFixtures.grid(4, 5, SPACING));
+
+        assertEquals(4 * 4 + 5 * 3, index.getSegmentCount());
+    }
+
+    @Test
+    public void projectsOntoSegmentBetweenNodesTest() {
+        RoadSnapIndex index = new RoadSnapIndex(RoadGraphFixtures.grid(5, 5, SPACING));
+        // 30 m east of node (2, 1) and 20 m north of the street along row 2
+        double lat = RoadGraphFixtures.gridLatitude(2, SPACING) + 20 / 111_320.0;
+        double lon = RoadGraphFixtures.gridLongitude(1, SPACING) + 30 / (111_320.0 * Math.cos(Math.toRadians(40)));
+
+        RoadSnapIndex.Snap snap = index.nearest(lat, lon, RoadGraph.ACCESS_FOOT, 500);
+
+        assertNotNull(snap);
+        assertEquals(20, snap.getMeters(), 0.2);
+        assertEquals(RoadGraphFixtures.gridLatitude(2, SPACING), snap.getLatitude(), 1e-6);
+        assertEquals(lon, snap.getLongitude(), 1e-6);
+        assertEquals(0.3, snap.getFraction(), 0.01);
+        assertEquals(2 * 5 + 1, snap.getNearerNode());
+    }
+
+    @Test
+    public void matchesBruteForceForRandomPointsTest() {
+        RoadGraph graph = RoadGraphFixtures.grid(15, 15, SPACING);
+        RoadSnapIndex index = new RoadSnapIndex(graph);
+        Random random = new Random(3);
+
+        for (int i = 0; i < 500; i++) {
+            double lat = RoadGraphFixtures.gridLatitude(-2, SPACING)
+                    + random.nextDouble() * (RoadGraphFixtures.gridLatitude(16, SPACING) - RoadGraphFixtures.gridLatitude(-2, SPACING));
+            double lon = RoadGraphFixtures.gridLongitude(-2, SPACING)
+                    + random.nextDouble() * (RoadGraphFixtures.gridLongitude(16, SPACING) - RoadGraphFixtures.gridLongitude(-2, SPACING));
+
+            RoadSnapIndex.Snap snap = index.nearest(lat, lon, RoadGraph.ACCESS_FOOT, 1000);
+
+            assertNotNull(snap);
+            assertEquals(bruteForceMeters(graph, lat, lon, RoadGraph.ACCESS_FOOT), snap.getMeters(), 1e-6);
+        }
+    }
+
+    @Test
+    public void collapsedGraphSnapsLikeFullGraphTest() {
+        RoadSnapIndex full = new RoadSnapIndex(RoadGraphFixtures.gridWithShapeNodes(8, 8, SPACING, 3, false));
+        RoadSnapIndex collapsed = new RoadSnapIndex(RoadGraphFixtures.gridWithShapeNodes(8, 8, SPACING, 3, true));
+        Random random = new Random(9);
+
+        assertEquals(full.getSegmentCount(), collapsed.getSegmentCount());
+        for (int i = 0; i < 500; i++) {
+            double lat = RoadGraphFixtures.gridLatitude(-1, SPACING)
+                    + random.nextDouble() * (RoadGraphFixtures.gridLatitude(8, SPACING) - RoadGraphFixtures.gridLatitude(-1, SPACING));
+            double lon = RoadGraphFixtures.gridLongitude(-1, SPACING)
+                    + random.nextDouble() * (RoadGraphFixtures.gridLongitude(8, SPACING) - RoadGraphFixtures.gridLongitude(-1, SPACING));
+            for (int accessMask : new int[]{RoadGraph.ACCESS_FOOT, RoadGraph.ACCESS_CAR}) {
+                RoadSnapIndex.Snap expected = full.nearest(lat, lon, accessMask, 1000);
+                RoadSnapIndex.Snap actual = collapsed.nearest(lat, lon, accessMask, 1000);
+
+                assertEquals(expected.getMeters(), actual.getMeters(), 1e-6);
+                assertEquals(expected.getLatitude(), actual.getLatitude(), 1e-9);
+                assertEquals(expected.getLongitude(), actual.getLongitude(), 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void nothingWithinMaxDistanceReturnsNullTest() {
+        RoadSnapIndex index = new RoadSnapIndex(RoadGraphFixtures.grid(3, 3, SPACING));
+
+        assertNull(index.nearest(41.0, -105.0, RoadGraph.ACCESS_FOOT, 500));
+    }
+
+    @Test
+    public void skipsRoadsTheProfileCannotUseTest() {
+        RoadGraph.Builder builder = new RoadGraph.Builder();
+        int a = builder.addNode(40.0, -105.0);
+        int b = builder.addNode(40.0, -104.999);
+        int c = builder.addNode(40.001, -105.0);
+        int d = builder.addNode(40.001, -104.999);
+        builder.addSegment(a, b, RoadGraph.RoadClass.FOOTWAY, 0);
+        builder.addSegment(c, d, RoadGraph.RoadClass.RESIDENTIAL, 0);
+        RoadSnapIndex index = new RoadSnapIndex(builder.build());
+
+        assertEquals(a, index.nearest(40.0001, -104.9995, RoadGraph.ACCESS_FOOT, 500).getFromNode());
+        assertEquals(c, index.nearest(40.0001, -104.9995, RoadGraph.ACCESS_CAR, 500).getFromNode());
+    }
+
+    @Test
+    public void onewaySegmentIsIndexedOnceTest() {
+        RoadGraph.Builder builder = new RoadGraph.Builder();
+        int a = builder.addNode(40.0, -105.0);
+        int b = builder.addNode(40.01, -105.0);
+        builder.addSegment(b, a, RoadGraph.RoadClass.MOTORWAY, 1);
+        RoadSnapIndex index = new RoadSnapIndex(builder.build());
+
+        assertEquals(1, index.getSegmentCount());
+        RoadSnapIndex.Snap snap = index.nearest(40.005, -105.0, RoadGraph.ACCESS_CAR, 100);
+        assertEquals(b, snap.getFromNode());
+        assertEquals(0.5, snap.getFraction(), 1e-3);
+    }
+
+    @Test
+    public void emptyGraphReturnsNullTest() {
+        RoadSnapIndex index = new RoadSnapIndex(new RoadGraph.Builder().build());
+
+        assertNull(index.nearest(40.0, -105.0, RoadGraph.ACCESS_FOOT, 500));
+    }
+}
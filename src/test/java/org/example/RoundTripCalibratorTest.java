@@ -0,0 +1,212 @@
+package org.example;
+
+import org.jxmapviewer.viewer.GeoPosition;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntToDoubleFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RoundTripCalibratorTest {
+
+    private static RouteResult loopOf(double meters) {
+        List<GeoPosition> points = List.of(new GeoPosition(0, 0), new GeoPosition(0.01, 0), new GeoPosition(0, 0));
+        return new RouteResult(points, 0, 0, meters);
+    }
+
+    private static RoundTripCalibrator.Generator generator(IntToDoubleFunction response, AtomicInteger calls) {
+        return length -> {
+            calls.incrementAndGet();
+            return loopOf(response.applyAsDouble(length));
+        };
+    }
+
+    private static RoundTripCalibrator.Probe probe(int requested, double actual) {
+        return new RoundTripCalibrator.Probe(requested, loopOf(actual));
+    }
+
+    // -------------------------------------------------------------
+    // calibrate(...) tests
+    // -------------------------------------------------------------
+
+    @Test
+    public void calibrateStopsAfterFirstRoundWhenAlreadyCloseTest() throws InterruptedException {
+        RoundTripCalibrator calibrator = new RoundTripCalibrator();
+        AtomicInteger calls = new AtomicInteger();
+
+        RoundTripCalibrator.Result result = calibrator.calibrate(5000, generator(l -> l * 1.02, calls), null);
+
+        assertTrue(result.isConverged());
+        assertEquals(2, result.getProbeCount());
+        assertEquals(5100, result.getBest().getDistance(), 1e-9);
+    }
+
+    @Test
+    public void calibrateCorrectsConsistentOvershootTest() throws InterruptedException {
+        RoundTripCalibrator calibrator = new RoundTripCalibrator();
+        calibrator.setLimits(0.05, 4);
+        AtomicInteger calls = new AtomicInteger();
+
+        RoundTripCalibrator.Result result = calibrator.calibrate(5000, generator(l -> l * 1.4, calls), null);
+
+        assertTrue(result.isConverged());
+        assertTrue(result.getProbeCount() <= 4);
+        assertEquals(5000, result.getBest().getDistance(), 250);
+        assertEquals(calls.get(), calibrator.getProbesSent());
+    }
+
+    @Test
+    public void calibrateReusesLoopAlreadyGeneratedAtTargetTest() throws InterruptedException {
+        RoundTripCalibrator calibrator = new RoundTripCalibrator();
+        calibrator.setLimits(0.05, 4);
+        AtomicInteger calls = new AtomicInteger();
+
+        RoundTripCalibrator.Result close = calibrator.calibrate(5000, loopOf(5100), generator(l -> l * 1.4, calls), null);
+        assertEquals(1, close.getProbeCount());
+        assertEquals(0, calls.get());
+
+        RoundTripCalibrator.Result far = calibrator.calibrate(5000, loopOf(7000), generator(l -> l * 1.4, calls), null);
+        assertTrue(far.isConverged());
+        assertTrue(far.getProbeCount() <= 4);
+        assertEquals(far.getProbeCount() - 1, calls.get());
+        assertEquals(calls.get(), calibrator.getProbesSent());
+    }
+
+    @Test
+    public void calibrateHandlesAffineResponseWithinProbeBudgetTest() throws InterruptedException {
+        RoundTripCalibrator calibrator = new RoundTripCalibrator();
+        calibrator.setLimits(0.03, 5);
+        AtomicInteger calls = new AtomicInteger();
+
+        RoundTripCalibrator.Result result = calibrator.calibrate(8000, generator(l -> 0.6 * l + 1500, calls), null);
+
+        assertTrue(result.isConverged());
+        assertTrue(calls.get() <= 5);
+    }
+
+    @Test
+    public void calibrateReturnsClosestProbeWhenBudgetRunsOutTest() throws InterruptedException {
+        RoundTripCalibrator calibrator = new RoundTripCalibrator();
+        calibrator.setLimits(0.001, 2);
+        AtomicInteger calls = new AtomicInteger();
+
+        // Step-shaped response the search cannot hit exactly
+        RoundTripCalibrator.Result result = calibrator.calibrate(5000,
+                generator(l -> l >= 4500 ? 6000 : 4600, calls), null);
+
+        assertFalse(result.isConverged());
+        assertEquals(2, calls.get());
+        assertEquals(4600, result.getBest().getDistance(), 1e-9);
+    }
+
+    @Test
+    public void calibrateRunsFirstTwoProbesInParallelTest() throws InterruptedException {
+        RoundTripCalibrator calibrator = new RoundTripCalibrator();
+        calibrator.setLimits(0.05, 2);
+
+        long start = System.nanoTime();
+        calibrator.calibrate(5000, length -> {
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return loopOf(length);
+        }, null);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(elapsedMillis < 380, "took " + elapsedMillis + " ms");
+    }
+
+    @Test
+    public void calibrateStartsNoProbeAfterDeadlineTest() throws InterruptedException {
+        RoundTripCalibrator calibrator = new RoundTripCalibrator();
+        calibrator.setLimits(0.01, 6);
+        AtomicInteger calls = new AtomicInteger();
+
+        RoundTripCalibrator.Result result = calibrator.calibrate(5000, generator(l -> l * 2, calls),
+                RoutingDeadline.after(Duration.ZERO));
+
+        assertEquals(2, result.getProbeCount());
+        assertTrue(calls.get() <= 2);
+    }
+
+    @Test
+    public void calibrateWithNoResultsReturnsNullBestTest() throws InterruptedException {
+        RoundTripCalibrator calibrator = new RoundTripCalibrator();
+
+        RoundTripCalibrator.Result result = calibrator.calibrate(5000, length -> null, null);
+
+        assertNull(result.getBest());
+        assertFalse(result.isConverged());
+        assertEquals(4, result.getProbeCount());
+    }
+
+    @Test
+    public void metricsTrackProbesAndLatencyTest() throws InterruptedException {
+        RoundTripCalibrator calibrator = new RoundTripCalibrator();
+        AtomicInteger calls = new AtomicInteger();
+
+        calibrator.calibrate(5000, generator(l -> l, calls), null);
+
+        assertEquals(1, calibrator.getCalibrations());
+        assertEquals(1, calibrator.getConverged());
+        assertEquals(2, calibrator.getLastProbeCount());
+        assertEquals(1, calibrator.getLatencyTracker().getSampleCount());
+        assertTrue(calibrator.describeStats().contains("calibrations=1"));
+    }
+
+    // -------------------------------------------------------------
+    // nextLength(...) tests
+    // -------------------------------------------------------------
+
+    @Test
+    public void nextLengthUsesSecantThroughLastTwoProbesTest() {
+        List<RoundTripCalibrator.Probe> probes = new ArrayList<>();
+        probes.add(probe(5000, 7000));
+        probes.add(probe(4000, 5600));
+
+        // Slope 1.4, so 5000 m needs 4000 + (5000 - 5600) / 1.4
+        assertEquals(3571, RoundTripCalibrator.nextLength(probes, 5000));
+    }
+
+    @Test
+    public void nextLengthBisectsWhenSecantLeavesBracketTest() {
+        List<RoundTripCalibrator.Probe> probes = new ArrayList<>();
+        probes.add(probe(4000, 4500));
+        probes.add(probe(6000, 6500));
+        // Non-increasing last pair makes the secant unusable
+        probes.add(probe(5000, 6500));
+
+        assertEquals(4500, RoundTripCalibrator.nextLength(probes, 5000));
+    }
+
+    @Test
+    public void nextLengthScalesProportionallyFromSingleProbeTest() {
+        List<RoundTripCalibrator.Probe> probes = new ArrayList<>();
+        probes.add(probe(5000, 10000));
+
+        assertEquals(2500, RoundTripCalibrator.nextLength(probes, 5000));
+    }
+
+    @Test
+    public void nextLengthIsClampedToSaneRangeTest() {
+        List<RoundTripCalibrator.Probe> probes = new ArrayList<>();
+        probes.add(probe(5000, 100000));
+
+        assertEquals(1500, RoundTripCalibrator.nextLength(probes, 5000));
+    }
+
+    @Test
+    public void setLimitsRejectsInvalidValuesTest() {
+        RoundTripCalibrator calibrator = new RoundTripCalibrator();
+
+        assertThrows(IllegalArgumentException.class, () -> calibrator.setLimits(0, 3));
+        assertThrows(IllegalArgumentException.class, () -> calibrator.setLimits(0.05, 0));
+    }
+}
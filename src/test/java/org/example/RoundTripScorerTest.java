@@ -0,0 +1,117 @@
+package org.example;
+
+import org.jxmapviewer.viewer.GeoPosition;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RoundTripScorerTest {
+
+    // Square loop of about 4 x 250 m starting at the origin corner
+    private static List<GeoPosition> squareLoop() {
+        double d = 250 / 111_320.0;
+        List<GeoPosition> points = new ArrayList<>();
+        for (int i = 0; i <= 10; i++) points.add(new GeoPosition(i * d / 10, 0));
+        for (int i = 1; i <= 10; i++) points.add(new GeoPosition(d, i * d / 10));
+        for (int i = 1; i <= 10; i++) points.add(new GeoPosition(d - i * d / 10, d));
+        for (int i = 1; i <= 10; i++) points.add(new GeoPosition(0, d - i * d / 10));
+        return points;
+    }
+
+    private static List<GeoPosition> outAndBack() {
+        double d = 500 / 111_320.0;
+        List<GeoPosition> points = new ArrayList<>();
+        for (int i = 0; i <= 20; i++) points.add(new GeoPosition(i * d / 20, 0));
+        for (int i = 19; i >= 0; i--) points.add(new GeoPosition(i * d / 20, 0));
+        return points;
+    }
+
+    // -------------------------------------------------------------
+    // selfOverlap(...) tests
+    // -------------------------------------------------------------
+
+    @Test
+    public void selfOverlapIsZeroForCleanLoopTest() {
+        assertEquals(0.0, RoundTripScorer.selfOverlap(squareLoop()), 1e-9);
+    }
+
+    @Test
+    public void selfOverlapIsAboutHalfForOutAndBackTest() {
+        double overlap = RoundTripScorer.selfOverlap(outAndBack());
+
+        assertTrue(overlap > 0.4 && overlap <= 0.5, "overlap " + overlap);
+    }
+
+    // -------------------------------------------------------------
+    // score(...) tests
+    // -------------------------------------------------------------
+
+    @Test
+    public void scorePrefersLoopCloserToTargetDistanceTest() {
+        RoundTripScorer scorer = new RoundTripScorer(5000, false, 200);
+        RouteResult close = new RouteResult(squareLoop(), 50, 50, 5100);
+        RouteResult far = new RouteResult(squareLoop(), 50, 50, 7000);
+
+        assertTrue(scorer.score(close) < scorer.score(far));
+        assertEquals(0.02, scorer.distanceError(close), 1e-9);
+    }
+
+    @Test
+    public void scoreRewardsClimbingOnlyForHillLoversTest() {
+        RouteResult flat = new RouteResult(squareLoop(), 10, 10, 5000);
+        RouteResult hilly = new RouteResult(squareLoop(), 150, 150, 5000);
+
+        RoundTripScorer hillLover = new RoundTripScorer(5000, true, 200);
+        RoundTripScorer flatLover = new RoundTripScorer(5000, false, 200);
+
+        assertTrue(hillLover.score(hilly) < hillLover.score(flat));
+        assertTrue(flatLover.score(flat) < flatLover.score(hilly));
+    }
+
+    @Test
+    public void scorePenalisesGoingOverMaxElevationGainEvenForHillLoversTest() {
+        RoundTripScorer scorer = new RoundTripScorer(5000, true, 200);
+        RouteResult atCap = new RouteResult(squareLoop(), 200, 200, 5000);
+        RouteResult overCap = new RouteResult(squareLoop(), 400, 400, 5000);
+
+        assertTrue(scorer.score(atCap) < scorer.score(overCap));
+    }
+
+    @Test
+    public void scorePenalisesOutAndBackTest() {
+        RoundTripScorer scorer = new RoundTripScorer(1000, false, 200);
+
+        assertTrue(scorer.score(new RouteResult(squareLoop(), 0, 0, 1000)) <
+                scorer.score(new RouteResult(outAndBack(), 0, 0, 1000)));
+    }
+
+    @Test
+    public void scoreIsInfiniteForMissingResultTest() {
+        RoundTripScorer scorer = new RoundTripScorer(1000, false, 200);
+
+        assertEquals(Double.POSITIVE_INFINITY, scorer.score(null));
+    }
+
+    @Test
+    public void distanceErrorFallsBackToPolylineLengthTest() {
+        RoundTripScorer scorer = new RoundTripScorer(1000, false, 200);
+
+        assertEquals(0.0, scorer.distanceError(new RouteResult(squareLoop(), 0, 0, 0)), 0.01);
+    }
+
+    @Test
+    public void forUserProfileUsesHillPreferenceAndCapTest() {
+        UserProfile profile = new UserProfile(1);
+        profile.setPreferHillRoutes(true);
+        profile.setMaxElevationGain(100);
+
+        RoundTripScorer scorer = RoundTripScorer.forUserProfile(profile, 5);
+
+        assertEquals(5000, scorer.getTargetMeters(), 1e-9);
+        assertTrue(scorer.elevationTerm(100) < 0);
+        assertTrue(scorer.elevationTerm(200) > 0);
+    }
+}
@@ -0,0 +1,117 @@
+package org.example;
+
+import org.jxmapviewer.viewer.GeoPosition;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RoundTripSearchTest {
+
+    private static final RoundTripScorer SCORER = new RoundTripScorer(5000, false, 200);
+
+    private static RouteResult loopWithDistance(double meters) {
+        List<GeoPosition> points = new ArrayList<>();
+        points.add(new GeoPosition(0, 0));
+        points.add(new GeoPosition(0.01, 0));
+        points.add(new GeoPosition(0.01, 0.01));
+        points.add(new GeoPosition(0, 0));
+        return new RouteResult(points, 20, 20, meters);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // -------------------------------------------------------------
+    // search(...) tests
+    // -------------------------------------------------------------
+
+    @Test
+    public void searchReturnsBestScoringCandidateFirstTest() throws InterruptedException {
+        RoundTripSearch search = new RoundTripSearch();
+
+        RoundTripSearch.Result result = search.search(List.of(1, 2, 3),
+                seed -> loopWithDistance(seed == 2 ? 5050 : 7000 + seed), SCORER, null);
+
+        assertEquals(3, result.getCandidates().size());
+        assertEquals(2, result.getBest().getSeed());
+        assertTrue(result.getCandidates().get(1).getScore() <= result.getCandidates().get(2).getScore());
+        assertEquals(3, result.getSeedsRequested());
+    }
+
+    @Test
+    public void searchRunsSeedsConcurrentlyTest() throws InterruptedException {
+        RoundTripSearch search = new RoundTripSearch();
+
+        long start = System.nanoTime();
+        RoundTripSearch.Result result = search.search(List.of(1, 2, 3, 4), seed -> {
+            sleep(200);
+            return loopWithDistance(5000);
+        }, SCORER, null);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals(4, result.getCandidates().size());
+        assertTrue(elapsedMillis < 600, "took " + elapsedMillis + " ms");
+    }
+
+    @Test
+    public void searchDropsFailedSeedsTest() throws InterruptedException {
+        RoundTripSearch search = new RoundTripSearch();
+
+        RoundTripSearch.Result result = search.search(List.of(1, 2, 3), seed -> {
+            if (seed == 1) return null;
+            if (seed == 2) throw new IllegalStateException("boom");
+            return loopWithDistance(5000);
+        }, SCORER, null);
+
+        assertEquals(1, result.getCandidates().size());
+        assertEquals(3, result.getBest().getSeed());
+    }
+
+    @Test
+    public void searchKeepsWhatArrivedBeforeDeadlineTest() throws InterruptedException {
+        RoundTripSearch search = new RoundTripSearch();
+
+        RoundTripSearch.Result result = search.search(List.of(1, 2), seed -> {
+            if (seed == 2) sleep(3000);
+            return loopWithDistance(5000);
+        }, SCORER, RoutingDeadline.after(Duration.ofMillis(300)));
+
+        assertEquals(1, result.getCandidates().size());
+        assertEquals(1, result.getBest().getSeed());
+        assertTrue(result.getElapsedMillis() < 2000);
+    }
+
+    @Test
+    public void searchWithNoResultsHasNoBestTest() throws InterruptedException {
+        RoundTripSearch search = new RoundTripSearch();
+
+        RoundTripSearch.Result result = search.search(List.of(1), seed -> null, SCORER, null);
+
+        assertNull(result.getBest());
+        assertNull(result.getBestResult());
+    }
+
+    // -------------------------------------------------------------
+    // seedsFrom(...) tests
+    // -------------------------------------------------------------
+
+    @Test
+    public void seedsFromReturnsDistinctSeedsInRangeTest() {
+        List<Integer> seeds = RoundTripSearch.seedsFrom(99990, 4);
+
+        assertEquals(4, seeds.size());
+        assertEquals(4, seeds.stream().distinct().count());
+        assertTrue(seeds.stream().allMatch(s -> s >= 0 && s < 100000));
+        assertEquals(99990, seeds.get(0));
+    }
+}
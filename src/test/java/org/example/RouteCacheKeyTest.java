@@ -0,0 +1,64 @@
+package org.example;
+
+import org.jxmapviewer.viewer.GeoPosition;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RouteCacheKeyTest {
+
+    private static final GeoPosition A = new GeoPosition(37.7749, -122.4194);
+    private static final GeoPosition B = new GeoPosition(37.7849, -122.4094);
+
+    // -------------------------------------------------------------
+    // forRoute(...) tests
+    // -------------------------------------------------------------
+
+    @Test
+    public void forRouteTreatsNearbyClicksAsTheSameKeyTest() {
+        RouteCacheKey first = RouteCacheKey.forRoute(RoutingAPI.RoutingProfile.FOOT_WALKING, List.of(A, B), 4);
+        RouteCacheKey second = RouteCacheKey.forRoute(RoutingAPI.RoutingProfile.FOOT_WALKING,
+                List.of(new GeoPosition(37.77491, -122.41941), B), 4);
+
+        assertEquals(first, second);
+        assertEquals(first.hashCode(), second.hashCode());
+        assertEquals(first.toStorageKey(), second.toStorageKey());
+    }
+
+    @Test
+    public void forRouteDistinguishesProfileOrderAndPrecisionTest() {
+        RouteCacheKey walking = RouteCacheKey.forRoute(RoutingAPI.RoutingProfile.FOOT_WALKING, List.of(A, B), 5);
+
+        assertNotEquals(walking, RouteCacheKey.forRoute(RoutingAPI.RoutingProfile.DRIVING_CAR, List.of(A, B), 5));
+        assertNotEquals(walking, RouteCacheKey.forRoute(RoutingAPI.RoutingProfile.FOOT_WALKING, List.of(B, A), 5));
+        assertNotEquals(walking, RouteCacheKey.forRoute(RoutingAPI.RoutingProfile.FOOT_WALKING,
+                List.of(new GeoPosition(37.77495, -122.4194), B), 5));
+        assertFalse(walking.isRoundTrip());
+    }
+
+    // -------------------------------------------------------------
+    // forRoundTrip(...) tests
+    // -------------------------------------------------------------
+
+    @Test
+    public void forRoundTripIncludesLengthPointsAndSeedTest() {
+        RouteCacheKey key = RouteCacheKey.forRoundTrip(RoutingAPI.RoutingProfile.FOOT_WALKING, A, 5000, 5, 42, 5);
+
+        assertTrue(key.isRoundTrip());
+        assertEquals(key, RouteCacheKey.forRoundTrip(RoutingAPI.RoutingProfile.FOOT_WALKING, A, 5000, 5, 42, 5));
+        assertNotEquals(key, RouteCacheKey.forRoundTrip(RoutingAPI.RoutingProfile.FOOT_WALKING, A, 6000, 5, 42, 5));
+        assertNotEquals(key, RouteCacheKey.forRoundTrip(RoutingAPI.RoutingProfile.FOOT_WALKING, A, 5000, 10, 42, 5));
+        assertNotEquals(key, RouteCacheKey.forRoundTrip(RoutingAPI.RoutingProfile.FOOT_WALKING, A, 5000, 5, null, 5));
+        assertNotEquals(key, RouteCacheKey.forRoute(RoutingAPI.RoutingProfile.FOOT_WALKING, List.of(A), 5));
+    }
+
+    @Test
+    public void toStorageKeyHasProfileCoordinatesAndRoundTripOptionsTest() {
+        RouteCacheKey key = RouteCacheKey.forRoundTrip(RoutingAPI.RoutingProfile.CYCLING_REGULAR,
+                new GeoPosition(1.5, -2.25), 3000, 3, null, 2);
+
+        assertEquals("cycling-regular|150,-225|rt=3000,3,-", key.toStorageKey());
+    }
+}
@@ -0,0 +1,208 @@
+package org.example;
+
+import org.jxmapviewer.viewer.GeoPosition;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RouteCacheTest {
+
+    private static final List<GeoPosition> LEG = List.of(new GeoPosition(10.0, 20.0), new GeoPosition(10.01, 20.01));
+
+    @TempDir
+    Path tempDir;
+
+    private static RouteResult resultWithPoints(int count) {
+        List<GeoPosition> points = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            points.add(new GeoPosition(10 + i * 0.001, 20 + i * 0.001));
+        }
+        return new RouteResult(points, 12.5, 7.25, 1234.0);
+    }
+
+    private String databaseUrl() {
+        return "jdbc:sqlite:" + tempDir.resolve("route_cache.db");
+    }
+
+    // -------------------------------------------------------------
+    // memory tier tests
+    // -------------------------------------------------------------
+
+    @Test
+    public void getReturnsNullAndCountsMissWhenEmptyTest() {
+        RouteCache cache = new RouteCache(1 << 20, null, Duration.ofHours(1), 5);
+
+        assertNull(cache.get(cache.keyForRoute(RoutingAPI.RoutingProfile.FOOT_WALKING, LEG)));
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void putThenGetHitsMemoryTierTest() {
+        RouteCache cache = new RouteCache(1 << 20, null, Duration.ofHours(1), 5);
+        RouteResult result = resultWithPoints(10);
+        RouteCacheKey key = cache.keyForRoute(RoutingAPI.RoutingProfile.FOOT_WALKING, LEG);
+
+        cache.put(key, result);
+
+        assertSame(result, cache.get(key));
+        assertEquals(1, cache.getMemoryHits());
+        assertEquals(RouteCache.estimateBytes(result), cache.getMemoryBytes());
+    }
+
+    @Test
+    public void memoryTierEvictsLeastRecentlyUsedWhenOverByteBudgetTest() {
+        RouteResult result = resultWithPoints(10);
+        long entryBytes = RouteCache.estimateBytes(result);
+        RouteCache cache = new RouteCache(entryBytes * 2, null, Duration.ofHours(1), 5);
+
+        RouteCacheKey first = cache.keyForRoute(RoutingAPI.RoutingProfile.FOOT_WALKING, LEG);
+        RouteCacheKey second = cache.keyForRoute(RoutingAPI.RoutingProfile.DRIVING_CAR, LEG);
+        RouteCacheKey third = cache.keyForRoute(RoutingAPI.RoutingProfile.CYCLING_REGULAR, LEG);
+
+        cache.put(first, result);
+        cache.put(second, result);
+        cache.get(first);
+        cache.put(third, result);
+
+        assertEquals(2, cache.getMemoryEntryCount());
+        assertEquals(1, cache.getMemoryEvictions());
+        assertNotNull(cache.get(first));
+        assertNull(cache.get(second));
+        assertTrue(cache.getMemoryBytes() <= entryBytes * 2);
+    }
+
+    @Test
+    public void resultLargerThanMemoryBudgetIsNotKeptInMemoryTest() {
+        RouteCache cache = new RouteCache(100, null, Duration.ofHours(1), 5);
+
+        cache.put(cache.keyForRoute(RoutingAPI.RoutingProfile.FOOT_WALKING, LEG), resultWithPoints(50));
+
+        assertEquals(0, cache.getMemoryEntryCount());
+    }
+
+    // -------------------------------------------------------------
+    // disk tier tests
+    // -------------------------------------------------------------
+
+    @Test
+    public void diskTierSurvivesNewCacheInstanceTest() {
+        RouteCache writer = new RouteCache(1 << 20, databaseUrl(), Duration.ofHours(1), 5);
+        RouteCacheKey key = writer.keyForRoute(RoutingAPI.RoutingProfile.FOOT_WALKING, LEG);
+        writer.put(key, resultWithPoints(5));
+        writer.close();
+
+        RouteCache reader = new RouteCache(1 << 20, databaseUrl(), Duration.ofHours(1), 5);
+        RouteResult loaded = reader.get(key);
+
+        assertNotNull(loaded);
+        assertEquals(5, loaded.getPointCount());
+        assertEquals(12.5, loaded.getAscent(), 1e-9);
+        assertEquals(7.25, loaded.getDescent(), 1e-9);
+        assertEquals(1234.0, loaded.getDistance(), 1e-9);
+        assertEquals(10.004, loaded.getPoints().get(4).getLatitude(), 1e-12);
+        assertEquals(1, reader.getDiskHits());
+
+        // Promoted into memory on the way out
+        reader.get(key);
+        assertEquals(1, reader.getMemoryHits());
+        reader.close();
+    }
+
+    @Test
+    public void diskEntriesOlderThanTimeToLiveAreDroppedTest() throws InterruptedException {
+        RouteCache writer = new RouteCache(1 << 20, databaseUrl(), Duration.ofHours(1), 5);
+        RouteCacheKey key = writer.keyForRoute(RoutingAPI.RoutingProfile.FOOT_WALKING, LEG);
+        writer.put(key, resultWithPoints(5));
+        writer.close();
+        Thread.sleep(20);
+
+        RouteCache reader = new RouteCache(0, databaseUrl(), Duration.ofMillis(5), 5);
+
+        assertNull(reader.get(key));
+        assertEquals(1, reader.getDiskExpirations());
+        reader.close();
+    }
+
+    @Test
+    public void encodeDecodeRoundTripsPointsAndElevationTest() {
+        RouteResult original = resultWithPoints(3);
+
+        RouteResult decoded = RouteCache.decode(RouteCache.encode(original));
+
+        assertEquals(original.getPoints(), decoded.getPoints());
+        assertEquals(original.getAscent(), decoded.getAscent(), 1e-9);
+        assertEquals(original.getDistance(), decoded.getDistance(), 1e-9);
+    }
+
+    @Test
+    public void encodeDecodeKeepsPerPointElevationsTest() {
+        RouteResult original = RouteResult.fromArrays(new double[]{1.0, 1.1}, new double[]{2.0, 2.1},
+                new float[]{50f, Float.NaN}, 2, 10.0, 0.0, 100.0);
+
+        RouteResult decoded = RouteCache.decode(RouteCache.encode(original));
+
+        assertTrue(decoded.hasPointElevations());
+        assertEquals(50.0, decoded.getElevation(0), 1e-9);
+        assertTrue(Double.isNaN(decoded.getElevation(1)));
+        assertEquals(original.getPoints(), decoded.getPoints());
+    }
+
+    @Test
+    public void unreadableDiskEntryIsDroppedAndMissesTest() throws Exception {
+        RouteCache cache = new RouteCache(0, databaseUrl(), Duration.ofHours(1), 5);
+        RouteCacheKey truncated = cache.keyForRoute(RoutingAPI.RoutingProfile.FOOT_WALKING, LEG);
+        RouteCacheKey oldFormat = cache.keyForRoute(RoutingAPI.RoutingProfile.DRIVING_CAR, LEG);
+        byte[] encoded = RouteCache.encode(resultWithPoints(5));
+        try (Connection connection = DriverManager.getConnection(databaseUrl());
+             PreparedStatement ps = connection.prepareStatement(
+                     "INSERT INTO route_cache (cache_key, result, created_at) VALUES (?, ?, ?)")) {
+            ps.setString(1, truncated.toStorageKey());
+            ps.setBytes(2, Arrays.copyOf(encoded, encoded.length / 2));
+            ps.setLong(3, System.currentTimeMillis());
+            ps.executeUpdate();
+            // Written before the version byte existed: starts straight with the point count
+            ps.setString(1, oldFormat.toStorageKey());
+            ps.setBytes(2, Arrays.copyOfRange(encoded, 1, encoded.length));
+            ps.executeUpdate();
+        }
+
+        assertNull(cache.get(truncated));
+        assertNull(cache.get(oldFormat));
+        assertEquals(2, cache.getDiskDiscarded());
+
+        cache.put(truncated, resultWithPoints(5));
+        cache.close();
+        RouteCache reader = new RouteCache(0, databaseUrl(), Duration.ofHours(1), 5);
+        assertEquals(5, reader.get(truncated).getPointCount());
+        reader.close();
+    }
+
+    @Test
+    public void decodeRejectsTruncatedBytesTest() {
+        byte[] encoded = RouteCache.encode(resultWithPoints(3));
+
+        assertThrows(IllegalArgumentException.class, () -> RouteCache.decode(Arrays.copyOf(encoded, encoded.length - 1)));
+    }
+
+    @Test
+    public void describeStatsReportsHitRateTest() {
+        RouteCache cache = new RouteCache(1 << 20, null, Duration.ofHours(1), 5);
+        RouteCacheKey key = cache.keyForRoute(RoutingAPI.RoutingProfile.FOOT_WALKING, LEG);
+        cache.get(key);
+        cache.put(key, resultWithPoints(3));
+        cache.get(key);
+
+        assertEquals(0.5, cache.getHitRate(), 1e-9);
+        assertTrue(cache.describeStats().contains("50% hit rate"));
+    }
+}
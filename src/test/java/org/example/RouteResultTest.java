@@ -202,4 +202,206 @@ public class RouteResultTest {
         assertEquals(0, resultNull.getPointCount());
         assertEquals(0, resultEmpty.getPointCount());
     }
+
+    // -------------------------------------------------------------
+    // fromArrays(...) / packed point tests
+    // -------------------------------------------------------------
+
+    private RouteResult createPackedResult() {
+        double[] lat = {10.0, 10.001, 10.002, 0};
+        double[] lon = {20.0, 20.0, 20.0, 0};
+        float[] ele = {100f, 105f, Float.NaN, 0};
+        return RouteResult.fromArrays(lat, lon, ele, 3, 5.0, 0.0, 222.0);
+    }
+
+    @Test
+    public void fromArraysExposesPointsAsGeoPositionViewTest() {
+        RouteResult result = createPackedResult();
+
+        assertTrue(result.isPacked());
+        assertEquals(3, result.getPointCount());
+        assertEquals(3, result.getPoints().size());
+        assertEquals(new GeoPosition(10.001, 20.0), result.getPoints().get(1));
+        assertThrows(IndexOutOfBoundsException.class, () -> result.getPoints().get(3));
+    }
+
+    @Test
+    public void fromArraysKeepsPerPointElevationTest() {
+        RouteResult result = createPackedResult();
+
+        assertTrue(result.hasPointElevations());
+        assertEquals(105.0, result.getElevation(1), 1e-9);
+        assertTrue(Double.isNaN(result.getElevation(2)));
+    }
+
+    @Test
+    public void fromArraysRejectsArraysShorterThanCountTest() {
+        assertThrows(IllegalArgumentException.class,
+                () -> RouteResult.fromArrays(new double[2], new double[2], null, 3, 0, 0, 0));
+    }
+
+    @Test
+    public void listBasedResultHasNoPointElevationsTest() {
+        RouteResult result = new RouteResult(createSamplePoints(), 0.0, 0.0, 0.0);
+
+        assertFalse(result.isPacked());
+        assertFalse(result.hasPointElevations());
+        assertTrue(Double.isNaN(result.getElevation(0)));
+        assertEquals(11.0, result.getLatitude(1), 1e-9);
+    }
+
+    @Test
+    public void gradePercentUsesElevationOverSegmentLengthTest() {
+        RouteResult result = createPackedResult();
+
+        double run = result.getSegmentMeters(0);
+        assertEquals(111.2, run, 0.5);
+        assertEquals(5.0 / run * 100, result.getGradePercent(0), 1e-9);
+        assertTrue(Double.isNaN(result.getGradePercent(1)));
+    }
+
+    @Test
+    public void cumulativeDistancesStartAtZeroAndGrowTest() {
+        double[] cumulative = createPackedResult().getCumulativeDistances();
+
+        assertEquals(3, cumulative.length);
+        assertEquals(0.0, cumulative[0], 1e-9);
+        assertEquals(222.4, cumulative[2], 1.0);
+    }
+
+    @Test
+    public void packedResultIsSmallerThanListBasedResultTest() {
+        RouteResult packed = createPackedResult();
+        RouteResult list = new RouteResult(packed.getPoints(), 0, 0, 0);
+
+        assertTrue(packed.estimateHeapBytes() < list.estimateHeapBytes());
+    }
+
+    // -------------------------------------------------------------
+    // splitAtWaypoints() tests
+    // -------------------------------------------------------------
+
+    // Seven points due north, 0.001 degrees apart, rising 10 m then falling 5 m per step from the middle
+    private RouteResult createStraightResultThroughThreeWaypoints() {
+        double[] latitudes = new double[7];
+        double[] longitudes = new double[7];
+        float[] elevations = {100, 110, 120, 130, 125, 120, 115};
+        for (int i = 0; i < 7; i++) {
+            latitudes[i] = 10.0 + i * 0.001;
+            longitudes[i] = 20.0;
+        }
+        return RouteResult.fromArrays(latitudes, longitudes, elevations, 7, 60.0, 30.0, 700.0);
+    }
+
+    @Test
+    public void splitAtWaypointsCutsAtPointNearestEachIntermediateWaypointTest() {
+        RouteResult result = createStraightResultThroughThreeWaypoints();
+        List<GeoPosition> waypoints = Arrays.asList(
+                new GeoPosition(10.0, 20.0),
+                new GeoPosition(10.00302, 20.00001),
+                new GeoPosition(10.006, 20.0));
+
+        List<RouteResult> legs = result.splitAtWaypoints(waypoints);
+
+        assertEquals(2, legs.size());
+        assertEquals(4, legs.get(0).getPointCount());
+        assertEquals(4, legs.get(1).getPointCount());
+        assertEquals(10.003, legs.get(0).getLatitude(3), 1e-9);
+        assertEquals(10.003, legs.get(1).getLatitude(0), 1e-9);
+        assertEquals(130.0, legs.get(1).getElevation(0), 1e-6);
+    }
+
+    @Test
+    public void splitAtWaypointsGivesEachLegItsOwnClimbAddingUpToTotalsTest() {
+        List<RouteResult> legs = createStraightResultThroughThreeWaypoints().splitAtWaypoints(Arrays.asList(
+                new GeoPosition(10.0, 20.0), new GeoPosition(10.003, 20.0), new GeoPosition(10.006, 20.0)));
+
+        // Raw climb is 30 up then 15 down, scaled to the 60 / 30 the API reported
+        assertEquals(60.0, legs.get(0).getAscent(), 1e-6);
+        assertEquals(0.0, legs.get(0).getDescent(), 1e-6);
+        assertEquals(0.0, legs.get(1).getAscent(), 1e-6);
+        assertEquals(30.0, legs.get(1).getDescent(), 1e-6);
+        assertEquals(350.0, legs.get(0).getDistance(), 1e-6);
+        assertEquals(350.0, legs.get(1).getDistance(), 1e-6);
+    }
+
+    @Test
+    public void splitAtWaypointsSharesClimbByLengthWithoutPointElevationsTest() {
+        double[] latitudes = {10.0, 10.001, 10.002, 10.004};
+        double[] longitudes = {20.0, 20.0, 20.0, 20.0};
+        RouteResult result = RouteResult.fromArrays(latitudes, longitudes, null, 4, 40.0, 20.0, 400.0);
+
+        List<RouteResult> legs = result.splitAtWaypoints(Arrays.asList(
+                new GeoPosition(10.0, 20.0), new GeoPosition(10.002, 20.0), new GeoPosition(10.004, 20.0)));
+
+        assertEquals(2, legs.size());
+        assertFalse(legs.get(0).hasPointElevations());
+        assertEquals(20.0, legs.get(0).getAscent(), 1e-6);
+        assertEquals(10.0, legs.get(1).getDescent(), 1e-6);
+        assertEquals(200.0, legs.get(1).getDistance(), 1e-6);
+    }
+
+    @Test
+    public void splitAtWaypointsKeepsEveryLegNonEmptyWhenWaypointsRepeatTest() {
+        RouteResult result = createStraightResultThroughThreeWaypoints();
+        GeoPosition end = new GeoPosition(10.006, 20.0);
+
+        List<RouteResult> legs = result.splitAtWaypoints(Arrays.asList(new GeoPosition(10.0, 20.0), end, end, end));
+
+        assertEquals(3, legs.size());
+        for (RouteResult leg : legs) {
+            assertTrue(leg.getPointCount() >= 2);
+        }
+        assertEquals(10.006, legs.get(2).getLatitude(legs.get(2).getPointCount() - 1), 1e-9);
+    }
+
+    @Test
+    public void splitAtWaypointsReturnsResultItselfForSingleLegTest() {
+        RouteResult result = createStraightResultThroughThreeWaypoints();
+
+        List<RouteResult> legs = result.splitAtWaypoints(Arrays.asList(
+                new GeoPosition(10.0, 20.0), new GeoPosition(10.006, 20.0)));
+
+        assertEquals(Collections.singletonList(result), legs);
+    }
+
+    @Test
+    public void splitAtIndicesCutsAtGivenPointsTest() {
+        double[] latitudes = {10.0, 10.001, 10.002, 10.003, 10.004};
+        double[] longitudes = {20.0, 20.0, 20.0, 20.0, 20.0};
+        RouteResult result = RouteResult.fromArrays(latitudes, longitudes, null, 5, 40.0, 0.0, 400.0);
+
+        List<RouteResult> legs = result.splitAtIndices(new int[]{0, 1, 4});
+
+        assertEquals(2, legs.size());
+        assertEquals(2, legs.get(0).getPointCount());
+        assertEquals(4, legs.get(1).getPointCount());
+        assertEquals(10.001, legs.get(1).getLatitude(0), 1e-9);
+        assertEquals(30.0, legs.get(1).getAscent(), 1e-6);
+    }
+
+    @Test
+    public void splitAtIndicesRejectsCutsNotSpanningTheRouteTest() {
+        RouteResult result = createStraightResultThroughThreeWaypoints();
+        int last = result.getPointCount() - 1;
+
+        assertThrows(IllegalArgumentException.class, () -> result.splitAtIndices(new int[]{1, last}));
+        assertThrows(IllegalArgumentException.class, () -> result.splitAtIndices(new int[]{0, 0, last}));
+        assertThrows(IllegalArgumentException.class, () -> result.splitAtIndices(new int[]{0}));
+    }
+
+    @Test
+    public void reversedSwapsClimbAndPointOrderTest() {
+        RouteResult result = RouteResult.fromArrays(new double[]{1, 2, 3}, new double[]{4, 5, 6},
+                new float[]{100, 110, 105}, 3, 10, 5, 250);
+
+        RouteResult reversed = result.reversed();
+
+        assertEquals(3, reversed.getLatitude(0), 1e-9);
+        assertEquals(4, reversed.getLongitude(2), 1e-9);
+        assertEquals(105, reversed.getElevation(0), 1e-6);
+        assertEquals(5, reversed.getAscent(), 1e-9);
+        assertEquals(10, reversed.getDescent(), 1e-9);
+        assertEquals(250, reversed.getDistance(), 1e-9);
+    }
 }
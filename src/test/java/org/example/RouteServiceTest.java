@@ -7,6 +7,8 @@ import org.junit.jupiter.api.Test;
 import javax.swing.*;
 import java.awt.*;
 import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Collection;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -46,6 +48,16 @@ public class RouteServiceTest {
         }
     }
 
+    private static void invoke(Object target, String name, Class<?>[] types, Object... args) {
+        try {
+            Method m = target.getClass().getDeclaredMethod(name, types);
+            m.setAccessible(true);
+            m.invoke(target, args);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     private RouteService createService() {
         return new RouteService();
     }
@@ -154,6 +166,28 @@ public class RouteServiceTest {
         }
     }
 
+    @Test
+    public void clickDuringNonLegWorkIsRefusedInsteadOfQueuedTest() {
+        RouteService service = createService();
+        try {
+            Collection<?> queued = getField(service, "queuedClicks", Collection.class);
+            // A GPX import or order optimization marks routing in progress without being a leg
+            invoke(service, "setRoutingInProgress", new Class<?>[]{boolean.class}, true);
+
+            invoke(service, "handleMapClick", new Class<?>[]{GeoPosition.class}, new GeoPosition(1.0, 1.0));
+
+            assertTrue(queued.isEmpty());
+            assertTrue(getField(service, "statusLabel", JLabel.class).getText().contains("Please wait"));
+
+            invoke(service, "setLegRoutingInProgress", new Class<?>[0]);
+            invoke(service, "handleMapClick", new Class<?>[]{GeoPosition.class}, new GeoPosition(2.0, 2.0));
+
+            assertEquals(1, queued.size());
+        } finally {
+            service.dispose();
+        }
+    }
+
     @Test
     public void onClearRouteRecordsMementoAllowingUndoToRestoreTest() {
         RouteService service = createService();
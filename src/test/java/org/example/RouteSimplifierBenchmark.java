@@ -0,0 +1,115 @@
+package org.example;
+
+import java.util.Random;
+
+/**
+ * Compares {@link RouteSimplifier} with the fixed-step sampler RoutingAPI used before it,
+ * on a synthetic 100k-point route with road-like turns and small wiggles.
+ *
+ * Not a unit test; run it after test-compile with
+ * {@code java -cp target/classes:target/test-classes:<jxmapviewer2 jar> org.example.RouteSimplifierBenchmark}.
+ * For each method it prints the time per run, the number of points kept and how far the
+ * simplified polyline length is from the full-resolution length.
+ */
+public class RouteSimplifierBenchmark {
+
+    private static final int POINT_COUNT = 100_000;
+    private static final int SAMPLER_TARGET = 500;
+    private static final double[] TOLERANCES_METERS = {0.5, 2, 5, 10, 25};
+    private static final long TARGET_NANOS_PER_CASE = 2_000_000_000L;
+
+    private static volatile Object sink;
+
+    public static void main(String[] args) {
+        double[] latitudes = new double[POINT_COUNT];
+        double[] longitudes = new double[POINT_COUNT];
+        generateRoute(latitudes, longitudes, new Random(42));
+
+        double fullMeters = polylineMeters(latitudes, longitudes, identity(POINT_COUNT));
+        System.out.printf("%d points, %.2f km at full resolution%n%n", POINT_COUNT, fullMeters / 1000);
+        System.out.printf("%-22s %10s %9s %14s%n", "method", "ms/run", "points", "distance err");
+
+        int[] sampled = sampleEveryNth(POINT_COUNT);
+        double samplerMs = measure(() -> sink = sampleEveryNth(POINT_COUNT));
+        print("step sampler (500)", samplerMs, sampled, latitudes, longitudes, fullMeters);
+
+        for (double tolerance : TOLERANCES_METERS) {
+            int[] kept = RouteSimplifier.keptIndices(latitudes, longitudes, POINT_COUNT, tolerance);
+            double ms = measure(() -> sink = RouteSimplifier.keptIndices(latitudes, longitudes, POINT_COUNT, tolerance));
+            print(String.format("douglas-peucker %.1fm", tolerance), ms, kept, latitudes, longitudes, fullMeters);
+        }
+    }
+
+    /**
+     * Walk with 5 m steps, a gentle random heading drift, GPS-like jitter and an
+     * occasional sharp turn at a junction.
+     */
+    private static void generateRoute(double[] latitudes, double[] longitudes, Random random) {
+        double lat = 40.015;
+        double lon = -105.27;
+        double heading = 0;
+        double metersPerDegreeLon = 111_320.0 * Math.cos(Math.toRadians(lat));
+        for (int i = 0; i < latitudes.length; i++) {
+            if (random.nextInt(200) == 0) heading += (random.nextBoolean() ? 1 : -1) * Math.PI / 2;
+            heading += random.nextGaussian() * 0.05;
+            double north = 5 * Math.cos(heading) + random.nextGaussian() * 0.3;
+            double east = 5 * Math.sin(heading) + random.nextGaussian() * 0.3;
+            lat += north / 111_320.0;
+            lon += east / metersPerDegreeLon;
+            latitudes[i] = lat;
+            longitudes[i] = lon;
+        }
+    }
+
+    /**
+     * The pre-simplifier sampler: every size/500-th point plus the last one.
+     */
+    private static int[] sampleEveryNth(int count) {
+        int step = count / SAMPLER_TARGET;
+        int sampledCount = (count + step - 1) / step;
+        boolean lastIncluded = (count - 1) % step == 0;
+        int[] indices = new int[lastIncluded ? sampledCount : sampledCount + 1];
+        int out = 0;
+        for (int i = 0; i < count; i += step) indices[out++] = i;
+        if (!lastIncluded) indices[out] = count - 1;
+        return indices;
+    }
+
+    private static int[] identity(int count) {
+        int[] indices = new int[count];
+        for (int i = 0; i < count; i++) indices[i] = i;
+        return indices;
+    }
+
+    private static double polylineMeters(double[] latitudes, double[] longitudes, int[] indices) {
+        double total = 0;
+        for (int i = 1; i < indices.length; i++) {
+            total += Point.haversineKm(latitudes[indices[i - 1]], longitudes[indices[i - 1]],
+                    latitudes[indices[i]], longitudes[indices[i]]) * 1000;
+        }
+        return total;
+    }
+
+    private static void print(String name, double ms, int[] kept, double[] latitudes, double[] longitudes,
+                              double fullMeters) {
+        double error = (polylineMeters(latitudes, longitudes, kept) - fullMeters) / fullMeters * 100;
+        System.out.printf("%-22s %10.3f %9d %13.2f%%%n", name, ms, kept.length, error);
+    }
+
+    private static double measure(Runnable task) {
+        long warmupEnd = System.nanoTime() + TARGET_NANOS_PER_CASE / 2;
+        while (System.nanoTime() < warmupEnd) {
+            task.run();
+        }
+
+        int iterations = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            task.run();
+            iterations++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < TARGET_NANOS_PER_CASE);
+        return elapsed / 1e6 / iterations;
+    }
+}
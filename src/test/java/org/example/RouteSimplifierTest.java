@@ -0,0 +1,93 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RouteSimplifierTest {
+
+    // Roughly 1.1 m per step northwards at 1e-5 degrees
+    private static double[] straightLatitudes(int count) {
+        double[] lat = new double[count];
+        for (int i = 0; i < count; i++) lat[i] = 40.0 + i * 1e-5;
+        return lat;
+    }
+
+    private static double[] constant(int count, double value) {
+        double[] values = new double[count];
+        java.util.Arrays.fill(values, value);
+        return values;
+    }
+
+    @Test
+    public void straightLineKeepsOnlyEndpointsTest() {
+        int[] kept = RouteSimplifier.keptIndices(straightLatitudes(100), constant(100, -105.0), 100, 1.0);
+
+        assertArrayEquals(new int[]{0, 99}, kept);
+    }
+
+    @Test
+    public void cornerBeyondToleranceIsKeptTest() {
+        double[] lat = {40.0, 40.001, 40.001};
+        double[] lon = {-105.0, -105.0, -104.999};
+
+        int[] kept = RouteSimplifier.keptIndices(lat, lon, 3, 5.0);
+
+        assertArrayEquals(new int[]{0, 1, 2}, kept);
+    }
+
+    @Test
+    public void wiggleWithinToleranceIsDroppedTest() {
+        double[] lat = straightLatitudes(5);
+        double[] lon = {-105.0, -105.00001, -105.0, -105.00001, -105.0};
+
+        int[] kept = RouteSimplifier.keptIndices(lat, lon, 5, 2.0);
+
+        assertArrayEquals(new int[]{0, 4}, kept);
+    }
+
+    @Test
+    public void closedLoopKeepsFarSideTest() {
+        double[] lat = {40.0, 40.001, 40.001, 40.0, 40.0};
+        double[] lon = {-105.0, -105.0, -104.999, -104.999, -105.0};
+
+        int[] kept = RouteSimplifier.keptIndices(lat, lon, 5, 5.0);
+
+        assertTrue(kept.length >= 4, "loop collapsed to " + kept.length + " points");
+        assertEquals(0, kept[0]);
+        assertEquals(4, kept[kept.length - 1]);
+    }
+
+    @Test
+    public void zeroToleranceKeepsEveryPointTest() {
+        int[] kept = RouteSimplifier.keptIndices(straightLatitudes(10), constant(10, -105.0), 10, 0);
+
+        assertEquals(10, kept.length);
+    }
+
+    @Test
+    public void onlyUsesFirstCountEntriesTest() {
+        double[] lat = {40.0, 40.001, 99.0};
+        double[] lon = {-105.0, -105.0, 99.0};
+
+        int[] kept = RouteSimplifier.keptIndices(lat, lon, 2, 1.0);
+
+        assertArrayEquals(new int[]{0, 1}, kept);
+    }
+
+    @Test
+    public void simplifyKeepsElevationsAndTotalsOfFullRouteTest() {
+        double[] lat = {40.0, 40.0005, 40.001, 40.001};
+        double[] lon = {-105.0, -105.0, -105.0, -104.999};
+        float[] ele = {10f, 11f, 12f, 13f};
+        RouteResult full = RouteResult.fromArrays(lat, lon, ele, 4, 3.0, 0.0, 200.0);
+
+        RouteResult simplified = RouteSimplifier.simplify(full, 2.0);
+
+        assertEquals(3, simplified.getPointCount());
+        assertEquals(12.0, simplified.getElevation(1), 1e-9);
+        assertEquals(13.0, simplified.getElevation(2), 1e-9);
+        assertEquals(3.0, simplified.getAscent(), 1e-9);
+        assertEquals(200.0, simplified.getDistance(), 1e-9);
+    }
+}
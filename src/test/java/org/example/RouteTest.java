@@ -463,4 +463,170 @@ public class RouteTest {
 
         assertEquals("", route.getName());
     }
+
+    // -------------------------------------------------------------
+    // per-point elevation tests
+    // -------------------------------------------------------------
+
+    @Test
+    public void addWaypointWithoutElevationStoresNaNTest() {
+        Route route = createRouteWithTwoPoints();
+
+        assertTrue(Double.isNaN(route.getElevationAt(0)));
+        assertFalse(route.hasPointElevations());
+    }
+
+    @Test
+    public void loadRouteFromRouteResultCopiesPointsElevationsAndTotalsTest() {
+        RouteResult result = RouteResult.fromArrays(new double[]{10.0, 10.1, 10.2}, new double[]{20.0, 20.1, 20.2},
+                new float[]{100f, 110f, 105f}, 3, 10.0, 5.0, 3000.0);
+        Route route = new Route();
+
+        route.loadRouteFromRouteResult(result);
+
+        assertEquals(3, route.getPoints().size());
+        assertEquals(Point.PointType.START, route.getPoints().get(0).getType());
+        assertEquals(Point.PointType.END, route.getPoints().get(2).getType());
+        assertEquals(110.0, route.getElevationAt(1), 1e-9);
+        assertEquals(10.0, route.getAscentInMeters(), 1e-9);
+        assertEquals(5.0, route.getDescentInMeters(), 1e-9);
+    }
+
+    @Test
+    public void appendRouteResultSkipsRepeatedFirstPointTest() {
+        Route route = new Route();
+        route.addWaypoint(new GeoPosition(10.0, 20.0));
+        RouteResult leg = RouteResult.fromArrays(new double[]{10.0, 10.1}, new double[]{20.0, 20.1},
+                new float[]{1f, 2f}, 2, 1.0, 0.0, 100.0);
+
+        route.appendRouteResult(leg, true);
+
+        assertEquals(2, route.getPoints().size());
+        assertEquals(2.0, route.getElevationAt(1), 1e-9);
+    }
+
+    @Test
+    public void mementoRestoresPerPointElevationsTest() {
+        Route route = new Route();
+        route.addWaypoint(new GeoPosition(10.0, 20.0), 42.0);
+        RouteMemento memento = route.createMemento();
+        route.clear();
+        route.addWaypoint(new GeoPosition(11.0, 21.0));
+
+        route.applyMemento(memento);
+
+        assertEquals(42.0, route.getElevationAt(0), 1e-9);
+    }
+
+    // -------------------------------------------------------------
+    // getSimplifiedGeoPositions(...) tests
+    // -------------------------------------------------------------
+
+    private Route createStraightRoute(int count) {
+        Route route = new Route();
+        for (int i = 0; i < count; i++) {
+            route.addWaypoint(new GeoPosition(40.0 + i * 1e-5, -105.0));
+        }
+        return route;
+    }
+
+    @Test
+    public void simplifiedViewDropsCollinearPointsButKeepsFullGeometryTest() {
+        Route route = createStraightRoute(50);
+
+        List<GeoPosition> simplified = route.getSimplifiedGeoPositions(1.0);
+
+        assertEquals(2, simplified.size());
+        assertEquals(50, route.getPoints().size());
+    }
+
+    @Test
+    public void simplifiedViewIsCachedUntilRouteChangesTest() {
+        Route route = createStraightRoute(10);
+
+        List<GeoPosition> first = route.getSimplifiedGeoPositions(1.0);
+        assertSame(first, route.getSimplifiedGeoPositions(1.0));
+
+        route.addWaypoint(new GeoPosition(40.0, -104.99));
+        List<GeoPosition> afterChange = route.getSimplifiedGeoPositions(1.0);
+
+        assertNotSame(first, afterChange);
+        assertEquals(new GeoPosition(40.0, -104.99), afterChange.get(afterChange.size() - 1));
+    }
+
+    @Test
+    public void setPointElevationsReplacesHeightsButNotTotalsTest() {
+        Route route = new Route();
+        route.addWaypoint(new GeoPosition(40.0, -105.0));
+        route.addWaypoint(new GeoPosition(40.1, -105.0));
+        route.setElevation(12, 3);
+
+        route.setPointElevations(new float[]{1500f, 1520f});
+
+        assertEquals(1500, route.getElevationAt(0), 1e-6);
+        assertEquals(1520, route.getElevationAt(1), 1e-6);
+        assertEquals(12, route.getAscentInMeters());
+        assertThrows(IllegalArgumentException.class, () -> route.setPointElevations(new float[1]));
+    }
+
+    @Test
+    public void appendedLegInteriorIsNotCountedAsStopsTest() {
+        Route route = new Route();
+        route.addWaypoint(new GeoPosition(40.0, -105.0));
+        route.appendRouteResult(RouteResult.fromArrays(new double[]{40.0, 40.01, 40.02}, new double[]{-105.0, -105.0, -105.0},
+                null, 3, 0, 0, 2200), true);
+        route.appendRouteResult(RouteResult.fromArrays(new double[]{40.02, 40.02, 40.03}, new double[]{-105.0, -105.01, -105.01},
+                null, 3, 0, 0, 2000), true);
+
+        assertArrayEquals(new int[]{0, 2, 4}, route.getStopIndices());
+    }
+
+    @Test
+    public void loadRouteFromLegsJoinsLegsAndSumsClimbTest() {
+        Route route = createStraightRoute(3);
+        RouteResult first = RouteResult.fromArrays(new double[]{40.0, 40.01, 40.02}, new double[]{-105.0, -105.0, -105.0},
+                null, 3, 10, 2, 2200);
+        RouteResult second = RouteResult.fromArrays(new double[]{40.02, 40.03}, new double[]{-105.0, -105.0},
+                null, 2, 5, 1, 1100);
+
+        route.loadRouteFromLegs(List.of(first, second));
+
+        assertEquals(4, route.getPoints().size());
+        assertArrayEquals(new int[]{0, 2, 3}, route.getStopIndices());
+        assertEquals(15, route.getAscentInMeters(), 1e-9);
+        assertEquals(3, route.getDescentInMeters(), 1e-9);
+        RouteResult packed = route.toRouteResult();
+        assertEquals(4, packed.getPointCount());
+        assertEquals(40.03, packed.getLatitude(3), 1e-9);
+        assertEquals(route.getTotalDistance() * 1000, packed.getDistance(), 1e-6);
+    }
+
+    @Test
+    public void routeLoadedWithoutStopsReportsThemUnknownTest() {
+        Route route = new Route();
+        route.loadRouteFromGeoPositions(List.of(new GeoPosition(40.0, -105.0), new GeoPosition(40.01, -105.0),
+                new GeoPosition(40.02, -105.0), new GeoPosition(40.03, -105.0)));
+
+        assertFalse(route.hasKnownStops());
+
+        RouteMemento memento = route.createMemento();
+        route.clear();
+        assertTrue(route.hasKnownStops());
+        route.applyMemento(memento);
+        assertFalse(route.hasKnownStops());
+    }
+
+    @Test
+    public void routeLoadedWithStopsKeepsShapePointsOutOfStopsTest() {
+        Route route = new Route();
+        route.loadRouteFromGeoPositions(List.of(new GeoPosition(40.0, -105.0), new GeoPosition(40.01, -105.0),
+                new GeoPosition(40.02, -105.0), new GeoPosition(40.03, -105.0), new GeoPosition(40.04, -105.0)),
+                new int[]{0, 2, 4});
+
+        assertTrue(route.hasKnownStops());
+        assertArrayEquals(new int[]{0, 2, 4}, route.getStopIndices());
+        assertEquals(Point.PointType.INTERPOLATED, route.getPoints().get(1).getType());
+        assertEquals(Point.PointType.WAYPOINT, route.getPoints().get(2).getType());
+        assertEquals(Point.PointType.END, route.getPoints().get(4).getType());
+    }
 }
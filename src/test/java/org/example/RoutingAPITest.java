@@ -3,8 +3,15 @@ package org.example;
 import org.jxmapviewer.viewer.GeoPosition;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -163,6 +170,142 @@ public class RoutingAPITest {
         assertNull(result);
     }
 
+    @Test
+    public void snapToRoadsWithTwoPointsSendsNothingOnceDeadlineHasPassedTest() {
+        RoutingHttpTransport transport = new RoutingHttpTransport();
+        RoutingAPI api = new RoutingAPI("key", transport);
+        List<GeoPosition> waypoints = new ArrayList<>();
+        waypoints.add(new GeoPosition(1.0, 2.0));
+        waypoints.add(new GeoPosition(3.0, 4.0));
+
+        RouteResult result = api.snapToRoadsWithTwoPoints(waypoints, RoutingDeadline.after(Duration.ZERO));
+
+        assertNull(result);
+        assertEquals(0, transport.getRequestsSent());
+    }
+
+    @Test
+    public void snapToRoadsWithTwoPointsAnswersRepeatLegFromCacheWithoutNetworkTest() {
+        RoutingHttpTransport transport = new RoutingHttpTransport();
+        RoutingAPI api = new RoutingAPI("key", transport);
+        RouteCache cache = new RouteCache(1 << 20, null, Duration.ofHours(1), 5);
+        api.setRouteCache(cache);
+        List<GeoPosition> waypoints = new ArrayList<>();
+        waypoints.add(new GeoPosition(1.0, 2.0));
+        waypoints.add(new GeoPosition(3.0, 4.0));
+        RouteResult cached = new RouteResult(List.of(new GeoPosition(1.0, 2.0), new GeoPosition(2.0, 3.0),
+                new GeoPosition(3.0, 4.0)), 5, 5, 300);
+        cache.put(cache.keyForRoute(RoutingAPI.RoutingProfile.FOOT_WALKING, waypoints), cached);
+
+        RouteResult result = api.snapToRoadsWithTwoPoints(waypoints);
+
+        assertSame(cached, result);
+        assertEquals(0, transport.getRequestsSent());
+        assertEquals(1, cache.getMemoryHits());
+    }
+
+    @Test
+    public void hedgeLatencyIsRecordedForNetworkLegsButNotCacheHitsTest() throws Exception {
+        try (MockRoutingServer server = MockRoutingServer.start()) {
+            RoutingAPI api = apiFor(server);
+            api.setRouteCache(new RouteCache(1 << 20, null, Duration.ofHours(1), 5));
+            api.setHedgingEnabled(true);
+            LatencyTracker tracker = api.getHedgedRouter().getLatencyTracker(RoutingAPI.RoutingProfile.FOOT_WALKING);
+
+            assertNotNull(api.snapToRoadsWithTwoPoints(TWO_POINTS));
+            for (int i = 0; i < 5; i++) {
+                assertNotNull(api.snapToRoadsWithTwoPoints(TWO_POINTS));
+            }
+
+            assertEquals(1, server.getRequests());
+            assertEquals(1, tracker.getSampleCount());
+        }
+    }
+
+    @Test
+    public void snapToRoadsWithTwoPointsSkipsProfilesWithOpenCircuitTest() {
+        RoutingHttpTransport transport = new RoutingHttpTransport();
+        RoutingAPI api = new RoutingAPI("key", transport);
+        for (RoutingAPI.RoutingProfile profile : api.buildSnapFallbackChain()) {
+            ProfileCircuitBreaker breaker = api.getCircuitBreaker(profile);
+            breaker.setThresholds(1, 0.5, 0.5, 1000);
+            assertTrue(breaker.tryAcquirePermission());
+            breaker.recordFailure();
+        }
+        List<GeoPosition> waypoints = new ArrayList<>();
+        waypoints.add(new GeoPosition(1.0, 2.0));
+        waypoints.add(new GeoPosition(3.0, 4.0));
+
+        RouteResult result = api.snapToRoadsWithTwoPoints(waypoints);
+
+        assertNull(result);
+        assertEquals(0, transport.getRequestsSent());
+        assertTrue(api.describeCircuitBreakers().contains("foot-walking OPEN"));
+    }
+
+    @Test
+    public void spentBudgetDoesNotCountAgainstCircuitBreakerTest() throws Exception {
+        try (MockRoutingServer server = MockRoutingServer.start()) {
+            RoutingAPI api = apiFor(server);
+            ProfileCircuitBreaker breaker = api.getCircuitBreaker(RoutingAPI.RoutingProfile.FOOT_WALKING);
+            breaker.setThresholds(1, 0.5, 0.5, 1000);
+
+            RouteResult result = api.snapToRoadsWithTwoPoints(TWO_POINTS, RoutingDeadline.after(Duration.ZERO));
+
+            assertNull(result);
+            assertEquals(0, server.getRequests());
+            assertEquals(0, breaker.getCallsPermitted());
+            assertEquals(0.0, breaker.getFailureRate(), 0.0);
+            assertEquals(ProfileCircuitBreaker.State.CLOSED, breaker.getState());
+        }
+    }
+
+    @Test
+    public void legAndRoundTripBudgetsAreConfigurableTest() {
+        RoutingAPI api = new RoutingAPI("key");
+
+        api.setLegBudget(Duration.ofSeconds(3));
+        api.setRoundTripBudget(Duration.ofSeconds(12));
+
+        assertEquals(3000, api.newLegDeadline().getBudgetMillis());
+        assertEquals(12000, api.newRoundTripDeadline().getBudgetMillis());
+    }
+
+    // -------------------------------------------------------------
+    // buildSnapFallbackChain() / hedging tests
+    // -------------------------------------------------------------
+
+    @Test
+    public void buildSnapFallbackChainPutsCurrentProfileFirstThenWalkingThenDrivingTest() {
+        RoutingAPI api = new RoutingAPI("key");
+        api.setProfile(RoutingAPI.RoutingProfile.CYCLING_REGULAR);
+
+        List<RoutingAPI.RoutingProfile> chain = api.buildSnapFallbackChain();
+
+        assertEquals(List.of(RoutingAPI.RoutingProfile.CYCLING_REGULAR,
+                RoutingAPI.RoutingProfile.FOOT_WALKING,
+                RoutingAPI.RoutingProfile.DRIVING_CAR), chain);
+    }
+
+    @Test
+    public void buildSnapFallbackChainDoesNotRepeatCurrentProfileTest() {
+        RoutingAPI api = new RoutingAPI("key");
+
+        assertEquals(List.of(RoutingAPI.RoutingProfile.FOOT_WALKING, RoutingAPI.RoutingProfile.DRIVING_CAR),
+                api.buildSnapFallbackChain());
+    }
+
+    @Test
+    public void hedgingIsDisabledByDefaultAndCanBeEnabledTest() {
+        RoutingAPI api = new RoutingAPI("key");
+        assertFalse(api.isHedgingEnabled());
+
+        api.setHedgingEnabled(true);
+
+        assertTrue(api.isHedgingEnabled());
+        assertNotNull(api.getHedgedRouter());
+    }
+
     // -------------------------------------------------------------
     // buildJsonRequestForRoundTrip(...) tests
     // -------------------------------------------------------------
@@ -213,6 +356,31 @@ public class RoutingAPITest {
         assertTrue(json.contains("\"format\":\"geojson\""));
     }
 
+    @Test
+    public void encodedPolylineFormatUsesJsonEndpointWithoutGeoJsonFormatTest() {
+        RoutingAPI api = new RoutingAPI("key");
+        api.setResponseFormat(RoutingAPI.ResponseFormat.ENCODED_POLYLINE);
+        List<GeoPosition> waypoints = List.of(new GeoPosition(1.0, 2.0), new GeoPosition(3.0, 4.0));
+
+        String routeJson = api.buildJasonRequestForRouteWithProfile(waypoints).toString();
+        String roundTripJson = api.buildJsonRequestForRoundTrip(new GeoPosition(1.0, 2.0), 5000, 3, null).toString();
+
+        assertFalse(routeJson.contains("geojson"));
+        assertTrue(routeJson.contains("\"elevation\":true"));
+        assertTrue(roundTripJson.contains("\"geometry\":true"));
+        assertEquals("https://api.openrouteservice.org/v2/directions/foot-walking/json",
+                api.directionsUrl(RoutingAPI.RoutingProfile.FOOT_WALKING, api.getResponseFormat()));
+    }
+
+    @Test
+    public void responseFormatDefaultsToGeoJsonTest() {
+        RoutingAPI api = new RoutingAPI("key");
+
+        assertEquals(RoutingAPI.ResponseFormat.GEOJSON, api.getResponseFormat());
+        assertEquals("https://api.openrouteservice.org/v2/directions/driving-car/geojson",
+                api.directionsUrl(RoutingAPI.RoutingProfile.DRIVING_CAR, api.getResponseFormat()));
+    }
+
     @Test
     public void buildJasonRequestForRouteWithProfileMultipleWaypointsCommaSeparatedTest() {
         RoutingAPI api = new RoutingAPI("key");
@@ -289,4 +457,322 @@ public class RoutingAPITest {
         assertEquals(5, api.makeSureAtLeast3Points(5));
         assertEquals(10, api.makeSureAtLeast3Points(10));
     }
+
+    // -------------------------------------------------------------
+    // Against MockRoutingServer
+    // -------------------------------------------------------------
+
+    private static RoutingAPI apiFor(MockRoutingServer server) {
+        return new RoutingAPI("test-key", new RoutingHttpTransport(), server.getBaseUrl(),
+                new RoutingRateLimiter(6000, 100));
+    }
+
+    private static final List<GeoPosition> TWO_POINTS = List.of(new GeoPosition(49.41, 8.68), new GeoPosition(49.42, 8.69));
+
+    @Test
+    public void baseUrlOverrideIsUsedForDirectionsAndTrailingSlashDroppedTest() {
+        RoutingAPI api = new RoutingAPI("key", new RoutingHttpTransport(), "http://localhost:8080/",
+                new RoutingRateLimiter());
+
+        assertEquals("http://localhost:8080", api.getBaseUrl());
+        assertEquals("http://localhost:8080/v2/directions/foot-walking/geojson",
+                api.directionsUrl(RoutingAPI.RoutingProfile.FOOT_WALKING, RoutingAPI.ResponseFormat.GEOJSON));
+        assertThrows(IllegalArgumentException.class,
+                () -> new RoutingAPI("key", new RoutingHttpTransport(), " ", new RoutingRateLimiter()));
+    }
+
+    @Test
+    public void routesThroughMockServerWithElevationTest() throws Exception {
+        try (MockRoutingServer server = MockRoutingServer.start()) {
+            server.setPointsPerResponse(500);
+            server.setRequiredApiKey("test-key");
+            RoutingAPI api = apiFor(server);
+
+            RouteResult result = api.snapToRoadsWithTwoPoints(TWO_POINTS, api.newLegDeadline());
+
+            assertNotNull(result);
+            assertEquals(500, result.getPointCount());
+            assertTrue(result.hasPointElevations());
+            assertTrue(result.getAscent() > 0);
+            assertEquals(49.42, result.getLatitude(499), 1e-9);
+            assertEquals(1, server.getRequestsFor("foot-walking"));
+            assertTrue(server.getLastRequestBody().contains("[8.68,49.41]"));
+            assertEquals(1, api.getTransport().getGzipResponses());
+        }
+    }
+
+    @Test
+    public void encodedPolylineResponsesDecodeFromMockServerTest() throws Exception {
+        try (MockRoutingServer server = MockRoutingServer.start()) {
+            server.setPointsPerResponse(300);
+            RoutingAPI api = apiFor(server);
+            api.setResponseFormat(RoutingAPI.ResponseFormat.ENCODED_POLYLINE);
+
+            RouteResult result = api.snapToRoadsWithTwoPoints(TWO_POINTS, api.newLegDeadline());
+
+            assertNotNull(result);
+            assertEquals(300, result.getPointCount());
+            assertEquals(49.41, result.getLatitude(0), 1e-5);
+        }
+    }
+
+    @Test
+    public void roundTripFromMockServerStartsAndEndsAtStartTest() throws Exception {
+        try (MockRoutingServer server = MockRoutingServer.start()) {
+            RoutingAPI api = apiFor(server);
+
+            RouteResult loop = api.generateRoundTripWithAPI(new GeoPosition(40.0, -105.0), 5.0);
+
+            assertNotNull(loop);
+            assertEquals(5000, loop.getDistance(), 50);
+            assertEquals(40.0, loop.getLatitude(loop.getPointCount() - 1), 1e-9);
+            assertTrue(server.getLastRequestBody().contains("\"length\":5000"));
+        }
+    }
+
+    @Test
+    public void serverErrorOnCurrentProfileFallsBackToNextProfileTest() throws Exception {
+        try (MockRoutingServer server = MockRoutingServer.start()) {
+            server.failProfile("foot-walking", 500);
+            RoutingAPI api = apiFor(server);
+
+            RouteResult result = api.snapToRoadsWithTwoPoints(TWO_POINTS, api.newLegDeadline());
+
+            assertNotNull(result);
+            assertEquals(1, server.getServerErrors());
+            assertEquals(1, server.getRequestsFor("driving-car"));
+        }
+    }
+
+    @Test
+    public void rateLimitedRequestIsRetriedAfterBackoffTest() throws Exception {
+        try (MockRoutingServer server = MockRoutingServer.start()) {
+            server.setRetryAfterSeconds(0);
+            server.failNext(1, 429);
+            RoutingAPI api = apiFor(server);
+
+            RouteResult result = api.snapToRoadsWithTwoPoints(TWO_POINTS, api.newLegDeadline());
+
+            assertNotNull(result);
+            assertEquals(1, server.getRateLimited());
+            assertEquals(2, server.getRequestsFor("foot-walking"));
+            assertEquals(1, api.getRateLimiter().getRetries());
+        }
+    }
+
+    @Test
+    public void slowServerIsCutOffAtLegBudgetTest() throws Exception {
+        try (MockRoutingServer server = MockRoutingServer.start()) {
+            server.setLatency(MockRoutingServer.fixedLatency(3000));
+            RoutingAPI api = apiFor(server);
+            api.setLegBudget(Duration.ofMillis(300));
+
+            long started = System.nanoTime();
+            RouteResult result = api.snapToRoadsWithTwoPoints(TWO_POINTS, api.newLegDeadline());
+            long elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+
+            assertNull(result);
+            assertTrue(elapsedMillis < 1500, "took " + elapsedMillis + " ms");
+        }
+    }
+
+    @Test
+    public void bodyStalledPastLegBudgetIsCutOffTest() throws Exception {
+        try (MockRoutingServer server = MockRoutingServer.start()) {
+            server.setPointsPerResponse(2000);
+            server.setBodyStall(5000);
+            RoutingAPI api = apiFor(server);
+            api.setLegBudget(Duration.ofMillis(1000));
+
+            long started = System.nanoTime();
+            RouteResult result = api.snapToRoadsWithTwoPoints(TWO_POINTS, api.newLegDeadline());
+            long elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+
+            assertNull(result);
+            assertEquals(1, server.getStalledBodies());
+            assertTrue(elapsedMillis < 2500, "took " + elapsedMillis + " ms");
+        }
+    }
+
+    @Test
+    public void wrongApiKeyIsRejectedWithoutFallbackSuccessTest() throws Exception {
+        try (MockRoutingServer server = MockRoutingServer.start()) {
+            server.setRequiredApiKey("other-key");
+            RoutingAPI api = apiFor(server);
+
+            assertNull(api.snapToRoadsWithTwoPoints(TWO_POINTS, api.newLegDeadline()));
+            assertEquals(0, server.getSuccesses());
+            assertTrue(server.getClientErrors() >= 1);
+        }
+    }
+
+    @Test
+    public void asyncSnapCompletesOnConfiguredExecutorTest() throws Exception {
+        try (MockRoutingServer server = MockRoutingServer.start()) {
+            server.setPointsPerResponse(200);
+            RoutingAPI api = apiFor(server);
+            ExecutorService executor = Executors.newSingleThreadExecutor(new DaemonThreadFactory("async-test"));
+            api.setAsyncExecutor(executor);
+            try {
+                CompletableFuture<String> thread = api.snapToRoadsWithTwoPointsAsync(TWO_POINTS, api.newLegDeadline())
+                        .thenApply(result -> result.getPointCount() + " on " + Thread.currentThread().getName());
+
+                assertEquals("200 on async-test-1", thread.get(5, TimeUnit.SECONDS));
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    @Test
+    public void calibratedSearchCalibratesOnlyTheBestSeedTest() throws Exception {
+        try (MockRoutingServer server = MockRoutingServer.start()) {
+            server.setRoundTripStretch(1.4);
+            RoutingAPI api = apiFor(server);
+            api.setRoundTripCalibrationEnabled(true);
+            RoundTripCalibrator calibrator = api.getRoundTripCalibrator();
+            List<Integer> seeds = RoundTripSearch.seedsFrom(7, RoundTripSearch.DEFAULT_SEED_COUNT);
+
+            RoundTripSearch.Result search = api.generateBestRoundTrip(new GeoPosition(49.41, 8.68), 5.0, 5, seeds,
+                    new RoundTripScorer(5000, false, 0), api.newRoundTripDeadline());
+
+            // One request per seed, then the winner's remaining probes; never a calibration per seed
+            assertEquals(1, calibrator.getCalibrations());
+            assertTrue(server.getRequests() <= seeds.size() + calibrator.getMaxProbes() - 1,
+                    server.getRequests() + " requests for one generation");
+            assertEquals(seeds.size() + calibrator.getProbesSent(), server.getRequests());
+            assertEquals(seeds.size(), search.getCandidates().size());
+            assertEquals(5000, search.getBestResult().getDistance(), 5000 * calibrator.getTolerance());
+        }
+    }
+
+    @Test
+    public void asyncRoundTripCompletesTest() throws Exception {
+        try (MockRoutingServer server = MockRoutingServer.start()) {
+            RoutingAPI api = apiFor(server);
+
+            RouteResult loop = api.generateRoundTripWithAPIAsync(new GeoPosition(49.41, 8.68), 3.0, 5, 7,
+                    api.newRoundTripDeadline()).get(5, TimeUnit.SECONDS);
+
+            assertNotNull(loop);
+            assertTrue(loop.getPointCount() >= 3);
+        }
+    }
+
+    @Test
+    public void cancellingAsyncSnapAbortsExchangeAndFreesThreadTest() throws Exception {
+        try (MockRoutingServer server = MockRoutingServer.start()) {
+            server.setLatency(MockRoutingServer.fixedLatency(3000));
+            RoutingAPI api = apiFor(server);
+            ExecutorService executor = Executors.newSingleThreadExecutor(new DaemonThreadFactory("async-test"));
+            api.setAsyncExecutor(executor);
+            try {
+                CompletableFuture<RouteResult> leg = api.snapToRoadsWithTwoPointsAsync(TWO_POINTS,
+                        RoutingDeadline.after(Duration.ofSeconds(10)));
+                Thread.sleep(200);
+                long started = System.nanoTime();
+                assertTrue(leg.cancel(true));
+
+                // The only worker thread is free again long before the server would have answered
+                Future<?> next = executor.submit(() -> { });
+                next.get(1500, TimeUnit.MILLISECONDS);
+                long elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+
+                assertTrue(leg.isCancelled());
+                assertThrows(CancellationException.class, leg::join);
+                assertTrue(elapsedMillis < 1500, "took " + elapsedMillis + " ms");
+                // Cancelling says nothing about the profile's health
+                assertEquals(0.0, api.getCircuitBreaker(RoutingAPI.RoutingProfile.FOOT_WALKING).getFailureRate(), 0.0);
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    @Test
+    public void cancellingAsyncSnapDuringStalledBodyFreesThreadTest() throws Exception {
+        try (MockRoutingServer server = MockRoutingServer.start()) {
+            server.setPointsPerResponse(2000);
+            server.setBodyStall(5000);
+            RoutingAPI api = apiFor(server);
+            ExecutorService executor = Executors.newSingleThreadExecutor(new DaemonThreadFactory("async-test"));
+            api.setAsyncExecutor(executor);
+            try {
+                CompletableFuture<RouteResult> leg = api.snapToRoadsWithTwoPointsAsync(TWO_POINTS,
+                        RoutingDeadline.after(Duration.ofSeconds(10)));
+                // Headers and half the body are out; give the worker time to block reading the rest
+                while (server.getStalledBodies() == 0) Thread.sleep(10);
+                Thread.sleep(100);
+                long started = System.nanoTime();
+                assertTrue(leg.cancel(true));
+
+                executor.submit(() -> { }).get(1500, TimeUnit.MILLISECONDS);
+                long elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+
+                assertTrue(elapsedMillis < 1500, "took " + elapsedMillis + " ms");
+                assertEquals(1, server.getRequests());
+                assertEquals(0.0, api.getCircuitBreaker(RoutingAPI.RoutingProfile.FOOT_WALKING).getFailureRate(), 0.0);
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    @Test
+    public void cancellingAsyncRoundTripSendsNoFallbackRequestsTest() throws Exception {
+        try (MockRoutingServer server = MockRoutingServer.start()) {
+            server.setLatency(MockRoutingServer.fixedLatency(3000));
+            RoutingAPI api = apiFor(server);
+            ExecutorService executor = Executors.newSingleThreadExecutor(new DaemonThreadFactory("async-test"));
+            api.setAsyncExecutor(executor);
+            try {
+                CompletableFuture<RouteResult> loop = api.generateRoundTripWithAPIAsync(TWO_POINTS.get(0), 5.0, 5, 7,
+                        RoutingDeadline.after(Duration.ofSeconds(10)));
+                Thread.sleep(200);
+                assertTrue(loop.cancel(true));
+
+                // Once the worker is free, no cycling fallback can still be on its way
+                executor.submit(() -> { }).get(1500, TimeUnit.MILLISECONDS);
+                Thread.sleep(200);
+
+                assertEquals(1, server.getRequests());
+                assertEquals(0, server.getRequestsFor("cycling-regular"));
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    @Test
+    public void matrixComesFromMockServerAndIsCachedTest() throws Exception {
+        try (MockRoutingServer server = MockRoutingServer.start()) {
+            RoutingAPI api = apiFor(server);
+            List<GeoPosition> stops = List.of(new GeoPosition(49.41, 8.68), new GeoPosition(49.42, 8.68),
+                    new GeoPosition(49.42, 8.69));
+
+            DistanceMatrix matrix = api.computeMatrix(stops, api.newLegDeadline());
+
+            assertNotNull(matrix);
+            assertEquals(3, matrix.size());
+            assertEquals(1112, matrix.getMeters(0, 1), 5);
+            assertEquals(matrix.getMeters(0, 1) / 1.4, matrix.getSeconds(0, 1), 0.1);
+            assertEquals(server.getBaseUrl() + "/v2/matrix/foot-walking",
+                    api.matrixUrl(RoutingAPI.RoutingProfile.FOOT_WALKING));
+            assertTrue(server.getLastRequestBody().contains("\"locations\":[[8.68,49.41]"));
+
+            assertSame(matrix, api.computeMatrix(stops, api.newLegDeadline()));
+            assertEquals(1, server.getRequests());
+        }
+    }
+
+    @Test
+    public void matrixFailureReturnsNullTest() throws Exception {
+        try (MockRoutingServer server = MockRoutingServer.start()) {
+            server.failNext(1, 400);
+            RoutingAPI api = apiFor(server);
+
+            assertNull(api.computeMatrix(TWO_POINTS, api.newLegDeadline()));
+            assertNull(api.computeMatrix(List.of(TWO_POINTS.get(0)), api.newLegDeadline()));
+        }
+    }
 }
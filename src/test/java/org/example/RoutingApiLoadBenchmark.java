@@ -0,0 +1,131 @@
+package org.example;
+
+import org.jxmapviewer.viewer.GeoPosition;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Drives {@link RoutingAPI} against a {@link MockRoutingServer} from several threads and
+ * reports throughput and client-side latency percentiles, for both response formats, two
+ * payload sizes and a clean and a misbehaving server.
+ *
+ * Not a unit test; run it after test-compile with
+ * {@code java -cp target/classes:target/test-classes:<jxmapviewer2 jar> org.example.RoutingApiLoadBenchmark}.
+ * Every request asks for a slightly different leg so single-flight never merges them.
+ */
+public class RoutingApiLoadBenchmark {
+
+    private static final int CLIENT_THREADS = 8;
+    private static final long RUN_MILLIS = 5_000;
+    private static final int[] POINT_COUNTS = {1_000, 10_000};
+
+    public static void main(String[] args) throws Exception {
+        PrintStream console = System.out;
+        console.printf("%-10s %-8s %-7s %9s %8s %8s %8s %8s %s%n", "server", "format", "points", "req/s",
+                "ok %", "p50 ms", "p95 ms", "p99 ms", "server stats");
+        for (boolean faulty : new boolean[]{false, true}) {
+            for (RoutingAPI.ResponseFormat format : RoutingAPI.ResponseFormat.values()) {
+                for (int points : POINT_COUNTS) {
+                    run(console, faulty, format, points);
+                }
+            }
+        }
+    }
+
+    private static void run(PrintStream console, boolean faulty, RoutingAPI.ResponseFormat format, int points)
+            throws Exception {
+        try (MockRoutingServer server = MockRoutingServer.start()) {
+            server.setPointsPerResponse(points);
+            server.setLatency(MockRoutingServer.logNormalLatency(40, 0.5));
+            if (faulty) {
+                server.setErrorRate(0.02);
+                server.setRateLimitRate(0.01);
+                server.setRetryAfterSeconds(0);
+            }
+            RoutingAPI api = new RoutingAPI("bench-key", new RoutingHttpTransport(), server.getBaseUrl(),
+                    new RoutingRateLimiter(1_000_000, 1_000));
+            api.setResponseFormat(format);
+
+            // RoutingAPI logs every request; keep the table readable
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            System.setErr(new PrintStream(OutputStream.nullOutputStream()));
+            long[] latencies;
+            int succeeded;
+            long elapsedNanos;
+            try {
+                ExecutorService clients = Executors.newFixedThreadPool(CLIENT_THREADS, new DaemonThreadFactory("bench-client"));
+                AtomicInteger sequence = new AtomicInteger();
+                long stopAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(RUN_MILLIS);
+                long started = System.nanoTime();
+                List<Future<long[]>> futures = new ArrayList<>();
+                for (int t = 0; t < CLIENT_THREADS; t++) {
+                    futures.add(clients.submit(() -> drive(api, sequence, stopAt)));
+                }
+                List<long[]> perThread = new ArrayList<>();
+                for (Future<long[]> future : futures) perThread.add(future.get());
+                elapsedNanos = System.nanoTime() - started;
+                clients.shutdown();
+
+                int total = 0;
+                for (long[] samples : perThread) total += samples.length;
+                latencies = new long[total];
+                succeeded = 0;
+                int i = 0;
+                for (long[] samples : perThread) {
+                    for (long sample : samples) {
+                        // Failures are stored negated so they still count towards latency
+                        if (sample >= 0) succeeded++;
+                        latencies[i++] = Math.abs(sample);
+                    }
+                }
+            } finally {
+                System.setOut(console);
+                System.setErr(console);
+            }
+
+            Arrays.sort(latencies);
+            console.printf("%-10s %-8s %-7d %9.1f %8.1f %8.1f %8.1f %8.1f %s%n", faulty ? "faulty" : "clean",
+                    format == RoutingAPI.ResponseFormat.GEOJSON ? "geojson" : "polyline", points,
+                    latencies.length / (elapsedNanos / 1e9), 100.0 * succeeded / Math.max(1, latencies.length),
+                    percentile(latencies, 0.50), percentile(latencies, 0.95), percentile(latencies, 0.99),
+                    server.describeStats());
+        }
+    }
+
+    /**
+     * Sends legs back to back until {@code stopAt}.
+     *
+     * @return nanoseconds per call, negated for calls that came back empty
+     */
+    private static long[] drive(RoutingAPI api, AtomicInteger sequence, long stopAt) {
+        long[] samples = new long[256];
+        int count = 0;
+        while (System.nanoTime() < stopAt) {
+            int n = sequence.incrementAndGet();
+            List<GeoPosition> leg = List.of(new GeoPosition(49.41 + n * 1e-6, 8.68),
+                    new GeoPosition(49.42, 8.69 + n * 1e-6));
+            long start = System.nanoTime();
+            RouteResult result = api.snapToRoadsWithTwoPoints(leg, RoutingDeadline.after(Duration.ofSeconds(5)));
+            long nanos = System.nanoTime() - start;
+            if (count == samples.length) samples = Arrays.copyOf(samples, count * 2);
+            samples[count++] = result != null ? nanos : -nanos;
+        }
+        return Arrays.copyOf(samples, count);
+    }
+
+    private static double percentile(long[] sortedNanos, double fraction) {
+        if (sortedNanos.length == 0) return 0;
+        int index = Math.min(sortedNanos.length - 1, (int) Math.ceil(fraction * sortedNanos.length) - 1);
+        return sortedNanos[Math.max(0, index)] / 1e6;
+    }
+}
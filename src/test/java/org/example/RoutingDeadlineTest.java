@@ -0,0 +1,113 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RoutingDeadlineTest {
+
+    // -------------------------------------------------------------
+    // remaining time tests
+    // -------------------------------------------------------------
+
+    @Test
+    public void freshDeadlineIsNotExpiredAndHasBudgetLeftTest() {
+        RoutingDeadline deadline = RoutingDeadline.after(Duration.ofSeconds(10));
+
+        assertFalse(deadline.isExpired());
+        assertEquals(10000, deadline.getBudgetMillis());
+        assertTrue(deadline.remainingMillis() > 9000);
+    }
+
+    @Test
+    public void zeroBudgetIsExpiredImmediatelyTest() {
+        RoutingDeadline deadline = RoutingDeadline.after(Duration.ZERO);
+
+        assertTrue(deadline.isExpired());
+        assertEquals(0, deadline.remainingMillis());
+    }
+
+    @Test
+    public void timeoutForIsCappedByRemainingTimeAndNeverZeroTest() {
+        RoutingDeadline deadline = RoutingDeadline.after(Duration.ofSeconds(2));
+
+        assertTrue(deadline.timeoutFor(Duration.ofSeconds(30)).toMillis() <= 2000);
+        assertEquals(500, deadline.timeoutFor(Duration.ofMillis(500)).toMillis());
+        assertEquals(1, RoutingDeadline.after(Duration.ZERO).timeoutFor(Duration.ofSeconds(30)).toMillis());
+    }
+
+    @Test
+    public void checkNotExpiredThrowsTimeoutExceptionOnceExpiredTest() throws TimeoutException {
+        RoutingDeadline.after(Duration.ofSeconds(5)).checkNotExpired("op");
+
+        assertThrows(RoutingDeadline.ExpiredException.class,
+                () -> RoutingDeadline.after(Duration.ZERO).checkNotExpired("op"));
+    }
+
+    // -------------------------------------------------------------
+    // Guard tests
+    // -------------------------------------------------------------
+
+    @Test
+    public void guardInterruptsBlockedThreadWhenDeadlinePassesTest() {
+        RoutingDeadline deadline = RoutingDeadline.after(Duration.ofMillis(100));
+
+        RoutingDeadline.Guard guard = deadline.interruptCurrentThreadOnExpiry();
+        try {
+            assertThrows(InterruptedException.class, () -> Thread.sleep(5000));
+            assertTrue(guard.hasFired());
+        } finally {
+            guard.close();
+        }
+
+        assertFalse(Thread.currentThread().isInterrupted());
+    }
+
+    @Test
+    public void closedGuardNeverInterruptsTest() throws InterruptedException {
+        RoutingDeadline deadline = RoutingDeadline.after(Duration.ofMillis(50));
+
+        RoutingDeadline.Guard guard = deadline.interruptCurrentThreadOnExpiry();
+        guard.close();
+        Thread.sleep(150);
+
+        assertFalse(guard.hasFired());
+        assertFalse(Thread.currentThread().isInterrupted());
+    }
+
+    @Test
+    public void closingFiredGuardKeepsCancelInterruptOfRunningWorkTest() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CountDownLatch guardFired = new CountDownLatch(1);
+        AtomicBoolean cancelled = new AtomicBoolean();
+        CompletableFuture<Boolean> interruptedAfterClose = new CompletableFuture<>();
+        try {
+            InterruptibleFuture<Void> work = InterruptibleFuture.callAsync(() -> {
+                RoutingDeadline.Guard guard = RoutingDeadline.after(Duration.ofMillis(20)).interruptCurrentThreadOnExpiry();
+                while (!guard.hasFired()) Thread.onSpinWait();
+                guardFired.countDown();
+                while (!cancelled.get()) Thread.onSpinWait();
+                guard.close();
+                interruptedAfterClose.complete(Thread.currentThread().isInterrupted());
+                return null;
+            }, executor);
+
+            assertTrue(guardFired.await(5, TimeUnit.SECONDS));
+            assertTrue(work.cancel(true));
+            cancelled.set(true);
+
+            assertTrue(interruptedAfterClose.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package org.example;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RoutingHttpTransportTest {
+
+    private static final String PAYLOAD = OrsResponseFixtures.directionsGeoJson(200, 10, 5, 1000);
+
+    private HttpServer server;
+    private final AtomicReference<String> lastAcceptEncoding = new AtomicReference<>();
+    private final AtomicReference<String> lastAuthorization = new AtomicReference<>();
+    private final AtomicReference<String> lastBody = new AtomicReference<>();
+
+    @BeforeEach
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/ok", exchange -> {
+            lastAcceptEncoding.set(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+            lastAuthorization.set(exchange.getRequestHeaders().getFirst("Authorization"));
+            lastBody.set(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+
+            byte[] raw = PAYLOAD.getBytes(StandardCharsets.UTF_8);
+            byte[] body = raw;
+            if ("gzip".equals(lastAcceptEncoding.get())) {
+                ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                try (GZIPOutputStream gz = new GZIPOutputStream(bos)) {
+                    gz.write(raw);
+                }
+                body = bos.toByteArray();
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        server.createContext("/fail", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            byte[] body = "{\"error\":\"Quota exceeded\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(429, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        server.createContext("/gzip-stall", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            exchange.sendResponseHeaders(200, 0);
+            try {
+                Thread.sleep(3000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.close();
+        });
+        server.createContext("/gzip-empty", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @AfterEach
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    private String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    // -------------------------------------------------------------
+    // post(...) tests
+    // -------------------------------------------------------------
+
+    @Test
+    public void postSendsGzipAcceptEncodingAuthorizationAndBodyTest() throws Exception {
+        RoutingHttpTransport transport = new RoutingHttpTransport(Duration.ofSeconds(5));
+
+        try (RoutingHttpTransport.Response response =
+                     transport.post(url("/ok"), "my-key", "{\"coordinates\":[]}", Duration.ofSeconds(5))) {
+            response.discardRemainingBody();
+        }
+
+        assertEquals("gzip", lastAcceptEncoding.get());
+        assertEquals("my-key", lastAuthorization.get());
+        assertEquals("{\"coordinates\":[]}", lastBody.get());
+    }
+
+    @Test
+    public void postDecodesGzipBodyIntoOriginalPayloadTest() throws Exception {
+        RoutingHttpTransport transport = new RoutingHttpTransport(Duration.ofSeconds(5));
+
+        try (RoutingHttpTransport.Response response = transport.post(url("/ok"), "k", "{}", Duration.ofSeconds(5))) {
+            assertTrue(response.isSuccessful());
+            assertEquals(PAYLOAD, response.readBodyAsString());
+        }
+        assertEquals(1, transport.getGzipResponses());
+    }
+
+    @Test
+    public void interruptedThreadStopsReadingBodyTest() throws Exception {
+        RoutingHttpTransport transport = new RoutingHttpTransport(Duration.ofSeconds(5));
+
+        try (RoutingHttpTransport.Response response = transport.post(url("/ok"), "k", "{}", Duration.ofSeconds(5))) {
+            Thread.currentThread().interrupt();
+            try {
+                assertThrows(InterruptedIOException.class, () -> response.getBody().read(new byte[64]));
+            } finally {
+                Thread.interrupted();
+            }
+        }
+        assertEquals(0, transport.getResponseBytesDecoded());
+    }
+
+    @Test
+    public void gzipHeaderIsReadAfterPostReturnsSoAbortCanFreeItTest() throws Exception {
+        RoutingHttpTransport transport = new RoutingHttpTransport(Duration.ofSeconds(5));
+
+        long start = System.nanoTime();
+        try (RoutingHttpTransport.Response response =
+                     transport.post(url("/gzip-stall"), "k", "{}", Duration.ofSeconds(5))) {
+            assertTrue(System.nanoTime() - start < 2_000_000_000L, "post waited for the gzip header");
+            Thread aborter = new Thread(() -> {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException ignored) {
+                }
+                response.abort();
+            });
+            aborter.start();
+
+            assertThrows(InterruptedIOException.class, response::readBodyAsString);
+            assertTrue(System.nanoTime() - start < 2_000_000_000L, "abort did not free the header read");
+            aborter.join();
+        }
+    }
+
+    @Test
+    public void emptyGzipErrorBodyReadsAsEmptyTest() throws Exception {
+        RoutingHttpTransport transport = new RoutingHttpTransport(Duration.ofSeconds(5));
+
+        try (RoutingHttpTransport.Response response =
+                     transport.post(url("/gzip-empty"), "k", "{}", Duration.ofSeconds(5))) {
+            assertEquals(503, response.getStatusCode());
+            assertEquals("", response.readBodyAsString());
+        }
+    }
+
+    @Test
+    public void postBodyCanBeStreamedIntoGeoJsonParserTest() throws Exception {
+        RoutingHttpTransport transport = new RoutingHttpTransport(Duration.ofSeconds(5));
+
+        try (RoutingHttpTransport.Response response = transport.post(url("/ok"), "k", "{}", Duration.ofSeconds(5))) {
+            GeoJsonRouteParser parser = GeoJsonRouteParser.parse(response.getBody());
+
+            assertEquals(200, parser.getPointCount());
+            assertEquals(1000.0, parser.getDistance(), 1e-9);
+        }
+    }
+
+    @Test
+    public void postExposesErrorStatusAndBodyTest() throws Exception {
+        RoutingHttpTransport transport = new RoutingHttpTransport(Duration.ofSeconds(5));
+
+        try (RoutingHttpTransport.Response response = transport.post(url("/fail"), "k", "{}", Duration.ofSeconds(5))) {
+            assertFalse(response.isSuccessful());
+            assertEquals(429, response.getStatusCode());
+            assertTrue(response.readBodyAsString().contains("Quota exceeded"));
+        }
+    }
+
+    // -------------------------------------------------------------
+    // counter tests
+    // -------------------------------------------------------------
+
+    @Test
+    public void countersTrackRequestsAndCompressedVersusDecodedBytesTest() throws Exception {
+        RoutingHttpTransport transport = new RoutingHttpTransport(Duration.ofSeconds(5));
+
+        for (int i = 0; i < 3; i++) {
+            try (RoutingHttpTransport.Response response = transport.post(url("/ok"), "k", "{\"a\":1}", Duration.ofSeconds(5))) {
+                response.discardRemainingBody();
+            }
+        }
+
+        long payloadBytes = PAYLOAD.getBytes(StandardCharsets.UTF_8).length;
+        assertEquals(3, transport.getRequestsSent());
+        assertEquals(21, transport.getRequestBytesOnWire());
+        assertEquals(3 * payloadBytes, transport.getResponseBytesDecoded());
+        assertTrue(transport.getResponseBytesOnWire() < transport.getResponseBytesDecoded());
+        // Plain HTTP never needs a TLS engine, and is left out of the reuse count
+        assertEquals(0, transport.getTlsRequestsSent());
+        assertEquals(0, transport.getTlsConnectionsOpened());
+        assertEquals(0, transport.getReusedTlsConnectionRequests());
+        assertTrue(transport.describeStats().contains("requests=3 (0 over tls)"));
+    }
+
+    @Test
+    public void getInstanceReturnsSharedTransportTest() {
+        assertSame(RoutingHttpTransport.getInstance(), RoutingHttpTransport.getInstance());
+    }
+}
@@ -0,0 +1,143 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.http.HttpHeaders;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RoutingRateLimiterTest {
+
+    private static HttpHeaders headers(String... namesAndValues) {
+        Map<String, List<String>> map = new HashMap<>();
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            map.put(namesAndValues[i], List.of(namesAndValues[i + 1]));
+        }
+        return HttpHeaders.of(map, (name, value) -> true);
+    }
+
+    // -------------------------------------------------------------
+    // acquire(...) tests
+    // -------------------------------------------------------------
+
+    @Test
+    public void acquireAllowsBurstThenShedsWhenDeadlineIsTooShortTest() throws Exception {
+        RoutingRateLimiter limiter = new RoutingRateLimiter(60, 2);
+
+        limiter.acquire(null);
+        limiter.acquire(null);
+        RoutingRateLimiter.RateLimitedException shed = assertThrows(RoutingRateLimiter.RateLimitedException.class,
+                () -> limiter.acquire(RoutingDeadline.after(Duration.ofMillis(100))));
+
+        assertEquals(0, shed.getStatusCode());
+        assertTrue(shed.getRetryAfterMillis() > 100);
+        assertEquals(2, limiter.getRequestsAllowed());
+        assertEquals(1, limiter.getRequestsShed());
+    }
+
+    @Test
+    public void acquireQueuesUntilTokenRefillsTest() throws Exception {
+        // One token every 50 ms
+        RoutingRateLimiter limiter = new RoutingRateLimiter(1200, 1);
+        limiter.acquire(null);
+
+        long start = System.nanoTime();
+        limiter.acquire(RoutingDeadline.after(Duration.ofSeconds(2)));
+        long waitedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue(waitedMillis >= 20, "waited " + waitedMillis + " ms");
+        assertEquals(1, limiter.getRequestsQueued());
+    }
+
+    // -------------------------------------------------------------
+    // updateFromHeaders(...) tests
+    // -------------------------------------------------------------
+
+    @Test
+    public void updateFromHeadersCapsTokensAtServerRemainingTest() {
+        RoutingRateLimiter limiter = new RoutingRateLimiter(40, 40);
+
+        limiter.updateFromHeaders(headers("x-ratelimit-limit", "2000", "x-ratelimit-remaining", "3"));
+
+        assertTrue(limiter.getAvailableTokens() <= 3.01);
+        assertEquals(3, limiter.getServerRemaining());
+        assertTrue(limiter.isQuotaLow());
+        assertTrue(limiter.describeState().contains("3/2000"));
+    }
+
+    @Test
+    public void updateFromHeadersPausesWhenQuotaIsExhaustedTest() {
+        RoutingRateLimiter limiter = new RoutingRateLimiter();
+        AtomicInteger notifications = new AtomicInteger();
+        limiter.addListener(l -> notifications.incrementAndGet());
+
+        limiter.updateFromHeaders(headers("x-ratelimit-remaining", "0", "x-ratelimit-reset", "30"));
+
+        assertTrue(limiter.isPaused());
+        assertTrue(limiter.getPausedMillisRemaining() > 25_000);
+        assertTrue(notifications.get() >= 1);
+        assertTrue(limiter.describeState().startsWith("Routing rate limited"));
+    }
+
+    @Test
+    public void updateFromHeadersIgnoresResponsesWithoutRateLimitHeadersTest() {
+        RoutingRateLimiter limiter = new RoutingRateLimiter(40, 40);
+
+        limiter.updateFromHeaders(headers("Content-Type", "application/json"));
+
+        assertEquals(-1, limiter.getServerRemaining());
+        assertFalse(limiter.isPaused());
+    }
+
+    // -------------------------------------------------------------
+    // backoff tests
+    // -------------------------------------------------------------
+
+    @Test
+    public void backoffMillisGrowsExponentiallyWithJitterAndCapTest() {
+        RoutingRateLimiter limiter = new RoutingRateLimiter();
+        limiter.setBackoff(3, 100, 1000);
+
+        long shortestCapped = Long.MAX_VALUE;
+        for (int i = 0; i < 200; i++) {
+            long first = limiter.backoffMillis(0);
+            long third = limiter.backoffMillis(2);
+            long capped = limiter.backoffMillis(10);
+            assertTrue(first >= 0 && first <= 100, "first " + first);
+            assertTrue(third >= 0 && third <= 400, "third " + third);
+            assertTrue(capped >= 0 && capped <= 1000, "capped " + capped);
+            shortestCapped = Math.min(shortestCapped, capped);
+        }
+        // Full jitter spreads over the whole range, not just its upper half
+        assertTrue(shortestCapped < 500, "shortest capped " + shortestCapped);
+    }
+
+    @Test
+    public void recordThrottledHonoursRetryAfterAndPausesBucketTest() {
+        RoutingRateLimiter limiter = new RoutingRateLimiter();
+        limiter.setBackoff(3, 10, 20);
+
+        long wait = limiter.recordThrottled(429, 2000, 0);
+
+        assertEquals(2000, wait);
+        assertTrue(limiter.isPaused());
+        assertEquals(1, limiter.getThrottledResponses());
+    }
+
+    @Test
+    public void retryAfterMillisParsesSecondsAndIgnoresDatesTest() {
+        assertEquals(3000, RoutingRateLimiter.retryAfterMillis(headers("Retry-After", "3")));
+        assertEquals(0, RoutingRateLimiter.retryAfterMillis(headers("Retry-After", "Wed, 21 Oct 2015 07:28:00 GMT")));
+        assertEquals(0, RoutingRateLimiter.retryAfterMillis(headers()));
+    }
+
+    @Test
+    public void constructorRejectsNonPositiveRateTest() {
+        assertThrows(IllegalArgumentException.class, () -> new RoutingRateLimiter(0, 1));
+    }
+}
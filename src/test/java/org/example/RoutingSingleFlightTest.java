@@ -0,0 +1,155 @@
+package org.example;
+
+import org.jxmapviewer.viewer.GeoPosition;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RoutingSingleFlightTest {
+
+    private static final List<GeoPosition> LEG = List.of(new GeoPosition(1.0, 2.0), new GeoPosition(3.0, 4.0));
+    private static final RouteCacheKey KEY = RouteCacheKey.forRoute(RoutingAPI.RoutingProfile.FOOT_WALKING, LEG, 7);
+
+    private static RouteResult result() {
+        return new RouteResult(new ArrayList<>(LEG), 1, 2, 3);
+    }
+
+    // -------------------------------------------------------------
+    // execute(...) tests
+    // -------------------------------------------------------------
+
+    @Test
+    public void concurrentCallersForSameKeyShareOneRequestTest() throws Exception {
+        RoutingSingleFlight singleFlight = new RoutingSingleFlight();
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        RouteResult expected = result();
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+
+        try {
+            List<Future<RouteResult>> futures = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                futures.add(pool.submit(() -> singleFlight.execute(KEY, null, () -> {
+                    calls.incrementAndGet();
+                    release.await();
+                    return expected;
+                })));
+            }
+            // Let every caller register before the request completes
+            long waitUntil = System.currentTimeMillis() + 2000;
+            while (singleFlight.getRequestsShared() < 3 && System.currentTimeMillis() < waitUntil) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            for (Future<RouteResult> future : futures) {
+                assertSame(expected, future.get(2, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(1, calls.get());
+        assertEquals(1, singleFlight.getRequestsMade());
+        assertEquals(3, singleFlight.getRequestsShared());
+        assertEquals(0, singleFlight.getInFlightCount());
+    }
+
+    @Test
+    public void sequentialCallsAreNotSharedTest() throws Exception {
+        RoutingSingleFlight singleFlight = new RoutingSingleFlight();
+        AtomicInteger calls = new AtomicInteger();
+
+        singleFlight.execute(KEY, null, () -> { calls.incrementAndGet(); return result(); });
+        singleFlight.execute(KEY, null, () -> { calls.incrementAndGet(); return result(); });
+
+        assertEquals(2, calls.get());
+        assertEquals(0, singleFlight.getRequestsShared());
+    }
+
+    @Test
+    public void failureIsPropagatedToLeaderAndRemovesKeyTest() {
+        RoutingSingleFlight singleFlight = new RoutingSingleFlight();
+
+        Exception thrown = assertThrows(Exception.class,
+                () -> singleFlight.execute(KEY, null, () -> { throw new Exception("API returned error 500"); }));
+
+        assertEquals("API returned error 500", thrown.getMessage());
+        assertEquals(0, singleFlight.getInFlightCount());
+    }
+
+    @Test
+    public void waiterTakesOverWhenLeaderIsCancelledTest() throws Exception {
+        RoutingSingleFlight singleFlight = new RoutingSingleFlight();
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        RouteResult expected = result();
+
+        Thread leader = new Thread(() -> {
+            try {
+                singleFlight.execute(KEY, null, () -> {
+                    leaderStarted.countDown();
+                    Thread.sleep(5000);
+                    return result();
+                });
+            } catch (Exception ignored) {
+            }
+        });
+        leader.start();
+        assertTrue(leaderStarted.await(2, TimeUnit.SECONDS));
+
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            Future<RouteResult> waiter = pool.submit(() -> singleFlight.execute(KEY, null, () -> expected));
+            long waitUntil = System.currentTimeMillis() + 2000;
+            while (singleFlight.getRequestsShared() < 1 && System.currentTimeMillis() < waitUntil) {
+                Thread.sleep(5);
+            }
+            leader.interrupt();
+
+            assertSame(expected, waiter.get(2, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(1, singleFlight.getTakeovers());
+        assertEquals(2, singleFlight.getRequestsMade());
+    }
+
+    @Test
+    public void waiterGivesUpAtItsOwnDeadlineTest() throws Exception {
+        RoutingSingleFlight singleFlight = new RoutingSingleFlight();
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Thread leader = new Thread(() -> {
+            try {
+                singleFlight.execute(KEY, null, () -> {
+                    leaderStarted.countDown();
+                    release.await();
+                    return result();
+                });
+            } catch (Exception ignored) {
+            }
+        });
+        leader.start();
+        assertTrue(leaderStarted.await(2, TimeUnit.SECONDS));
+
+        try {
+            assertThrows(TimeoutException.class, () -> singleFlight.execute(KEY,
+                    RoutingDeadline.after(Duration.ofMillis(50)), RoutingSingleFlightTest::result));
+        } finally {
+            release.countDown();
+            leader.join(2000);
+        }
+    }
+}
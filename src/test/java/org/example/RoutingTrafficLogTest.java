@@ -0,0 +1,122 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RoutingTrafficLogTest {
+
+    private static RoutingTrafficLog.Exchange exchange(String url, String response, long headersMillis) {
+        return new RoutingTrafficLog.Exchange(1_700_000_000_000L, headersMillis * 1_000_000, 3_000_000, url,
+                "{\"coordinates\":[]}", 200, HttpClient.Version.HTTP_2,
+                Map.of("content-type", List.of("application/json")), response.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void exchangesRoundTripThroughFileTest(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("traffic.rtl");
+        try (RoutingTrafficLog.Writer writer = new RoutingTrafficLog.Writer(file)) {
+            writer.append(exchange("http://x/v2/directions/foot-walking/geojson", "{\"a\":1}", 40));
+            writer.append(RoutingTrafficLog.Exchange.failed(1L, 8_000_000_000L, "http://x/y", "{}",
+                    RoutingTrafficLog.Exchange.FAILURE_TIMEOUT, "request timed out"));
+            assertEquals(2, writer.getExchangesWritten());
+        }
+
+        List<RoutingTrafficLog.Exchange> read = RoutingTrafficLog.readAll(file);
+
+        assertEquals(2, read.size());
+        RoutingTrafficLog.Exchange first = read.get(0);
+        assertEquals("http://x/v2/directions/foot-walking/geojson", first.getUrl());
+        assertEquals("{\"coordinates\":[]}", first.getRequestBody());
+        assertEquals(200, first.getStatusCode());
+        assertEquals(HttpClient.Version.HTTP_2, first.getVersion());
+        assertEquals(List.of("application/json"), first.getHeaders().get("content-type"));
+        assertEquals("{\"a\":1}", new String(first.getResponseBody(), StandardCharsets.UTF_8));
+        assertEquals(40_000_000, first.getHeadersNanos());
+        assertEquals(3_000_000, first.getBodyNanos());
+        assertFalse(first.isFailure());
+
+        RoutingTrafficLog.Exchange second = read.get(1);
+        assertTrue(second.isFailure());
+        assertEquals(RoutingTrafficLog.Exchange.FAILURE_TIMEOUT, second.getFailure());
+        assertEquals("request timed out", second.getFailureMessage());
+        assertEquals(8_000_000_000L, second.getHeadersNanos());
+    }
+
+    @Test
+    public void reopeningAppendsAfterExistingRecordsTest(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("traffic.rtl");
+        try (RoutingTrafficLog.Writer writer = new RoutingTrafficLog.Writer(file)) {
+            writer.append(exchange("http://x/1", "one", 1));
+        }
+        try (RoutingTrafficLog.Writer writer = new RoutingTrafficLog.Writer(file)) {
+            writer.append(exchange("http://x/2", "two", 2));
+        }
+
+        List<RoutingTrafficLog.Exchange> read = RoutingTrafficLog.readAll(file);
+
+        assertEquals(2, read.size());
+        assertEquals("http://x/2", read.get(1).getUrl());
+    }
+
+    @Test
+    public void repetitiveResponsesAreStoredCompressedTest(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("traffic.rtl");
+        String response = "[8.681495,49.41461,111.0],".repeat(2000);
+        try (RoutingTrafficLog.Writer writer = new RoutingTrafficLog.Writer(file)) {
+            writer.append(exchange("http://x/1", response, 1));
+            assertTrue(writer.getBytesWritten() < response.length() / 10, "wrote " + writer.getBytesWritten());
+        }
+    }
+
+    @Test
+    public void tornLastRecordIsSkippedTest(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("traffic.rtl");
+        try (RoutingTrafficLog.Writer writer = new RoutingTrafficLog.Writer(file)) {
+            writer.append(exchange("http://x/1", "one", 1));
+            writer.append(exchange("http://x/2", "two".repeat(100), 2));
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 5);
+        }
+
+        List<RoutingTrafficLog.Exchange> read = RoutingTrafficLog.readAll(file);
+
+        assertEquals(1, read.size());
+        assertEquals("http://x/1", read.get(0).getUrl());
+    }
+
+    @Test
+    public void refusesFileThatIsNotATrafficLogTest(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("routes.db");
+        Files.write(file, "SQLite format 3".getBytes(StandardCharsets.UTF_8));
+
+        assertThrows(IOException.class, () -> RoutingTrafficLog.readAll(file));
+        assertThrows(IOException.class, () -> new RoutingTrafficLog.Writer(file));
+        assertEquals(15, Files.size(file));
+    }
+
+    @Test
+    public void summaryCountsFailuresAndReportsPercentilesTest() {
+        List<RoutingTrafficLog.Exchange> exchanges = List.of(exchange("http://x/1", "a", 10),
+                exchange("http://x/2", "b", 20),
+                RoutingTrafficLog.Exchange.failed(1L, 90_000_000, "http://x/3", "{}",
+                        RoutingTrafficLog.Exchange.FAILURE_IO, "reset"));
+
+        String summary = RoutingTrafficLog.summarize(exchanges);
+
+        assertTrue(summary.startsWith("exchanges=3 (1 failed)"), summary);
+        assertTrue(summary.contains("headers p50/p95/max=20/90/90 ms"), summary);
+    }
+}
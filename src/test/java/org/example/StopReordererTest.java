@@ -0,0 +1,89 @@
+package org.example;
+
+import org.jxmapviewer.viewer.GeoPosition;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StopReordererTest {
+
+    private static List<GeoPosition> stops(int count) {
+        List<GeoPosition> stops = new ArrayList<>();
+        for (int i = 0; i < count; i++) stops.add(new GeoPosition(49.41 + i * 0.001, 8.68));
+        return stops;
+    }
+
+    private static List<RouteResult> straightLegs(List<GeoPosition> stops) {
+        List<RouteResult> legs = new ArrayList<>();
+        for (int i = 1; i < stops.size(); i++) legs.add(StopReorderer.straightLeg(stops.get(i - 1), stops.get(i)));
+        return legs;
+    }
+
+    private static void assertLegRuns(RouteResult leg, GeoPosition from, GeoPosition to) {
+        assertEquals(from.getLatitude(), leg.getLatitude(0), 1e-9);
+        assertEquals(to.getLatitude(), leg.getLatitude(leg.getPointCount() - 1), 1e-9);
+    }
+
+    @Test
+    public void reroutesOnlyLegsTheNewOrderChangesTest() throws Exception {
+        FakeRoutingBackend backend = new FakeRoutingBackend();
+        List<GeoPosition> stops = stops(5);
+        List<RouteResult> legs = straightLegs(stops);
+
+        // 0 1 2 3 4 -> 0 1 3 2 4: 0-1 kept, 3-2 reversed, 1-3 and 2-4 new
+        StopReorderer.Result result = new StopReorderer(backend).reorder(stops, legs, new int[]{0, 1, 3, 2, 4},
+                backend.newLegDeadline());
+
+        assertEquals(1, result.getReused());
+        assertEquals(1, result.getReversed());
+        assertEquals(2, result.getRerouted());
+        assertEquals(0, result.getFailed());
+        assertEquals(2, backend.legCalls.get());
+        assertSame(legs.get(0), result.getLegs().get(0));
+        assertLegRuns(result.getLegs().get(1), stops.get(1), stops.get(3));
+        assertLegRuns(result.getLegs().get(2), stops.get(3), stops.get(2));
+        assertLegRuns(result.getLegs().get(3), stops.get(2), stops.get(4));
+    }
+
+    @Test
+    public void carLegsAreNotReusedBackwardsTest() throws Exception {
+        FakeRoutingBackend backend = new FakeRoutingBackend();
+        backend.setProfile(RoutingAPI.RoutingProfile.DRIVING_CAR);
+        List<GeoPosition> stops = stops(3);
+
+        StopReorderer.Result result = new StopReorderer(backend).reorder(stops, straightLegs(stops), new int[]{0, 2, 1},
+                backend.newLegDeadline());
+
+        assertEquals(0, result.getReversed());
+        assertEquals(2, result.getRerouted());
+    }
+
+    @Test
+    public void failedLegBecomesStraightLineTest() throws Exception {
+        FakeRoutingBackend backend = new FakeRoutingBackend();
+        List<GeoPosition> stops = stops(4);
+        backend.failAt = stops.get(3);
+        StopReorderer reorderer = new StopReorderer(backend);
+
+        StopReorderer.Result result = reorderer.reorder(stops, straightLegs(stops), new int[]{0, 2, 1, 3},
+                backend.newLegDeadline());
+
+        assertEquals(1, result.getFailed());
+        RouteResult fallback = result.getLegs().get(2);
+        assertEquals(2, fallback.getPointCount());
+        assertLegRuns(fallback, stops.get(1), stops.get(3));
+        assertEquals(1, reorderer.getLegsFailed());
+    }
+
+    @Test
+    public void rejectsMismatchedInputTest() {
+        FakeRoutingBackend backend = new FakeRoutingBackend();
+        List<GeoPosition> stops = stops(3);
+
+        assertThrows(IllegalArgumentException.class, () -> new StopReorderer(backend)
+                .reorder(stops, straightLegs(stops).subList(0, 1), new int[]{0, 2, 1}, backend.newLegDeadline()));
+    }
+}
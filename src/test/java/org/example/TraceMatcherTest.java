@@ -0,0 +1,169 @@
+package org.example;
+
+import org.jxmapviewer.viewer.GeoPosition;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TraceMatcherTest {
+
+    private static final double SPACING = 100;
+
+    /**
+     * A zig-zag of {@code count} fixes, 500 m east then 500 m north and so on, one fix every
+     * {@code stepMeters} with a little GPS noise.
+     */
+    private static RouteResult zigZagTrace(int count, double stepMeters, long seed) {
+        Random random = new Random(seed);
+        double[] latitudes = new double[count];
+        double[] longitudes = new double[count];
+        double north = 0;
+        double east = 0;
+        for (int i = 0; i < count; i++) {
+            latitudes[i] = RoadGraphFixtures.ORIGIN_LAT + (north + random.nextGaussian() * 3) / 111_320.0;
+            longitudes[i] = RoadGraphFixtures.ORIGIN_LON + (east + random.nextGaussian() * 3)
+                    / (111_320.0 * Math.cos(Math.toRadians(RoadGraphFixtures.ORIGIN_LAT)));
+            boolean eastward = ((int) ((i * stepMeters) / 500)) % 2 == 0;
+            if (eastward) east += stepMeters; else north += stepMeters;
+        }
+        return RouteResult.fromArrays(latitudes, longitudes, null, count, 0, 0, 0);
+    }
+
+    @Test
+    public void matchedRouteLiesOnRoadsAcrossManyWindowsTest() throws InterruptedException {
+        RoadGraph graph = RoadGraphFixtures.grid(30, 30, SPACING);
+        OfflineRoutingBackend backend = new OfflineRoutingBackend(graph, new FakeRoutingBackend());
+        RouteResult trace = zigZagTrace(2000, 2, 1);
+
+        TraceMatcher.Result result = new TraceMatcher(backend, 8, 2).match(trace, RoutingDeadline.after(Duration.ofSeconds(10)));
+
+        assertEquals(2000, result.getTracePoints());
+        assertTrue(result.getWaypoints() < 200, "thinned to " + result.getWaypoints());
+        assertTrue(result.getWindows() > 3);
+        assertEquals(0, result.getWindowsFailed());
+        for (Point point : result.getRoute().getPoints()) {
+            double row = (point.getLatitude() - RoadGraphFixtures.ORIGIN_LAT) * 111_320.0 / SPACING;
+            double column = (point.getLongitude() - RoadGraphFixtures.ORIGIN_LON)
+                    * 111_320.0 * Math.cos(Math.toRadians(RoadGraphFixtures.ORIGIN_LAT)) / SPACING;
+            // Every point on a grid row or column, to within a metre
+            assertTrue(Math.abs(row - Math.round(row)) < 0.01 || Math.abs(column - Math.round(column)) < 0.01,
+                    "off-road point " + point.getLatitude() + "," + point.getLongitude());
+        }
+        // 4 km walked; the offline graph routes between the nodes nearest each waypoint, so
+        // the matched route may double back up to half a block at each one
+        double matchedMeters = result.getRoute().getTotalDistance() * 1000;
+        assertTrue(matchedMeters > 3900 && matchedMeters < 6000, "matched " + matchedMeters + " m");
+    }
+
+    @Test
+    public void climbOfLegsIsAddedUpOnceAcrossSeamsTest() throws InterruptedException {
+        FakeRoutingBackend backend = new FakeRoutingBackend();
+        RouteResult trace = zigZagTrace(400, 20, 2);
+
+        TraceMatcher.Result result = new TraceMatcher(backend, 6, 2).match(trace, null);
+
+        int legs = result.getWaypoints() - 1;
+        assertEquals(10.0 * legs, result.getRoute().getAscentInMeters(), 1e-6);
+        assertEquals(0.0, result.getRoute().getDescentInMeters(), 1e-6);
+        assertEquals(result.getWindows(), backend.legCalls.get());
+        assertEquals(result.getWaypoints(), result.getRoute().getPoints().size());
+    }
+
+    @Test
+    public void failedWindowFallsBackToRecordedFixesTest() throws InterruptedException {
+        FakeRoutingBackend backend = new FakeRoutingBackend();
+        RouteResult trace = zigZagTrace(400, 20, 3);
+        int[] kept = TraceMatcher.thin(trace);
+        backend.failAt = new GeoPosition(trace.getLatitude(kept[kept.length - 1]), trace.getLongitude(kept[kept.length - 1]));
+        TraceMatcher matcher = new TraceMatcher(backend, 6, 2);
+
+        TraceMatcher.Result result = matcher.match(trace, null);
+
+        assertEquals(1, result.getWindowsFailed());
+        assertEquals(1, matcher.getWindowsFailed());
+        List<Point> points = result.getRoute().getPoints();
+        assertEquals(trace.getLatitude(399), points.get(points.size() - 1).getLatitude(), 1e-9);
+        // The raw stretch brings back the fixes thinning had dropped
+        assertTrue(points.size() > result.getWaypoints());
+    }
+
+    @Test
+    public void windowsAreRoutedInParallelOnBoundedPoolTest() throws InterruptedException {
+        FakeRoutingBackend backend = new FakeRoutingBackend();
+        backend.delayMillis = 100;
+        RouteResult trace = zigZagTrace(800, 20, 4);
+
+        long started = System.nanoTime();
+        TraceMatcher.Result result = new TraceMatcher(backend, 6, 2).match(trace, null);
+        long elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+
+        assertTrue(result.getWindows() >= 8);
+        assertTrue(backend.maxRunning.get() > 1);
+        assertTrue(backend.maxRunning.get() <= 4);
+        assertTrue(elapsedMillis < result.getWindows() * 100L, "took " + elapsedMillis + " ms");
+    }
+
+    @Test
+    public void expiredDeadlineLeavesRawTraceTest() throws InterruptedException {
+        FakeRoutingBackend backend = new FakeRoutingBackend();
+        backend.delayMillis = 500;
+        RouteResult trace = zigZagTrace(200, 20, 5);
+
+        TraceMatcher.Result result = new TraceMatcher(backend).match(trace, RoutingDeadline.after(Duration.ofMillis(50)));
+
+        assertEquals(result.getWindows(), result.getWindowsFailed());
+        assertEquals(200, result.getRoute().getPoints().size());
+    }
+
+    @Test
+    public void thinKeepsEndsAndCapsGapBetweenWaypointsTest() {
+        // 3 km due north, one fix every 5 m, no noise: Douglas-Peucker alone keeps only the ends
+        int count = 601;
+        double[] latitudes = new double[count];
+        double[] longitudes = new double[count];
+        for (int i = 0; i < count; i++) {
+            latitudes[i] = 40 + i * 5 / 111_320.0;
+            longitudes[i] = -105;
+        }
+        RouteResult trace = RouteResult.fromArrays(latitudes, longitudes, null, count, 0, 0, 3000);
+
+        int[] kept = TraceMatcher.thin(trace);
+
+        assertEquals(0, kept[0]);
+        assertEquals(count - 1, kept[kept.length - 1]);
+        double[] cumulative = trace.getCumulativeDistances();
+        for (int i = 1; i < kept.length; i++) {
+            assertTrue(kept[i] > kept[i - 1]);
+            assertTrue(cumulative[kept[i]] - cumulative[kept[i - 1]] <= TraceMatcher.MAX_WAYPOINT_GAP_METERS + 1e-6);
+        }
+        assertTrue(kept.length <= 10);
+    }
+
+    @Test
+    public void windowsOverlapAndCoverEveryWaypointTest() {
+        TraceMatcher matcher = new TraceMatcher(new FakeRoutingBackend(), 10, 3);
+
+        assertArrayEquals(new int[]{0}, matcher.windowStarts(10));
+        assertArrayEquals(new int[]{0, 6}, matcher.windowStarts(11));
+        assertArrayEquals(new int[]{0, 6, 12, 18}, matcher.windowStarts(28));
+    }
+
+    @Test
+    public void singleFixGivesSinglePointRouteTest() throws InterruptedException {
+        RouteResult trace = RouteResult.fromArrays(new double[]{40}, new double[]{-105}, null, 1, 0, 0, 0);
+
+        TraceMatcher.Result result = new TraceMatcher(new FakeRoutingBackend()).match(trace, null);
+
+        assertEquals(1, result.getRoute().getPoints().size());
+        assertEquals(0, result.getWindows());
+    }
+
+    @Test
+    public void rejectsOverlapThatLeavesNoProgressTest() {
+        assertThrows(IllegalArgumentException.class, () -> new TraceMatcher(new FakeRoutingBackend(), 5, 4));
+    }
+}
@@ -205,6 +205,56 @@ public class UserProfileTest {
         assertEquals(RoutingAPI.RoutingProfile.DRIVING_CAR, api.getProfile());
     }
 
+    @Test
+    public void applyUserSettingsToRoutingAPILeavesCalibrationOffByDefaultTest() {
+        UserProfile profile = createUser(1);
+        RoutingAPI api = new RoutingAPI("dummy-api-key");
+        api.setRoundTripCalibrationEnabled(true);
+
+        profile.applyUserSettingsToRoutingAPI(api);
+
+        assertFalse(profile.isCalibrateRoundTrips());
+        assertFalse(api.isRoundTripCalibrationEnabled());
+    }
+
+    @Test
+    public void applyUserSettingsToRoutingAPITurnsHedgingOnOnlyWhenChosenTest() {
+        UserProfile profile = createUser(1);
+        RoutingAPI api = new RoutingAPI("dummy-api-key");
+
+        profile.applyUserSettingsToRoutingAPI(api);
+        assertFalse(api.isHedgingEnabled());
+
+        profile.setHedgedRouting(true);
+        profile.applyUserSettingsToRoutingAPI(api);
+        assertTrue(api.isHedgingEnabled());
+    }
+
+    @Test
+    public void applyUserSettingsToRoutingAPISetsResponseFormatDefaultingToGeoJsonTest() {
+        UserProfile profile = createUser(1);
+        RoutingAPI api = new RoutingAPI("dummy-api-key");
+        api.setResponseFormat(RoutingAPI.ResponseFormat.ENCODED_POLYLINE);
+
+        profile.applyUserSettingsToRoutingAPI(api);
+        assertEquals(RoutingAPI.ResponseFormat.GEOJSON, api.getResponseFormat());
+
+        profile.setRouteResponseFormat(RoutingAPI.ResponseFormat.ENCODED_POLYLINE);
+        profile.applyUserSettingsToRoutingAPI(api);
+        assertEquals(RoutingAPI.ResponseFormat.ENCODED_POLYLINE, api.getResponseFormat());
+    }
+
+    @Test
+    public void applyUserSettingsToRoutingAPIReachesApiBehindOfflineBackendTest() {
+        UserProfile profile = createUser(1);
+        profile.setCalibrateRoundTrips(true);
+        RoutingAPI api = new RoutingAPI("dummy-api-key");
+
+        profile.applyUserSettingsToRoutingAPI(new OfflineRoutingBackend(RoadGraphFixtures.grid(2, 2, 100), api));
+
+        assertTrue(api.isRoundTripCalibrationEnabled());
+    }
+
     // ---- getUserName tests ----
 
     @Test
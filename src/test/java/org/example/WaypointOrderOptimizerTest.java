@@ -0,0 +1,165 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WaypointOrderOptimizerTest {
+
+    /**
+     * Symmetric times between points on a plane, one second per unit.
+     */
+    private static DistanceMatrix planar(double[][] xy) {
+        int n = xy.length;
+        double[] seconds = new double[n * n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                seconds[i * n + j] = Math.hypot(xy[i][0] - xy[j][0], xy[i][1] - xy[j][1]);
+            }
+        }
+        return new DistanceMatrix(n, seconds, seconds.clone(), "plane");
+    }
+
+    private static double[][] randomPoints(int n, long seed) {
+        Random random = new Random(seed);
+        double[][] xy = new double[n][];
+        for (int i = 0; i < n; i++) xy[i] = new double[]{random.nextDouble() * 1000, random.nextDouble() * 1000};
+        return xy;
+    }
+
+    private static void assertPermutation(int[] order) {
+        int[] sorted = order.clone();
+        Arrays.sort(sorted);
+        for (int i = 0; i < sorted.length; i++) assertEquals(i, sorted[i]);
+    }
+
+    /**
+     * Every order with the first stop (and, for loops, the last) fixed, for small cases.
+     */
+    private static double bruteForceBest(DistanceMatrix matrix, boolean keepEnd) {
+        int n = matrix.size();
+        List<Integer> free = new ArrayList<>();
+        for (int i = 1; i < (keepEnd ? n - 1 : n); i++) free.add(i);
+        return bestOf(matrix, new ArrayList<>(List.of(0)), free, keepEnd);
+    }
+
+    private static double bestOf(DistanceMatrix matrix, List<Integer> prefix, List<Integer> free, boolean keepEnd) {
+        if (free.isEmpty()) {
+            List<Integer> order = new ArrayList<>(prefix);
+            if (keepEnd) order.add(matrix.size() - 1);
+            return matrix.secondsAlong(order.stream().mapToInt(Integer::intValue).toArray());
+        }
+        double best = Double.POSITIVE_INFINITY;
+        for (int k = 0; k < free.size(); k++) {
+            Integer next = free.remove(k);
+            prefix.add(next);
+            best = Math.min(best, bestOf(matrix, prefix, free, keepEnd));
+            prefix.remove(prefix.size() - 1);
+            free.add(k, next);
+        }
+        return best;
+    }
+
+    @Test
+    public void untanglesStopsAlongALineTest() {
+        DistanceMatrix matrix = planar(new double[][]{{0, 0}, {30, 0}, {10, 0}, {40, 0}, {20, 0}});
+
+        WaypointOrderOptimizer.Result result = new WaypointOrderOptimizer().optimize(matrix, false);
+
+        assertArrayEquals(new int[]{0, 2, 4, 1, 3}, result.getOrder());
+        assertEquals(40, result.getOptimizedSeconds(), 1e-9);
+        assertEquals(100, result.getInitialSeconds(), 1e-9);
+        assertEquals(60, result.getSavedSeconds(), 1e-9);
+        assertTrue(result.isImproved());
+    }
+
+    @Test
+    public void keepsFirstAndLastStopOfLoopInPlaceTest() {
+        double[][] xy = randomPoints(9, 7);
+        xy[8] = xy[0].clone();
+        DistanceMatrix matrix = planar(xy);
+
+        int[] order = new WaypointOrderOptimizer().optimize(matrix, true).getOrder();
+
+        assertPermutation(order);
+        assertEquals(0, order[0]);
+        assertEquals(8, order[8]);
+    }
+
+    @Test
+    public void matchesBruteForceOnSmallCasesTest() {
+        WaypointOrderOptimizer optimizer = new WaypointOrderOptimizer();
+        for (long seed = 1; seed <= 6; seed++) {
+            DistanceMatrix matrix = planar(randomPoints(8, seed));
+            for (boolean keepEnd : new boolean[]{false, true}) {
+                WaypointOrderOptimizer.Result result = optimizer.optimize(matrix, keepEnd);
+                assertEquals(bruteForceBest(matrix, keepEnd), result.getOptimizedSeconds(), 1e-6,
+                        "seed " + seed + ", keepEnd " + keepEnd);
+            }
+        }
+    }
+
+    @Test
+    public void respectsDirectionOfAsymmetricTimesTest() {
+        // Going 1 -> 2 is cheap, 2 -> 1 is very expensive; the order must follow the cheap way
+        double[] seconds = {
+                0, 10, 10,
+                10, 0, 1,
+                10, 100, 0};
+        DistanceMatrix matrix = new DistanceMatrix(3, seconds, seconds.clone(), "one-way");
+
+        WaypointOrderOptimizer.Result result = new WaypointOrderOptimizer().optimize(matrix, false);
+
+        assertArrayEquals(new int[]{0, 1, 2}, result.getOrder());
+        assertFalse(result.isImproved());
+        assertEquals(0, result.getBestStart());
+    }
+
+    @Test
+    public void avoidsUnreachablePairsTest() {
+        double inf = Double.POSITIVE_INFINITY;
+        double[] seconds = {
+                0, 5, 5, 5,
+                5, 0, inf, 5,
+                5, 5, 0, 5,
+                5, 5, 5, 0};
+        DistanceMatrix matrix = new DistanceMatrix(4, seconds, seconds.clone(), "gaps");
+
+        WaypointOrderOptimizer.Result result = new WaypointOrderOptimizer().optimize(matrix, false);
+
+        assertTrue(Double.isFinite(result.getOptimizedSeconds()));
+        assertTrue(Double.isInfinite(result.getInitialSeconds()));
+    }
+
+    @Test
+    public void sameSeedGivesSameOrderOnAnyPoolTest() {
+        DistanceMatrix matrix = planar(randomPoints(30, 11));
+        WaypointOrderOptimizer parallel = new WaypointOrderOptimizer(new ForkJoinPool(4));
+        WaypointOrderOptimizer single = new WaypointOrderOptimizer(new ForkJoinPool(1));
+
+        assertArrayEquals(parallel.optimize(matrix, false).getOrder(), single.optimize(matrix, false).getOrder());
+    }
+
+    @Test
+    public void fiftyStopsFinishWellUnderASecondTest() {
+        DistanceMatrix matrix = planar(randomPoints(50, 3));
+        WaypointOrderOptimizer optimizer = new WaypointOrderOptimizer();
+        optimizer.optimize(matrix, false);
+
+        long start = System.nanoTime();
+        WaypointOrderOptimizer.Result result = optimizer.optimize(matrix, false);
+        long millis = (System.nanoTime() - start) / 1_000_000;
+
+        assertPermutation(result.getOrder());
+        assertTrue(millis < 1000, "took " + millis + " ms");
+        assertTrue(result.getOptimizedSeconds() < result.getInitialSeconds() / 3);
+        assertEquals(WaypointOrderOptimizer.DEFAULT_STARTS, result.getStarts());
+        assertEquals(2, optimizer.getOptimizations());
+    }
+}